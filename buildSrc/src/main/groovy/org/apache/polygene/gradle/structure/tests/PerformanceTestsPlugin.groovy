@@ -23,18 +23,18 @@ import org.gradle.api.Action
 import org.gradle.api.Plugin
 import org.gradle.api.Project
 import org.gradle.api.plugins.JavaPluginConvention
+import org.gradle.api.tasks.JavaExec
 import org.gradle.api.tasks.bundling.Jar
 import org.gradle.api.tasks.testing.Test
 import org.gradle.language.base.plugins.LifecycleBasePlugin
 
-// TODO Add profiling tasks (jfr or honest? flamegraphs?)
-// TODO Add simple regression assertions, how? testing against a previous version?
 @CompileStatic
 class PerformanceTestsPlugin implements Plugin<Project>
 {
   static class TaskNames
   {
     static final String PERFORMANCE_TEST = 'performanceTest'
+    static final String PERFORMANCE_BENCHMARK = 'performanceBenchmark'
     static final String PERFORMANCE_PROFILE = 'performanceProfile'
     static final String PERFORMANCE_CHECK = 'performanceCheck'
   }
@@ -58,5 +58,48 @@ class PerformanceTestsPlugin implements Plugin<Project>
       task.classpath = sourceSets.getByName( 'perf' ).runtimeClasspath
       task.systemProperty 'jar.path', ( project.tasks.getByName( 'jar' ) as Jar ).archivePath
     } as Action<Test> )
+    def reportsDir = new File( project.buildDir, 'reports/jmh' )
+    def results = new File( reportsDir, 'results.json' )
+    project.tasks.create( TaskNames.PERFORMANCE_BENCHMARK, JavaExec, { JavaExec task ->
+      task.group = TaskGroups.PERFORMANCE
+      task.description = 'Runs JMH benchmarks, use -Pjmh.include=<regexp> to select benchmarks.'
+      configureBenchmark project, task, results
+    } as Action<JavaExec> )
+    project.tasks.create( TaskNames.PERFORMANCE_PROFILE, JavaExec, { JavaExec task ->
+      task.group = TaskGroups.PERFORMANCE
+      task.description = 'Runs JMH benchmarks with the GC and stack profilers.'
+      configureBenchmark project, task, new File( reportsDir, 'profile.json' )
+      task.systemProperty 'jmh.profilers', project.findProperty( 'jmh.profilers' ) ?: 'gc,stack'
+    } as Action<JavaExec> )
+    project.tasks.create( TaskNames.PERFORMANCE_CHECK, JavaExec, { JavaExec task ->
+      task.group = TaskGroups.PERFORMANCE_VERIFICATION
+      task.description = 'Compares JMH results against the baseline given by -Pjmh.baseline=<results.json>.'
+      task.dependsOn TaskNames.PERFORMANCE_BENCHMARK
+      task.onlyIf { project.hasProperty( 'jmh.baseline' ) }
+      task.classpath = sourceSets.getByName( 'perf' ).runtimeClasspath
+      task.main = 'org.apache.polygene.test.performance.jmh.RegressionReport'
+      task.doFirst {
+        task.args project.property( 'jmh.baseline' ),
+                  results.absolutePath,
+                  new File( reportsDir, 'regression.txt' ).absolutePath,
+                  project.findProperty( 'jmh.threshold' ) ?: '10'
+      }
+    } as Action<JavaExec> )
+  }
+
+  private static void configureBenchmark( Project project, JavaExec task, File results )
+  {
+    def sourceSets = project.convention.getPlugin( JavaPluginConvention ).sourceSets
+    task.classpath = sourceSets.getByName( 'perf' ).runtimeClasspath
+    task.main = 'org.apache.polygene.test.performance.jmh.PolygeneBenchmarks'
+    task.args results.absolutePath
+    task.outputs.file results
+    task.outputs.upToDateWhen { false }
+    [ 'jmh.include', 'jmh.forks', 'jmh.warmups', 'jmh.iterations', 'jmh.time', 'jmh.threads', 'jmh.profilers' ].each { String name ->
+      if( project.hasProperty( name ) )
+      {
+        task.systemProperty name, project.property( name )
+      }
+    }
   }
 }
@@ -20,6 +20,8 @@ package org.apache.polygene.api.serialization;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.polygene.api.mixin.Mixins;
 import org.apache.polygene.api.structure.MetaInfoHolder;
 import org.apache.polygene.api.type.HasTypes;
@@ -85,26 +87,33 @@ public interface Converters
     class Mixin implements Converters
     {
         private final Map<ValueType, Converter<?>> converters = new LinkedHashMap<>();
-        private final Map<ValueType, Converter<?>> resolvedConvertersCache = new HashMap<>();
-        private final Map<Class<? extends Converter>, Converter<?>> convertersInstancesCache = new HashMap<>();
+        // Shared by all serialization threads, absence of converter is cached as an empty Optional
+        private final Map<ValueType, Optional<Converter<?>>> resolvedConvertersCache = new ConcurrentHashMap<>();
+        private final Map<Class<? extends Converter>, Converter<?>> convertersInstancesCache =
+            new ConcurrentHashMap<>();
 
         @Override
-        public void registerConverter( ValueType valueType, Converter<?> converter )
+        public synchronized void registerConverter( ValueType valueType, Converter<?> converter )
         {
             converters.put( valueType, converter );
-            resolvedConvertersCache.put( valueType, converter );
+            // The new converter may be closer to already resolved types
+            resolvedConvertersCache.clear();
+            resolvedConvertersCache.put( valueType, Optional.of( converter ) );
         }
 
         @Override
         public <T> Converter<T> converterFor( ValueType valueType )
         {
-            if( resolvedConvertersCache.containsKey( valueType ) )
+            Optional<Converter<?>> resolved = resolvedConvertersCache.get( valueType );
+            if( resolved == null )
             {
-                return castConverter( resolvedConvertersCache.get( valueType ) );
+                synchronized( this )
+                {
+                    resolved = resolvedConvertersCache.computeIfAbsent(
+                        valueType, type -> Optional.ofNullable( lookupConverter( type ) ) );
+                }
             }
-            Converter<T> converter = lookupConverter( valueType );
-            resolvedConvertersCache.put( valueType, converter );
-            return converter;
+            return castConverter( resolved.orElse( null ) );
         }
 
         @SuppressWarnings( "unchecked" )
@@ -153,15 +162,16 @@ public interface Converters
 
         private <T> Converter<T> converterInstanceOf( Class<? extends Converter> converterClass )
         {
-            if( convertersInstancesCache.containsKey( converterClass ) )
+            Converter<?> cached = convertersInstancesCache.get( converterClass );
+            if( cached != null )
             {
-                return castConverter( convertersInstancesCache.get( converterClass ) );
+                return castConverter( cached );
             }
             try
             {
                 Converter<T> converter = castConverter( converterClass.newInstance() );
-                convertersInstancesCache.put( converterClass, converter );
-                return converter;
+                Converter<?> previous = convertersInstancesCache.putIfAbsent( converterClass, converter );
+                return previous == null ? converter : castConverter( previous );
             }
             catch( InstantiationException | IllegalAccessException ex )
             {
@@ -20,6 +20,7 @@
 package org.apache.polygene.api.unitofwork;
 
 import java.time.Instant;
+import java.util.function.Supplier;
 import org.apache.polygene.api.entity.EntityComposite;
 import org.apache.polygene.api.time.SystemTime;
 import org.apache.polygene.api.usecase.Usecase;
@@ -90,6 +91,49 @@ public interface UnitOfWorkFactory
     UnitOfWork currentUnitOfWork()
         throws IllegalStateException;
 
+    /**
+     * Run a task with the given UnitOfWork as the current UnitOfWork of the executing thread.
+     * <p>
+     * The UnitOfWorks that were current before are not visible to the task and are restored afterwards.
+     * This allows to continue a UnitOfWork in another thread, for example in a
+     * {@link java.util.concurrent.CompletableFuture} stage. The UnitOfWork must not be used by several threads
+     * at the same time.
+     * </p>
+     * <p>
+     * Factories that cannot bind UnitOfWorks throw {@link UnsupportedOperationException}, which is the default.
+     * </p>
+     *
+     * @param unitOfWork the UnitOfWork to bind to the executing thread
+     * @param task       the task to run
+     * @param <T>        the type of the task result
+     *
+     * @return the task result
+     *
+     * @throws UnitOfWorkException if the UnitOfWork is closed
+     */
+    default <T> T withUnitOfWork( UnitOfWork unitOfWork, Supplier<T> task )
+    {
+        throw new UnsupportedOperationException( getClass().getName() + " cannot bind UnitOfWorks to threads" );
+    }
+
+    /**
+     * Run a task with the given UnitOfWork as the current UnitOfWork of the executing thread.
+     *
+     * @param unitOfWork the UnitOfWork to bind to the executing thread
+     * @param task       the task to run
+     *
+     * @throws UnitOfWorkException if the UnitOfWork is closed
+     * @see #withUnitOfWork(UnitOfWork, Supplier)
+     */
+    default void withUnitOfWork( UnitOfWork unitOfWork, Runnable task )
+    {
+        withUnitOfWork( unitOfWork, () ->
+        {
+            task.run();
+            return null;
+        } );
+    }
+
     /**
      * Returns the UnitOfWork that the EntityComposite is bound to.
      *
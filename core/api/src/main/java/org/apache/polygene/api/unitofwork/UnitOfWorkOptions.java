@@ -27,18 +27,62 @@ package org.apache.polygene.api.unitofwork;
  * <p>
  * "pruneOnPause": if true, then clear out all instances that have been loaded in the UoW but not modified
  * </p>
+ * <p>
+ * "loadBatchSize": how many entities query result streams load from the EntityStore in a single batch,
+ * defaults to {@link #DEFAULT_LOAD_BATCH_SIZE}, at most "maxLoadedEntities" when set
+ * </p>
+ * <p>
+ * "maxLoadedEntities": how many loaded and unmodified entities the UoW keeps, 0 for no limit which is the default.
+ * Beyond that, the least recently used ones are evicted so that bulk processing UoWs run in bounded memory.
+ * Modified entities are always kept. Evicted entities must be fetched again from the UoW, using a reference
+ * obtained before the eviction throws a {@link UnitOfWorkException}.
+ * </p>
  */
 public class UnitOfWorkOptions
 {
+    public static final int DEFAULT_LOAD_BATCH_SIZE = 100;
+
     private boolean pruneOnPause = false;
+    private int loadBatchSize = DEFAULT_LOAD_BATCH_SIZE;
+    private int maxLoadedEntities = 0;
 
     public UnitOfWorkOptions( boolean pruneOnPause )
     {
         this.pruneOnPause = pruneOnPause;
     }
 
+    public UnitOfWorkOptions( boolean pruneOnPause, int loadBatchSize )
+    {
+        if( loadBatchSize < 1 )
+        {
+            throw new IllegalArgumentException( "loadBatchSize must be at least 1, was " + loadBatchSize );
+        }
+        this.pruneOnPause = pruneOnPause;
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public UnitOfWorkOptions( boolean pruneOnPause, int loadBatchSize, int maxLoadedEntities )
+    {
+        this( pruneOnPause, loadBatchSize );
+        if( maxLoadedEntities < 0 )
+        {
+            throw new IllegalArgumentException( "maxLoadedEntities must not be negative, was " + maxLoadedEntities );
+        }
+        this.maxLoadedEntities = maxLoadedEntities;
+    }
+
     public boolean isPruneOnPause()
     {
         return pruneOnPause;
     }
+
+    public int loadBatchSize()
+    {
+        return loadBatchSize;
+    }
+
+    public int maxLoadedEntities()
+    {
+        return maxLoadedEntities;
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.bootstrap;
+
+import org.apache.polygene.spi.entitystore.AsyncStateChangeNotification;
+import org.apache.polygene.spi.entitystore.StateChangeNotificationConcern;
+
+/**
+ * Enable the asynchronous notification of state changes on an EntityStore service declaration.
+ * <pre><code>
+ * AsyncStateChangeNotificationDeclaration.declare( module.services( MemoryEntityStoreService.class ),
+ *                                                  new AsyncStateChangeNotification( 10000, 100, journalFile ) );
+ * </code></pre>
+ * <p>
+ * The notification is set as meta-info of the service, which also gets the
+ * {@link StateChangeNotificationConcern.Activator} so that undelivered changes are replayed as soon as the
+ * store is activated.
+ * </p>
+ */
+public final class AsyncStateChangeNotificationDeclaration
+{
+    /**
+     * @param entityStore declaration of an EntityStore service that has the {@link StateChangeNotificationConcern}
+     * @param notification the asynchronous notification of the store
+     * @return the service declaration
+     */
+    public static ServiceDeclaration declare( ServiceDeclaration entityStore,
+                                              AsyncStateChangeNotification notification )
+    {
+        return entityStore.setMetaInfo( notification )
+                          .withActivators( StateChangeNotificationConcern.Activator.class );
+    }
+
+    private AsyncStateChangeNotificationDeclaration()
+    {
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.polygene.bootstrap;
+
+/**
+ * Strategy used to pool the invocation chains of composite methods.
+ * <p>
+ * Set it as meta-info on a composite declaration to select the pool of that composite,
+ * or on the {@link ApplicationAssembly} to change the default for the whole application.
+ * </p>
+ * <pre>
+ * <b>ATOMIC</b>       = A single lock-free stack per method. This is the default.
+ * <b>SYNCHRONIZED</b> = A single stack per method guarded by the method model monitor.
+ * <b>THREAD_LOCAL</b> = A stack per method and thread. Never contended, but retains instances for
+ *                each thread that ever invoked the method.
+ * <b>STRIPED</b>      = A fixed number of stacks per method, selected by thread. Never blocks and holds
+ *                no per-thread state, so it is safe to use from virtual threads.
+ * <b>NONE</b>         = No pooling, a new invocation chain is created for every call.
+ * </pre>
+ */
+public enum InstancePoolStrategy
+{
+    ATOMIC, SYNCHRONIZED, THREAD_LOCAL, STRIPED, NONE
+}
@@ -0,0 +1,70 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.bootstrap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.polygene.api.structure.ModuleDescriptor;
+
+/**
+ * Instantiate modules on first access instead of when the application is created.
+ * <p>
+ * Set it as meta-info on a {@link ModuleAssembly}, a {@link LayerAssembly} or the {@link ApplicationAssembly}.
+ * The module instance, with its service and imported service references, is then created the first time the module
+ * is used, for example when a service or a composite of it is looked up from another module, or when the module is
+ * found through its layer. Modules materialized after their layer was activated are activated right away, and are
+ * passivated with their layer before the modules that were activated earlier.
+ * </p>
+ * <p>
+ * A module is materialized once even when several threads access it concurrently, the other threads wait until it is
+ * activated. Modules that use each other from their activators or startup services must not be materialized
+ * concurrently from different threads.
+ * </p>
+ * <p>
+ * {@link #materializedModules()} tells which modules were actually materialized, in order.
+ * </p>
+ */
+public final class LazyModules
+{
+    private final List<ModuleDescriptor> materialized = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return the modules materialized so far, in materialization order
+     */
+    public List<ModuleDescriptor> materializedModules()
+    {
+        return new ArrayList<>( materialized );
+    }
+
+    /**
+     * Called by the runtime once a module has been materialized.
+     *
+     * @param module the materialized module
+     */
+    public void moduleMaterialized( ModuleDescriptor module )
+    {
+        materialized.add( module );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LazyModules{materialized=" + materialized + "}";
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.bootstrap;
+
+/**
+ * Activate the services of a module concurrently.
+ * <p>
+ * Set it as meta-info on a {@link ModuleAssembly}, a {@link LayerAssembly} or the {@link ApplicationAssembly}.
+ * Services instantiated on startup are then activated on up to {@link #threads()} threads, each one as soon as
+ * the services of the same module it depends on through {@code @Service} injection are active. Services are
+ * passivated in the reverse order of their activation.
+ * </p>
+ * <p>
+ * Layers and modules are still activated one after another, and activation event listeners of services may be
+ * called from several threads at once. Services that look each other up at activation time without declaring
+ * a {@code @Service} dependency, or that depend on each other in a cycle, must not rely on being activated
+ * in a given order.
+ * </p>
+ */
+public final class ParallelActivation
+{
+    private final int threads;
+
+    /**
+     * Activate on as many threads as there are available processors.
+     */
+    public ParallelActivation()
+    {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param threads maximum number of services activated at the same time in a module
+     */
+    public ParallelActivation( int threads )
+    {
+        if( threads < 1 )
+        {
+            throw new IllegalArgumentException( "Parallel activation needs at least one thread, got " + threads );
+        }
+        this.threads = threads;
+    }
+
+    public int threads()
+    {
+        return threads;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ParallelActivation{threads=" + threads + "}";
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.polygene.bootstrap;
+
+/**
+ * How the current UnitOfWork is associated with the executing thread.
+ * <p>
+ * Set it as meta-info on the {@link ApplicationAssembly}.
+ * </p>
+ * <pre>
+ * <b>THREAD_LOCAL</b> = An unsynchronized stack per thread. This is the default. The stack is retained by each
+ *                thread that ever used a UnitOfWork.
+ * <b>SCOPED</b>       = An immutable chain of UnitOfWorks bound to the thread only while at least one of them is
+ *                current. Holds no per-thread state otherwise, so it is suited to virtual threads and
+ *                short lived tasks.
+ * </pre>
+ * <p>
+ * In both cases, {@link org.apache.polygene.api.unitofwork.UnitOfWorkFactory#withUnitOfWork} explicitly binds a
+ * UnitOfWork to the executing thread, for example in a {@link java.util.concurrent.CompletableFuture} stage.
+ * </p>
+ */
+public enum UnitOfWorkContext
+{
+    THREAD_LOCAL, SCOPED
+}
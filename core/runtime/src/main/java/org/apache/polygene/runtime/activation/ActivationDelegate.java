@@ -119,7 +119,10 @@ public final class ActivationDelegate
                 {
                     child.activate();
                 }
-                activeChildren.addFirst( child );
+                synchronized( activeChildren )
+                {
+                    activeChildren.addFirst( child );
+                }
             }
 
             // Internal Activation Callback
@@ -161,6 +164,22 @@ public final class ActivationDelegate
         }
     }
 
+    /**
+     * Activate a child once the target is activating or active.
+     * <p>The child is passivated with the target, before the children that were activated earlier.</p>
+     * @param child child to activate
+     * @throws ActivationException if the child could not be activated
+     */
+    public void activateChild( Activation child )
+        throws ActivationException
+    {
+        child.activate();
+        synchronized( activeChildren )
+        {
+            activeChildren.addFirst( child );
+        }
+    }
+
     public void passivate()
         throws PassivationException
     {
@@ -194,9 +213,9 @@ public final class ActivationDelegate
         }
 
         // Passivation
-        while( !activeChildren.isEmpty() )
+        for( Activation activeChild = pollActiveChild(); activeChild != null; activeChild = pollActiveChild() )
         {
-            passivateOneChild( exceptions );
+            passivateOneChild( activeChild, exceptions );
         }
 
         // Internal Passivation Callback
@@ -269,9 +288,16 @@ public final class ActivationDelegate
     }
 
     @SuppressWarnings( "TooBroadCatch" )
-    private void passivateOneChild( Set<Exception> exceptions )
+    private Activation pollActiveChild()
+    {
+        synchronized( activeChildren )
+        {
+            return activeChildren.pollFirst();
+        }
+    }
+
+    private void passivateOneChild( Activation activeChild, Set<Exception> exceptions )
     {
-        Activation activeChild = activeChildren.removeFirst();
         try
         {
             activeChild.passivate();
@@ -31,7 +31,7 @@ import org.apache.polygene.api.activation.ActivationEventListenerRegistration;
 /* package */ class ActivationEventListenerSupport
     implements ActivationEventListenerRegistration, ActivationEventListener
 {
-    protected List<ActivationEventListener> listeners = new ArrayList<>();
+    protected volatile List<ActivationEventListener> listeners = new ArrayList<>();
 
     @Override
     public void registerActivationEventListener( ActivationEventListener listener )
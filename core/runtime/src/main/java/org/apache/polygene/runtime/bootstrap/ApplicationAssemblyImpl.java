@@ -101,6 +101,11 @@ public final class ApplicationAssemblyImpl
     public ApplicationAssembly setMetaInfo( Object info )
     {
         metaInfo.set( info );
+        if( info instanceof AssemblyHelper )
+        {
+            // MetaInfo only registers superclasses through their interfaces, subclasses must be found too
+            metaInfo.add( AssemblyHelper.class, (AssemblyHelper) info );
+        }
         return this;
     }
 
@@ -33,6 +33,7 @@ import org.apache.polygene.bootstrap.ApplicationAssembly;
 import org.apache.polygene.bootstrap.ApplicationModelFactory;
 import org.apache.polygene.bootstrap.AssemblyException;
 import org.apache.polygene.bootstrap.BindingException;
+import org.apache.polygene.bootstrap.InstancePoolStrategy;
 import org.apache.polygene.bootstrap.LayerAssembly;
 import org.apache.polygene.runtime.activation.ActivatorsModel;
 import org.apache.polygene.runtime.composite.CompositeMethodModel;
@@ -74,10 +75,16 @@ public final class ApplicationModelFactoryImpl
         {
             ApplicationAssemblyImpl impl = (ApplicationAssemblyImpl) assembly;
             AssemblyHelper helper = impl.metaInfo().get( AssemblyHelper.class );
-            if( helper != null )
+            if( helper == null )
             {
-                return helper;
+                helper = new AssemblyHelper();
             }
+            InstancePoolStrategy strategy = impl.metaInfo().get( InstancePoolStrategy.class );
+            if( strategy != null )
+            {
+                helper.setDefaultInstancePoolStrategy( strategy );
+            }
+            return helper;
         }
         return new AssemblyHelper();
     }
@@ -229,6 +236,7 @@ public final class ApplicationModelFactoryImpl
             else if( visited instanceof ModuleModel )
             {
                 module = (ModuleModel) visited;
+                module.indexTypes();
             }
             else if( visited instanceof LayerModel )
             {
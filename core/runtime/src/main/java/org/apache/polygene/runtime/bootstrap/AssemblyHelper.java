@@ -32,11 +32,19 @@ import org.apache.polygene.api.common.AppliesTo;
 import org.apache.polygene.api.common.AppliesToFilter;
 import org.apache.polygene.api.common.ConstructionException;
 import org.apache.polygene.api.constraint.Constraint;
+import org.apache.polygene.bootstrap.InstancePoolStrategy;
+import org.apache.polygene.runtime.composite.AtomicInstancePool;
+import org.apache.polygene.runtime.composite.CompositeMethodInstance;
 import org.apache.polygene.runtime.composite.ConcernModel;
 import org.apache.polygene.runtime.composite.ConstraintDeclaration;
 import org.apache.polygene.runtime.composite.FragmentClassLoader;
+import org.apache.polygene.runtime.composite.InstancePool;
 import org.apache.polygene.runtime.composite.MixinModel;
 import org.apache.polygene.runtime.composite.SideEffectModel;
+import org.apache.polygene.runtime.composite.StripedInstancePool;
+import org.apache.polygene.runtime.composite.SynchronizedCompositeMethodInstancePool;
+import org.apache.polygene.runtime.composite.ThreadLocalInstancePool;
+import org.apache.polygene.runtime.composite.UnpooledInstancePool;
 
 import static org.apache.polygene.api.util.AccessibleObjects.accessible;
 
@@ -51,6 +59,7 @@ public class AssemblyHelper
     private Map<Class, ConstraintDeclaration> constraintDeclarations = new HashMap<>();
     private Map<ClassLoader, FragmentClassLoader> modifierClassLoaders = new HashMap<>();
     private Map<Class<?>, AppliesToFilter> appliesToInstances = new HashMap<>();
+    private InstancePoolStrategy defaultInstancePoolStrategy = InstancePoolStrategy.ATOMIC;
 
     protected MixinModel getMixinModel(Class mixinClass)
     {
@@ -67,6 +76,35 @@ public class AssemblyHelper
         return new SideEffectModel( sideEffectClass, instantiationClass( sideEffectClass ) );
     }
 
+    /**
+     * Create the pool of invocation chains for one composite method.
+     *
+     * @param strategy the strategy declared on the composite, or null to use the default strategy
+     *
+     * @return the instance pool
+     */
+    protected InstancePool<CompositeMethodInstance> getInstancePool( InstancePoolStrategy strategy )
+    {
+        switch( strategy == null ? defaultInstancePoolStrategy : strategy )
+        {
+            case SYNCHRONIZED:
+                return new SynchronizedCompositeMethodInstancePool();
+            case THREAD_LOCAL:
+                return new ThreadLocalInstancePool();
+            case STRIPED:
+                return new StripedInstancePool();
+            case NONE:
+                return new UnpooledInstancePool();
+            default:
+                return new AtomicInstancePool();
+        }
+    }
+
+    void setDefaultInstancePoolStrategy( InstancePoolStrategy strategy )
+    {
+        defaultInstancePoolStrategy = strategy;
+    }
+
     protected Class instantiationClass(Class fragmentClass)
     {
         Class instantiationClass = fragmentClass;
@@ -68,6 +68,7 @@ import org.apache.polygene.api.util.Classes;
 import org.apache.polygene.api.util.Fields;
 import org.apache.polygene.api.util.HierarchicalVisitorAdapter;
 import org.apache.polygene.bootstrap.AssemblyReportException;
+import org.apache.polygene.bootstrap.InstancePoolStrategy;
 import org.apache.polygene.bootstrap.StateDeclarations;
 import org.apache.polygene.runtime.association.AssociationModel;
 import org.apache.polygene.runtime.association.AssociationsModel;
@@ -293,7 +294,8 @@ public abstract class CompositeAssemblyImpl
                         constraints,
                         concernsModel,
                         sideEffectsModel,
-                        mixinsModel
+                        mixinsModel,
+                        helper.getInstancePool( metaInfo.get( InstancePoolStrategy.class ) )
                     );
 
                     Stream<? extends Dependencies> source = of( methodComposite, mixinModel );
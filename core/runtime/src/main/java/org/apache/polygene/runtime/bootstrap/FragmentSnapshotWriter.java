@@ -0,0 +1,163 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.polygene.bootstrap.ApplicationAssembler;
+import org.apache.polygene.bootstrap.ApplicationAssembly;
+import org.apache.polygene.bootstrap.Assembler;
+import org.apache.polygene.bootstrap.AssemblyException;
+import org.apache.polygene.bootstrap.Energy4Java;
+import org.apache.polygene.runtime.composite.FragmentClassLoader;
+import org.apache.polygene.runtime.composite.FragmentClassSnapshot;
+
+/**
+ * Build-time tool writing the {@link FragmentClassSnapshot} of an application.
+ * <p>
+ * The application model is assembled once and every fragment subclass generated on the way is written to the
+ * {@link FragmentClassSnapshot#RESOURCE} in the output directory. With that directory on the runtime classpath,
+ * e.g. as a resources directory, the application loads these classes instead of generating them on each start.
+ * Snapshot entries that no longer match the classes they were generated from are ignored, so a stale snapshot
+ * only costs the time to check it.
+ * </p>
+ * <p>
+ * Usage: {@code FragmentSnapshotWriter <output directory> <assembler class>...} where each assembler class is an
+ * {@link ApplicationAssembler}, or an {@link Assembler} of a single module application, with a public no-arg
+ * constructor.
+ * </p>
+ * <p>
+ * Applications using a custom {@link AssemblyHelper} generate their own fragment subclasses and are not supported.
+ * </p>
+ */
+public final class FragmentSnapshotWriter
+{
+    public static void main( String[] args )
+        throws Exception
+    {
+        if( args.length < 2 )
+        {
+            System.err.println( "Usage: FragmentSnapshotWriter <output directory> <assembler class>..." );
+            System.exit( 1 );
+        }
+        List<ApplicationAssembler> assemblers = new ArrayList<>();
+        for( int i = 1; i < args.length; i++ )
+        {
+            Object assembler = Class.forName( args[ i ] ).newInstance();
+            if( assembler instanceof ApplicationAssembler )
+            {
+                assemblers.add( (ApplicationAssembler) assembler );
+            }
+            else if( assembler instanceof Assembler )
+            {
+                assemblers.add( factory -> factory.newApplicationAssembly( (Assembler) assembler ) );
+            }
+            else
+            {
+                throw new IllegalArgumentException( args[ i ] + " is neither an ApplicationAssembler nor an Assembler" );
+            }
+        }
+        File directory = new File( args[ 0 ] );
+        int count = write( directory, assemblers.toArray( new ApplicationAssembler[ assemblers.size() ] ) );
+        System.out.println( "Wrote " + count + " fragment classes to " + new File( directory, FragmentClassSnapshot.RESOURCE ) );
+    }
+
+    /**
+     * Assemble applications and write the fragment subclasses generated for them.
+     *
+     * @param directory  the snapshot directory
+     * @param assemblers the application assemblers
+     *
+     * @return the number of classes written
+     *
+     * @throws AssemblyException if an application could not be assembled
+     * @throws IOException       if the snapshot could not be written
+     */
+    public static int write( File directory, ApplicationAssembler... assemblers )
+        throws AssemblyException, IOException
+    {
+        SnapshotAssemblyHelper helper = new SnapshotAssemblyHelper();
+        Energy4Java polygene = new Energy4Java();
+        for( ApplicationAssembler assembler : assemblers )
+        {
+            polygene.newApplicationModel( factory ->
+                                          {
+                                              ApplicationAssembly assembly = assembler.assemble( factory );
+                                              assembly.setMetaInfo( helper );
+                                              return assembly;
+                                          } );
+        }
+        FragmentClassSnapshot snapshot = new FragmentClassSnapshot( FragmentClassLoader.class );
+        for( Map.Entry<String, GeneratedClass> entry : helper.generated.entrySet() )
+        {
+            GeneratedClass generated = entry.getValue();
+            snapshot.add( entry.getKey(), generated.baseClass, generated.bytes );
+        }
+        snapshot.write( directory );
+        return helper.generated.size();
+    }
+
+    private static class SnapshotAssemblyHelper
+        extends AssemblyHelper
+    {
+        private final Map<String, GeneratedClass> generated = new LinkedHashMap<>();
+
+        @Override
+        protected FragmentClassLoader instantiateFragmentClassLoader( ClassLoader classLoader )
+        {
+            return new FragmentClassLoader( classLoader )
+            {
+                @Override
+                protected byte[] snapshotClass( String name, Class baseClass )
+                {
+                    // Always generate, an existing snapshot may be the stale one being replaced
+                    return null;
+                }
+
+                @Override
+                public byte[] generateClass( String name, Class baseClass )
+                    throws ClassNotFoundException
+                {
+                    byte[] bytes = super.generateClass( name, baseClass );
+                    generated.put( name, new GeneratedClass( baseClass, bytes ) );
+                    return bytes;
+                }
+            };
+        }
+    }
+
+    private static class GeneratedClass
+    {
+        private final Class<?> baseClass;
+        private final byte[] bytes;
+
+        private GeneratedClass( Class<?> baseClass, byte[] bytes )
+        {
+            this.baseClass = baseClass;
+            this.bytes = bytes;
+        }
+    }
+
+    private FragmentSnapshotWriter()
+    {
+    }
+}
@@ -68,7 +68,7 @@ public final class CompositeConstraintModel
         public boolean isValid( Annotation annotation, Object value )
             throws NullPointerException
         {
-            return valueConstraintsInstance.checkConstraints( value ).isEmpty();
+            return valueConstraintsInstance.isValid( value );
         }
     }
 }
\ No newline at end of file
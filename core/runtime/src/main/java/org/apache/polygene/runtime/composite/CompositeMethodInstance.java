@@ -31,18 +31,20 @@ public final class CompositeMethodInstance
     private final InvocationHandler invoker;
     private final FragmentInvocationHandler mixinInvoker;
     private final Method method;
+    private final MixinModel mixinModel;
     private final int methodIdx;
 
     private CompositeMethodInstance next;
 
     public CompositeMethodInstance( InvocationHandler invoker,
                                     FragmentInvocationHandler mixinInvoker,
-                                    Method method, int methodIdx
+                                    Method method, MixinModel mixinModel, int methodIdx
     )
     {
         this.invoker = invoker;
         this.method = method;
         this.mixinInvoker = mixinInvoker;
+        this.mixinModel = mixinModel;
         this.methodIdx = methodIdx;
     }
 
@@ -51,11 +53,21 @@ public final class CompositeMethodInstance
         return method;
     }
 
+    public MixinModel mixinModel()
+    {
+        return mixinModel;
+    }
+
     public Object getMixinFrom( Object[] mixins )
     {
         return mixins[ methodIdx ];
     }
 
+    public void setMixinIn( Object[] mixins, Object mixin )
+    {
+        mixins[ methodIdx ] = mixin;
+    }
+
     public Object invoke( Object composite, Object[] params, Object mixin )
         throws Throwable
     {
@@ -55,15 +55,15 @@ public final class CompositeMethodModel
     private final AnnotatedElement annotations;
 
     // Context
-//    private final SynchronizedCompositeMethodInstancePool instancePool = new SynchronizedCompositeMethodInstancePool();
-    private final AtomicInstancePool instancePool = new AtomicInstancePool();
+    private final InstancePool<CompositeMethodInstance> instancePool;
     private final ConstraintsInstance constraintsInstance;
 
     public CompositeMethodModel( Method method,
                                  ConstraintsModel constraintsModel,
                                  ConcernsModel concernsModel,
                                  SideEffectsModel sideEffectsModel,
-                                 MixinsModel mixinsModel
+                                 MixinsModel mixinsModel,
+                                 InstancePool<CompositeMethodInstance> instancePool
     )
     {
         this.method = method;
@@ -73,7 +73,7 @@ public final class CompositeMethodModel
         constraints = constraintsModel;
         constraintsInstance = constraints.newInstance();
         annotations = new CompositeMethodAnnotatedElement();
-//        instancePool = new SynchronizedCompositeMethodInstancePool();
+        this.instancePool = instancePool;
     }
 
     // Model
@@ -142,9 +142,9 @@ public final class CompositeMethodModel
             invoker = sideEffectsInstance;
         }
 
+        MixinModel model = mixins.mixinFor( method );
         if( invocationMethod == null )
         {
-            MixinModel model = mixins.mixinFor( method );
             if( !InvocationHandler.class.isAssignableFrom( model.mixinClass() ) )
             {
                 try
@@ -166,7 +166,8 @@ public final class CompositeMethodModel
 
         mixinInvocationHandler.setMethod( invocationMethod );
 
-        return new CompositeMethodInstance( invoker, mixinInvocationHandler, method, mixins.methodIndex.get( method ) );
+        return new CompositeMethodInstance( invoker, mixinInvocationHandler, method, model,
+                                            mixins.methodIndex.get( method ) );
     }
 
     public AnnotatedElement annotatedElement()
@@ -21,7 +21,9 @@ package org.apache.polygene.runtime.composite;
 
 import java.lang.reflect.Method;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -43,6 +45,7 @@ public final class CompositeMethodsModel
 
     private final LinkedHashMap<Method, CompositeMethodModel> methods;
     private final MixinsModel mixinsModel;
+    private volatile Map<Method, CompositeMethodModel> dispatch = new IdentityHashMap<>();
 
     public CompositeMethodsModel( MixinsModel mixinsModel )
     {
@@ -65,62 +68,93 @@ public final class CompositeMethodsModel
                         )
         throws Throwable
     {
-        CompositeMethodModel compositeMethod = methods.get( method );
-
+        CompositeMethodModel compositeMethod = dispatch.get( method );
         if( compositeMethod == null )
         {
-            Class<?> declaringClass = method.getDeclaringClass();
-            if( declaringClass.equals( Object.class ) )
+            if( method.getDeclaringClass().equals( Object.class ) )
             {
                 return mixins.invokeObject( proxy, args, method );
             }
+            compositeMethod = resolve( proxy, method );
+            cacheDispatch( method, compositeMethod );
+        }
+        return compositeMethod.invoke( proxy, args, mixins, moduleInstance );
+    }
+
+    private CompositeMethodModel resolve( Object proxy, Method method )
+    {
+        CompositeMethodModel compositeMethod = methods.get( method );
+        if( compositeMethod != null )
+        {
+            return compositeMethod;
+        }
 
-            // TODO: Figure out what was the intention of this code block, added by Rickard in 2009. It doesn't do anything useful.
-            // Update (niclas): My guess is that this is preparation for mixins in Objects.
-            if( !declaringClass.isInterface() )
+        Class<?> declaringClass = method.getDeclaringClass();
+        // TODO: Figure out what was the intention of this code block, added by Rickard in 2009. It doesn't do anything useful.
+        // Update (niclas): My guess is that this is preparation for mixins in Objects.
+        if( !declaringClass.isInterface() )
+        {
+            return mixinsModel.mixinTypes().map( aClass ->
+                                                 {
+                                                     try
+                                                     {
+                                                         Method realMethod = aClass.getMethod( method.getName(), method.getParameterTypes() );
+                                                         return methods.get( realMethod );
+                                                     }
+                                                     catch( NoSuchMethodException | SecurityException e )
+                                                     {
+
+                                                     }
+                                                     return null;
+                                                 } ).filter( Objects::nonNull ).findFirst().orElse( null );
+        }
+        if( method.isDefault() )
+        {
+            if( proxy instanceof Composite )
             {
-                compositeMethod = mixinsModel.mixinTypes().map( aClass ->
-                                                                {
-                                                                    try
-                                                                    {
-                                                                        Method realMethod = aClass.getMethod( method.getName(), method.getParameterTypes() );
-                                                                        return methods.get( realMethod );
-                                                                    }
-                                                                    catch( NoSuchMethodException | SecurityException e )
-                                                                    {
-
-                                                                    }
-                                                                    return null;
-                                                                } ).filter( Objects::nonNull ).findFirst().orElse( null );
-                return compositeMethod.invoke( proxy, args, mixins, moduleInstance );
+                throw new InternalError( "This shouldn't happen!" );
             }
-            if( method.isDefault() )
-            {
-                if( proxy instanceof Composite )
-                {
-                    throw new InternalError( "This shouldn't happen!" );
-                }
-                // Does this next line actually make any sense? Can we have a default method on an interface where the instance is not a Composite? Maybe... Let's try to trap a usecase by disallowing it.
+            // Does this next line actually make any sense? Can we have a default method on an interface where the instance is not a Composite? Maybe... Let's try to trap a usecase by disallowing it.
 //                return method.invoke( proxy, args );
-                String message = "We have detected a default method on an interface that is not backed by a Composite. "
-                                 + "Please report this to dev@polygene.apache.org together with the information below, "
-                                 + "that/those class(es) and the relevant assembly information. Thank you"
-                                 + NL + "Method:"
-                                 + method.toGenericString()
-                                 + NL + "Declaring Class:"
-                                 + method.getDeclaringClass().toGenericString()
-                                 + NL + "Types:"
-                                 + mixinsModel.mixinTypes()
-                                              .map( Class::toGenericString )
-                                              .collect( Collectors.joining( NL ) );
-                throw new UnsupportedOperationException( message );
-            }
-            throw new MissingMethodException( "Method '" + method + "' is not implemented" );
+            String message = "We have detected a default method on an interface that is not backed by a Composite. "
+                             + "Please report this to dev@polygene.apache.org together with the information below, "
+                             + "that/those class(es) and the relevant assembly information. Thank you"
+                             + NL + "Method:"
+                             + method.toGenericString()
+                             + NL + "Declaring Class:"
+                             + method.getDeclaringClass().toGenericString()
+                             + NL + "Types:"
+                             + mixinsModel.mixinTypes()
+                                          .map( Class::toGenericString )
+                                          .collect( Collectors.joining( NL ) );
+            throw new UnsupportedOperationException( message );
         }
-        else
+        throw new MissingMethodException( "Method '" + method + "' is not implemented" );
+    }
+
+    /**
+     * Remember how a Method instance was resolved. Proxies always pass the same Method instances, so after the
+     * first call of each method dispatch is an identity lookup without {@link Method#hashCode()} and
+     * {@link Method#equals(Object)}, nor the reflective lookup of methods declared in classes. The table is
+     * copied on write and bounded, in case callers keep handing in new copies of the same Method.
+     */
+    private synchronized void cacheDispatch( Method method, CompositeMethodModel compositeMethod )
+    {
+        if( compositeMethod == null || dispatch.size() >= 4 * methods.size() + 16 )
         {
-            return compositeMethod.invoke( proxy, args, mixins, moduleInstance );
+            return;
         }
+        Map<Method, CompositeMethodModel> newDispatch = new IdentityHashMap<>( dispatch );
+        newDispatch.put( method, compositeMethod );
+        dispatch = newDispatch;
+    }
+
+    /**
+     * @return the number of Method instances whose resolution is remembered
+     */
+    /* package */ int dispatchSize()
+    {
+        return dispatch.size();
     }
 
     public void addMethod( CompositeMethodModel methodModel )
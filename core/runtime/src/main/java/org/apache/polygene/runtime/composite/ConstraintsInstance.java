@@ -34,28 +34,42 @@ import org.apache.polygene.api.identity.Identity;
  */
 public final class ConstraintsInstance
 {
-    private final List<ValueConstraintsInstance> valueConstraintsInstances;
+    // One per parameter, null for parameters that are not constrained
+    private final ValueConstraintsInstance[] valueConstraintsInstances;
 
     public ConstraintsInstance( List<ValueConstraintsInstance> parameterConstraints )
     {
-        valueConstraintsInstances = parameterConstraints;
+        valueConstraintsInstances = parameterConstraints.toArray(
+            new ValueConstraintsInstance[ parameterConstraints.size() ] );
     }
 
-    @SuppressWarnings( "unchecked" )
     public void checkValid( Object instance, Method method, Object[] params )
         throws ConstraintViolationException
     {
-        if( valueConstraintsInstances.isEmpty() )
+        // Allocation free check, violations are only collected if a parameter is invalid
+        for( int i = 0; i < valueConstraintsInstances.length; i++ )
         {
-            return; // No constraints to check
+            ValueConstraintsInstance valueConstraintsInstance = valueConstraintsInstances[ i ];
+            if( valueConstraintsInstance != null && !valueConstraintsInstance.isValid( params[ i ] ) )
+            {
+                throwViolations( instance, method, params );
+            }
         }
+    }
 
-        // Check constraints
+    @SuppressWarnings( "unchecked" )
+    private void throwViolations( Object instance, Method method, Object[] params )
+        throws ConstraintViolationException
+    {
         List<ValueConstraintViolation> violations = null;
-        for( int i = 0; i < params.length; i++ )
+        for( int i = 0; i < valueConstraintsInstances.length; i++ )
         {
+            if( valueConstraintsInstances[ i ] == null )
+            {
+                continue;
+            }
             Object param = params[ i ];
-            List<ValueConstraintViolation> paramViolations = valueConstraintsInstances.get( i ).checkConstraints( param );
+            List<ValueConstraintViolation> paramViolations = valueConstraintsInstances[ i ].checkConstraints( param );
             if( !paramViolations.isEmpty() )
             {
                 if( violations == null )
@@ -44,8 +44,9 @@ public final class ConstraintsModel
 
     public ConstraintsInstance newInstance()
     {
-        if( parameterConstraintModels.isEmpty() )
+        if( parameterConstraintModels.stream().noneMatch( ValueConstraintsModel::isConstrained ) )
         {
+            // No constraints and only @Optional parameters, nothing to check
             return EMPTY_CONSTRAINTS;
         }
         else
@@ -54,7 +55,9 @@ public final class ConstraintsModel
                                                                                                 .size() );
             for( ValueConstraintsModel parameterConstraintModel : parameterConstraintModels )
             {
-                parameterConstraintsInstances.add( parameterConstraintModel.newInstance() );
+                parameterConstraintsInstances.add( parameterConstraintModel.isConstrained()
+                                                   ? parameterConstraintModel.newInstance()
+                                                   : null );
             }
             return new ConstraintsInstance( parameterConstraintsInstances );
         }
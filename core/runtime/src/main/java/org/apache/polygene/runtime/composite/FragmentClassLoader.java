@@ -99,6 +99,8 @@ public class FragmentClassLoader
         }
     }
 
+    private final FragmentClassSnapshot snapshot = new FragmentClassSnapshot( getClass() );
+
     public FragmentClassLoader( ClassLoader parent )
     {
         super( parent );
@@ -146,7 +148,11 @@ public class FragmentClassLoader
             {
                 name = "polygene." + name;
             }
-            byte[] b = generateClass( name, baseClass );
+            byte[] b = snapshotClass( name, baseClass );
+            if( b == null )
+            {
+                b = generateClass( name, baseClass );
+            }
             return defineClass( name, b, 0, b.length, baseClass.getProtectionDomain() );
         }
 
@@ -154,6 +160,19 @@ public class FragmentClassLoader
         return getClass().getClassLoader().loadClass( name );
     }
 
+    /**
+     * Look up a generated class in the {@link FragmentClassSnapshot} on the classpath.
+     *
+     * @param name      the name of the generated class
+     * @param baseClass the fragment class
+     *
+     * @return the bytecode, or null to generate the class
+     */
+    protected byte[] snapshotClass( String name, Class baseClass )
+    {
+        return snapshot.read( this, name, baseClass );
+    }
+
     public byte[] generateClass( String name, Class baseClass )
         throws ClassNotFoundException
     {
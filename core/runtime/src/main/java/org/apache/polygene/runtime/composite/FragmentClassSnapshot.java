@@ -0,0 +1,288 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.composite;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.polygene.api.util.Classes;
+
+import static org.apache.polygene.api.util.Classes.interfacesOf;
+
+/**
+ * Pre-generated fragment subclasses, written at build time and read back by {@link FragmentClassLoader} instead
+ * of generating the same bytecode on every start.
+ * <p>
+ * A snapshot is a {@link #RESOURCE} holding generated classes, each with a fingerprint of what it was generated
+ * from: the method and constructor signatures of the fragment class, its type hierarchy, the methods of all its
+ * interfaces, and the bytecode of the class loader that generated it. All snapshot resources on the classpath are
+ * read once, on the first lookup. Entries whose fingerprint does not match the classes at runtime are stale and
+ * ignored, the fragment subclass is then generated as usual.
+ * </p>
+ */
+public final class FragmentClassSnapshot
+{
+    public static final String RESOURCE = "META-INF/polygene/fragments.snapshot";
+    private static final int MAGIC = 0x504f4c59;
+    private static final int FORMAT = 1;
+
+    private final Class<?> generator;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private volatile Long generatorFingerprint;
+    private boolean loaded;
+
+    /**
+     * @param generator the {@link FragmentClassLoader} class generating the fragment subclasses
+     */
+    public FragmentClassSnapshot( Class<?> generator )
+    {
+        this.generator = generator;
+    }
+
+    /**
+     * Read a generated class from the snapshots on the classpath.
+     *
+     * @param loader    the class loader to look up the snapshot resources in
+     * @param name      the name of the generated class
+     * @param baseClass the fragment class it was generated from
+     *
+     * @return the bytecode of the generated class, or null if it is not in a snapshot or is stale
+     */
+    public synchronized byte[] read( ClassLoader loader, String name, Class<?> baseClass )
+    {
+        if( !loaded )
+        {
+            loaded = true;
+            load( loader );
+        }
+        Entry entry = entries.remove( name );
+        if( entry == null )
+        {
+            return null;
+        }
+        try
+        {
+            return entry.fingerprint == fingerprint( baseClass ) ? entry.classBytes : null;
+        }
+        catch( IOException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Add a generated class to this snapshot.
+     *
+     * @param name       the name of the generated class
+     * @param baseClass  the fragment class it was generated from
+     * @param classBytes the bytecode of the generated class
+     *
+     * @throws IOException if the class could not be fingerprinted
+     */
+    public synchronized void add( String name, Class<?> baseClass, byte[] classBytes )
+        throws IOException
+    {
+        entries.put( name, new Entry( fingerprint( baseClass ), classBytes ) );
+    }
+
+    /**
+     * Write the classes added to this snapshot.
+     *
+     * @param directory the root of the snapshot, typically a resources output directory
+     *
+     * @return the snapshot file
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    public synchronized File write( File directory )
+        throws IOException
+    {
+        File file = new File( directory, RESOURCE );
+        File parent = file.getParentFile();
+        if( !parent.isDirectory() && !parent.mkdirs() )
+        {
+            throw new IOException( "Unable to create " + parent );
+        }
+        try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) ) )
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT );
+            out.writeInt( entries.size() );
+            for( Map.Entry<String, Entry> entry : entries.entrySet() )
+            {
+                out.writeUTF( entry.getKey() );
+                out.writeLong( entry.getValue().fingerprint );
+                out.writeInt( entry.getValue().classBytes.length );
+                out.write( entry.getValue().classBytes );
+            }
+        }
+        return file;
+    }
+
+    private void load( ClassLoader loader )
+    {
+        try
+        {
+            Enumeration<URL> resources = loader.getResources( RESOURCE );
+            while( resources.hasMoreElements() )
+            {
+                load( resources.nextElement() );
+            }
+        }
+        catch( IOException e )
+        {
+            // Without a readable snapshot all fragment subclasses are generated
+        }
+    }
+
+    private void load( URL resource )
+    {
+        try( DataInputStream in = new DataInputStream( new BufferedInputStream( resource.openStream() ) ) )
+        {
+            if( in.readInt() != MAGIC || in.readInt() != FORMAT )
+            {
+                return;
+            }
+            int count = in.readInt();
+            for( int i = 0; i < count; i++ )
+            {
+                String name = in.readUTF();
+                long fingerprint = in.readLong();
+                byte[] classBytes = new byte[ in.readInt() ];
+                in.readFully( classBytes );
+                entries.putIfAbsent( name, new Entry( fingerprint, classBytes ) );
+            }
+        }
+        catch( IOException e )
+        {
+            // Unreadable snapshots are treated as stale
+        }
+    }
+
+    private long fingerprint( Class<?> baseClass )
+        throws IOException
+    {
+        Long generatorPrint = generatorFingerprint;
+        if( generatorPrint == null )
+        {
+            MessageDigest digest = newDigest();
+            digest.update( System.getProperty( "java.specification.version" ).getBytes( StandardCharsets.UTF_8 ) );
+            for( Class<?> type = generator; type != ClassLoader.class; type = type.getSuperclass() )
+            {
+                updateClassFile( digest, type );
+            }
+            generatorPrint = ByteBuffer.wrap( digest.digest() ).getLong();
+            generatorFingerprint = generatorPrint;
+        }
+        // The generated class only depends on the signatures of the fragment class, not on its code
+        List<String> members = new ArrayList<>();
+        for( Class<?> type = baseClass; type != null; type = type.getSuperclass() )
+        {
+            members.add( type.getName() );
+        }
+        // All the interfaces, as FragmentClassLoader uses them to decide which methods are intercepted
+        interfacesOf( baseClass ).forEach( anInterface -> {
+            members.add( anInterface.getTypeName() );
+            for( Method method : Classes.RAW_CLASS.apply( anInterface ).getMethods() )
+            {
+                members.add( anInterface.getTypeName() + " " + method.toGenericString() );
+            }
+        } );
+        for( Method method : baseClass.getMethods() )
+        {
+            members.add( method.toString() );
+        }
+        for( Constructor<?> constructor : baseClass.getDeclaredConstructors() )
+        {
+            members.add( constructor.toString() );
+        }
+        Collections.sort( members );
+        // 64-bit FNV-1a, this detects stale entries and does not need to resist tampering
+        long hash = 0xcbf29ce484222325L ^ generatorPrint;
+        for( String member : members )
+        {
+            for( int i = 0; i < member.length(); i++ )
+            {
+                hash = ( hash ^ member.charAt( i ) ) * 0x100000001b3L;
+            }
+            hash = ( hash ^ '\n' ) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void updateClassFile( MessageDigest digest, Class<?> type )
+        throws IOException
+    {
+        String classFile = type.getName().replace( '.', '/' ) + ".class";
+        try( InputStream in = type.getClassLoader().getResourceAsStream( classFile ) )
+        {
+            if( in == null )
+            {
+                throw new IOException( "No class file for " + type.getName() );
+            }
+            byte[] buffer = new byte[ 4096 ];
+            int read;
+            while( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            throw new InternalError( "SHA-256 is not available", e );
+        }
+    }
+
+    private static class Entry
+    {
+        private final long fingerprint;
+        private final byte[] classBytes;
+
+        private Entry( long fingerprint, byte[] classBytes )
+        {
+            this.fingerprint = fingerprint;
+            this.classBytes = classBytes;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.composite;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+import static org.objectweb.asm.Type.getInternalName;
+
+/**
+ * Creates {@link MethodInvoker}s for fragment methods.
+ * <p>
+ * For public methods of public types the invoker is a generated class calling the method directly, which the JIT
+ * can inline like any other call. Anything else, such as package private mixins, falls back to reflection.
+ * </p>
+ * <p>
+ * Invokers are shared per method. Generated classes are defined in a class loader that is a child of the loader
+ * of the declaring class, and both are held by the declaring class so they go away with it.
+ * </p>
+ */
+final class MethodInvokers
+{
+    private static final String INVOKER_NAME = getInternalName( MethodInvoker.class );
+    private static final String INVOKE_DESCRIPTOR = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final ClassValue<Invokers> INVOKERS = new ClassValue<Invokers>()
+    {
+        @Override
+        protected Invokers computeValue( Class<?> type )
+        {
+            return new Invokers( type.getClassLoader() );
+        }
+    };
+
+    private MethodInvokers()
+    {
+    }
+
+    static MethodInvoker invokerFor( Method method )
+    {
+        return INVOKERS.get( method.getDeclaringClass() ).invokerFor( method );
+    }
+
+    static boolean isGenerated( MethodInvoker invoker )
+    {
+        return invoker.getClass().getClassLoader() instanceof InvokerClassLoader;
+    }
+
+    private static boolean canGenerate( Method method )
+    {
+        if( !Modifier.isPublic( method.getModifiers() ) || Modifier.isStatic( method.getModifiers() ) )
+        {
+            return false;
+        }
+        if( !isPublic( method.getDeclaringClass() ) || !isPublic( method.getReturnType() ) )
+        {
+            return false;
+        }
+        for( Class<?> parameterType : method.getParameterTypes() )
+        {
+            if( !isPublic( parameterType ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic( Class<?> type )
+    {
+        while( type.isArray() )
+        {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic( type.getModifiers() );
+    }
+
+    private static MethodInvoker reflectiveInvoker( Method method )
+    {
+        if( !method.isAccessible() )
+        {
+            method.setAccessible( true );
+        }
+        return ( fragment, args ) -> {
+            try
+            {
+                return method.invoke( fragment, args );
+            }
+            catch( InvocationTargetException e )
+            {
+                throw e.getTargetException();
+            }
+        };
+    }
+
+    static byte[] generateInvoker( String name, Method method )
+    {
+        Class<?> declaringClass = method.getDeclaringClass();
+        String declaringName = getInternalName( declaringClass );
+        ClassWriter cw = new ClassWriter( ClassWriter.COMPUTE_MAXS );
+        cw.visit( V1_8, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, name, null, "java/lang/Object", new String[]{ INVOKER_NAME } );
+
+        MethodVisitor constructor = cw.visitMethod( ACC_PUBLIC, "<init>", "()V", null, null );
+        constructor.visitCode();
+        constructor.visitVarInsn( ALOAD, 0 );
+        constructor.visitMethodInsn( INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false );
+        constructor.visitInsn( RETURN );
+        constructor.visitMaxs( 1, 1 );
+        constructor.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod( ACC_PUBLIC, "invoke", INVOKE_DESCRIPTOR, null, new String[]{ "java/lang/Throwable" } );
+        mv.visitCode();
+        mv.visitVarInsn( ALOAD, 1 );
+        mv.visitTypeInsn( CHECKCAST, declaringName );
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for( int i = 0; i < parameterTypes.length; i++ )
+        {
+            mv.visitVarInsn( ALOAD, 2 );
+            mv.visitLdcInsn( i );
+            mv.visitInsn( AALOAD );
+            unbox( mv, parameterTypes[ i ] );
+        }
+        boolean isInterface = declaringClass.isInterface();
+        mv.visitMethodInsn( isInterface ? INVOKEINTERFACE : INVOKEVIRTUAL, declaringName, method.getName(),
+                            Type.getMethodDescriptor( method ), isInterface );
+        box( mv, method.getReturnType() );
+        mv.visitInsn( ARETURN );
+        mv.visitMaxs( 0, 0 );
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void unbox( MethodVisitor mv, Class<?> type )
+    {
+        if( !type.isPrimitive() )
+        {
+            mv.visitTypeInsn( CHECKCAST, getInternalName( type ) );
+            return;
+        }
+        Class<?> wrapper = wrapperOf( type );
+        mv.visitTypeInsn( CHECKCAST, getInternalName( wrapper ) );
+        mv.visitMethodInsn( INVOKEVIRTUAL, getInternalName( wrapper ), type.getName() + "Value",
+                            "()" + Type.getDescriptor( type ), false );
+    }
+
+    private static void box( MethodVisitor mv, Class<?> type )
+    {
+        if( type == Void.TYPE )
+        {
+            mv.visitInsn( ACONST_NULL );
+        }
+        else if( type.isPrimitive() )
+        {
+            Class<?> wrapper = wrapperOf( type );
+            mv.visitMethodInsn( INVOKESTATIC, getInternalName( wrapper ), "valueOf",
+                                "(" + Type.getDescriptor( type ) + ")" + Type.getDescriptor( wrapper ), false );
+        }
+    }
+
+    private static Class<?> wrapperOf( Class<?> primitive )
+    {
+        if( primitive == Boolean.TYPE )
+        {
+            return Boolean.class;
+        }
+        if( primitive == Byte.TYPE )
+        {
+            return Byte.class;
+        }
+        if( primitive == Character.TYPE )
+        {
+            return Character.class;
+        }
+        if( primitive == Short.TYPE )
+        {
+            return Short.class;
+        }
+        if( primitive == Integer.TYPE )
+        {
+            return Integer.class;
+        }
+        if( primitive == Long.TYPE )
+        {
+            return Long.class;
+        }
+        if( primitive == Float.TYPE )
+        {
+            return Float.class;
+        }
+        return Double.class;
+    }
+
+    private static final class Invokers
+    {
+        private final ConcurrentMap<Method, MethodInvoker> invokers = new ConcurrentHashMap<>();
+        private final ClassLoader parent;
+        private InvokerClassLoader classLoader;
+
+        private Invokers( ClassLoader parent )
+        {
+            this.parent = parent;
+        }
+
+        private MethodInvoker invokerFor( Method method )
+        {
+            MethodInvoker invoker = invokers.get( method );
+            if( invoker == null )
+            {
+                invoker = invokers.computeIfAbsent( method, this::newInvoker );
+            }
+            return invoker;
+        }
+
+        private MethodInvoker newInvoker( Method method )
+        {
+            if( canGenerate( method ) )
+            {
+                try
+                {
+                    String name = MethodInvoker.class.getName() + "$" + COUNTER.incrementAndGet();
+                    byte[] bytes = generateInvoker( name.replace( '.', '/' ), method );
+                    return (MethodInvoker) classLoader().define( name, bytes ).newInstance();
+                }
+                catch( ReflectiveOperationException | LinkageError e )
+                {
+                    // Not accessible from the generated class after all, use reflection
+                }
+            }
+            return reflectiveInvoker( method );
+        }
+
+        private synchronized InvokerClassLoader classLoader()
+        {
+            if( classLoader == null )
+            {
+                classLoader = new InvokerClassLoader( parent );
+            }
+            return classLoader;
+        }
+    }
+
+    private static final class InvokerClassLoader
+        extends ClassLoader
+    {
+        private InvokerClassLoader( ClassLoader parent )
+        {
+            super( parent );
+        }
+
+        @Override
+        protected Class<?> loadClass( String name, boolean resolve )
+            throws ClassNotFoundException
+        {
+            // Generated invokers must implement the MethodInvoker of this runtime, whatever the parent sees
+            if( MethodInvoker.class.getName().equals( name ) )
+            {
+                return MethodInvoker.class;
+            }
+            return super.loadClass( name, resolve );
+        }
+
+        private synchronized Class<?> define( String name, byte[] bytes )
+        {
+            return defineClass( name, bytes, 0, bytes.length );
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.composite;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pool spreading instances over a fixed number of stripes, selected by the calling thread.
+ * <p>
+ * A stripe that is busy is skipped instead of waited for; obtaining then creates a new instance and
+ * releasing drops the instance. The pool therefore never blocks and never parks a thread.
+ * </p>
+ */
+public final class StripedInstancePool
+    implements InstancePool<CompositeMethodInstance>
+{
+    private static final int STRIPES = stripes( Runtime.getRuntime().availableProcessors() * 2 );
+
+    private final Stripe[] stripes = new Stripe[ STRIPES ];
+
+    public StripedInstancePool()
+    {
+        for( int i = 0; i < STRIPES; i++ )
+        {
+            stripes[ i ] = new Stripe();
+        }
+    }
+
+    @Override
+    public CompositeMethodInstance obtainInstance()
+    {
+        Stripe stripe = stripe();
+        if( !stripe.busy.compareAndSet( false, true ) )
+        {
+            return null;
+        }
+        try
+        {
+            CompositeMethodInstance instance = stripe.first;
+            if( instance != null )
+            {
+                stripe.first = instance.getNext();
+            }
+            return instance;
+        }
+        finally
+        {
+            stripe.busy.set( false );
+        }
+    }
+
+    @Override
+    public void releaseInstance( CompositeMethodInstance instance )
+    {
+        Stripe stripe = stripe();
+        if( !stripe.busy.compareAndSet( false, true ) )
+        {
+            return;
+        }
+        try
+        {
+            instance.setNext( stripe.first );
+            stripe.first = instance;
+        }
+        finally
+        {
+            stripe.busy.set( false );
+        }
+    }
+
+    private Stripe stripe()
+    {
+        long id = Thread.currentThread().getId();
+        int hash = (int) ( id ^ ( id >>> 32 ) ) * 0x9E3779B9;
+        return stripes[ ( hash >>> 16 ) & ( STRIPES - 1 ) ];
+    }
+
+    private static int stripes( int wanted )
+    {
+        int stripes = 1;
+        while( stripes < wanted )
+        {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    private static final class Stripe
+    {
+        private final AtomicBoolean busy = new AtomicBoolean();
+        private CompositeMethodInstance first;
+    }
+}
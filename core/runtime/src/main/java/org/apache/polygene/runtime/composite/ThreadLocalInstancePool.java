@@ -0,0 +1,55 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.composite;
+
+/**
+ * Pool keeping one stack of instances per thread.
+ * <p>
+ * The stack is needed rather than a single slot since a method can be re-entered on the same thread.
+ * </p>
+ */
+public final class ThreadLocalInstancePool
+    implements InstancePool<CompositeMethodInstance>
+{
+    private final ThreadLocal<Stack> stacks = ThreadLocal.withInitial( Stack::new );
+
+    @Override
+    public CompositeMethodInstance obtainInstance()
+    {
+        Stack stack = stacks.get();
+        CompositeMethodInstance instance = stack.first;
+        if( instance != null )
+        {
+            stack.first = instance.getNext();
+        }
+        return instance;
+    }
+
+    @Override
+    public void releaseInstance( CompositeMethodInstance instance )
+    {
+        Stack stack = stacks.get();
+        instance.setNext( stack.first );
+        stack.first = instance;
+    }
+
+    private static final class Stack
+    {
+        private CompositeMethodInstance first;
+    }
+}
@@ -116,6 +116,18 @@ public class TransientInstance
         return state;
     }
 
+    public <T> T mixinOf( Class<T> mixinClass )
+    {
+        for( Object mixin : mixins )
+        {
+            if( mixinClass.isInstance( mixin ) )
+            {
+                return mixinClass.cast( mixin );
+            }
+        }
+        return null;
+    }
+
     @Override
     public Object invoke( Object composite, Object[] params, CompositeMethodInstance methodInstance )
         throws Throwable
@@ -19,7 +19,6 @@
  */
 package org.apache.polygene.runtime.composite;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
@@ -29,35 +28,40 @@ import java.lang.reflect.Modifier;
 public final class TypedModifierInvocationHandler
     extends FragmentInvocationHandler
 {
+    private MethodInvoker invoker;
+
+    @Override
+    public void setMethod( Method method )
+    {
+        super.setMethod( method );
+        invoker = MethodInvokers.invokerFor( method );
+    }
+
     @Override
     public Object invoke( Object proxy, Method method, Object[] args )
         throws Throwable
     {
         try
         {
-            return this.method.invoke( fragment, args );
+            return invoker.invoke( fragment, args );
         }
-        catch( InvocationTargetException e )
+        catch( IllegalAccessError e )
         {
-            Throwable targetException = e.getTargetException();
-            if( targetException instanceof IllegalAccessError )
+            // We get here if any of the return types or parameters are not public. This is probably due to
+            // the _Stub class ends up in a different classpace than the original mixin. We intend to fix this in
+            // 3.1 or 3.2
+            if( !Modifier.isPublic( method.getReturnType().getModifiers() ) )
             {
-                // We get here if any of the return types or parameters are not public. This is probably due to
-                // the _Stub class ends up in a different classpace than the original mixin. We intend to fix this in
-                // 3.1 or 3.2
-                if( !Modifier.isPublic( method.getReturnType().getModifiers() ) )
-                {
-                    String message = "Return types must be public: " + method.getReturnType().getName();
-                    IllegalAccessException illegalAccessException = new IllegalAccessException( message );
-                    illegalAccessException.initCause( e.getTargetException() );
-                    throw cleanStackTrace( illegalAccessException, proxy, method );
-                }
+                String message = "Return types must be public: " + method.getReturnType().getName();
+                IllegalAccessException illegalAccessException = new IllegalAccessException( message );
+                illegalAccessException.initCause( e );
+                throw cleanStackTrace( illegalAccessException, proxy, method );
             }
-            throw cleanStackTrace( targetException, proxy, method );
+            throw cleanStackTrace( e, proxy, method );
         }
         catch( Throwable e )
         {
             throw cleanStackTrace( e, proxy, method );
         }
     }
-}
\ No newline at end of file
+}
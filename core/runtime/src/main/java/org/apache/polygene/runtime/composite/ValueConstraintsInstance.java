@@ -39,21 +39,52 @@ public final class ValueConstraintsInstance
         OPTIONAL = new OptionalDummy();
     }
 
-    private final List<ConstraintInstance> constraints;
-    private String name;
-    private boolean optional;
+    private final ConstraintInstance[] constraints;
+    private final String name;
+    private final boolean optional;
 
     public ValueConstraintsInstance( List<AbstractConstraintModel> constraintModels, String name, boolean optional )
     {
         this.name = name;
         this.optional = optional;
-        constraints = new ArrayList<>();
-        for( AbstractConstraintModel constraintModel : constraintModels )
+        constraints = new ConstraintInstance[ constraintModels.size() ];
+        for( int i = 0; i < constraints.length; i++ )
         {
-            constraints.add( constraintModel.newInstance() );
+            constraints[ i ] = constraintModels.get( i ).newInstance();
         }
     }
 
+    /**
+     * Check the value without allocating anything.
+     *
+     * @param value the value to check
+     * @return true if the value satisfies all constraints, {@link #checkConstraints(Object)} tells why otherwise
+     */
+    @SuppressWarnings( "unchecked" )
+    public boolean isValid( Object value )
+    {
+        if( value == null )
+        {
+            return optional;
+        }
+        for( ConstraintInstance constraint : constraints )
+        {
+            try
+            {
+                if( !constraint.isValid( value ) )
+                {
+                    return false;
+                }
+            }
+            catch( NullPointerException e )
+            {
+                // A NPE is the same as a failing constraint
+                return false;
+            }
+        }
+        return true;
+    }
+
     @SuppressWarnings( { "raw", "unchecked" } )
     public List<ValueConstraintViolation> checkConstraints( Object value )
     {
@@ -111,6 +142,10 @@ public final class ValueConstraintsInstance
 
     public void checkConstraints( Object value, AccessibleObject accessor )
     {
+        if( isValid( value ) )
+        {
+            return;
+        }
         List<ValueConstraintViolation> violations = checkConstraints( value );
         if( !violations.isEmpty() )
         {
@@ -56,6 +56,7 @@ public final class EntityInstance
 
     private Object[] mixins;
     private EntityStateInstance state;
+    private boolean evicted;
 
     public EntityInstance( UnitOfWork uow,
                            EntityModel entityModel,
@@ -157,10 +158,19 @@ public final class EntityInstance
         return entityState.status();
     }
 
+    public void evict()
+    {
+        evicted = true;
+    }
+
     @Override
     public Object invoke( Object composite, Object[] params, CompositeMethodInstance methodInstance )
         throws Throwable
     {
+        if( evicted )
+        {
+            throw new UnitOfWorkException( "Entity " + reference + " has been evicted from its unit of work" );
+        }
         if( mixins == null )
         {
             initState();
@@ -170,7 +180,7 @@ public final class EntityInstance
 
         if( mixin == null )
         {
-            mixin = entityModel.newMixin( mixins, state, this, methodInstance.method() );
+            mixin = entityModel.newMixin( mixins, state, this, methodInstance );
         }
 
         return methodInstance.invoke( proxy, params, mixin );
@@ -20,7 +20,6 @@
 
 package org.apache.polygene.runtime.entity;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.polygene.api.composite.CompositeInstance;
@@ -28,6 +27,7 @@ import org.apache.polygene.api.entity.Lifecycle;
 import org.apache.polygene.api.entity.LifecycleException;
 import org.apache.polygene.api.property.StateHolder;
 import org.apache.polygene.bootstrap.BindingException;
+import org.apache.polygene.runtime.composite.CompositeMethodInstance;
 import org.apache.polygene.runtime.composite.MixinModel;
 import org.apache.polygene.runtime.composite.MixinsModel;
 import org.apache.polygene.runtime.composite.UsesInstance;
@@ -65,12 +65,15 @@ public final class EntityMixinsModel
         }
     }
 
-    Object newMixin( EntityInstance entityInstance, StateHolder state, Object[] mixins, Method method )
+    Object newMixin( EntityInstance entityInstance,
+                     StateHolder state,
+                     Object[] mixins,
+                     CompositeMethodInstance methodInstance
+    )
     {
-        MixinModel model = methodImplementation.get( method );
         InjectionContext injectionContext = new InjectionContext( entityInstance, UsesInstance.EMPTY_USES, state );
-        Object mixin = model.newInstance( injectionContext );
-        mixins[ methodIndex.get( method ) ] = mixin;
+        Object mixin = methodInstance.mixinModel().newInstance( injectionContext );
+        methodInstance.setMixinIn( mixins, mixin );
         return mixin;
     }
 
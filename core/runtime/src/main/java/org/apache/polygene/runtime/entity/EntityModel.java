@@ -19,7 +19,6 @@
  */
 package org.apache.polygene.runtime.entity;
 
-import java.lang.reflect.Method;
 import java.util.List;
 import org.apache.polygene.api.common.ConstructionException;
 import org.apache.polygene.api.common.MetaInfo;
@@ -35,6 +34,7 @@ import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.api.type.EntityCompositeType;
 import org.apache.polygene.api.unitofwork.EntityCompositeAlreadyExistsException;
 import org.apache.polygene.api.util.Annotations;
+import org.apache.polygene.runtime.composite.CompositeMethodInstance;
 import org.apache.polygene.runtime.composite.CompositeMethodsModel;
 import org.apache.polygene.runtime.composite.CompositeModel;
 import org.apache.polygene.runtime.unitofwork.ModuleUnitOfWork;
@@ -106,10 +106,10 @@ public final class EntityModel extends CompositeModel
     public Object newMixin( Object[] mixins,
                             EntityStateInstance entityState,
                             EntityInstance entityInstance,
-                            Method method
+                            CompositeMethodInstance methodInstance
     )
     {
-        return ( (EntityMixinsModel) mixinsModel ).newMixin( entityInstance, entityState, mixins, method );
+        return ( (EntityMixinsModel) mixinsModel ).newMixin( entityInstance, entityState, mixins, methodInstance );
     }
 
     public EntityState newEntityState( EntityStoreUnitOfWork store, EntityReference reference )
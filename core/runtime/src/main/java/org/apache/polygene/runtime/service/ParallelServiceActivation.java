@@ -0,0 +1,315 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.service;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.polygene.api.activation.Activation;
+import org.apache.polygene.api.activation.ActivationException;
+import org.apache.polygene.api.activation.PassivationException;
+import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.api.service.ServiceReference;
+import org.apache.polygene.api.util.Classes;
+
+/**
+ * Activates the services of a module that are instantiated on startup on a bounded number of threads.
+ * <p>
+ * The dependency graph is built from the {@code @Service} injections of all services of the module, startup
+ * services wait for the startup services they reach in that graph, also through lazily activated ones.
+ * Services in a dependency cycle are activated one after another once all others are active.
+ * </p>
+ */
+final class ParallelServiceActivation
+{
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final List<ServiceReferenceInstance<?>> references;
+    private final int threads;
+
+    ParallelServiceActivation( List<ServiceReferenceInstance<?>> references, int threads )
+    {
+        this.references = references;
+        this.threads = threads;
+    }
+
+    /**
+     * Activate the startup services.
+     *
+     * @return all services, lazily activated ones first then startup ones in activation order, so that
+     * passivating them in reverse order passivates services before the services they depend on
+     *
+     * @throws ActivationException if a service could not be activated, the ones already activated are then passivated
+     */
+    List<Activation> activate()
+        throws ActivationException
+    {
+        Map<ServiceReferenceInstance<?>, Set<ServiceReferenceInstance<?>>> prerequisites = prerequisites();
+        Map<ServiceReferenceInstance<?>, List<ServiceReferenceInstance<?>>> dependents = new HashMap<>();
+        Map<ServiceReferenceInstance<?>, Integer> pending = new LinkedHashMap<>();
+        for( Map.Entry<ServiceReferenceInstance<?>, Set<ServiceReferenceInstance<?>>> entry : prerequisites.entrySet() )
+        {
+            pending.put( entry.getKey(), entry.getValue().size() );
+            for( ServiceReferenceInstance<?> prerequisite : entry.getValue() )
+            {
+                dependents.computeIfAbsent( prerequisite, key -> new ArrayList<>() ).add( entry.getKey() );
+            }
+        }
+
+        List<Activation> activated = new ArrayList<>();
+        for( ServiceReferenceInstance<?> reference : references )
+        {
+            if( !pending.containsKey( reference ) )
+            {
+                activated.add( reference );
+            }
+        }
+        int lazyCount = activated.size();
+
+        BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( threads, pending.size() ) ),
+                                                                 new ActivationThreadFactory() );
+        Throwable failure = null;
+        try
+        {
+            int running = 0;
+            for( Map.Entry<ServiceReferenceInstance<?>, Integer> entry : new ArrayList<>( pending.entrySet() ) )
+            {
+                if( entry.getValue() == 0 )
+                {
+                    pending.remove( entry.getKey() );
+                    submit( executor, entry.getKey(), completions );
+                    running++;
+                }
+            }
+            while( running > 0 )
+            {
+                Completion completion = completions.take();
+                running--;
+                if( completion.failure != null )
+                {
+                    if( failure == null )
+                    {
+                        failure = completion.failure;
+                    }
+                    else
+                    {
+                        failure.addSuppressed( completion.failure );
+                    }
+                    continue;
+                }
+                activated.add( completion.reference );
+                if( failure != null )
+                {
+                    continue;
+                }
+                for( ServiceReferenceInstance<?> dependent : dependents.getOrDefault( completion.reference,
+                                                                                      Collections.emptyList() ) )
+                {
+                    Integer count = pending.get( dependent );
+                    if( count != null )
+                    {
+                        if( count == 1 )
+                        {
+                            pending.remove( dependent );
+                            submit( executor, dependent, completions );
+                            running++;
+                        }
+                        else
+                        {
+                            pending.put( dependent, count - 1 );
+                        }
+                    }
+                }
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            failure = e;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // Services left waiting are in a dependency cycle, the first of them activates the others on demand
+        if( failure == null )
+        {
+            for( ServiceReferenceInstance<?> reference : pending.keySet() )
+            {
+                try
+                {
+                    reference.activate();
+                    activated.add( reference );
+                }
+                catch( Exception e )
+                {
+                    failure = e;
+                    break;
+                }
+            }
+        }
+
+        if( failure != null )
+        {
+            ActivationException ex = new ActivationException( "Unable to activate services in parallel", failure );
+            for( int i = activated.size() - 1; i >= lazyCount; i-- )
+            {
+                try
+                {
+                    activated.get( i ).passivate();
+                }
+                catch( PassivationException e )
+                {
+                    e.causes().forEach( ex::addSuppressed );
+                }
+                catch( Exception e )
+                {
+                    ex.addSuppressed( e );
+                }
+            }
+            throw ex;
+        }
+        return activated;
+    }
+
+    private static void submit( ExecutorService executor,
+                                ServiceReferenceInstance<?> reference,
+                                BlockingQueue<Completion> completions )
+    {
+        executor.execute( () ->
+                          {
+                              try
+                              {
+                                  reference.activate();
+                                  completions.add( new Completion( reference, null ) );
+                              }
+                              catch( Throwable e )
+                              {
+                                  completions.add( new Completion( reference, e ) );
+                              }
+                          } );
+    }
+
+    /**
+     * @return the startup services of the module, each with the startup services it transitively depends on
+     */
+    private Map<ServiceReferenceInstance<?>, Set<ServiceReferenceInstance<?>>> prerequisites()
+    {
+        Map<ServiceReferenceInstance<?>, List<ServiceReferenceInstance<?>>> graph = new HashMap<>();
+        for( ServiceReferenceInstance<?> reference : references )
+        {
+            List<ServiceReferenceInstance<?>> dependencies = new ArrayList<>();
+            ( (ServiceModel) reference.serviceDescriptor() ).dependencies()
+                .filter( dependency -> dependency.injectionAnnotationType().equals( Service.class ) )
+                .map( dependency -> serviceType( dependency.injectionType() ) )
+                .forEach( type -> references.stream()
+                    .filter( candidate -> candidate != reference && candidate.isAssignableTo( type ) )
+                    .filter( candidate -> !dependencies.contains( candidate ) )
+                    .forEach( dependencies::add ) );
+            graph.put( reference, dependencies );
+        }
+
+        Map<ServiceReferenceInstance<?>, Set<ServiceReferenceInstance<?>>> prerequisites = new LinkedHashMap<>();
+        for( ServiceReferenceInstance<?> reference : references )
+        {
+            if( reference.serviceDescriptor().isInstantiateOnStartup() )
+            {
+                Set<ServiceReferenceInstance<?>> reachable = new HashSet<>();
+                collect( graph, reference, reachable );
+                reachable.remove( reference );
+                reachable.removeIf( candidate -> !candidate.serviceDescriptor().isInstantiateOnStartup() );
+                prerequisites.put( reference, reachable );
+            }
+        }
+        return prerequisites;
+    }
+
+    private static void collect( Map<ServiceReferenceInstance<?>, List<ServiceReferenceInstance<?>>> graph,
+                                 ServiceReferenceInstance<?> reference,
+                                 Set<ServiceReferenceInstance<?>> reachable )
+    {
+        for( ServiceReferenceInstance<?> dependency : graph.get( reference ) )
+        {
+            if( reachable.add( dependency ) )
+            {
+                collect( graph, dependency, reachable );
+            }
+        }
+    }
+
+    /**
+     * @return the service type of {@code @Service} injections of a service, a {@link ServiceReference} to it or an
+     * {@link Iterable} of either
+     */
+    private static Class<?> serviceType( Type injectionType )
+    {
+        Type type = injectionType;
+        while( type instanceof ParameterizedType )
+        {
+            Class<?> raw = Classes.RAW_CLASS.apply( type );
+            if( !Iterable.class.equals( raw ) && !ServiceReference.class.equals( raw ) )
+            {
+                break;
+            }
+            type = ( (ParameterizedType) type ).getActualTypeArguments()[ 0 ];
+        }
+        return Classes.RAW_CLASS.apply( type );
+    }
+
+    private static class Completion
+    {
+        private final ServiceReferenceInstance<?> reference;
+        private final Throwable failure;
+
+        private Completion( ServiceReferenceInstance<?> reference, Throwable failure )
+        {
+            this.reference = reference;
+            this.failure = failure;
+        }
+    }
+
+    private static class ActivationThreadFactory
+        implements ThreadFactory
+    {
+        private final int pool = POOL_COUNT.incrementAndGet();
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, "polygene-activation-" + pool + "-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.polygene.runtime.service;
 
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.apache.polygene.api.activation.Activation;
 import org.apache.polygene.api.activation.ActivationEventListener;
@@ -29,6 +30,7 @@ import org.apache.polygene.api.activation.PassivationException;
 import org.apache.polygene.api.common.Visibility;
 import org.apache.polygene.api.service.ServiceDescriptor;
 import org.apache.polygene.api.service.ServiceReference;
+import org.apache.polygene.bootstrap.ParallelActivation;
 import org.apache.polygene.runtime.activation.ActivationDelegate;
 import org.apache.polygene.runtime.activation.ActivatorsInstance;
 
@@ -42,12 +44,17 @@ public class ServicesInstance
 {
     private final ServicesModel servicesModel;
     private final List<ServiceReference<?>> serviceReferences;
+    private final Supplier<ParallelActivation> parallelActivation;
     private final ActivationDelegate activation = new ActivationDelegate( this, false );
 
-    public ServicesInstance( ServicesModel servicesModel, List<ServiceReference<?>> serviceReferences )
+    public ServicesInstance( ServicesModel servicesModel,
+                             List<ServiceReference<?>> serviceReferences,
+                             Supplier<ParallelActivation> parallelActivation
+    )
     {
         this.servicesModel = servicesModel;
         this.serviceReferences = serviceReferences;
+        this.parallelActivation = parallelActivation;
         for( ServiceReference serviceReference : serviceReferences )
         {
             serviceReference.registerActivationEventListener( activation );
@@ -63,6 +70,17 @@ public class ServicesInstance
     public void activate()
         throws ActivationException
     {
+        ParallelActivation parallel = parallelActivation.get();
+        if( parallel != null && parallel.threads() > 1 )
+        {
+            List<ServiceReferenceInstance<?>> references = serviceReferences.stream()
+                                                                            .map( ref -> (ServiceReferenceInstance<?>) ref )
+                                                                            .collect( toList() );
+            List<Activation> activated = new ParallelServiceActivation( references, parallel.threads() ).activate();
+            // Already active, this only registers them for passivation in reverse activation order
+            activation.activate( ActivatorsInstance.EMPTY, activated );
+            return;
+        }
         Iterable<Activation> activatees = serviceReferences.stream().filter( Activation.class::isInstance )
                                                            .map( Activation.class::cast )
                                                            .collect( toList() );
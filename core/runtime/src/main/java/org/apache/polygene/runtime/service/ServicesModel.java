@@ -22,12 +22,14 @@ package org.apache.polygene.runtime.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.apache.polygene.api.service.ServiceDescriptor;
 import org.apache.polygene.api.service.ServiceReference;
 import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.api.util.HierarchicalVisitor;
 import org.apache.polygene.api.util.VisitableHierarchy;
+import org.apache.polygene.bootstrap.ParallelActivation;
 
 /**
  * JAVADOC
@@ -42,7 +44,7 @@ public class ServicesModel
         this.serviceModels = serviceModels;
     }
 
-    public ServicesInstance newInstance( ModuleDescriptor module )
+    public ServicesInstance newInstance( ModuleDescriptor module, Supplier<ParallelActivation> parallelActivation )
     {
         List<ServiceReference<?>> serviceReferences = new ArrayList<>();
         for( ServiceModel serviceModel : serviceModels )
@@ -51,7 +53,7 @@ public class ServicesModel
             serviceReferences.add( serviceReferenceInstance );
         }
 
-        return new ServicesInstance( this, serviceReferences );
+        return new ServicesInstance( this, serviceReferences, parallelActivation );
     }
 
     @Override
@@ -32,10 +32,12 @@ import org.apache.polygene.api.structure.ApplicationDescriptor;
 import org.apache.polygene.api.structure.LayerDescriptor;
 import org.apache.polygene.api.util.HierarchicalVisitor;
 import org.apache.polygene.bootstrap.PolygeneRuntime;
+import org.apache.polygene.bootstrap.UnitOfWorkContext;
 import org.apache.polygene.runtime.activation.ActivatorsInstance;
 import org.apache.polygene.runtime.activation.ActivatorsModel;
 import org.apache.polygene.runtime.injection.InjectionProviderFactory;
 import org.apache.polygene.runtime.injection.provider.InjectionProviderFactoryStrategy;
+import org.apache.polygene.runtime.unitofwork.CurrentUnitOfWork;
 
 /**
  * JAVADOC
@@ -50,6 +52,7 @@ public final class ApplicationModel
     private final ActivatorsModel<Application> activatorsModel;
     private final List<LayerModel> layers;
     private final InjectionProviderFactory ipf;
+    private final CurrentUnitOfWork currentUnitOfWork;
 
     public ApplicationModel( String name,
                              String version,
@@ -66,6 +69,7 @@ public final class ApplicationModel
         this.activatorsModel = activatorsModel;
         this.layers = layers;
         ipf = new InjectionProviderFactoryStrategy( metaInfo );
+        currentUnitOfWork = CurrentUnitOfWork.newInstance( metaInfo.get( UnitOfWorkContext.class ) );
     }
 
     @Override
@@ -166,6 +170,11 @@ public final class ApplicationModel
         return ipf;
     }
 
+    public CurrentUnitOfWork currentUnitOfWork()
+    {
+        return currentUnitOfWork;
+    }
+
     @Override
     public String toString()
     {
@@ -29,6 +29,7 @@ import org.apache.polygene.api.structure.Application;
 import org.apache.polygene.api.structure.Layer;
 import org.apache.polygene.api.structure.LayerDescriptor;
 import org.apache.polygene.api.structure.Module;
+import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.runtime.activation.ActivationDelegate;
 
 /**
@@ -45,6 +46,7 @@ public class LayerInstance
     // Eager instance objects
     private final ActivationDelegate activation;
     private final List<ModuleInstance> moduleInstances;
+    private boolean activated; // guarded by moduleInstances
 
     public LayerInstance( LayerModel model,
                           ApplicationInstance applicationInstance
@@ -90,13 +92,35 @@ public class LayerInstance
     public void activate()
         throws ActivationException
     {
-        activation.activate( layerModel.newActivatorsInstance(), moduleInstances );
+        List<ModuleInstance> modules;
+        synchronized( moduleInstances )
+        {
+            // Modules materialized from now on activate themselves
+            activated = true;
+            modules = new ArrayList<>( moduleInstances );
+        }
+        try
+        {
+            activation.activate( layerModel.newActivatorsInstance(), modules );
+        }
+        catch( ActivationException e )
+        {
+            synchronized( moduleInstances )
+            {
+                activated = false;
+            }
+            throw e;
+        }
     }
 
     @Override
     public void passivate()
         throws PassivationException
     {
+        synchronized( moduleInstances )
+        {
+            activated = false;
+        }
         activation.passivate();
     }
 
@@ -115,7 +139,7 @@ public class LayerInstance
     @Override
     public Stream<? extends Module> modules()
     {
-        return moduleInstances.stream();
+        return layerModel.modules().map( ModuleDescriptor::instance );
     }
 
     @Override
@@ -127,7 +151,37 @@ public class LayerInstance
     void addModule( ModuleInstance module )
     {
         module.registerActivationEventListener( activation );
-        moduleInstances.add( module );
+        synchronized( moduleInstances )
+        {
+            moduleInstances.add( module );
+        }
+    }
+
+    /* package */ void addMaterializedModule( ModuleInstance module )
+        throws ActivationException
+    {
+        boolean activateNow;
+        synchronized( moduleInstances )
+        {
+            addModule( module );
+            activateNow = activated;
+        }
+        if( activateNow )
+        {
+            try
+            {
+                activation.activateChild( module );
+            }
+            catch( ActivationException e )
+            {
+                synchronized( moduleInstances )
+                {
+                    moduleInstances.remove( module );
+                }
+                module.deregisterActivationEventListener( activation );
+                throw e;
+            }
+        }
     }
 
     public LayerModel model()
@@ -137,12 +191,13 @@ public class LayerInstance
 
     /* package */ ModuleInstance findModule( String moduleName )
     {
-        for( ModuleInstance moduleInstance : moduleInstances )
+        ModuleDescriptor module = layerModel.modules()
+                                            .filter( descriptor -> descriptor.name().equals( moduleName ) )
+                                            .findFirst()
+                                            .orElse( null );
+        if( module != null )
         {
-            if( moduleInstance.model().name().equals( moduleName ) )
-            {
-                return moduleInstance;
-            }
+            return (ModuleInstance) module.instance();
         }
 
         throw new IllegalArgumentException( "No such module:" + moduleName );
@@ -34,6 +34,7 @@ import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.api.util.HierarchicalVisitor;
 import org.apache.polygene.api.util.VisitableHierarchy;
 import org.apache.polygene.api.value.ValueDescriptor;
+import org.apache.polygene.bootstrap.LazyModules;
 import org.apache.polygene.runtime.activation.ActivatorsInstance;
 import org.apache.polygene.runtime.activation.ActivatorsModel;
 
@@ -124,12 +125,34 @@ public final class LayerModel
         layerInstance = new LayerInstance( this, applicationInstance );
         for( ModuleModel module : modules )
         {
-            ModuleInstance moduleInstance = module.newInstance( this );
-            layerInstance.addModule( moduleInstance );
+            LazyModules lazyModules = lazyModules( module, applicationInstance );
+            if( lazyModules == null )
+            {
+                ModuleInstance moduleInstance = module.newInstance( this );
+                layerInstance.addModule( moduleInstance );
+            }
+            else
+            {
+                module.deferInstance( layerInstance, lazyModules );
+            }
         }
         return layerInstance;
     }
 
+    private LazyModules lazyModules( ModuleModel module, ApplicationInstance applicationInstance )
+    {
+        LazyModules lazyModules = module.metaInfo( LazyModules.class );
+        if( lazyModules == null )
+        {
+            lazyModules = metaInfo( LazyModules.class );
+            if( lazyModules == null )
+            {
+                lazyModules = applicationInstance.metaInfo( LazyModules.class );
+            }
+        }
+        return lazyModules;
+    }
+
     @Override
     public Stream<? extends ObjectDescriptor> visibleObjects( final Visibility visibility )
     {
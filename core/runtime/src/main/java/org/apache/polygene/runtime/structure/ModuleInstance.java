@@ -56,6 +56,7 @@ import org.apache.polygene.api.serialization.SerializationException;
 import org.apache.polygene.api.service.NoSuchServiceTypeException;
 import org.apache.polygene.api.service.ServiceFinder;
 import org.apache.polygene.api.service.ServiceReference;
+import org.apache.polygene.api.structure.Layer;
 import org.apache.polygene.api.structure.LayerDescriptor;
 import org.apache.polygene.api.structure.Module;
 import org.apache.polygene.api.structure.ModuleDescriptor;
@@ -67,6 +68,7 @@ import org.apache.polygene.api.value.NoSuchValueTypeException;
 import org.apache.polygene.api.value.ValueBuilder;
 import org.apache.polygene.api.value.ValueBuilderFactory;
 import org.apache.polygene.api.value.ValueDescriptor;
+import org.apache.polygene.bootstrap.ParallelActivation;
 import org.apache.polygene.runtime.activation.ActivationDelegate;
 import org.apache.polygene.runtime.composite.FunctionStateResolver;
 import org.apache.polygene.runtime.composite.StateResolver;
@@ -125,7 +127,7 @@ public class ModuleInstance
         model = moduleModel;
         this.layer = layer;
         this.typeLookup = typeLookup;
-        services = servicesModel.newInstance( moduleModel );
+        services = servicesModel.newInstance( moduleModel, this::parallelActivation );
         importedServices = importedServicesModel.newInstance( moduleModel );
 
         // Eager instance objects
@@ -439,6 +441,21 @@ public class ModuleInstance
         activation.passivate();
     }
 
+    private ParallelActivation parallelActivation()
+    {
+        ParallelActivation parallelActivation = model.metaInfo( ParallelActivation.class );
+        if( parallelActivation == null )
+        {
+            Layer layerInstance = layer.instance();
+            parallelActivation = layerInstance.metaInfo( ParallelActivation.class );
+            if( parallelActivation == null )
+            {
+                parallelActivation = layerInstance.application().metaInfo( ParallelActivation.class );
+            }
+        }
+        return parallelActivation;
+    }
+
     @Override
     public void registerActivationEventListener( ActivationEventListener listener )
     {
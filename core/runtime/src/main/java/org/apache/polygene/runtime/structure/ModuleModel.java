@@ -36,6 +36,7 @@ import org.apache.polygene.api.structure.TypeLookup;
 import org.apache.polygene.api.util.HierarchicalVisitor;
 import org.apache.polygene.api.util.VisitableHierarchy;
 import org.apache.polygene.api.value.ValueDescriptor;
+import org.apache.polygene.bootstrap.LazyModules;
 import org.apache.polygene.runtime.activation.ActivatorsInstance;
 import org.apache.polygene.runtime.activation.ActivatorsModel;
 import org.apache.polygene.runtime.composite.TransientsModel;
@@ -69,7 +70,12 @@ public class ModuleModel
 
     private final String name;
     private final MetaInfo metaInfo;
-    private ModuleInstance moduleInstance;
+    private volatile ModuleInstance moduleInstance;
+
+    // Lazy instantiation, guarded by this
+    private LayerInstance deferredLayer;
+    private LazyModules lazyModules;
+    private ModuleInstance materializing;
 
     public ModuleModel( String name,
                         MetaInfo metaInfo,
@@ -205,7 +211,12 @@ public class ModuleModel
     @Override
     public Module instance()
     {
-        return moduleInstance;
+        ModuleInstance instance = moduleInstance;
+        if( instance == null )
+        {
+            instance = materialize();
+        }
+        return instance;
     }
 
     @Override
@@ -214,12 +225,56 @@ public class ModuleModel
         return typeLookup;
     }
 
+    /**
+     * Build the type lookup index of this module once all the models of the application are known.
+     */
+    public void indexTypes()
+    {
+        typeLookup.index();
+    }
+
     public ModuleInstance newInstance( LayerDescriptor layerInstance )
     {
         moduleInstance = new ModuleInstance( this, layerInstance, typeLookup, servicesModel, importedServicesModel );
         return moduleInstance;
     }
 
+    /* package */ synchronized void deferInstance( LayerInstance layerInstance, LazyModules lazyModules )
+    {
+        this.deferredLayer = layerInstance;
+        this.lazyModules = lazyModules;
+    }
+
+    private synchronized ModuleInstance materialize()
+    {
+        if( moduleInstance != null || deferredLayer == null )
+        {
+            return moduleInstance;
+        }
+        if( materializing != null )
+        {
+            // Re-entrant access while the module is being activated
+            return materializing;
+        }
+        ModuleInstance instance = new ModuleInstance( this, deferredLayer.model(), typeLookup, servicesModel, importedServicesModel );
+        materializing = instance;
+        try
+        {
+            deferredLayer.addMaterializedModule( instance );
+        }
+        catch( ActivationException e )
+        {
+            throw new IllegalStateException( "Could not activate module " + name, e );
+        }
+        finally
+        {
+            materializing = null;
+        }
+        moduleInstance = instance;
+        lazyModules.moduleMaterialized( this );
+        return instance;
+    }
+
     @Override
     public Stream<? extends TransientDescriptor> transientComposites()
     {
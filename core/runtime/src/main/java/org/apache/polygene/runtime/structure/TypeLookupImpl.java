@@ -20,9 +20,14 @@
 package org.apache.polygene.runtime.structure;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.apache.polygene.api.common.Visibility;
@@ -33,11 +38,12 @@ import org.apache.polygene.api.entity.EntityDescriptor;
 import org.apache.polygene.api.object.ObjectDescriptor;
 import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.api.structure.TypeLookup;
-import org.apache.polygene.api.type.HasAssignableFromType;
-import org.apache.polygene.api.type.HasEqualType;
 import org.apache.polygene.api.type.HasTypesCollectors;
 import org.apache.polygene.api.value.ValueDescriptor;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableList;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Stream.concat;
 import static org.apache.polygene.api.common.Visibility.application;
@@ -54,13 +60,13 @@ class TypeLookupImpl
     private final LazyValue<List<ValueDescriptor>> allValues;
     private final LazyValue<List<EntityDescriptor>> allEntities;
     private final LazyValue<List<? extends ModelDescriptor>> allServices;
-    private final ConcurrentHashMap<Class<?>, ObjectDescriptor> objectModels;
-    private final ConcurrentHashMap<Class<?>, TransientDescriptor> transientModels;
-    private final ConcurrentHashMap<Class<?>, ValueDescriptor> valueModels;
-    private final ConcurrentHashMap<Class<?>, List<EntityDescriptor>> entityModels;
-    private final ConcurrentHashMap<Class<?>, EntityDescriptor> unambiguousEntityModels;
-    private final ConcurrentHashMap<Type, ModelDescriptor> serviceModels;
-    private final ConcurrentHashMap<Type, List<? extends ModelDescriptor>> servicesReferences;
+    private final LazyValue<TypeIndex<ObjectDescriptor>> objectModels;
+    private final LazyValue<TypeIndex<TransientDescriptor>> transientModels;
+    private final LazyValue<TypeIndex<ValueDescriptor>> valueModels;
+    private final LazyValue<TypeIndex<EntityDescriptor>> entityModels;
+    private final LazyValue<TypeIndex<ModelDescriptor>> serviceModels;
+    private final ConcurrentHashMap<Type, ModelDescriptor> parameterizedServiceModels;
+    private final ConcurrentHashMap<Type, List<? extends ModelDescriptor>> parameterizedServicesReferences;
 
     private final ModuleDescriptor module;
 
@@ -79,87 +85,68 @@ class TypeLookupImpl
         allValues = new LazyValue<>();
         allEntities = new LazyValue<>();
         allServices = new LazyValue<>();
-        objectModels = new ConcurrentHashMap<>();
-        transientModels = new ConcurrentHashMap<>();
-        valueModels = new ConcurrentHashMap<>();
-        entityModels = new ConcurrentHashMap<>();
-        unambiguousEntityModels = new ConcurrentHashMap<>();
-        serviceModels = new ConcurrentHashMap<>();
-        servicesReferences = new ConcurrentHashMap<>();
+        objectModels = new LazyValue<>();
+        transientModels = new LazyValue<>();
+        valueModels = new LazyValue<>();
+        entityModels = new LazyValue<>();
+        serviceModels = new LazyValue<>();
+        parameterizedServiceModels = new ConcurrentHashMap<>();
+        parameterizedServicesReferences = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Build the type indexes of all visible models.
+     * <p>
+     * Called when the application model is bound, so that lookups never pay for the index on first use.
+     * </p>
+     */
+    void index()
+    {
+        objectIndex();
+        transientIndex();
+        valueIndex();
+        entityIndex();
+        serviceIndex();
     }
 
     @Override
     public ObjectDescriptor lookupObjectModel( final Class<?> type )
     {
-        return objectModels.computeIfAbsent( type, key ->
-        {
-            List<? extends ObjectDescriptor> allModels = getAllObjects();
-            ObjectDescriptor model = ambiguityMatching( key, allModels, new HasEqualType<>( key ) );
-            if( model == null )
-            {
-                model = ambiguityMatching( key, allModels, new HasAssignableFromType<>( key ) );
-            }
-            return model;
-        } );
+        return objectIndex().unambiguous( type );
     }
 
     @Override
     public TransientDescriptor lookupTransientModel( final Class<?> type )
     {
-        return transientModels.computeIfAbsent( type, key ->
-        {
-            List<? extends TransientDescriptor> allModels = getAllTransients();
-            TransientDescriptor model = ambiguityMatching( key, allModels, new HasEqualType<>( key ) );
-            if( model == null )
-            {
-                model = ambiguityMatching( key, allModels, new HasAssignableFromType<>( key ) );
-            }
-            return model;
-        } );
+        return transientIndex().unambiguous( type );
     }
 
     @Override
     public ValueDescriptor lookupValueModel( final Class<?> type )
     {
-        return valueModels.computeIfAbsent( type, key ->
-        {
-            List<? extends ValueDescriptor> allModels = getAllValues();
-            ValueDescriptor model = ambiguityMatching( key, allModels, new HasEqualType<>( key ) );
-            if( model == null )
-            {
-                model = ambiguityMatching( key, allModels, new HasAssignableFromType<>( key ) );
-            }
-            return model;
-        } );
+        return valueIndex().unambiguous( type );
     }
 
     @Override
     public EntityDescriptor lookupEntityModel( final Class<?> type )
     {
-        return unambiguousEntityModels.computeIfAbsent( type, key ->
-        {
-            List<? extends EntityDescriptor> allModels = getAllEntities();
-            EntityDescriptor model = ambiguityMatching( key, allModels, new HasEqualType<>( key ) );
-            if( model == null )
-            {
-                model = ambiguityMatching( key, allModels, new HasAssignableFromType<>( key ) );
-            }
-            return model;
-        } );
+        return entityIndex().unambiguous( type );
     }
 
     @Override
     public List<EntityDescriptor> lookupEntityModels( final Class type )
     {
-        return entityModels.computeIfAbsent(
-            type,
-            key -> allEntities().collect( HasTypesCollectors.matchingTypes( key ) ) );
+        return entityIndex().matching( type );
     }
 
     @Override
     public ModelDescriptor lookupServiceModel( Type serviceType )
     {
-        return serviceModels.computeIfAbsent(
+        if( serviceType instanceof Class )
+        {
+            return serviceIndex().first( (Class<?>) serviceType );
+        }
+        return parameterizedServiceModels.computeIfAbsent(
             serviceType,
             key -> allServices().collect( HasTypesCollectors.matchingType( key ) ).orElse( null ) );
     }
@@ -167,11 +154,40 @@ class TypeLookupImpl
     @Override
     public List<? extends ModelDescriptor> lookupServiceModels( final Type type )
     {
-        return servicesReferences.computeIfAbsent(
+        if( type instanceof Class )
+        {
+            return serviceIndex().matching( (Class<?>) type );
+        }
+        return parameterizedServicesReferences.computeIfAbsent(
             type,
             key -> allServices().collect( HasTypesCollectors.matchingTypes( key ) ) );
     }
 
+    private TypeIndex<ObjectDescriptor> objectIndex()
+    {
+        return objectModels.computeIfAbsent( () -> new TypeIndex<>( getAllObjects() ) );
+    }
+
+    private TypeIndex<TransientDescriptor> transientIndex()
+    {
+        return transientModels.computeIfAbsent( () -> new TypeIndex<>( getAllTransients() ) );
+    }
+
+    private TypeIndex<ValueDescriptor> valueIndex()
+    {
+        return valueModels.computeIfAbsent( () -> new TypeIndex<>( getAllValues() ) );
+    }
+
+    private TypeIndex<EntityDescriptor> entityIndex()
+    {
+        return entityModels.computeIfAbsent( () -> new TypeIndex<>( getAllEntities() ) );
+    }
+
+    private TypeIndex<ModelDescriptor> serviceIndex()
+    {
+        return serviceModels.computeIfAbsent( () -> new TypeIndex<>( getAllServices() ) );
+    }
+
     @Override
     public Stream<ObjectDescriptor> allObjects()
     {
@@ -293,44 +309,125 @@ class TypeLookupImpl
         );
     }
 
-    private static <T extends ModelDescriptor> T ambiguityMatching(
-        Class type,
-        List<T> modelModules,
-        Predicate<T> matching
-    )
+    /**
+     * Inverted index from every type and supertype of the visible models to the models having it.
+     * <p>
+     * For each type the models declaring it come first, then the models declaring one of its subtypes, both in
+     * visibility order. It is immutable once built.
+     * </p>
+     */
+    private static final class TypeIndex<T extends ModelDescriptor>
     {
-        List<T> models = modelModules.stream()
-                                     .filter( matching.and( new SameVisibility<>() ) )
-                                     .distinct()
-                                     .collect( toList() );
-        if( models.size() > 1 )
+        private final Map<Class<?>, Entry<T>> entries = new HashMap<>();
+
+        private TypeIndex( List<? extends T> models )
+        {
+            Map<Class<?>, Set<T>> equalModels = new LinkedHashMap<>();
+            Map<Class<?>, Set<T>> assignableModels = new LinkedHashMap<>();
+            for( T model : models )
+            {
+                model.types().forEach( type ->
+                {
+                    equalModels.computeIfAbsent( type, key -> new LinkedHashSet<>() ).add( model );
+                    for( Class<?> superType : superTypesOf( type ) )
+                    {
+                        assignableModels.computeIfAbsent( superType, key -> new LinkedHashSet<>() ).add( model );
+                    }
+                } );
+            }
+            Set<Class<?>> types = new LinkedHashSet<>( equalModels.keySet() );
+            types.addAll( assignableModels.keySet() );
+            for( Class<?> type : types )
+            {
+                Set<T> equal = equalModels.getOrDefault( type, emptySet() );
+                Set<T> assignable = new LinkedHashSet<>( assignableModels.getOrDefault( type, emptySet() ) );
+                assignable.removeAll( equal );
+                entries.put( type, new Entry<>( new ArrayList<>( equal ), new ArrayList<>( assignable ) ) );
+            }
+        }
+
+        private T unambiguous( Class<?> type )
+        {
+            Entry<T> entry = entries.get( type );
+            if( entry == null )
+            {
+                return null;
+            }
+            if( entry.ambiguous != null )
+            {
+                throw new AmbiguousTypeException( "More than one type matches " + type.getName() + ": "
+                                                  + entry.ambiguous + "]" );
+            }
+            return entry.unambiguous;
+        }
+
+        private T first( Class<?> type )
         {
-            throw new AmbiguousTypeException( "More than one type matches " + type.getName() + ": " + models + "]" );
+            Entry<T> entry = entries.get( type );
+            return entry == null || entry.matching.isEmpty() ? null : entry.matching.get( 0 );
         }
-        if( models.isEmpty() )
+
+        private List<T> matching( Class<?> type )
         {
-            return null;
+            Entry<T> entry = entries.get( type );
+            return entry == null ? emptyList() : entry.matching;
+        }
+
+        private static List<Class<?>> superTypesOf( Class<?> type )
+        {
+            Set<Class<?>> superTypes = new LinkedHashSet<>();
+            addSuperTypes( type, superTypes );
+            if( type.isInterface() )
+            {
+                superTypes.add( Object.class );
+            }
+            return new ArrayList<>( superTypes );
+        }
+
+        private static void addSuperTypes( Class<?> type, Set<Class<?>> superTypes )
+        {
+            Class<?> superClass = type.getSuperclass();
+            if( superClass != null && superTypes.add( superClass ) )
+            {
+                addSuperTypes( superClass, superTypes );
+            }
+            for( Class<?> superInterface : type.getInterfaces() )
+            {
+                if( superTypes.add( superInterface ) )
+                {
+                    addSuperTypes( superInterface, superTypes );
+                }
+            }
         }
-        return models.get( 0 );
     }
 
-    /**
-     * This Predicate will filter out all Models that doesn't have the same visibility as the first one.
-     */
-    private static class SameVisibility<T extends ModelDescriptor>
-        implements Predicate<T>
+    private static final class Entry<T extends ModelDescriptor>
     {
-        private Visibility current = null;
+        private final List<T> matching;
+        private final T unambiguous;
+        private final List<T> ambiguous;
+
+        private Entry( List<T> equal, List<T> assignable )
+        {
+            List<T> matching = new ArrayList<>( equal.size() + assignable.size() );
+            matching.addAll( equal );
+            matching.addAll( assignable );
+            this.matching = unmodifiableList( matching );
+
+            // Models with an equal type win, then only the ones with the visibility of the first match count
+            List<T> candidates = sameVisibility( equal.isEmpty() ? assignable : equal );
+            this.unambiguous = candidates.size() == 1 ? candidates.get( 0 ) : null;
+            this.ambiguous = candidates.size() > 1 ? candidates : null;
+        }
 
-        @Override
-        public boolean test( T model )
+        private static <T extends ModelDescriptor> List<T> sameVisibility( List<T> models )
         {
-            if( current == null )
+            if( models.isEmpty() )
             {
-                current = model.visibility();
-                return true;
+                return models;
             }
-            return current == model.visibility();
+            Visibility visibility = models.get( 0 ).visibility();
+            return models.stream().filter( model -> model.visibility() == visibility ).collect( toList() );
         }
     }
 
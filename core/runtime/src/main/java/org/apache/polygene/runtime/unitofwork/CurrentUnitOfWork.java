@@ -0,0 +1,196 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package org.apache.polygene.runtime.unitofwork;
+
+import java.util.ArrayDeque;
+import org.apache.polygene.api.structure.ModuleDescriptor;
+import org.apache.polygene.bootstrap.UnitOfWorkContext;
+import org.apache.polygene.runtime.structure.ApplicationModel;
+
+/**
+ * Association of the current UnitOfWorks with the executing thread, one per application.
+ */
+public abstract class CurrentUnitOfWork
+{
+    public static CurrentUnitOfWork newInstance( UnitOfWorkContext context )
+    {
+        return context == UnitOfWorkContext.SCOPED ? new Scoped() : new PerThread();
+    }
+
+    public static CurrentUnitOfWork of( ModuleDescriptor module )
+    {
+        return ( (ApplicationModel) module.layer().instance().application().descriptor() ).currentUnitOfWork();
+    }
+
+    /**
+     * @return the current UnitOfWork of the executing thread, or null if there is none
+     */
+    public abstract UnitOfWorkInstance current();
+
+    public boolean isEmpty()
+    {
+        return current() == null;
+    }
+
+    abstract void push( UnitOfWorkInstance uow );
+
+    /**
+     * Remove the given UnitOfWork, usually the current one, from the executing thread.
+     * Nothing happens if it is not associated with the executing thread.
+     */
+    abstract void remove( UnitOfWorkInstance uow );
+
+    /**
+     * Make the given UnitOfWork the only one associated with the executing thread.
+     *
+     * @return the previous association, to be given back to {@link #restore(Object)}
+     */
+    abstract Object bind( UnitOfWorkInstance uow );
+
+    abstract void restore( Object previous );
+
+    private static final class PerThread extends CurrentUnitOfWork
+    {
+        private final ThreadLocal<ArrayDeque<UnitOfWorkInstance>> stacks = ThreadLocal.withInitial( ArrayDeque::new );
+
+        @Override
+        public UnitOfWorkInstance current()
+        {
+            return stacks.get().peekFirst();
+        }
+
+        @Override
+        void push( UnitOfWorkInstance uow )
+        {
+            stacks.get().addFirst( uow );
+        }
+
+        @Override
+        void remove( UnitOfWorkInstance uow )
+        {
+            ArrayDeque<UnitOfWorkInstance> stack = stacks.get();
+            if( stack.peekFirst() == uow )
+            {
+                stack.removeFirst();
+            }
+            else
+            {
+                stack.removeFirstOccurrence( uow );
+            }
+        }
+
+        @Override
+        Object bind( UnitOfWorkInstance uow )
+        {
+            ArrayDeque<UnitOfWorkInstance> previous = stacks.get();
+            ArrayDeque<UnitOfWorkInstance> stack = new ArrayDeque<>();
+            stack.addFirst( uow );
+            stacks.set( stack );
+            return previous;
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        void restore( Object previous )
+        {
+            stacks.set( (ArrayDeque<UnitOfWorkInstance>) previous );
+        }
+    }
+
+    private static final class Scoped extends CurrentUnitOfWork
+    {
+        private final ThreadLocal<Frame> frames = new ThreadLocal<>();
+
+        @Override
+        public UnitOfWorkInstance current()
+        {
+            Frame frame = frames.get();
+            return frame == null ? null : frame.uow;
+        }
+
+        @Override
+        void push( UnitOfWorkInstance uow )
+        {
+            frames.set( new Frame( uow, frames.get() ) );
+        }
+
+        @Override
+        void remove( UnitOfWorkInstance uow )
+        {
+            Frame frame = frames.get();
+            if( frame != null && frame.uow == uow )
+            {
+                restore( frame.parent );
+            }
+            else if( frame != null )
+            {
+                restore( frame.without( uow ) );
+            }
+        }
+
+        @Override
+        Object bind( UnitOfWorkInstance uow )
+        {
+            Frame previous = frames.get();
+            frames.set( new Frame( uow, null ) );
+            return previous;
+        }
+
+        @Override
+        void restore( Object previous )
+        {
+            if( previous == null )
+            {
+                frames.remove();
+            }
+            else
+            {
+                frames.set( (Frame) previous );
+            }
+        }
+    }
+
+    private static final class Frame
+    {
+        private final UnitOfWorkInstance uow;
+        private final Frame parent;
+
+        private Frame( UnitOfWorkInstance uow, Frame parent )
+        {
+            this.uow = uow;
+            this.parent = parent;
+        }
+
+        private Frame without( UnitOfWorkInstance removed )
+        {
+            if( uow == removed )
+            {
+                return parent;
+            }
+            if( parent == null )
+            {
+                return this;
+            }
+            Frame rest = parent.without( removed );
+            return rest == parent ? this : new Frame( uow, rest );
+        }
+    }
+}
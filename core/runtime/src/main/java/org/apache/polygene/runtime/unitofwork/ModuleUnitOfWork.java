@@ -21,15 +21,22 @@
 package org.apache.polygene.runtime.unitofwork;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.polygene.api.PolygeneAPI;
 import org.apache.polygene.api.association.AssociationDescriptor;
 import org.apache.polygene.api.association.AssociationStateHolder;
@@ -628,25 +635,18 @@ public class ModuleUnitOfWork
 
             try
             {
-                return entityFinder.findEntities(
+                Stream<EntityReference> references = entityFinder.findEntities(
                     resultType,
                     whereClause,
                     orderBySegments,
                     firstResult,
                     maxResults,
-                    variables == null ? Collections.emptyMap() : variables
-                                                ).map( ref ->
-                                                       {
-                                                           try
-                                                           {
-                                                               return moduleUnitOfWork.get( resultType, ref.identity() );
-                                                           }
-                                                           catch( NoSuchEntityException e )
-                                                           {
-                                                               // Index is out of sync - entity has been removed
-                                                               return null;
-                                                           }
-                                                       } );
+                    variables == null ? Collections.emptyMap() : variables );
+                Iterator<T> entities = new BatchLoadingIterator<>( moduleUnitOfWork, resultType,
+                                                                   references.iterator() );
+                return StreamSupport.stream( Spliterators.spliteratorUnknownSize( entities, Spliterator.ORDERED ),
+                                             false )
+                                    .onClose( references::close );
             }
             catch( EntityFinderException e )
             {
@@ -655,6 +655,65 @@ public class ModuleUnitOfWork
         }
     }
 
+    /**
+     * Iterator over query results that loads the found entities from the EntityStores in batches.
+     */
+    private static class BatchLoadingIterator<T>
+        implements Iterator<T>
+    {
+        private final ModuleUnitOfWork moduleUnitOfWork;
+        private final Class<T> resultType;
+        private final Iterator<EntityReference> references;
+        private final Iterable<EntityDescriptor> models;
+        private final int batchSize;
+        private final Deque<EntityReference> batch;
+
+        private BatchLoadingIterator( ModuleUnitOfWork moduleUnitOfWork,
+                                      Class<T> resultType,
+                                      Iterator<EntityReference> references )
+        {
+            this.moduleUnitOfWork = moduleUnitOfWork;
+            this.resultType = resultType;
+            this.references = references;
+            this.models = moduleUnitOfWork.module.typeLookup().lookupEntityModels( resultType );
+            this.batchSize = moduleUnitOfWork.uow.loadBatchSize();
+            this.batch = new ArrayDeque<>( batchSize );
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return !batch.isEmpty() || references.hasNext();
+        }
+
+        @Override
+        public T next()
+        {
+            if( batch.isEmpty() )
+            {
+                while( batch.size() < batchSize && references.hasNext() )
+                {
+                    batch.add( references.next() );
+                }
+                if( batch.isEmpty() )
+                {
+                    throw new NoSuchElementException();
+                }
+                moduleUnitOfWork.uow.prefetch( batch, moduleUnitOfWork, models );
+            }
+            EntityReference reference = batch.poll();
+            try
+            {
+                return moduleUnitOfWork.get( resultType, reference.identity() );
+            }
+            catch( NoSuchEntityException e )
+            {
+                // Index is out of sync - entity has been removed
+                return null;
+            }
+        }
+    }
+
     private class ToValuePropertyMappingFunction
         implements Function<PropertyDescriptor, Object>
     {
@@ -20,18 +20,22 @@
 
 package org.apache.polygene.runtime.unitofwork;
 
+import java.lang.reflect.Proxy;
 import java.time.Instant;
-import java.util.Stack;
+import java.util.function.Supplier;
 import org.apache.polygene.api.composite.CompositeInstance;
 import org.apache.polygene.api.composite.TransientBuilderFactory;
 import org.apache.polygene.api.entity.EntityComposite;
 import org.apache.polygene.api.injection.scope.Structure;
 import org.apache.polygene.api.metrics.MetricsProvider;
+import org.apache.polygene.api.structure.ApplicationDescriptor;
 import org.apache.polygene.api.time.SystemTime;
 import org.apache.polygene.api.unitofwork.UnitOfWork;
 import org.apache.polygene.api.unitofwork.UnitOfWorkFactory;
 import org.apache.polygene.api.usecase.Usecase;
+import org.apache.polygene.runtime.composite.TransientInstance;
 import org.apache.polygene.runtime.entity.EntityInstance;
+import org.apache.polygene.runtime.structure.ApplicationModel;
 import org.apache.polygene.spi.module.ModuleSpi;
 
 public class UnitOfWorkFactoryMixin
@@ -43,6 +47,9 @@ public class UnitOfWorkFactoryMixin
     @Structure
     private ModuleSpi module;
 
+    @Structure
+    private ApplicationDescriptor application;
+
     // Implementation of UnitOfWorkFactory
     @Override
     public UnitOfWork newUnitOfWork()
@@ -65,7 +72,8 @@ public class UnitOfWorkFactoryMixin
     @Override
     public UnitOfWork newUnitOfWork( Usecase usecase, Instant currentTime )
     {
-        UnitOfWorkInstance unitOfWorkInstance = new UnitOfWorkInstance( module, usecase, currentTime, metricsProvider() );
+        UnitOfWorkInstance unitOfWorkInstance = new UnitOfWorkInstance( module, current(), usecase, currentTime,
+                                                                         metricsProvider() );
         return tbf.newTransient( UnitOfWork.class, unitOfWorkInstance );
     }
 
@@ -74,22 +82,44 @@ public class UnitOfWorkFactoryMixin
         return module.metricsProvider();
     }
 
+    private CurrentUnitOfWork current()
+    {
+        return ( (ApplicationModel) application ).currentUnitOfWork();
+    }
+
     @Override
     public boolean isUnitOfWorkActive()
     {
-        Stack<UnitOfWorkInstance> stack = UnitOfWorkInstance.getCurrent();
-        return !stack.isEmpty();
+        return !current().isEmpty();
     }
 
     @Override
     public UnitOfWork currentUnitOfWork()
     {
-        Stack<UnitOfWorkInstance> stack = UnitOfWorkInstance.getCurrent();
-        if( stack.size() == 0 )
+        UnitOfWorkInstance uow = current().current();
+        if( uow == null )
         {
             throw new IllegalStateException( "No current UnitOfWork active" );
         }
-        return tbf.newTransient( UnitOfWork.class, stack.peek() );
+        return tbf.newTransient( UnitOfWork.class, uow );
+    }
+
+    @Override
+    public <T> T withUnitOfWork( UnitOfWork unitOfWork, Supplier<T> task )
+    {
+        UnitOfWorkInstance instance = ( (TransientInstance) Proxy.getInvocationHandler( unitOfWork ) )
+            .mixinOf( ModuleUnitOfWork.class ).instance();
+        instance.checkOpen();
+        CurrentUnitOfWork current = instance.currentUnitOfWork();
+        Object previous = current.bind( instance );
+        try
+        {
+            return task.get();
+        }
+        finally
+        {
+            current.restore( previous );
+        }
     }
 
     @Override
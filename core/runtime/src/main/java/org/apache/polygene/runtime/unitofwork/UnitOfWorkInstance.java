@@ -24,9 +24,12 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Set;
 import org.apache.polygene.api.common.MetaInfo;
 import org.apache.polygene.api.entity.EntityComposite;
 import org.apache.polygene.api.entity.EntityDescriptor;
@@ -59,21 +62,18 @@ import org.apache.polygene.spi.entitystore.EntityStoreUnitOfWork;
 import org.apache.polygene.spi.entitystore.StateCommitter;
 import org.apache.polygene.spi.module.ModuleSpi;
 
+import static java.util.stream.Collectors.toList;
 import static org.apache.polygene.api.unitofwork.UnitOfWorkCallback.UnitOfWorkStatus.COMPLETED;
 import static org.apache.polygene.api.unitofwork.UnitOfWorkCallback.UnitOfWorkStatus.DISCARDED;
 
 public final class UnitOfWorkInstance
 {
-    private static final ThreadLocal<Stack<UnitOfWorkInstance>> CURRENT = ThreadLocal.withInitial( Stack::new );
-
-    public static Stack<UnitOfWorkInstance> getCurrent()
-    {
-        return CURRENT.get();
-    }
-
     private final HashMap<EntityReference, EntityInstance> instanceCache = new HashMap<>();
+    // Loaded instances in least recently used order, only when their number is bounded
+    private LinkedHashMap<EntityReference, EntityInstance> loadedInstances;
     private final HashMap<EntityStore, EntityStoreUnitOfWork> storeUnitOfWork = new HashMap<>();
     private final ModuleSpi module;
+    private final CurrentUnitOfWork current;
     private final Usecase usecase;
     private final Instant currentTime;
     private final MetricsProvider metrics;
@@ -82,24 +82,32 @@ public final class UnitOfWorkInstance
     private boolean paused;
 
     private MetricsCounter metricsCounter;
+    private MetricsCounter evictionsCounter;
     private MetricsTimer metricsTimer;
     private MetricsTimer.Context metricsTimerContext;
     private MetaInfo metaInfo;
     private List<UnitOfWorkCallback> callbacks;
 
-    public UnitOfWorkInstance(ModuleSpi module, Usecase usecase, Instant currentTime, MetricsProvider metrics )
+    public UnitOfWorkInstance( ModuleSpi module, CurrentUnitOfWork current, Usecase usecase, Instant currentTime,
+                               MetricsProvider metrics )
     {
         this.module = module;
+        this.current = current;
         this.usecase = usecase;
         this.currentTime = currentTime;
         this.metrics = metrics;
 
         this.open = true;
-        getCurrent().push( this );
+        current.push( this );
         this.paused = false;
         startCapture();
     }
 
+    CurrentUnitOfWork currentUnitOfWork()
+    {
+        return current;
+    }
+
     public Instant currentTime()
     {
         return currentTime;
@@ -163,6 +171,7 @@ public final class UnitOfWorkInstance
             // Create instance
             entityInstance = new EntityInstance( uow, model, entityState );
             instanceCache.put( reference, entityInstance );
+            loaded( entityInstance );
         }
         else
         {
@@ -171,11 +180,81 @@ public final class UnitOfWorkInstance
             {
                 throw new NoSuchEntityException( reference, mixinType, usecase );
             }
+            if( loadedInstances != null )
+            {
+                loadedInstances.get( reference );
+            }
         }
 
         return entityInstance.proxy();
     }
 
+    /**
+     * Load the state of several entities in batch so that subsequent calls to
+     * {@link #get(EntityReference, UnitOfWork, Iterable, Class)} are served from the instance cache.
+     * <p>
+     * Entities already in this UnitOfWork are not fetched again, missing entities are ignored.
+     * </p>
+     *
+     * @param references      the references of the entities to load
+     * @param uow             the UnitOfWork the loaded entities belong to
+     * @param potentialModels the entity models to look the entities up with
+     */
+    public void prefetch( Collection<EntityReference> references,
+                          UnitOfWork uow,
+                          Iterable<? extends EntityDescriptor> potentialModels
+    )
+    {
+        checkOpen();
+
+        Set<EntityReference> remaining = new LinkedHashSet<>();
+        for( EntityReference reference : references )
+        {
+            if( !instanceCache.containsKey( reference ) )
+            {
+                remaining.add( reference );
+            }
+        }
+
+        for( EntityDescriptor potentialModel : potentialModels )
+        {
+            if( remaining.isEmpty() )
+            {
+                return;
+            }
+            EntityStore store = ( (ModuleSpi) potentialModel.module().instance() ).entityStore();
+            EntityStoreUnitOfWork storeUow = getEntityStoreUnitOfWork( store );
+            List<EntityState> entityStates = storeUow.entityStatesOf( potentialModel.module(),
+                                                                      new ArrayList<>( remaining ) )
+                                                     .collect( toList() );
+            for( EntityState entityState : entityStates )
+            {
+                EntityModel model = (EntityModel) entityState.entityDescriptor();
+                EntityInstance entityInstance = new EntityInstance( uow, model, entityState );
+                instanceCache.put( entityState.entityReference(), entityInstance );
+                loaded( entityInstance );
+                remaining.remove( entityState.entityReference() );
+            }
+        }
+    }
+
+    /**
+     * @return the number of entities query results load in a single batch
+     */
+    public int loadBatchSize()
+    {
+        UnitOfWorkOptions unitOfWorkOptions = unitOfWorkOptions();
+        if( unitOfWorkOptions == null )
+        {
+            return UnitOfWorkOptions.DEFAULT_LOAD_BATCH_SIZE;
+        }
+        int maxLoadedEntities = unitOfWorkOptions.maxLoadedEntities();
+        // A larger batch would evict its first entities before they are iterated
+        return maxLoadedEntities == 0
+               ? unitOfWorkOptions.loadBatchSize()
+               : Math.min( unitOfWorkOptions.loadBatchSize(), maxLoadedEntities );
+    }
+
     public Usecase usecase()
     {
         return usecase;
@@ -196,14 +275,9 @@ public final class UnitOfWorkInstance
         if( !paused )
         {
             paused = true;
-            getCurrent().pop();
-
-            UnitOfWorkOptions unitOfWorkOptions = metaInfo().get( UnitOfWorkOptions.class );
-            if( unitOfWorkOptions == null )
-            {
-                unitOfWorkOptions = usecase().metaInfo( UnitOfWorkOptions.class );
-            }
+            current.remove( this );
 
+            UnitOfWorkOptions unitOfWorkOptions = unitOfWorkOptions();
             if( unitOfWorkOptions != null )
             {
                 if( unitOfWorkOptions.isPruneOnPause() )
@@ -222,7 +296,7 @@ public final class UnitOfWorkInstance
                     }
                     if( prunedInstances != null )
                     {
-                        prunedInstances.forEach( instanceCache::remove );
+                        prunedInstances.forEach( this::remove );
                     }
                 }
             }
@@ -233,12 +307,22 @@ public final class UnitOfWorkInstance
         }
     }
 
+    private UnitOfWorkOptions unitOfWorkOptions()
+    {
+        UnitOfWorkOptions unitOfWorkOptions = metaInfo().get( UnitOfWorkOptions.class );
+        if( unitOfWorkOptions == null )
+        {
+            unitOfWorkOptions = usecase().metaInfo( UnitOfWorkOptions.class );
+        }
+        return unitOfWorkOptions;
+    }
+
     public void resume()
     {
         if( paused )
         {
             paused = false;
-            getCurrent().push( this );
+            current.push( this );
         }
         else
         {
@@ -258,7 +342,16 @@ public final class UnitOfWorkInstance
         List<StateCommitter> committers = applyChanges();
 
         // Check callbacks
-        notifyBeforeCompletion( currentCallbacks );
+        try
+        {
+            notifyBeforeCompletion( currentCallbacks );
+        }
+        catch( RuntimeException e )
+        {
+            // Release what the stores prepared
+            committers.forEach( StateCommitter::cancel );
+            throw e;
+        }
 
         // Commit all changes
         committers.forEach( StateCommitter::commit );
@@ -294,7 +387,7 @@ public final class UnitOfWorkInstance
 
         if( !isPaused() )
         {
-            getCurrent().pop();
+            current.remove( this );
         }
         endCapture();
         open = false;
@@ -461,6 +554,44 @@ public final class UnitOfWorkInstance
     public void remove( EntityReference entityReference )
     {
         instanceCache.remove( entityReference );
+        if( loadedInstances != null )
+        {
+            loadedInstances.remove( entityReference );
+        }
+    }
+
+    private void loaded( EntityInstance instance )
+    {
+        UnitOfWorkOptions unitOfWorkOptions = unitOfWorkOptions();
+        int maxLoadedEntities = unitOfWorkOptions == null ? 0 : unitOfWorkOptions.maxLoadedEntities();
+        if( maxLoadedEntities == 0 )
+        {
+            return;
+        }
+        if( loadedInstances == null )
+        {
+            loadedInstances = new LinkedHashMap<>( 16, 0.75F, true );
+        }
+        loadedInstances.put( instance.reference(), instance );
+        Iterator<EntityInstance> leastRecentlyUsed = loadedInstances.values().iterator();
+        while( loadedInstances.size() > maxLoadedEntities )
+        {
+            EntityInstance evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            // Modified instances are kept until completion, only untracked
+            if( evicted.status() == EntityStatus.LOADED )
+            {
+                instanceCache.remove( evicted.reference() );
+                evicted.evict();
+                EntityStore store = ( (ModuleSpi) evicted.module().instance() ).entityStore();
+                EntityStoreUnitOfWork storeUow = storeUnitOfWork.get( store );
+                if( storeUow != null )
+                {
+                    storeUow.evict( evicted.reference() );
+                }
+                getEvictionsCounter().increment();
+            }
+        }
     }
 
     private void startCapture()
@@ -476,6 +607,16 @@ public final class UnitOfWorkInstance
         metricsTimerContext = null;
     }
 
+    private MetricsCounter getEvictionsCounter()
+    {
+        if( evictionsCounter == null )
+        {
+            MetricsCounterFactory metricsFactory = metrics.createFactory( MetricsCounterFactory.class );
+            evictionsCounter = metricsFactory.createCounter( MetricNames.nameFor( module, UnitOfWork.class, "evictions" ) );
+        }
+        return evictionsCounter;
+    }
+
     private MetricsCounter getMetricsCounter()
     {
         if( metricsCounter == null )
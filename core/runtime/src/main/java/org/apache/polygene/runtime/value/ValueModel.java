@@ -43,7 +43,7 @@ import org.apache.polygene.runtime.composite.MixinsModel;
 import org.apache.polygene.runtime.composite.UsesInstance;
 import org.apache.polygene.runtime.injection.InjectionContext;
 import org.apache.polygene.runtime.property.PropertyInstance;
-import org.apache.polygene.runtime.unitofwork.UnitOfWorkInstance;
+import org.apache.polygene.runtime.unitofwork.CurrentUnitOfWork;
 
 /**
  * Model for ValueComposites
@@ -101,7 +101,7 @@ public final class ValueModel extends CompositeModel
                                        );
 
         // IF no UnitOfWork is active, then the Association checks shouldn't be done.
-        if( UnitOfWorkInstance.getCurrent().empty() )
+        if( CurrentUnitOfWork.of( module ).isEmpty() )
         {
             return;
         }
@@ -0,0 +1,255 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.activation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import org.apache.polygene.api.activation.ActivationException;
+import org.apache.polygene.api.activation.ActivatorAdapter;
+import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.api.service.ServiceReference;
+import org.apache.polygene.api.structure.Application;
+import org.apache.polygene.bootstrap.ParallelActivation;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.fail;
+
+public class ParallelActivationTest
+{
+    private static final List<String> EVENTS = Collections.synchronizedList( new ArrayList<>() );
+    private static CyclicBarrier barrier;
+
+    @Before
+    public void reset()
+    {
+        EVENTS.clear();
+        barrier = new CyclicBarrier( 2 );
+    }
+
+    @Test
+    public void givenIndependentServicesWhenActivatingExpectConcurrentActivation()
+        throws Exception
+    {
+        // Each activator waits for the other one, sequential activation would time out
+        SingletonAssembler assembler = new SingletonAssembler(
+            module -> {
+                module.setMetaInfo( new ParallelActivation( 2 ) );
+                module.services( Cache.class ).withActivators( BarrierActivator.class ).instantiateOnStartup();
+                module.services( Index.class ).withActivators( BarrierActivator.class ).instantiateOnStartup();
+            }
+        );
+        assertThat( EVENTS.size(), equalTo( 2 ) );
+        assembler.application().passivate();
+    }
+
+    @Test
+    public void givenDependentServicesWhenActivatingExpectDependencyOrder()
+        throws Exception
+    {
+        SingletonAssembler assembler = new SingletonAssembler(
+            module -> {
+                module.setMetaInfo( new ParallelActivation( 4 ) );
+                module.services( Repository.class ).withActivators( RecordingActivator.class ).instantiateOnStartup();
+                module.services( Database.class ).withActivators( SlowRecordingActivator.class ).instantiateOnStartup();
+            }
+        );
+        assertThat( EVENTS, equalTo( asList( "activated Database", "activated Repository" ) ) );
+
+        EVENTS.clear();
+        assembler.application().passivate();
+        assertThat( EVENTS, equalTo( asList( "passivated Repository", "passivated Database" ) ) );
+    }
+
+    @Test
+    public void givenFailingServiceWhenActivatingExpectActiveServicesPassivated()
+        throws Exception
+    {
+        try
+        {
+            new SingletonAssembler(
+                module -> {
+                    module.setMetaInfo( new ParallelActivation( 4 ) );
+                    module.services( Database.class ).withActivators( RecordingActivator.class ).instantiateOnStartup();
+                    module.services( Cache.class ).withActivators( FailingActivator.class ).instantiateOnStartup();
+                }
+            );
+            fail( "Expected activation failure" );
+        }
+        catch( ActivationException expected )
+        {
+            assertThat( EVENTS, equalTo( asList( "activated Database", "passivated Database" ) ) );
+        }
+    }
+
+    @Test
+    public void givenApplicationMetaInfoWhenActivatingExpectConcurrentActivation()
+        throws Exception
+    {
+        SingletonAssembler assembler = new SingletonAssembler(
+            module -> {
+                module.layer().application().setMetaInfo( new ParallelActivation( 2 ) );
+                module.services( Cache.class ).withActivators( BarrierActivator.class ).instantiateOnStartup();
+                module.services( Index.class ).withActivators( BarrierActivator.class ).instantiateOnStartup();
+            }
+        );
+        Application application = assembler.application();
+        assertThat( EVENTS.size(), equalTo( 2 ) );
+        application.passivate();
+    }
+
+    private static List<String> asList( String... events )
+    {
+        List<String> list = new ArrayList<>();
+        Collections.addAll( list, events );
+        return list;
+    }
+
+    private static String name( ServiceReference<?> reference )
+    {
+        return reference.types().findFirst().map( Class::getSimpleName ).orElse( "?" );
+    }
+
+    public static class BarrierActivator
+        extends ActivatorAdapter<ServiceReference<?>>
+    {
+        @Override
+        public void afterActivation( ServiceReference<?> activated )
+            throws Exception
+        {
+            barrier.await( 5, TimeUnit.SECONDS );
+            EVENTS.add( "activated " + name( activated ) );
+        }
+    }
+
+    public static class RecordingActivator
+        extends ActivatorAdapter<ServiceReference<?>>
+    {
+        @Override
+        public void afterActivation( ServiceReference<?> activated )
+            throws Exception
+        {
+            EVENTS.add( "activated " + name( activated ) );
+        }
+
+        @Override
+        public void beforePassivation( ServiceReference<?> passivating )
+            throws Exception
+        {
+            EVENTS.add( "passivated " + name( passivating ) );
+        }
+    }
+
+    public static class SlowRecordingActivator
+        extends RecordingActivator
+    {
+        @Override
+        public void afterActivation( ServiceReference<?> activated )
+            throws Exception
+        {
+            Thread.sleep( 100 );
+            super.afterActivation( activated );
+        }
+    }
+
+    public static class FailingActivator
+        extends ActivatorAdapter<ServiceReference<?>>
+    {
+        @Override
+        public void afterActivation( ServiceReference<?> activated )
+            throws Exception
+        {
+            Thread.sleep( 100 );
+            throw new IllegalStateException( "Failing on purpose" );
+        }
+    }
+
+    @Mixins( Database.Mixin.class )
+    public interface Database
+    {
+        String query();
+
+        class Mixin
+            implements Database
+        {
+            @Override
+            public String query()
+            {
+                return "result";
+            }
+        }
+    }
+
+    @Mixins( Repository.Mixin.class )
+    public interface Repository
+    {
+        String find();
+
+        class Mixin
+            implements Repository
+        {
+            @Service
+            private Database database;
+
+            @Override
+            public String find()
+            {
+                return database.query();
+            }
+        }
+    }
+
+    @Mixins( Cache.Mixin.class )
+    public interface Cache
+    {
+        String get();
+
+        class Mixin
+            implements Cache
+        {
+            @Override
+            public String get()
+            {
+                return "cached";
+            }
+        }
+    }
+
+    @Mixins( Index.Mixin.class )
+    public interface Index
+    {
+        int size();
+
+        class Mixin
+            implements Index
+        {
+            @Override
+            public int size()
+            {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.composite;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.bootstrap.AssemblyException;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Assert that composite methods are dispatched to the mixins of each composite type, and that the table
+ * remembering how Method instances were resolved stays bounded.
+ */
+public class CompositeMethodsDispatchTest
+    extends AbstractPolygeneTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.transients( EnglishSpeaker.class, FrenchSpeaker.class );
+    }
+
+    @Test
+    public void givenCompositeTypesSharingMethodsWhenInvokingInTurnExpectEachTypeDispatchedToItsMixins()
+    {
+        Speaker english = transientBuilderFactory.newTransient( EnglishSpeaker.class );
+        Speaker french = transientBuilderFactory.newTransient( FrenchSpeaker.class );
+        for( int i = 0; i < 3; i++ )
+        {
+            assertThat( english.speak(), equalTo( "Hello" ) );
+            assertThat( french.speak(), equalTo( "Bonjour" ) );
+            assertThat( english.greet( "Alice" ), equalTo( "Hello Alice" ) );
+            assertThat( french.greet( "Alice" ), equalTo( "Bonjour Alice !" ) );
+            assertThat( english.toString(), equalTo( english.toString() ) );
+        }
+    }
+
+    @Test
+    public void givenSameMethodInstanceWhenInvokingOnEachCompositeTypeExpectEachTypeDispatchedToItsMixins()
+        throws Throwable
+    {
+        Speaker english = transientBuilderFactory.newTransient( EnglishSpeaker.class );
+        Speaker french = transientBuilderFactory.newTransient( FrenchSpeaker.class );
+        Method greet = Speaker.class.getMethod( "greet", String.class );
+        for( int i = 0; i < 3; i++ )
+        {
+            assertThat( Proxy.getInvocationHandler( english ).invoke( english, greet, new Object[]{ "Bob" } ),
+                        equalTo( "Hello Bob" ) );
+            assertThat( Proxy.getInvocationHandler( french ).invoke( french, greet, new Object[]{ "Bob" } ),
+                        equalTo( "Bonjour Bob !" ) );
+        }
+    }
+
+    @Test
+    public void givenSameMethodInstancesWhenInvokingRepeatedlyExpectTableNotGrowing()
+    {
+        Speaker english = transientBuilderFactory.newTransient( EnglishSpeaker.class );
+        CompositeMethodsModel methods = compositeMethodsOf( english );
+        english.hashCode();
+        // Methods of Object are not part of the table
+        assertThat( methods.dispatchSize(), equalTo( 0 ) );
+
+        english.speak();
+        english.greet( "Bob" );
+        int size = methods.dispatchSize();
+        for( int i = 0; i < 100; i++ )
+        {
+            english.speak();
+            english.greet( "Bob" );
+        }
+        assertThat( methods.dispatchSize(), equalTo( size ) );
+    }
+
+    @Test
+    public void givenNewMethodCopiesOnEachCallWhenInvokingExpectBoundedTable()
+        throws Throwable
+    {
+        Speaker english = transientBuilderFactory.newTransient( EnglishSpeaker.class );
+        InvocationHandler handler = Proxy.getInvocationHandler( english );
+        CompositeMethodsModel methods = compositeMethodsOf( english );
+        int methodCount = 0;
+        for( Method ignored : methods.methods() )
+        {
+            methodCount++;
+        }
+        for( int i = 0; i < 1000; i++ )
+        {
+            // Class#getMethod returns a new copy on each call
+            Method speak = Speaker.class.getMethod( "speak" );
+            assertThat( handler.invoke( english, speak, null ), equalTo( "Hello" ) );
+        }
+        assertThat( methods.dispatchSize(), lessThanOrEqualTo( 4 * methodCount + 16 ) );
+    }
+
+    private static CompositeMethodsModel compositeMethodsOf( Object composite )
+    {
+        return ( (TransientInstance) Proxy.getInvocationHandler( composite ) ).descriptor().compositeMethodsModel;
+    }
+
+    public interface Speaker
+    {
+        String speak();
+
+        default String greet( String name )
+        {
+            return speak() + " " + name;
+        }
+    }
+
+    @Mixins( EnglishSpeaker.Mixin.class )
+    public interface EnglishSpeaker
+        extends Speaker
+    {
+        abstract class Mixin
+            implements Speaker
+        {
+            @Override
+            public String speak()
+            {
+                return "Hello";
+            }
+        }
+    }
+
+    @Mixins( FrenchSpeaker.Mixin.class )
+    public interface FrenchSpeaker
+        extends Speaker
+    {
+        abstract class Mixin
+            implements Speaker
+        {
+            @Override
+            public String speak()
+            {
+                return "Bonjour";
+            }
+
+            @Override
+            public String greet( String name )
+            {
+                return speak() + " " + name + " !";
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.composite;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.runtime.bootstrap.FragmentSnapshotWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+public class FragmentClassSnapshotTest
+{
+    private static final String STUB_NAME = GreetingMixin.class.getName().replace( '$', '_' )
+                                            + FragmentClassLoader.GENERATED_POSTFIX;
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void givenAssemblerWhenWritingSnapshotExpectFragmentClassesWritten()
+        throws Exception
+    {
+        File directory = writeSnapshot();
+        assertThat( new File( directory, FragmentClassSnapshot.RESOURCE ).isFile(), equalTo( true ) );
+    }
+
+    @Test
+    public void givenSnapshotOnClasspathWhenLoadingFragmentExpectGeneratedBytecode()
+        throws Exception
+    {
+        File directory = writeSnapshot();
+        try( URLClassLoader loader = new URLClassLoader( new URL[]{ directory.toURI().toURL() },
+                                                         getClass().getClassLoader() ) )
+        {
+            byte[] snapshot = new FragmentClassSnapshot( FragmentClassLoader.class )
+                .read( loader, STUB_NAME, GreetingMixin.class );
+            byte[] generated = new FragmentClassLoader( loader ).generateClass( STUB_NAME, GreetingMixin.class );
+            assertThat( snapshot, equalTo( generated ) );
+
+            Class<?> stub = new FragmentClassLoader( loader ).loadFragmentClass( GreetingMixin.class );
+            assertThat( stub.getName(), equalTo( STUB_NAME ) );
+            assertThat( stub.getSuperclass(), equalTo( GreetingMixin.class ) );
+        }
+    }
+
+    @Test
+    public void givenSnapshotOfOtherGeneratorWhenReadingExpectStale()
+        throws Exception
+    {
+        File directory = writeSnapshot();
+        try( URLClassLoader loader = new URLClassLoader( new URL[]{ directory.toURI().toURL() },
+                                                         getClass().getClassLoader() ) )
+        {
+            FragmentClassSnapshot snapshot = new FragmentClassSnapshot( OtherFragmentClassLoader.class );
+            assertThat( snapshot.read( loader, STUB_NAME, GreetingMixin.class ), nullValue() );
+            assertThat( new FragmentClassSnapshot( FragmentClassLoader.class )
+                            .read( loader, STUB_NAME, GreetingMixin.class ), notNullValue() );
+        }
+    }
+
+    @Test
+    public void givenNoSnapshotWhenReadingExpectNull()
+    {
+        FragmentClassSnapshot snapshot = new FragmentClassSnapshot( FragmentClassLoader.class );
+        assertThat( snapshot.read( getClass().getClassLoader(), STUB_NAME, GreetingMixin.class ), nullValue() );
+    }
+
+    @Test
+    public void givenSnapshotWhenOnlySuperInterfaceChangedExpectStale()
+        throws Exception
+    {
+        String name = "org.apache.polygene.test.Base" + FragmentClassLoader.GENERATED_POSTFIX;
+        Class<?> before = new HierarchyClassLoader( "org/apache/polygene/test/Named" ).loadClass( BASE );
+        Class<?> after = new HierarchyClassLoader( "org/apache/polygene/test/Titled" ).loadClass( BASE );
+        assertThat( before.getName(), equalTo( after.getName() ) );
+
+        FragmentClassSnapshot written = new FragmentClassSnapshot( FragmentClassLoader.class );
+        written.add( name, before, new byte[]{ 42 } );
+        File directory = tmpDir.newFolder();
+        written.write( directory );
+        try( URLClassLoader loader = new URLClassLoader( new URL[]{ directory.toURI().toURL() },
+                                                         getClass().getClassLoader() ) )
+        {
+            assertThat( new FragmentClassSnapshot( FragmentClassLoader.class ).read( loader, name, before ),
+                        equalTo( new byte[]{ 42 } ) );
+            assertThat( new FragmentClassSnapshot( FragmentClassLoader.class ).read( loader, name, after ),
+                        nullValue() );
+        }
+    }
+
+    private File writeSnapshot()
+        throws Exception
+    {
+        File directory = tmpDir.newFolder();
+        FragmentSnapshotWriter.write( directory, factory -> factory.newApplicationAssembly(
+            module -> module.transients( Greeting.class ) ) );
+        return directory;
+    }
+
+    @Mixins( GreetingMixin.class )
+    public interface Greeting
+    {
+        String greet( String name );
+    }
+
+    public static abstract class GreetingMixin
+        implements Greeting
+    {
+        @Override
+        public String greet( String name )
+        {
+            return "Hello " + name;
+        }
+    }
+
+    private static final String BASE = "org.apache.polygene.test.Base";
+
+    /**
+     * Defines {@code Base implements Greeter}, where {@code Greeter} extends either {@code Named} or {@code Titled}.
+     * Both declare {@code String greet(String)}, implemented by {@code Base}, so the fragment class and its direct
+     * interface are the same in both hierarchies.
+     */
+    private static class HierarchyClassLoader
+        extends ClassLoader
+    {
+        private final Map<String, byte[]> classes = new HashMap<>();
+
+        private HierarchyClassLoader( String superInterface )
+        {
+            super( FragmentClassSnapshotTest.class.getClassLoader() );
+            classes.put( "org.apache.polygene.test.Named", greeting( "org/apache/polygene/test/Named" ) );
+            classes.put( "org.apache.polygene.test.Titled", greeting( "org/apache/polygene/test/Titled" ) );
+
+            ClassWriter greeter = new ClassWriter( 0 );
+            greeter.visit( V1_8, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, "org/apache/polygene/test/Greeter", null,
+                           "java/lang/Object", new String[]{ superInterface } );
+            greeter.visitEnd();
+            classes.put( "org.apache.polygene.test.Greeter", greeter.toByteArray() );
+
+            ClassWriter base = new ClassWriter( 0 );
+            base.visit( V1_8, ACC_PUBLIC | ACC_ABSTRACT | ACC_SUPER, "org/apache/polygene/test/Base", null,
+                        "java/lang/Object", new String[]{ "org/apache/polygene/test/Greeter" } );
+            MethodVisitor constructor = base.visitMethod( ACC_PUBLIC, "<init>", "()V", null, null );
+            constructor.visitCode();
+            constructor.visitVarInsn( ALOAD, 0 );
+            constructor.visitMethodInsn( INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false );
+            constructor.visitInsn( RETURN );
+            constructor.visitMaxs( 1, 1 );
+            constructor.visitEnd();
+            MethodVisitor greet = base.visitMethod( ACC_PUBLIC, "greet", "(Ljava/lang/String;)Ljava/lang/String;",
+                                                    null, null );
+            greet.visitCode();
+            greet.visitVarInsn( ALOAD, 1 );
+            greet.visitInsn( ARETURN );
+            greet.visitMaxs( 1, 2 );
+            greet.visitEnd();
+            base.visitEnd();
+            classes.put( BASE, base.toByteArray() );
+        }
+
+        private static byte[] greeting( String internalName )
+        {
+            ClassWriter writer = new ClassWriter( 0 );
+            writer.visit( V1_8, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, internalName, null, "java/lang/Object",
+                          null );
+            writer.visitMethod( ACC_PUBLIC | ACC_ABSTRACT, "greet", "(Ljava/lang/String;)Ljava/lang/String;", null,
+                                null ).visitEnd();
+            writer.visitEnd();
+            return writer.toByteArray();
+        }
+
+        @Override
+        protected Class<?> findClass( String name )
+            throws ClassNotFoundException
+        {
+            byte[] bytes = classes.get( name );
+            if( bytes == null )
+            {
+                throw new ClassNotFoundException( name );
+            }
+            return defineClass( name, bytes, 0, bytes.length );
+        }
+    }
+
+    public static class OtherFragmentClassLoader
+        extends FragmentClassLoader
+    {
+        public OtherFragmentClassLoader( ClassLoader parent )
+        {
+            super( parent );
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.polygene.runtime.composite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.polygene.api.composite.TransientComposite;
+import org.apache.polygene.api.concern.ConcernOf;
+import org.apache.polygene.api.concern.Concerns;
+import org.apache.polygene.api.injection.scope.This;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.bootstrap.InstancePoolStrategy;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Check that every {@link InstancePoolStrategy} hands out each invocation chain to one caller at a time.
+ */
+public class InstancePoolStrategyTest
+    extends AbstractPolygeneTest
+{
+    private static final AtomicInteger SHARED = new AtomicInteger();
+
+    @Override
+    public void assemble( ModuleAssembly module )
+    {
+        module.transients( AtomicCounter.class ).setMetaInfo( InstancePoolStrategy.ATOMIC );
+        module.transients( SynchronizedCounter.class ).setMetaInfo( InstancePoolStrategy.SYNCHRONIZED );
+        module.transients( ThreadLocalCounter.class ).setMetaInfo( InstancePoolStrategy.THREAD_LOCAL );
+        module.transients( StripedCounter.class ).setMetaInfo( InstancePoolStrategy.STRIPED );
+        module.transients( UnpooledCounter.class ).setMetaInfo( InstancePoolStrategy.NONE );
+    }
+
+    @Test
+    public void givenAtomicPoolWhenInvokingConcurrentlyExpectNoSharedInvocationChains()
+        throws Exception
+    {
+        assertInvocations( AtomicCounter.class );
+    }
+
+    @Test
+    public void givenSynchronizedPoolWhenInvokingConcurrentlyExpectNoSharedInvocationChains()
+        throws Exception
+    {
+        assertInvocations( SynchronizedCounter.class );
+    }
+
+    @Test
+    public void givenThreadLocalPoolWhenInvokingConcurrentlyExpectNoSharedInvocationChains()
+        throws Exception
+    {
+        assertInvocations( ThreadLocalCounter.class );
+    }
+
+    @Test
+    public void givenStripedPoolWhenInvokingConcurrentlyExpectNoSharedInvocationChains()
+        throws Exception
+    {
+        assertInvocations( StripedCounter.class );
+    }
+
+    @Test
+    public void givenNoPoolWhenInvokingConcurrentlyExpectNoSharedInvocationChains()
+        throws Exception
+    {
+        assertInvocations( UnpooledCounter.class );
+    }
+
+    private void assertInvocations( Class<? extends Counter> type )
+        throws Exception
+    {
+        SHARED.set( 0 );
+        Counter counter = transientBuilderFactory.newTransient( type );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for( int task = 0; task < 8; task++ )
+            {
+                tasks.add( () -> {
+                    int total = 0;
+                    for( int i = 0; i < 2000; i++ )
+                    {
+                        total += counter.countDown( 5 );
+                    }
+                    return total;
+                } );
+            }
+            for( Future<Integer> result : executor.invokeAll( tasks ) )
+            {
+                assertThat( result.get(), equalTo( 2000 * 6 ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertThat( SHARED.get(), equalTo( 0 ) );
+    }
+
+    @Mixins( CounterMixin.class )
+    @Concerns( ExclusiveConcern.class )
+    public interface Counter
+    {
+        int countDown( int depth );
+    }
+
+    public interface AtomicCounter
+        extends Counter, TransientComposite
+    {
+    }
+
+    public interface SynchronizedCounter
+        extends Counter, TransientComposite
+    {
+    }
+
+    public interface ThreadLocalCounter
+        extends Counter, TransientComposite
+    {
+    }
+
+    public interface StripedCounter
+        extends Counter, TransientComposite
+    {
+    }
+
+    public interface UnpooledCounter
+        extends Counter, TransientComposite
+    {
+    }
+
+    public static class CounterMixin
+        implements Counter
+    {
+        @This
+        private Counter self;
+
+        @Override
+        public int countDown( int depth )
+        {
+            return depth == 0 ? 1 : 1 + self.countDown( depth - 1 );
+        }
+    }
+
+    public static class ExclusiveConcern
+        extends ConcernOf<Counter>
+        implements Counter
+    {
+        private final AtomicInteger callers = new AtomicInteger();
+
+        @Override
+        public int countDown( int depth )
+        {
+            if( callers.incrementAndGet() > 1 )
+            {
+                SHARED.incrementAndGet();
+            }
+            try
+            {
+                return next.countDown( depth );
+            }
+            finally
+            {
+                callers.decrementAndGet();
+            }
+        }
+    }
+}
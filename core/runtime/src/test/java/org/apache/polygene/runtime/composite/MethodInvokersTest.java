@@ -0,0 +1,140 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.runtime.composite;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.fail;
+
+public class MethodInvokersTest
+{
+    @Test
+    public void givenPublicMethodWhenInvokingExpectGeneratedInvoker()
+        throws Throwable
+    {
+        MethodInvoker invoker = MethodInvokers.invokerFor( Calculator.class.getMethod( "add", int.class, long.class ) );
+        assertThat( MethodInvokers.isGenerated( invoker ), is( true ) );
+        assertThat( invoker.invoke( new CalculatorMixin(), new Object[]{ 1, 2L } ), equalTo( 3L ) );
+    }
+
+    @Test
+    public void givenSameMethodWhenAskingTwiceExpectSharedInvoker()
+        throws Exception
+    {
+        Method method = Calculator.class.getMethod( "add", int.class, long.class );
+        assertThat( MethodInvokers.invokerFor( method ), sameInstance( MethodInvokers.invokerFor( method ) ) );
+    }
+
+    @Test
+    public void givenVoidAndArrayMethodsWhenInvokingExpectArgumentsPassed()
+        throws Throwable
+    {
+        CalculatorMixin calculator = new CalculatorMixin();
+        MethodInvoker store = MethodInvokers.invokerFor( Calculator.class.getMethod( "store", double[].class, boolean.class ) );
+        assertThat( store.invoke( calculator, new Object[]{ new double[]{ 1.5, 2.5 }, true } ), nullValue() );
+        MethodInvoker total = MethodInvokers.invokerFor( Calculator.class.getMethod( "total" ) );
+        assertThat( total.invoke( calculator, null ), equalTo( 4.0 ) );
+    }
+
+    @Test
+    public void givenThrowingMethodWhenInvokingExpectExceptionUnwrapped()
+        throws Throwable
+    {
+        MethodInvoker invoker = MethodInvokers.invokerFor( Calculator.class.getMethod( "fail", String.class ) );
+        try
+        {
+            invoker.invoke( new CalculatorMixin(), new Object[]{ "boom" } );
+            fail( "Expected IOException" );
+        }
+        catch( IOException e )
+        {
+            assertThat( e.getMessage(), equalTo( "boom" ) );
+        }
+    }
+
+    @Test
+    public void givenPackagePrivateTypeWhenInvokingExpectReflectiveInvoker()
+        throws Throwable
+    {
+        MethodInvoker invoker = MethodInvokers.invokerFor( Hidden.class.getMethod( "name" ) );
+        assertThat( MethodInvokers.isGenerated( invoker ), is( false ) );
+        assertThat( invoker.invoke( (Hidden) () -> "hidden", new Object[ 0 ] ), equalTo( "hidden" ) );
+    }
+
+    public interface Calculator
+    {
+        long add( int a, long b );
+
+        void store( double[] values, boolean clear );
+
+        double total();
+
+        String fail( String message )
+            throws IOException;
+    }
+
+    public static class CalculatorMixin
+        implements Calculator
+    {
+        private double total;
+
+        @Override
+        public long add( int a, long b )
+        {
+            return a + b;
+        }
+
+        @Override
+        public void store( double[] values, boolean clear )
+        {
+            if( clear )
+            {
+                total = 0;
+            }
+            for( double value : values )
+            {
+                total += value;
+            }
+        }
+
+        @Override
+        public double total()
+        {
+            return total;
+        }
+
+        @Override
+        public String fail( String message )
+            throws IOException
+        {
+            throw new IOException( message );
+        }
+    }
+
+    interface Hidden
+    {
+        String name();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package org.apache.polygene.runtime.structure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.apache.polygene.api.activation.ActivatorAdapter;
+import org.apache.polygene.api.common.Visibility;
+import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.api.service.ServiceReference;
+import org.apache.polygene.api.structure.Application;
+import org.apache.polygene.api.structure.Module;
+import org.apache.polygene.api.structure.ModuleDescriptor;
+import org.apache.polygene.bootstrap.ApplicationAssembly;
+import org.apache.polygene.bootstrap.Energy4Java;
+import org.apache.polygene.bootstrap.LayerAssembly;
+import org.apache.polygene.bootstrap.LazyModules;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class LazyModulesTest
+{
+    private static final List<String> EVENTS = Collections.synchronizedList( new ArrayList<>() );
+
+    private LazyModules lazyModules;
+    private Application application;
+
+    @Before
+    public void givenLazyModules()
+        throws Exception
+    {
+        EVENTS.clear();
+        lazyModules = new LazyModules();
+        application = new Energy4Java().newApplication(
+            factory -> {
+                ApplicationAssembly assembly = factory.newApplicationAssembly();
+                assembly.setMetaInfo( lazyModules );
+                LayerAssembly layer = assembly.layer( "Layer 1" );
+                layer.module( "Client" ).objects( Client.class );
+                layer.module( "Server" ).services( Greeter.class )
+                     .visibleIn( Visibility.layer )
+                     .withActivators( RecordingActivator.class )
+                     .instantiateOnStartup();
+                layer.module( "Unused" ).services( Greeter.class );
+                return assembly;
+            } );
+        application.activate();
+    }
+
+    @Test
+    public void givenActivatedApplicationExpectNoMaterializedModules()
+        throws Exception
+    {
+        assertThat( lazyModules.materializedModules().isEmpty(), equalTo( true ) );
+        assertThat( EVENTS.isEmpty(), equalTo( true ) );
+        application.passivate();
+    }
+
+    @Test
+    public void givenModuleAccessExpectOnlyUsedModulesMaterializedAndActivated()
+        throws Exception
+    {
+        Module client = application.findModule( "Layer 1", "Client" );
+        String greeting = client.newObject( Client.class ).greet();
+
+        assertThat( greeting, equalTo( "Hello" ) );
+        assertThat( names( lazyModules.materializedModules() ), equalTo( asList( "Client", "Server" ) ) );
+        assertThat( EVENTS, equalTo( asList( "activated" ) ) );
+
+        application.passivate();
+        assertThat( EVENTS, equalTo( asList( "activated", "passivated" ) ) );
+    }
+
+    @Test
+    public void givenConcurrentAccessExpectModuleMaterializedOnce()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            Callable<Module> lookup = () -> application.findModule( "Layer 1", "Server" );
+            List<Future<Module>> modules = executor.invokeAll( Collections.nCopies( 32, lookup ) );
+            Module first = modules.get( 0 ).get();
+            for( Future<Module> module : modules )
+            {
+                assertThat( module.get(), sameInstance( first ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertThat( names( lazyModules.materializedModules() ), equalTo( asList( "Server" ) ) );
+        assertThat( EVENTS, equalTo( asList( "activated" ) ) );
+        application.passivate();
+    }
+
+    private static List<String> names( List<ModuleDescriptor> modules )
+    {
+        return modules.stream().map( ModuleDescriptor::name ).collect( Collectors.toList() );
+    }
+
+    public static class Client
+    {
+        @Service
+        Greeter greeter;
+
+        public String greet()
+        {
+            return greeter.greet();
+        }
+    }
+
+    @Mixins( Greeter.Mixin.class )
+    public interface Greeter
+    {
+        String greet();
+
+        class Mixin
+            implements Greeter
+        {
+            @Override
+            public String greet()
+            {
+                return "Hello";
+            }
+        }
+    }
+
+    public static class RecordingActivator
+        extends ActivatorAdapter<ServiceReference<Greeter>>
+    {
+        @Override
+        public void afterActivation( ServiceReference<Greeter> activated )
+        {
+            EVENTS.add( "activated" );
+        }
+
+        @Override
+        public void afterPassivation( ServiceReference<Greeter> passivated )
+        {
+            EVENTS.add( "passivated" );
+        }
+    }
+}
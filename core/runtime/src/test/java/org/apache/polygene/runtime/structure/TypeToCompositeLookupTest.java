@@ -390,4 +390,28 @@ public class TypeToCompositeLookupTest
         assertFalse( foos.hasNext() );
     }
 
+    @Test
+    public void typeLookupOfUnassembledTypes()
+        throws ActivationException, AssemblyException
+    {
+        Module module = new SingletonAssembler()
+        {
+
+            @Override
+            public void assemble( ModuleAssembly module )
+                throws AssemblyException
+            {
+                module.services( BasicFoo.class );
+                module.values( BasicFoo.class );
+            }
+
+        }.module();
+
+        assertEquals( null, module.typeLookup().lookupServiceModel( Runnable.class ) );
+        assertEquals( 0, module.typeLookup().lookupServiceModels( Runnable.class ).size() );
+        assertEquals( null, module.typeLookup().lookupValueModel( SomeOtherFoo.class ) );
+        assertEquals( 0, module.typeLookup().lookupEntityModels( BasicFoo.class ).size() );
+        assertEquals( BasicFoo.class, module.typeLookup().lookupValueModel( Foo.class ).primaryType() );
+    }
+
 }
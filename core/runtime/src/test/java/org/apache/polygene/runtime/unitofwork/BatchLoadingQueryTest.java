@@ -0,0 +1,229 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+
+package org.apache.polygene.runtime.unitofwork;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.apache.polygene.api.composite.Composite;
+import org.apache.polygene.api.entity.EntityBuilder;
+import org.apache.polygene.api.entity.EntityComposite;
+import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.api.identity.StringIdentity;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.query.grammar.OrderBy;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkOptions;
+import org.apache.polygene.api.usecase.UsecaseBuilder;
+import org.apache.polygene.bootstrap.AssemblyException;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.entitystore.memory.MemoryEntityStoreService;
+import org.apache.polygene.entitystore.memory.MemoryMapEntityStoreMixin;
+import org.apache.polygene.spi.entitystore.EntityNotFoundException;
+import org.apache.polygene.spi.query.EntityFinder;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Test;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Assert that query results are loaded in batches and keep the order given by the EntityFinder.
+ */
+public class BatchLoadingQueryTest
+    extends AbstractPolygeneTest
+{
+    private static final List<EntityReference> FOUND = new ArrayList<>();
+    private static final AtomicInteger GETS = new AtomicInteger();
+    private static final AtomicInteger GET_ALLS = new AtomicInteger();
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        module.services( CountingEntityStoreService.class );
+        module.defaultServices();
+        module.entities( Named.class );
+        module.services( StubEntityFinder.class );
+    }
+
+    @Test
+    public void givenQueryResultsWithMissingEntitiesWhenStreamingInBatchesThenKeepOrder()
+        throws Exception
+    {
+        createNamed( "a", "b", "c", "d", "e" );
+        found( "e", "a", "missing", "d", "b", "c" );
+
+        UnitOfWorkOptions options = new UnitOfWorkOptions( false, 2 );
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork( UsecaseBuilder.buildUsecase( "batch" )
+                                                                              .withMetaInfo( options )
+                                                                              .newUsecase() ) )
+        {
+            List<String> names = uow.newQuery( queryBuilderFactory.newQueryBuilder( Named.class ) )
+                                    .stream()
+                                    .map( named -> named == null ? null : named.name().get() )
+                                    .collect( toList() );
+            assertThat( names, equalTo( Arrays.asList( "e", "a", null, "d", "b", "c" ) ) );
+        }
+        // Each batch of two references is fetched with a single getAll() instead of two get(),
+        // only the missing entity is looked up again on its own
+        assertThat( GET_ALLS.get(), equalTo( 3 ) );
+        assertThat( GETS.get(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void givenMaxLoadedEntitiesBelowBatchSizeWhenStreamingThenBatchesAreNotEvictedBeforeIterated()
+        throws Exception
+    {
+        createNamed( "a", "b", "c", "d", "e", "f" );
+        found( "a", "b", "c", "d", "e", "f" );
+
+        UnitOfWorkOptions options = new UnitOfWorkOptions( false, 4, 2 );
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork( UsecaseBuilder.buildUsecase( "batch" )
+                                                                              .withMetaInfo( options )
+                                                                              .newUsecase() ) )
+        {
+            List<String> names = uow.newQuery( queryBuilderFactory.newQueryBuilder( Named.class ) )
+                                    .stream()
+                                    .map( named -> named.name().get() )
+                                    .collect( toList() );
+            assertThat( names, equalTo( Arrays.asList( "a", "b", "c", "d", "e", "f" ) ) );
+        }
+        // Batches are capped to the two loaded entities, none is evicted and read again on its own
+        assertThat( GET_ALLS.get(), equalTo( 3 ) );
+        assertThat( GETS.get(), equalTo( 0 ) );
+    }
+
+    private void createNamed( String... names )
+        throws Exception
+    {
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            for( String name : names )
+            {
+                EntityBuilder<Named> builder = uow.newEntityBuilder( Named.class, StringIdentity.identityOf( name ) );
+                builder.instance().name().set( name );
+                builder.newInstance();
+            }
+            uow.complete();
+        }
+    }
+
+    private static void found( String... names )
+    {
+        GETS.set( 0 );
+        GET_ALLS.set( 0 );
+        FOUND.clear();
+        for( String name : names )
+        {
+            FOUND.add( EntityReference.parseEntityReference( name ) );
+        }
+    }
+
+    public interface Named
+        extends EntityComposite
+    {
+        Property<String> name();
+    }
+
+    @Mixins( CountingMapEntityStoreMixin.class )
+    public interface CountingEntityStoreService
+        extends MemoryEntityStoreService
+    {
+    }
+
+    /**
+     * Counts the round trips to the store, getAll() reads the in-memory states without going through get().
+     */
+    public static class CountingMapEntityStoreMixin
+        extends MemoryMapEntityStoreMixin
+    {
+        @Override
+        public Reader get( EntityReference entityReference )
+        {
+            GETS.incrementAndGet();
+            return super.get( entityReference );
+        }
+
+        @Override
+        public Stream<Reader> getAll( Collection<EntityReference> entityReferences )
+        {
+            GET_ALLS.incrementAndGet();
+            List<Reader> states = new ArrayList<>();
+            for( EntityReference entityReference : entityReferences )
+            {
+                try
+                {
+                    states.add( super.get( entityReference ) );
+                }
+                catch( EntityNotFoundException ignored )
+                {
+                    // Skip missing entities
+                }
+            }
+            return states.stream();
+        }
+    }
+
+    @Mixins( StubEntityFinder.Mixin.class )
+    public interface StubEntityFinder
+        extends EntityFinder
+    {
+        class Mixin
+            implements EntityFinder
+        {
+            @Override
+            public Stream<EntityReference> findEntities( Class<?> resultType,
+                                                         Predicate<Composite> whereClause,
+                                                         List<OrderBy> orderBySegments,
+                                                         Integer firstResult,
+                                                         Integer maxResults,
+                                                         Map<String, Object> variables )
+            {
+                return FOUND.stream();
+            }
+
+            @Override
+            public EntityReference findEntity( Class<?> resultType,
+                                               Predicate<Composite> whereClause,
+                                               Map<String, Object> variables )
+            {
+                return FOUND.isEmpty() ? null : FOUND.get( 0 );
+            }
+
+            @Override
+            public long countEntities( Class<?> resultType,
+                                       Predicate<Composite> whereClause,
+                                       Map<String, Object> variables )
+            {
+                return FOUND.size();
+            }
+        }
+    }
+}
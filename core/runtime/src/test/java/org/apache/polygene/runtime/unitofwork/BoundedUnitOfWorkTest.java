@@ -0,0 +1,127 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package org.apache.polygene.runtime.unitofwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.polygene.api.entity.EntityBuilder;
+import org.apache.polygene.api.identity.HasIdentity;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkCompletionException;
+import org.apache.polygene.api.unitofwork.UnitOfWorkException;
+import org.apache.polygene.api.unitofwork.UnitOfWorkOptions;
+import org.apache.polygene.api.usecase.Usecase;
+import org.apache.polygene.api.usecase.UsecaseBuilder;
+import org.apache.polygene.bootstrap.AssemblyException;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.apache.polygene.test.EntityTestAssembler;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Assert that UnitOfWorks with a bounded number of loaded entities evict clean ones and keep modified ones.
+ */
+public class BoundedUnitOfWorkTest
+    extends AbstractPolygeneTest
+{
+    private static final Usecase BULK = UsecaseBuilder.buildUsecase( "bulk" )
+                                                      .withMetaInfo( new UnitOfWorkOptions( false, 100, 2 ) )
+                                                      .newUsecase();
+
+    public interface TestEntity
+        extends HasIdentity
+    {
+        Property<String> name();
+    }
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+        module.entities( TestEntity.class );
+    }
+
+    private final List<Identity> identities = new ArrayList<>();
+
+    @Before
+    public void givenEntities()
+        throws UnitOfWorkCompletionException
+    {
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            for( int i = 0; i < 5; i++ )
+            {
+                EntityBuilder<TestEntity> builder = uow.newEntityBuilder( TestEntity.class );
+                builder.instance().name().set( "Entity " + i );
+                identities.add( builder.newInstance().identity().get() );
+            }
+            uow.complete();
+        }
+    }
+
+    @Test
+    public void givenBulkUnitOfWorkWhenLoadingMoreThanBoundExpectModifiedEntitiesKept()
+        throws UnitOfWorkCompletionException
+    {
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork( BULK ) )
+        {
+            uow.get( TestEntity.class, identities.get( 0 ) ).name().set( "Modified" );
+            for( Identity identity : identities )
+            {
+                uow.get( TestEntity.class, identity ).name().get();
+            }
+            uow.complete();
+        }
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            assertThat( uow.get( TestEntity.class, identities.get( 0 ) ).name().get(), equalTo( "Modified" ) );
+        }
+    }
+
+    @Test
+    public void givenEvictedEntityWhenUsedExpectExceptionAndGetAgainWorks()
+    {
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork( BULK ) )
+        {
+            TestEntity first = uow.get( TestEntity.class, identities.get( 0 ) );
+            first.name().get();
+            uow.get( TestEntity.class, identities.get( 1 ) );
+            uow.get( TestEntity.class, identities.get( 2 ) );
+            try
+            {
+                first.name().get();
+                fail( "Evicted entity should not be usable" );
+            }
+            catch( UnitOfWorkException expected )
+            {
+                // Expected
+            }
+            assertThat( uow.get( TestEntity.class, identities.get( 0 ) ).name().get(), equalTo( "Entity 0" ) );
+        }
+    }
+}
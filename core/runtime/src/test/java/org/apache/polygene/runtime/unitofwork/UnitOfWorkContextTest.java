@@ -0,0 +1,210 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package org.apache.polygene.runtime.unitofwork;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.polygene.api.entity.EntityBuilder;
+import org.apache.polygene.api.identity.HasIdentity;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkException;
+import org.apache.polygene.bootstrap.ApplicationAssembly;
+import org.apache.polygene.bootstrap.AssemblyException;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.bootstrap.UnitOfWorkContext;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.apache.polygene.test.EntityTestAssembler;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Assert that the current UnitOfWork follows explicit bindings and out of order completion.
+ * <p>
+ * Runs with the {@link UnitOfWorkContext#SCOPED} context, {@link ThreadLocalUnitOfWorkContextTest} runs the same
+ * assertions with the default one.
+ * </p>
+ */
+public class UnitOfWorkContextTest
+    extends AbstractPolygeneTest
+{
+    public interface TestEntity
+        extends HasIdentity
+    {
+        Property<String> name();
+    }
+
+    @Override
+    protected void defineApplication( ApplicationAssembly applicationAssembly )
+    {
+        applicationAssembly.setMetaInfo( unitOfWorkContext() );
+        super.defineApplication( applicationAssembly );
+    }
+
+    protected UnitOfWorkContext unitOfWorkContext()
+    {
+        return UnitOfWorkContext.SCOPED;
+    }
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new EntityTestAssembler().assemble( module );
+        module.entities( TestEntity.class );
+    }
+
+    @Test
+    public void givenUnitOfWorkBoundInAsyncStageExpectItCurrentInThatStageOnly()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            EntityBuilder<TestEntity> builder = uow.newEntityBuilder( TestEntity.class );
+            builder.instance().name().set( "Async" );
+            Identity identity = builder.newInstance().identity().get();
+
+            String name = CompletableFuture.supplyAsync(
+                () -> unitOfWorkFactory.withUnitOfWork(
+                    uow, () -> unitOfWorkFactory.currentUnitOfWork().get( TestEntity.class, identity ).name().get() ),
+                executor ).get();
+            boolean activeAfterwards = CompletableFuture.supplyAsync( unitOfWorkFactory::isUnitOfWorkActive,
+                                                                      executor ).get();
+
+            assertThat( name, equalTo( "Async" ) );
+            assertThat( activeAfterwards, is( false ) );
+            assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( uow ) );
+            uow.complete();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenBoundUnitOfWorkExpectPreviousOnesRestored()
+    {
+        try( UnitOfWork outer = unitOfWorkFactory.newUnitOfWork();
+             UnitOfWork other = unitOfWorkFactory.newUnitOfWork() )
+        {
+            other.pause();
+            unitOfWorkFactory.withUnitOfWork(
+                other, () -> assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( other ) ) );
+            assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( outer ) );
+        }
+    }
+
+    @Test
+    public void givenNestedBindingsExpectEachOneRestored()
+    {
+        try( UnitOfWork outer = unitOfWorkFactory.newUnitOfWork();
+             UnitOfWork first = unitOfWorkFactory.newUnitOfWork();
+             UnitOfWork second = unitOfWorkFactory.newUnitOfWork() )
+        {
+            second.pause();
+            first.pause();
+            unitOfWorkFactory.withUnitOfWork( first, () ->
+            {
+                assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( first ) );
+                unitOfWorkFactory.withUnitOfWork(
+                    second, () -> assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( second ) ) );
+                assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( first ) );
+            } );
+            assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( outer ) );
+        }
+    }
+
+    @Test
+    public void givenFailingTaskExpectPreviousOnesRestored()
+    {
+        try( UnitOfWork outer = unitOfWorkFactory.newUnitOfWork();
+             UnitOfWork other = unitOfWorkFactory.newUnitOfWork() )
+        {
+            other.pause();
+            try
+            {
+                unitOfWorkFactory.withUnitOfWork( other, () ->
+                {
+                    throw new IllegalStateException( "Failing task" );
+                } );
+                fail( "Expected IllegalStateException" );
+            }
+            catch( IllegalStateException expected )
+            {
+                // The binding is undone
+            }
+            assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( outer ) );
+        }
+    }
+
+    @Test
+    public void givenBoundUnitOfWorkExpectNoneCurrentInOtherThreads()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            uow.pause();
+            boolean activeElsewhere = unitOfWorkFactory.withUnitOfWork(
+                uow, () -> CompletableFuture.supplyAsync( unitOfWorkFactory::isUnitOfWorkActive, executor ).join() );
+
+            assertThat( activeElsewhere, is( false ) );
+            assertThat( unitOfWorkFactory.isUnitOfWorkActive(), is( false ) );
+            uow.resume();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void givenUnitOfWorksClosedOutOfOrderExpectRemainingOneCurrent()
+    {
+        UnitOfWork outer = unitOfWorkFactory.newUnitOfWork();
+        UnitOfWork inner = unitOfWorkFactory.newUnitOfWork();
+        outer.discard();
+        assertThat( unitOfWorkFactory.currentUnitOfWork(), equalTo( inner ) );
+        inner.discard();
+    }
+
+    @Test( expected = UnitOfWorkException.class )
+    public void givenClosedUnitOfWorkWhenBindingExpectException()
+    {
+        UnitOfWork uow = unitOfWorkFactory.newUnitOfWork();
+        uow.discard();
+        unitOfWorkFactory.withUnitOfWork( uow, () -> {} );
+    }
+
+    @After
+    public void afterEachTest()
+    {
+        assertThat( unitOfWorkFactory.isUnitOfWorkActive(), is( false ) );
+    }
+}
@@ -24,35 +24,51 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Stream;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
 import org.apache.polygene.api.entity.EntityDescriptor;
 import org.apache.polygene.api.entity.EntityReference;
 import org.apache.polygene.api.injection.scope.Service;
 import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
 import org.apache.polygene.spi.entitystore.BackupRestore;
+import org.apache.polygene.spi.entitystore.ConcurrentEntityStateModificationException;
 import org.apache.polygene.spi.entitystore.EntityAlreadyExistsException;
 import org.apache.polygene.spi.entitystore.EntityNotFoundException;
 import org.apache.polygene.spi.entitystore.EntityStoreException;
 import org.apache.polygene.spi.entitystore.helpers.JSONKeys;
+import org.apache.polygene.spi.entitystore.helpers.JSONStateReader;
 import org.apache.polygene.spi.entitystore.helpers.MapEntityStore;
 import org.apache.polygene.spi.entitystore.helpers.MapEntityStoreActivation;
 
 /**
  * In-memory implementation of MapEntityStore.
+ * <p>
+ * Entities are kept parsed in a {@link ConcurrentHashMap} and handed out as {@link JSONStateReader}s, so reads
+ * neither lock nor parse.
+ * </p>
+ * <p>
+ * Changes of a UnitOfWork are collected first and then applied entity by entity with compare-and-set, checking
+ * the version each updated entity was loaded with. If any of them fails, the already applied ones are rolled back
+ * so that the UnitOfWork is applied entirely or not at all.
+ * </p>
  */
 public class MemoryMapEntityStoreMixin
     implements MapEntityStore, BackupRestore, MapEntityStoreActivation
 {
-    private final Map<EntityReference, String> store;
+    private final ConcurrentMap<EntityReference, JsonObject> store;
 
     @Service
     private JavaxJsonFactories jsonFactories;
 
     public MemoryMapEntityStoreMixin()
     {
-        store = new HashMap<>();
+        store = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -66,31 +82,33 @@ public class MemoryMapEntityStoreMixin
     @Override
     public Reader get( EntityReference entityReference ) throws EntityStoreException
     {
-        String state = store.get( entityReference );
+        JsonObject state = store.get( entityReference );
         if( state == null )
         {
             throw new EntityNotFoundException( entityReference );
         }
 
-        return new StringReader( state );
+        return new JSONStateReader( state );
     }
 
     @Override
     public void applyChanges( MapEntityStore.MapChanges changes ) throws Exception
     {
-        changes.visitMap( new MemoryMapChanger() );
+        MemoryMapChanger changer = new MemoryMapChanger();
+        changes.visitMap( changer );
+        changer.apply();
     }
 
     @Override
     public Stream<Reader> entityStates()
     {
-        return store.values().stream().map( StringReader::new );
+        return store.values().stream().map( JSONStateReader::new );
     }
 
     @Override
     public Stream<String> backup()
     {
-        return store.values().stream();
+        return store.values().stream().map( JsonObject::toString );
     }
 
     @Override
@@ -100,15 +118,27 @@ public class MemoryMapEntityStoreMixin
         stream.forEach(
             item ->
             {
-                String id = jsonFactories.readerFactory().createReader( new StringReader( item ) )
-                                         .readObject().getString( JSONKeys.IDENTITY );
-                store.put( EntityReference.parseEntityReference( id ), item );
+                JsonObject state = parse( item );
+                store.put( EntityReference.parseEntityReference( state.getString( JSONKeys.IDENTITY ) ), state );
             } );
     }
 
+    private JsonObject parse( String state )
+    {
+        try( JsonReader reader = jsonFactories.readerFactory().createReader( new StringReader( state ) ) )
+        {
+            return reader.readObject();
+        }
+    }
+
+    /**
+     * Collects the changes of a UnitOfWork and applies them all at once.
+     */
     private class MemoryMapChanger
         implements MapChanger
     {
+        private final List<Change> changes = new ArrayList<>();
+
         @Override
         public Writer newEntity( EntityReference ref, EntityDescriptor descriptor )
         {
@@ -119,12 +149,7 @@ public class MemoryMapEntityStoreMixin
                     throws IOException
                 {
                     super.close();
-                    String old = store.put( ref, toString() );
-                    if( old != null )
-                    {
-                        store.put( ref, old );
-                        throw new EntityAlreadyExistsException( ref );
-                    }
+                    changes.add( new Change( ref, null, parse( toString() ) ) );
                 }
             };
         }
@@ -140,13 +165,7 @@ public class MemoryMapEntityStoreMixin
                     throws IOException
                 {
                     super.close();
-                    EntityReference reference = mapChange.reference();
-                    String old = store.put( reference, toString() );
-                    if( old == null )
-                    {
-                        store.remove( reference );
-                        throw new EntityNotFoundException( reference );
-                    }
+                    changes.add( new Change( mapChange, parse( toString() ) ) );
                 }
             };
         }
@@ -155,13 +174,109 @@ public class MemoryMapEntityStoreMixin
         public void removeEntity( EntityReference ref, EntityDescriptor descriptor )
             throws EntityNotFoundException
         {
-            String state = store.remove( ref );
             // Ignore if the entity didn't already exist, as that can happen if it is both created and removed
             // within the same UnitOfWork.
-//            if( state == null )
-//            {
-//                throw new EntityNotFoundException( ref );
-//            }
+            changes.add( new Change( ref, null, null ) );
+        }
+
+        private void apply()
+        {
+            List<Change> applied = new ArrayList<>( changes.size() );
+            try
+            {
+                for( Change change : changes )
+                {
+                    if( change.apply() )
+                    {
+                        applied.add( change );
+                    }
+                }
+            }
+            catch( RuntimeException ex )
+            {
+                Collections.reverse( applied );
+                applied.forEach( Change::rollback );
+                throw ex;
+            }
+        }
+    }
+
+    private class Change
+    {
+        private final EntityReference reference;
+        private final MapChange mapChange;
+        private final JsonObject newState;
+        private JsonObject previousState;
+
+        private Change( EntityReference reference, MapChange mapChange, JsonObject newState )
+        {
+            this.reference = reference;
+            this.mapChange = mapChange;
+            this.newState = newState;
+        }
+
+        private Change( MapChange mapChange, JsonObject newState )
+        {
+            this( mapChange.reference(), mapChange, newState );
+        }
+
+        /**
+         * @return true if the store was changed, false otherwise
+         */
+        private boolean apply()
+        {
+            if( newState == null )
+            {
+                previousState = store.remove( reference );
+                return previousState != null;
+            }
+            if( mapChange == null )
+            {
+                if( store.putIfAbsent( reference, newState ) != null )
+                {
+                    throw new EntityAlreadyExistsException( reference );
+                }
+                return true;
+            }
+            while( true )
+            {
+                JsonObject current = store.get( reference );
+                if( current == null )
+                {
+                    throw new EntityNotFoundException( reference );
+                }
+                String previousVersion = mapChange.previousVersion();
+                if( previousVersion != null && !previousVersion.equals( current.getString( JSONKeys.VERSION, null ) ) )
+                {
+                    if( previousVersion.equals( mapChange.newVersion() ) )
+                    {
+                        // Write back of a migrated entity that has been updated since it was read, keep the update
+                        return false;
+                    }
+                    throw new ConcurrentEntityStateModificationException( Collections.singletonList( reference ) );
+                }
+                if( store.replace( reference, current, newState ) )
+                {
+                    previousState = current;
+                    return true;
+                }
+            }
+        }
+
+        private void rollback()
+        {
+            if( previousState == null )
+            {
+                store.remove( reference, newState );
+            }
+            else if( newState == null )
+            {
+                store.putIfAbsent( reference, previousState );
+            }
+            else
+            {
+                store.replace( reference, newState, previousState );
+            }
         }
     }
 }
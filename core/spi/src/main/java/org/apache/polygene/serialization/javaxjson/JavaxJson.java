@@ -17,12 +17,19 @@
  */
 package org.apache.polygene.serialization.javaxjson;
 
+import java.math.BigDecimal;
+import java.util.Collections;
+import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
 import javax.json.JsonException;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import javax.json.JsonString;
 import javax.json.JsonStructure;
 import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
 
 /**
  * javax.json utilities.
@@ -88,5 +95,82 @@ public class JavaxJson
         return (JsonArray) json;
     }
 
+    /**
+     * Read the next value of a {@link JsonParser}, using the default {@link JsonBuilderFactory}.
+     *
+     * The parser must be positioned right before the value and is left on its last event.
+     *
+     * @param parser the JSON parser
+     * @return the JSON value
+     * @throws JsonException if the next event is not the start of a value
+     */
+    public static JsonValue readJsonValue( JsonParser parser )
+    {
+        return readJsonValue( DefaultBuilderFactory.INSTANCE, parser, parser.next() );
+    }
+
+    /**
+     * Read the current value of a {@link JsonParser}.
+     *
+     * Same as {@literal JsonParser#getValue()} which is optional and not supported by all providers.
+     * The parser is left on the last event of the value.
+     *
+     * @param builderFactory the factory of the builders used to create values
+     * @param parser the JSON parser
+     * @param event the current parser event
+     * @return the JSON value
+     * @throws JsonException if the event is not the start of a value
+     */
+    public static JsonValue readJsonValue( JsonBuilderFactory builderFactory, JsonParser parser,
+                                           JsonParser.Event event )
+    {
+        switch( event )
+        {
+            case START_OBJECT:
+                JsonObjectBuilder objectBuilder = builderFactory.createObjectBuilder();
+                while( parser.next() != JsonParser.Event.END_OBJECT )
+                {
+                    String name = parser.getString();
+                    objectBuilder.add( name, readJsonValue( builderFactory, parser, parser.next() ) );
+                }
+                return objectBuilder.build();
+            case START_ARRAY:
+                JsonArrayBuilder arrayBuilder = builderFactory.createArrayBuilder();
+                JsonParser.Event next;
+                while( ( next = parser.next() ) != JsonParser.Event.END_ARRAY )
+                {
+                    arrayBuilder.add( readJsonValue( builderFactory, parser, next ) );
+                }
+                return arrayBuilder.build();
+            case VALUE_STRING:
+                return builderFactory.createArrayBuilder().add( parser.getString() ).build().get( 0 );
+            case VALUE_NUMBER:
+                BigDecimal number = parser.getBigDecimal();
+                JsonArrayBuilder numberBuilder = builderFactory.createArrayBuilder();
+                if( parser.isIntegralNumber() && number.scale() == 0 && number.unscaledValue().bitLength() < 64 )
+                {
+                    numberBuilder.add( number.longValue() );
+                }
+                else
+                {
+                    numberBuilder.add( number );
+                }
+                return numberBuilder.build().get( 0 );
+            case VALUE_TRUE:
+                return JsonValue.TRUE;
+            case VALUE_FALSE:
+                return JsonValue.FALSE;
+            case VALUE_NULL:
+                return JsonValue.NULL;
+            default:
+                throw new JsonException( "Expected a JSON value but got " + event );
+        }
+    }
+
+    private static class DefaultBuilderFactory
+    {
+        private static final JsonBuilderFactory INSTANCE = Json.createBuilderFactory( Collections.emptyMap() );
+    }
+
     private JavaxJson() {}
 }
@@ -17,9 +17,10 @@
  */
 package org.apache.polygene.serialization.javaxjson;
 
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import javax.json.JsonNumber;
@@ -53,7 +54,8 @@ public interface JavaxJsonAdapters
     class Mixin implements JavaxJsonAdapters, Initializable
     {
         private final Map<ValueType, JavaxJsonAdapter<?>> adapters = new LinkedHashMap<>();
-        private final Map<ValueType, JavaxJsonAdapter<?>> resolvedAdaptersCache = new HashMap<>();
+        // Shared by all serialization threads, absence of adapter is cached as an empty Optional
+        private final Map<ValueType, Optional<JavaxJsonAdapter<?>>> resolvedAdaptersCache = new ConcurrentHashMap<>();
 
         @Uses
         private ServiceDescriptor descriptor;
@@ -76,25 +78,30 @@ public interface JavaxJsonAdapters
         }
 
         @Override
-        public void registerAdapter( ValueType valueType, JavaxJsonAdapter<?> adapter )
+        public synchronized void registerAdapter( ValueType valueType, JavaxJsonAdapter<?> adapter )
         {
             adapters.put( valueType, adapter );
-            resolvedAdaptersCache.put( valueType, adapter );
+            // The new adapter may be closer to already resolved types
+            resolvedAdaptersCache.clear();
+            resolvedAdaptersCache.put( valueType, Optional.of( adapter ) );
         }
 
         @Override
         public <T> JavaxJsonAdapter<T> adapterFor( ValueType valueType )
         {
-            if( resolvedAdaptersCache.containsKey( valueType ) )
+            Optional<JavaxJsonAdapter<?>> resolved = resolvedAdaptersCache.get( valueType );
+            if( resolved == null )
             {
-                return castAdapter( resolvedAdaptersCache.get( valueType ) );
+                synchronized( this )
+                {
+                    resolved = resolvedAdaptersCache.computeIfAbsent(
+                        valueType, type -> Optional.ofNullable( adapters.keySet().stream()
+                                                                        .collect( closestType( type ) )
+                                                                        .map( adapters::get )
+                                                                        .orElse( null ) ) );
+                }
             }
-            JavaxJsonAdapter<T> adapter = castAdapter( adapters.keySet().stream()
-                                                               .collect( closestType( valueType ) )
-                                                               .map( adapters::get )
-                                                               .orElse( null ) );
-            resolvedAdaptersCache.put( valueType, adapter );
-            return adapter;
+            return castAdapter( resolved.orElse( null ) );
         }
 
         @SuppressWarnings( "unchecked" )
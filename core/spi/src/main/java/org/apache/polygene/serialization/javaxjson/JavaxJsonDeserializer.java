@@ -19,6 +19,7 @@ package org.apache.polygene.serialization.javaxjson;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PushbackReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.UncheckedIOException;
@@ -27,6 +28,7 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -36,6 +38,7 @@ import java.util.function.Function;
 import java.util.stream.Stream;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonString;
 import javax.json.JsonStructure;
@@ -63,6 +66,8 @@ import org.apache.polygene.api.type.ValueType;
 import org.apache.polygene.api.value.ValueBuilder;
 import org.apache.polygene.spi.serialization.AbstractTextDeserializer;
 import org.apache.polygene.spi.serialization.JsonDeserializer;
+import org.apache.polygene.spi.serialization.StatefulValueCodec;
+import org.apache.polygene.spi.serialization.StatefulValueCodecs;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.unmodifiableList;
@@ -72,6 +77,7 @@ import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toCollection;
 import static org.apache.polygene.api.util.Collectors.toMapWithNullValues;
 import static org.apache.polygene.serialization.javaxjson.JavaxJson.asString;
+import static org.apache.polygene.serialization.javaxjson.JavaxJson.readJsonValue;
 import static org.apache.polygene.serialization.javaxjson.JavaxJson.requireJsonArray;
 import static org.apache.polygene.serialization.javaxjson.JavaxJson.requireJsonObject;
 import static org.apache.polygene.serialization.javaxjson.JavaxJson.requireJsonStructure;
@@ -93,6 +99,7 @@ public class JavaxJsonDeserializer extends AbstractTextDeserializer
 
     private JavaxJsonSettings settings;
     private JsonString emptyJsonString;
+    private StatefulValueCodecs<JavaxJsonAdapter<?>> codecs;
 
     @Override
     public void initialize() throws Exception
@@ -100,10 +107,44 @@ public class JavaxJsonDeserializer extends AbstractTextDeserializer
         settings = JavaxJsonSettings.orDefault( descriptor.metaInfo( JavaxJsonSettings.class ) );
         emptyJsonString = jsonFactories.builderFactory().createObjectBuilder().add( "s", "" ).build()
                                        .getJsonString( "s" );
+        codecs = new StatefulValueCodecs<>( converters, adapters::adapterFor );
     }
 
     @Override
     public <T> T deserialize( ModuleDescriptor module, ValueType valueType, Reader state )
+    {
+        // JSON structures are streamed, anything else is handled as a whole
+        StringBuilder leading = new StringBuilder();
+        PushbackReader reader = new PushbackReader( state );
+        try
+        {
+            int first = reader.read();
+            while( first != -1 && Character.isWhitespace( first ) )
+            {
+                leading.append( (char) first );
+                first = reader.read();
+            }
+            if( first != -1 )
+            {
+                reader.unread( first );
+            }
+            if( first == '{' || first == '[' )
+            {
+                try( JsonParser parser = jsonFactories.parserFactory().createParser( reader ) )
+                {
+                    return fromJson( module, valueType, parser );
+                }
+            }
+        }
+        catch( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+        return deserializeNonStructure( module, valueType, leading, reader );
+    }
+
+    private <T> T deserializeNonStructure( ModuleDescriptor module, ValueType valueType,
+                                           CharSequence leading, Reader state )
     {
         // JSR-353 Does not allow reading "out of structure" values
         // See https://www.jcp.org/en/jsr/detail?id=353
@@ -117,7 +158,7 @@ public class JavaxJsonDeserializer extends AbstractTextDeserializer
         String stateString;
         try( BufferedReader buffer = new BufferedReader( state ) )
         {
-            stateString = buffer.lines().collect( joining( "\n" ) );
+            stateString = leading + buffer.lines().collect( joining( "\n" ) );
         }
         catch( IOException ex )
         {
@@ -182,6 +223,12 @@ public class JavaxJsonDeserializer extends AbstractTextDeserializer
         return doDeserialize( module, valueType, state );
     }
 
+    @Override
+    public <T> T fromJson( ModuleDescriptor module, ValueType valueType, JsonParser parser )
+    {
+        return doDeserialize( module, valueType, parser, parser.next() );
+    }
+
     @SuppressWarnings( "unchecked" )
     private <T> T doDeserialize( ModuleDescriptor module, ValueType valueType, JsonValue json )
     {
@@ -264,13 +311,13 @@ public class JavaxJsonDeserializer extends AbstractTextDeserializer
         }
     }
 
-    private <T> Collection<T> deserializeCollection( ModuleDescriptor module, CollectionType collectionType,
-                                                     JsonArray json )
+    private Collection<Object> deserializeCollection( ModuleDescriptor module, CollectionType collectionType,
+                                                      JsonArray json )
     {
-        return (Collection<T>) json.stream()
-                                   .map( item -> doDeserialize( module, collectionType.collectedType(), item ) )
-                                   .collect( toCollection(
-                                       () -> collectionType.isSet() ? new LinkedHashSet<>() : new ArrayList<>() ) );
+        return json.stream()
+                   .map( item -> doDeserialize( module, collectionType.collectedType(), item ) )
+                   .collect( toCollection(
+                       () -> collectionType.isSet() ? new LinkedHashSet<>() : new ArrayList<>() ) );
     }
 
     /**
@@ -322,51 +369,68 @@ public class JavaxJsonDeserializer extends AbstractTextDeserializer
         }
         ValueBuilder builder = module.instance().newValueBuilderWithState(
             valueType.primaryType(),
-            propertyFunction( valueType.module(), json ),
+            propertyFunction( valueType.module(), codecs.codecFor( valueType ), json ),
             associationFunction( valueType.module(), json ),
             manyAssociationFunction( valueType.module(), json ),
             namedAssociationFunction( valueType.module(), json ) );
         return builder.newInstance();
     }
 
-    private Function<PropertyDescriptor, Object> propertyFunction( ModuleDescriptor module, JsonObject object )
+    private Function<PropertyDescriptor, Object> propertyFunction( ModuleDescriptor module,
+                                                                   StatefulValueCodec<JavaxJsonAdapter<?>> codec,
+                                                                   JsonObject object )
     {
         return property ->
         {
-            JsonValue jsonValue = object.get( property.qualifiedName().name() );
+            StatefulValueCodec.Member<JavaxJsonAdapter<?>> member = codec.member( property.qualifiedName().name() );
+            JsonValue jsonValue = object.get( member.name() );
             if( jsonValue != null )
             {
-                Object value;
-                Converter converter = converters.converterFor( property );
-                if( converter != null )
-                {
-                    value = converter.fromString( doDeserialize( module, ValueType.STRING, jsonValue ) );
-                }
-                else
-                {
-                    value = doDeserialize( module, property.valueType(), jsonValue );
-                }
-                if( property.isImmutable() )
-                {
-                    if( value instanceof Set )
-                    {
-                        return unmodifiableSet( (Set<?>) value );
-                    }
-                    else if( value instanceof List )
-                    {
-                        return unmodifiableList( (List<?>) value );
-                    }
-                    else if( value instanceof Map )
-                    {
-                        return unmodifiableMap( (Map<?, ?>) value );
-                    }
-                }
-                return value;
+                return immutable( property, memberValue( module, member, jsonValue ) );
             }
             return property.resolveInitialValue( module );
         };
     }
 
+    private Object memberValue( ModuleDescriptor module, StatefulValueCodec.Member<JavaxJsonAdapter<?>> member,
+                                JsonValue jsonValue )
+    {
+        Object value;
+        if( member.adapter() != null && !JsonValue.NULL.equals( jsonValue ) )
+        {
+            value = member.adapter().deserialize( jsonValue, ( json, type ) -> doDeserialize( module, type, json ) );
+        }
+        else
+        {
+            value = doDeserialize( module, member.valueType(), jsonValue );
+        }
+        if( member.converter() != null )
+        {
+            return member.converter().fromString( (String) value );
+        }
+        return value;
+    }
+
+    private Object immutable( PropertyDescriptor property, Object value )
+    {
+        if( property.isImmutable() )
+        {
+            if( value instanceof Set )
+            {
+                return unmodifiableSet( (Set<?>) value );
+            }
+            else if( value instanceof List )
+            {
+                return unmodifiableList( (List<?>) value );
+            }
+            else if( value instanceof Map )
+            {
+                return unmodifiableMap( (Map<?, ?>) value );
+            }
+        }
+        return value;
+    }
+
     private Function<AssociationDescriptor, EntityReference> associationFunction( ModuleDescriptor module,
                                                                                   JsonObject object )
     {
@@ -395,4 +459,298 @@ public class JavaxJsonDeserializer extends AbstractTextDeserializer
             return map == null ? Stream.empty() : map.entrySet().stream();
         };
     }
+
+    /**
+     * Streaming counterpart of {@link #doDeserialize(ModuleDescriptor, ValueType, JsonValue)}.
+     *
+     * JSON structures are mapped as parser events come, without building their {@literal JsonValue} tree.
+     * Converted and adapted values, and values whose JSON type is not the one expected, are read as a tree and
+     * handled as before, the parser is then always left on the last event of the value.
+     */
+    @SuppressWarnings( "unchecked" )
+    private <T> T doDeserialize( ModuleDescriptor module, ValueType valueType, JsonParser parser,
+                                 JsonParser.Event event )
+    {
+        if( event == JsonParser.Event.VALUE_NULL )
+        {
+            return null;
+        }
+        if( converters.converterFor( valueType ) == null && adapters.adapterFor( valueType ) == null )
+        {
+            Class<? extends ValueType> valueTypeClass = valueType.getClass();
+            if( event == JsonParser.Event.START_ARRAY )
+            {
+                if( ArrayType.class.isAssignableFrom( valueTypeClass ) )
+                {
+                    return (T) deserializeArray( module, (ArrayType) valueType, parser );
+                }
+                if( CollectionType.class.isAssignableFrom( valueTypeClass ) )
+                {
+                    return (T) deserializeCollection( module, (CollectionType) valueType, parser );
+                }
+                if( MapType.class.isAssignableFrom( valueTypeClass ) )
+                {
+                    return (T) deserializeMapEntries( module, (MapType) valueType, parser );
+                }
+            }
+            if( event == JsonParser.Event.START_OBJECT )
+            {
+                if( MapType.class.isAssignableFrom( valueTypeClass ) )
+                {
+                    return (T) deserializeMap( module, (MapType) valueType, parser );
+                }
+                if( StatefulAssociationValueType.class.isAssignableFrom( valueTypeClass ) )
+                {
+                    return (T) deserializeStatefulAssociationValue( module,
+                                                                    (StatefulAssociationValueType<?>) valueType,
+                                                                    parser );
+                }
+                if( !ArrayType.class.isAssignableFrom( valueTypeClass )
+                    && !CollectionType.class.isAssignableFrom( valueTypeClass ) )
+                {
+                    return doGuessDeserialize( module, valueType, parser );
+                }
+            }
+        }
+        return doDeserialize( module, valueType, readJsonValue( jsonFactories.builderFactory(), parser, event ) );
+    }
+
+    private Object deserializeArray( ModuleDescriptor module, ArrayType arrayType, JsonParser parser )
+    {
+        CollectionType collectionType = CollectionType.listOf( arrayType.collectedType() );
+        Collection<Object> collection = deserializeCollection( module, collectionType, parser );
+        Object array = Array.newInstance( arrayType.collectedType().primaryType(), collection.size() );
+        int idx = 0;
+        for( Object item : collection )
+        {
+            Array.set( array, idx++, item );
+        }
+        return array;
+    }
+
+    private Collection<Object> deserializeCollection( ModuleDescriptor module, CollectionType collectionType,
+                                                 JsonParser parser )
+    {
+        Collection<Object> collection = collectionType.isSet() ? new LinkedHashSet<>() : new ArrayList<>();
+        JsonParser.Event event;
+        while( ( event = parser.next() ) != JsonParser.Event.END_ARRAY )
+        {
+            collection.add( doDeserialize( module, collectionType.collectedType(), parser, event ) );
+        }
+        return collection;
+    }
+
+    private Map<?, ?> deserializeMap( ModuleDescriptor module, MapType mapType, JsonParser parser )
+    {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        while( parser.next() != JsonParser.Event.END_OBJECT )
+        {
+            String key = parser.getString();
+            map.put( key, doDeserialize( module, mapType.valueType(), parser, parser.next() ) );
+        }
+        return map;
+    }
+
+    private Map<?, ?> deserializeMapEntries( ModuleDescriptor module, MapType mapType, JsonParser parser )
+    {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        JsonParser.Event event;
+        while( ( event = parser.next() ) != JsonParser.Event.END_ARRAY )
+        {
+            if( event != JsonParser.Event.START_OBJECT )
+            {
+                throw new SerializationException(
+                    "Don't know how to deserialize " + mapType + " from "
+                    + readJsonValue( jsonFactories.builderFactory(), parser, event ) );
+            }
+            Object key = null;
+            Object value = null;
+            while( parser.next() != JsonParser.Event.END_OBJECT )
+            {
+                String name = parser.getString();
+                if( "key".equals( name ) )
+                {
+                    key = doDeserialize( module, mapType.keyType(), parser, parser.next() );
+                }
+                else if( "value".equals( name ) )
+                {
+                    value = doDeserialize( module, mapType.valueType(), parser, parser.next() );
+                }
+                else
+                {
+                    readJsonValue( jsonFactories.builderFactory(), parser, parser.next() );
+                }
+            }
+            map.put( key, value );
+        }
+        return map;
+    }
+
+    /**
+     * Read the members of a JSON object whose type is not known from the expected {@literal ValueType}.
+     *
+     * The expected type is tried first, then the type info if it is the first member.
+     * The object is read as a tree otherwise.
+     */
+    @SuppressWarnings( "unchecked" )
+    private <T> T doGuessDeserialize( ModuleDescriptor module, ValueType valueType, JsonParser parser )
+    {
+        StatefulAssociationCompositeDescriptor descriptor =
+            statefulCompositeDescriptorFor( module, valueType.primaryType().getName() );
+        if( descriptor != null )
+        {
+            return (T) deserializeStatefulAssociationValue( ( (CompositeDescriptor) descriptor ).module(),
+                                                            descriptor.valueType(), parser );
+        }
+        JsonObjectBuilder builder = jsonFactories.builderFactory().createObjectBuilder();
+        if( parser.next() != JsonParser.Event.END_OBJECT )
+        {
+            String name = parser.getString();
+            JsonParser.Event event = parser.next();
+            if( settings.getTypeInfoPropertyName().equals( name ) && event == JsonParser.Event.VALUE_STRING )
+            {
+                String typeInfo = parser.getString();
+                descriptor = statefulCompositeDescriptorFor( module, typeInfo );
+                if( descriptor != null )
+                {
+                    return (T) deserializeStatefulAssociationValue( ( (CompositeDescriptor) descriptor ).module(),
+                                                                    descriptor.valueType(), typeInfo, parser );
+                }
+            }
+            builder.add( name, readJsonValue( jsonFactories.builderFactory(), parser, event ) );
+            while( parser.next() != JsonParser.Event.END_OBJECT )
+            {
+                name = parser.getString();
+                builder.add( name, readJsonValue( jsonFactories.builderFactory(), parser, parser.next() ) );
+            }
+        }
+        return doGuessDeserialize( module, valueType, builder.build() );
+    }
+
+    private Object deserializeStatefulAssociationValue( ModuleDescriptor module,
+                                                        StatefulAssociationValueType<?> valueType,
+                                                        JsonParser parser )
+    {
+        return deserializeStatefulAssociationValue( module, valueType, null, parser );
+    }
+
+    /**
+     * Read the members of a JSON object mapped to a stateful association value.
+     *
+     * Members are mapped according to the given type until type info says otherwise.
+     * Members that are not part of the state of that type are kept as trees, and mapped at the end according to
+     * the type info.
+     * As serializers write the type info first, this only happens with JSON produced elsewhere.
+     */
+    @SuppressWarnings( "unchecked" )
+    private Object deserializeStatefulAssociationValue( ModuleDescriptor module,
+                                                        StatefulAssociationValueType<?> valueType,
+                                                        String typeInfo,
+                                                        JsonParser parser )
+    {
+        String typeInfoName = settings.getTypeInfoPropertyName();
+        StatefulValueCodec<JavaxJsonAdapter<?>> readCodec = codecs.codecFor( valueType );
+        Map<String, Object> values = new HashMap<>();
+        JsonObjectBuilder unread = null;
+        while( parser.next() != JsonParser.Event.END_OBJECT )
+        {
+            String name = parser.getString();
+            JsonParser.Event event = parser.next();
+            if( typeInfoName.equals( name ) && event == JsonParser.Event.VALUE_STRING )
+            {
+                typeInfo = parser.getString();
+                if( values.isEmpty() && unread == null )
+                {
+                    readCodec = codecs.codecFor( resolveTypeInfo( module, typeInfo, valueType ) );
+                }
+                continue;
+            }
+            StatefulValueCodec.Member<JavaxJsonAdapter<?>> member = readCodec.member( name );
+            if( member == null )
+            {
+                if( unread == null )
+                {
+                    unread = jsonFactories.builderFactory().createObjectBuilder();
+                }
+                unread.add( name, readJsonValue( jsonFactories.builderFactory(), parser, event ) );
+                continue;
+            }
+            values.put( name, memberValue( readCodec.valueType().module(), member, parser, event ) );
+        }
+        StatefulValueCodec<JavaxJsonAdapter<?>> codec = readCodec;
+        if( typeInfo != null )
+        {
+            codec = codecs.codecFor( resolveTypeInfo( module, typeInfo, valueType ) );
+        }
+        if( codec != readCodec )
+        {
+            // Type info came late, values read as members of another type must be members of this one
+            for( String name : values.keySet() )
+            {
+                StatefulValueCodec.Member<JavaxJsonAdapter<?>> member = codec.member( name );
+                if( member == null || !member.valueType().equals( readCodec.member( name ).valueType() ) )
+                {
+                    throw new SerializationException(
+                        typeInfoName + ": " + typeInfo + " came after incompatible member " + name );
+                }
+            }
+        }
+        JsonObject unreadJson = unread == null ? JsonValue.EMPTY_JSON_OBJECT : unread.build();
+        ModuleDescriptor valueModule = codec.valueType().module();
+        Function<PropertyDescriptor, Object> unreadProperties = propertyFunction( valueModule, codec, unreadJson );
+        ValueBuilder<?> builder = module.instance().newValueBuilderWithState(
+            codec.valueType().primaryType(),
+            property -> values.containsKey( property.qualifiedName().name() )
+                        ? immutable( property, values.get( property.qualifiedName().name() ) )
+                        : unreadProperties.apply( property ),
+            association -> values.containsKey( association.qualifiedName().name() )
+                           ? (EntityReference) values.get( association.qualifiedName().name() )
+                           : associationFunction( valueModule, unreadJson ).apply( association ),
+            association ->
+            {
+                List<EntityReference> list = (List<EntityReference>) values.get( association.qualifiedName().name() );
+                return list != null ? list.stream()
+                                    : manyAssociationFunction( valueModule, unreadJson ).apply( association );
+            },
+            association ->
+            {
+                Map<String, EntityReference> map =
+                    (Map<String, EntityReference>) values.get( association.qualifiedName().name() );
+                return map != null ? map.entrySet().stream()
+                                   : namedAssociationFunction( valueModule, unreadJson ).apply( association );
+            } );
+        return builder.newInstance();
+    }
+
+    private Object memberValue( ModuleDescriptor module, StatefulValueCodec.Member<JavaxJsonAdapter<?>> member,
+                                JsonParser parser, JsonParser.Event event )
+    {
+        if( member.adapter() != null && event != JsonParser.Event.VALUE_NULL )
+        {
+            return memberValue( module, member, readJsonValue( jsonFactories.builderFactory(), parser, event ) );
+        }
+        Object value = doDeserialize( module, member.valueType(), parser, event );
+        if( member.converter() != null )
+        {
+            return member.converter().fromString( (String) value );
+        }
+        return value;
+    }
+
+    private StatefulAssociationValueType<?> resolveTypeInfo( ModuleDescriptor module, String typeInfo,
+                                                             StatefulAssociationValueType<?> valueType )
+    {
+        if( typeInfo.equals( valueType.primaryType().getName() ) )
+        {
+            return valueType;
+        }
+        StatefulAssociationCompositeDescriptor descriptor = statefulCompositeDescriptorFor( module, typeInfo );
+        if( descriptor == null )
+        {
+            throw new SerializationException(
+                settings.getTypeInfoPropertyName() + ": " + typeInfo + " could not be resolved while deserializing "
+                + valueType );
+        }
+        return descriptor.valueType();
+    }
 }
@@ -17,6 +17,7 @@
  */
 package org.apache.polygene.serialization.javaxjson;
 
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.io.Writer;
@@ -32,6 +33,7 @@ import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonString;
 import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
 import org.apache.polygene.api.PolygeneAPI;
 import org.apache.polygene.api.association.AssociationStateHolder;
 import org.apache.polygene.api.common.Optional;
@@ -48,9 +50,10 @@ import org.apache.polygene.api.service.ServiceDescriptor;
 import org.apache.polygene.api.type.ArrayType;
 import org.apache.polygene.api.type.MapType;
 import org.apache.polygene.api.type.StatefulAssociationValueType;
-import org.apache.polygene.api.type.ValueType;
 import org.apache.polygene.spi.serialization.AbstractTextSerializer;
 import org.apache.polygene.spi.serialization.JsonSerializer;
+import org.apache.polygene.spi.serialization.StatefulValueCodec;
+import org.apache.polygene.spi.serialization.StatefulValueCodecs;
 import org.apache.polygene.spi.util.ArrayIterable;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -73,15 +76,31 @@ public class JavaxJsonSerializer extends AbstractTextSerializer
     private ServiceDescriptor descriptor;
 
     private JavaxJsonSettings settings;
+    private StatefulValueCodecs<JavaxJsonAdapter<?>> codecs;
 
     @Override
     public void initialize() throws Exception
     {
         settings = JavaxJsonSettings.orDefault( descriptor.metaInfo( JavaxJsonSettings.class ) );
+        codecs = new StatefulValueCodecs<>( converters, adapters::adapterFor );
     }
 
     @Override
     public void serialize( Options options, Writer writer, @Optional Object object )
+    {
+        if( object == null || !isStructure( object.getClass() ) )
+        {
+            serializeScalar( options, writer, object );
+            return;
+        }
+        Writer output = new NonClosingWriter( writer );
+        try( JsonGenerator generator = jsonFactories.generatorFactory().createGenerator( output ) )
+        {
+            doSerialize( options, null, object, generator, true );
+        }
+    }
+
+    private void serializeScalar( Options options, Writer writer, @Optional Object object )
     {
         JsonValue jsonValue = toJson( options, object );
         if( jsonValue == null )
@@ -107,6 +126,18 @@ public class JavaxJsonSerializer extends AbstractTextSerializer
         }
     }
 
+    @Override
+    public void toJson( Options options, @Optional Object object, JsonGenerator generator )
+    {
+        doSerialize( options, null, object, generator, true );
+    }
+
+    @Override
+    public void toJson( Options options, String name, @Optional Object object, JsonGenerator generator )
+    {
+        doSerialize( options, name, object, generator, true );
+    }
+
     @Override
     public <T> Function<T, JsonValue> toJsonFunction( Options options )
     {
@@ -160,47 +191,56 @@ public class JavaxJsonSerializer extends AbstractTextSerializer
         StatefulAssociationCompositeDescriptor descriptor =
             (StatefulAssociationCompositeDescriptor) instance.descriptor();
         AssociationStateHolder state = (AssociationStateHolder) instance.state();
-        StatefulAssociationValueType<?> valueType = descriptor.valueType();
+        StatefulValueCodec<JavaxJsonAdapter<?>> codec = codecs.codecFor( descriptor.valueType() );
 
         JsonObjectBuilder builder = jsonFactories.builderFactory().createObjectBuilder();
-        valueType.properties().forEach(
-            property ->
-            {
-                Object value = state.propertyFor( property.accessor() ).get();
-                Converter converter = converters.converterFor( property );
-                if( converter != null )
-                {
-                    value = converter.toString( value );
-                }
-                builder.add( property.qualifiedName().name(), doSerialize( options, value, false ) );
-            } );
-        valueType.associations().forEach(
-            association -> builder.add(
-                association.qualifiedName().name(),
-                doSerialize( options, state.associationFor( association.accessor() ).reference(), false ) ) );
-        valueType.manyAssociations().forEach(
-            association -> builder.add(
-                association.qualifiedName().name(),
-                doSerialize( options, state.manyAssociationFor( association.accessor() ).references()
-                                           .collect( toList() ),
-                             false ) ) );
-        valueType.namedAssociations().forEach(
-            association -> builder.add(
-                association.qualifiedName().name(),
-                doSerialize( options,
-                             state.namedAssociationFor( association.accessor() ).references()
-                                  .collect( toMap() ),
-                             false ) ) );
         if( ( root && options.rootTypeInfo() ) || ( !root && options.nestedTypeInfo() ) )
         {
-            withTypeInfo( builder, valueType );
+            builder.add( settings.getTypeInfoPropertyName(), codec.typeName() );
+        }
+        for( StatefulValueCodec.Member<JavaxJsonAdapter<?>> property : codec.properties() )
+        {
+            builder.add( property.name(),
+                         serializeMember( options, property, state.propertyFor( property.accessor() ).get() ) );
+        }
+        for( StatefulValueCodec.Member<JavaxJsonAdapter<?>> association : codec.associations() )
+        {
+            builder.add( association.name(),
+                         doSerialize( options, state.associationFor( association.accessor() ).reference(), false ) );
+        }
+        for( StatefulValueCodec.Member<JavaxJsonAdapter<?>> association : codec.manyAssociations() )
+        {
+            builder.add( association.name(),
+                         doSerialize( options, state.manyAssociationFor( association.accessor() ).references()
+                                                    .collect( toList() ),
+                                      false ) );
+        }
+        for( StatefulValueCodec.Member<JavaxJsonAdapter<?>> association : codec.namedAssociations() )
+        {
+            builder.add( association.name(),
+                         doSerialize( options, state.namedAssociationFor( association.accessor() ).references()
+                                                    .collect( toMap() ),
+                                      false ) );
         }
         return builder.build();
     }
 
-    private void withTypeInfo( JsonObjectBuilder builder, ValueType valueType )
+    /**
+     * Serialize the value of a property, using the adapter resolved by the codec when the value is of the declared
+     * property type.
+     */
+    private JsonValue serializeMember( Options options, StatefulValueCodec.Member<JavaxJsonAdapter<?>> property,
+                                       Object value )
     {
-        builder.add( settings.getTypeInfoPropertyName(), valueType.primaryType().getName() );
+        if( property.converter() != null )
+        {
+            value = property.converter().toString( value );
+        }
+        if( value != null && property.adapter() != null && value.getClass() == property.valueType().primaryType() )
+        {
+            return property.adapter().serialize( jsonFactories, value, obj -> doSerialize( options, obj, false ) );
+        }
+        return doSerialize( options, value, false );
     }
 
     /**
@@ -264,4 +304,202 @@ public class JavaxJsonSerializer extends AbstractTextSerializer
         stream.forEach( element -> builder.add( doSerialize( options, element, false ) ) );
         return builder.build();
     }
+
+    /**
+     * Whether instances of the given class serialize to a JSON structure and can be written as they are traversed.
+     *
+     * Converted and adapted objects and byte arrays serialize to small values that are handled as a tree.
+     */
+    private boolean isStructure( Class<?> objectClass )
+    {
+        if( converters.converterFor( objectClass ) != null || adapters.adapterFor( objectClass ) != null )
+        {
+            return false;
+        }
+        if( ArrayType.isArray( objectClass ) )
+        {
+            return !ArrayType.of( objectClass ).isArrayOfPrimitiveBytes();
+        }
+        return StatefulAssociationValueType.isStatefulAssociationValue( objectClass )
+               || MapType.isMap( objectClass )
+               || Iterable.class.isAssignableFrom( objectClass )
+               || Stream.class.isAssignableFrom( objectClass );
+    }
+
+    /**
+     * Streaming counterpart of {@link #doSerialize(Options, Object, boolean)}.
+     *
+     * Writes the same JSON without building the {@literal JsonValue} tree of structures.
+     * Values are written as members of the current object when a name is given, as elements otherwise.
+     */
+    private void doSerialize( Options options, String name, Object object, JsonGenerator generator, boolean root )
+    {
+        if( object == null )
+        {
+            if( name == null )
+            {
+                generator.writeNull();
+            }
+            else
+            {
+                generator.writeNull( name );
+            }
+            return;
+        }
+        Class<?> objectClass = object.getClass();
+        if( !isStructure( objectClass ) )
+        {
+            JsonValue jsonValue = doSerialize( options, object, root );
+            if( name == null )
+            {
+                generator.write( jsonValue );
+            }
+            else
+            {
+                generator.write( name, jsonValue );
+            }
+            return;
+        }
+        if( name != null )
+        {
+            generator.writeKey( name );
+        }
+        if( StatefulAssociationValueType.isStatefulAssociationValue( objectClass ) )
+        {
+            serializeStatefulAssociationValue( options, object, generator, root );
+        }
+        else if( MapType.isMap( objectClass ) )
+        {
+            serializeMap( options, (Map<?, ?>) object, generator );
+        }
+        else if( ArrayType.isArray( objectClass ) )
+        {
+            if( ArrayType.of( objectClass ).isArrayOfPrimitives() )
+            {
+                serializeIterable( options, new ArrayIterable( object ), generator );
+            }
+            else
+            {
+                serializeStream( options, Stream.of( (Object[]) object ), generator );
+            }
+        }
+        else if( Iterable.class.isAssignableFrom( objectClass ) )
+        {
+            serializeIterable( options, (Iterable<?>) object, generator );
+        }
+        else
+        {
+            serializeStream( options, (Stream<?>) object, generator );
+        }
+    }
+
+    private void serializeStatefulAssociationValue( Options options, Object composite, JsonGenerator generator,
+                                                    boolean root )
+    {
+        CompositeInstance instance = PolygeneAPI.FUNCTION_COMPOSITE_INSTANCE_OF.apply( (Composite) composite );
+        StatefulAssociationCompositeDescriptor descriptor =
+            (StatefulAssociationCompositeDescriptor) instance.descriptor();
+        AssociationStateHolder state = (AssociationStateHolder) instance.state();
+        StatefulValueCodec<JavaxJsonAdapter<?>> codec = codecs.codecFor( descriptor.valueType() );
+
+        generator.writeStartObject();
+        if( ( root && options.rootTypeInfo() ) || ( !root && options.nestedTypeInfo() ) )
+        {
+            // Written first so that deserializers know the type before reading the state
+            generator.write( settings.getTypeInfoPropertyName(), codec.typeName() );
+        }
+        for( StatefulValueCodec.Member<JavaxJsonAdapter<?>> property : codec.properties() )
+        {
+            Object value = state.propertyFor( property.accessor() ).get();
+            if( property.converter() != null )
+            {
+                value = property.converter().toString( value );
+            }
+            if( value != null && property.adapter() != null && value.getClass() == property.valueType().primaryType() )
+            {
+                generator.write( property.name(), property.adapter().serialize(
+                    jsonFactories, value, obj -> doSerialize( options, obj, false ) ) );
+            }
+            else
+            {
+                doSerialize( options, property.name(), value, generator, false );
+            }
+        }
+        for( StatefulValueCodec.Member<JavaxJsonAdapter<?>> association : codec.associations() )
+        {
+            doSerialize( options, association.name(), state.associationFor( association.accessor() ).reference(),
+                         generator, false );
+        }
+        for( StatefulValueCodec.Member<JavaxJsonAdapter<?>> association : codec.manyAssociations() )
+        {
+            generator.writeKey( association.name() );
+            serializeStream( options, state.manyAssociationFor( association.accessor() ).references(), generator );
+        }
+        for( StatefulValueCodec.Member<JavaxJsonAdapter<?>> association : codec.namedAssociations() )
+        {
+            generator.writeKey( association.name() );
+            serializeMap( options, state.namedAssociationFor( association.accessor() ).references().collect( toMap() ),
+                          generator );
+        }
+        generator.writeEnd();
+    }
+
+    private void serializeMap( Options options, Map<?, ?> map, JsonGenerator generator )
+    {
+        Predicate<Object> characterKeyPredicate = key ->
+            key != null && ( key instanceof CharSequence || key instanceof Character );
+        if( map.isEmpty() || map.keySet().stream().allMatch( characterKeyPredicate ) )
+        {
+            generator.writeStartObject();
+            map.forEach( ( key, value ) ->
+                         {
+                             doSerialize( options, key.toString(), value, generator, false );
+                         } );
+            generator.writeEnd();
+        }
+        else
+        {
+            generator.writeStartArray();
+            map.forEach( ( key, value ) ->
+                         {
+                             generator.writeStartObject();
+                             doSerialize( options, "key", key, generator, false );
+                             doSerialize( options, "value", value, generator, false );
+                             generator.writeEnd();
+                         } );
+            generator.writeEnd();
+        }
+    }
+
+    private void serializeIterable( Options options, Iterable<?> iterable, JsonGenerator generator )
+    {
+        generator.writeStartArray();
+        iterable.forEach( element -> doSerialize( options, null, element, generator, false ) );
+        generator.writeEnd();
+    }
+
+    private void serializeStream( Options options, Stream<?> stream, JsonGenerator generator )
+    {
+        generator.writeStartArray();
+        stream.forEachOrdered( element -> doSerialize( options, null, element, generator, false ) );
+        generator.writeEnd();
+    }
+
+    /**
+     * Closing a {@literal JsonGenerator} closes its output, but serializers don't own the {@literal Writer}s they
+     * are given.
+     */
+    private static class NonClosingWriter extends FilterWriter
+    {
+        private NonClosingWriter( Writer writer )
+        {
+            super( writer );
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            flush();
+        }
+    }
 }
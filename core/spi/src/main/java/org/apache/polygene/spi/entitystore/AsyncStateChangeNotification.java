@@ -0,0 +1,699 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package org.apache.polygene.spi.entitystore;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.apache.polygene.api.entity.EntityDescriptor;
+import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.api.structure.Application;
+import org.apache.polygene.api.structure.ModuleDescriptor;
+import org.apache.polygene.api.usecase.UsecaseBuilder;
+import org.apache.polygene.spi.entity.EntityState;
+import org.apache.polygene.spi.entity.EntityStatus;
+import org.apache.polygene.spi.entitystore.helpers.DefaultEntityState;
+
+/**
+ * Deliver state changes to {@link StateChangeListener}s asynchronously.
+ * <p>
+ * Set it as meta-info on the declaration of an EntityStore service that has the
+ * {@link StateChangeNotificationConcern}. Listeners, typically indexers, are then notified after the changes are
+ * committed, from a background thread, instead of from {@link StateCommitter#commit()}:
+ * </p>
+ * <ul>
+ *   <li>changes wait in a bounded queue, a commit blocks only when the queue is full, at most for the
+ *       {@link #withCapacityTimeout(long, TimeUnit) capacity timeout}, then the queue overflows;</li>
+ *   <li>repeated changes to the same entity are coalesced, only its latest state is delivered;</li>
+ *   <li>changes are delivered in batches, in commit order;</li>
+ *   <li>a failed delivery is {@link #withRetries(int, long, TimeUnit) retried} a few times, then the batch is
+ *       dropped, {@link #lastFailure()} tells why and {@link #dropped()} counts the dropped changes.</li>
+ * </ul>
+ * <p>
+ * Each commit gets a version. {@link #visibleVersion()} is the latest version whose changes, and the ones of all
+ * commits before it, have been delivered. Use {@link #awaitCatchUp(long, TimeUnit)} before a query that must see
+ * the changes committed so far.
+ * </p>
+ * <p>
+ * Given a journal file, the references of changed entities are written to it before the changes are committed.
+ * Changes not yet delivered when the application stopped are delivered again, from their current state in the
+ * store, once the store is activated. Without a journal, undelivered changes are lost on shutdown.
+ * Concurrent commits share the synchronization of the journal to the disk.
+ * </p>
+ * <p>
+ * Declare the {@link StateChangeNotificationConcern.Activator} on the EntityStore service to replay the journal as
+ * soon as the store is activated, otherwise it is replayed on the first commit.
+ * </p>
+ * <p>
+ * Use one instance per EntityStore.
+ * </p>
+ */
+public final class AsyncStateChangeNotification
+{
+    private final int capacity;
+    private final int batchSize;
+    private final StateChangeJournal journal;
+
+    // Guarded by this
+    private final Map<EntityReference, Change> pending = new LinkedHashMap<>();
+    private final TreeMap<Long, Integer> outstanding = new TreeMap<>();
+    private long submittedVersion;
+    private long visibleVersion;
+    private boolean delivering;
+    private boolean replaying;
+    private boolean overflowing;
+    private int failures;
+    private long dropped;
+    private Throwable lastFailure;
+    private int maxRetries = 10;
+    private long retryDelayMillis = 1000;
+    private long capacityTimeoutNanos = TimeUnit.SECONDS.toNanos( 10 );
+    private Iterable<StateChangeListener> listeners;
+    private BooleanSupplier storeActive;
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Up to 10000 pending changes, delivered by batches of 100, without journal.
+     */
+    public AsyncStateChangeNotification()
+    {
+        this( 10000, 100, null );
+    }
+
+    /**
+     * @param capacity maximum number of entities with pending changes
+     * @param batchSize maximum number of changes delivered to listeners at once
+     * @param journal file where to record undelivered changes, or null
+     */
+    public AsyncStateChangeNotification( int capacity, int batchSize, File journal )
+    {
+        if( capacity < 1 || batchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Capacity and batch size must be positive, got "
+                                                + capacity + " and " + batchSize );
+        }
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.journal = journal == null ? null : new StateChangeJournal( journal );
+    }
+
+    /**
+     * Retry a failed delivery at most {@literal maxRetries} times before dropping its changes, 10 times, every
+     * second, by default.
+     *
+     * @param maxRetries maximum number of retries of a failed delivery
+     * @param delay time to wait before retrying
+     * @param unit unit of the delay
+     * @return this
+     */
+    public synchronized AsyncStateChangeNotification withRetries( int maxRetries, long delay, TimeUnit unit )
+    {
+        if( maxRetries < 0 || delay < 0 )
+        {
+            throw new IllegalArgumentException( "Retries and delay must not be negative, got "
+                                                + maxRetries + " and " + delay );
+        }
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = unit.toMillis( delay );
+        return this;
+    }
+
+    /**
+     * Wait at most {@literal timeout} for room in a full queue, 10 seconds by default. Changes are then queued
+     * beyond capacity, and commits stop waiting, until the queue is back within capacity.
+     *
+     * @param timeout maximum time a commit waits for room in the queue
+     * @param unit unit of the timeout
+     * @return this
+     */
+    public synchronized AsyncStateChangeNotification withCapacityTimeout( long timeout, TimeUnit unit )
+    {
+        if( timeout < 0 )
+        {
+            throw new IllegalArgumentException( "Capacity timeout must not be negative, got " + timeout );
+        }
+        this.capacityTimeoutNanos = unit.toNanos( timeout );
+        return this;
+    }
+
+    /**
+     * @return version of the latest commit
+     */
+    public synchronized long submittedVersion()
+    {
+        return submittedVersion;
+    }
+
+    /**
+     * @return latest version whose changes, and those of all previous versions, were delivered
+     */
+    public synchronized long visibleVersion()
+    {
+        return visibleVersion;
+    }
+
+    /**
+     * @return number of entities with undelivered changes
+     */
+    public synchronized int pending()
+    {
+        return pending.size();
+    }
+
+    /**
+     * @return cause of the latest failed delivery or queue overflow, null once a delivery succeeded within capacity
+     */
+    public synchronized Throwable lastFailure()
+    {
+        return lastFailure;
+    }
+
+    /**
+     * @return number of changes dropped after their delivery failed too many times
+     */
+    public synchronized long dropped()
+    {
+        return dropped;
+    }
+
+    /**
+     * Wait until the changes of the given version are delivered.
+     *
+     * @param version the version to wait for
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if the version is visible, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean awaitVisible( long version, long timeout, TimeUnit unit )
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos( timeout );
+        while( visibleVersion < version )
+        {
+            long remaining = deadline - System.nanoTime();
+            if( remaining <= 0 )
+            {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait( this, remaining );
+        }
+        return true;
+    }
+
+    /**
+     * Wait until all the changes committed so far are delivered.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if all changes are visible, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitCatchUp( long timeout, TimeUnit unit )
+        throws InterruptedException
+    {
+        return awaitVisible( submittedVersion(), timeout, unit );
+    }
+
+    /* package */ StateCommitter committer( EntityStoreUnitOfWork unitOfWork,
+                                            Iterable<EntityState> states,
+                                            StateCommitter committer,
+                                            Iterable<StateChangeListener> listeners,
+                                            EntityStore store,
+                                            Application application,
+                                            BooleanSupplier storeActive )
+    {
+        List<EntityState> changes = new ArrayList<>();
+        states.forEach( changes::add );
+        long version = prepare( listeners, store, application, storeActive );
+        if( journal != null )
+        {
+            // Outside of the monitor, concurrent commits synchronize the journal to the disk together
+            try
+            {
+                journal.append( version, unitOfWork.module(), changes );
+            }
+            catch( IOException e )
+            {
+                settle( version );
+                throw new EntityStoreException( "Unable to journal state changes", e );
+            }
+        }
+        return new StateCommitter()
+        {
+            @Override
+            public void commit()
+            {
+                try
+                {
+                    committer.commit();
+                }
+                catch( RuntimeException e )
+                {
+                    settle( version );
+                    throw e;
+                }
+                publish( version, changes, true );
+            }
+
+            @Override
+            public void cancel()
+            {
+                try
+                {
+                    committer.cancel();
+                }
+                finally
+                {
+                    settle( version );
+                }
+            }
+        };
+    }
+
+    private synchronized long prepare( Iterable<StateChangeListener> listeners, EntityStore store,
+                                       Application application, BooleanSupplier storeActive )
+    {
+        activate( listeners, store, application, storeActive );
+        long version = ++submittedVersion;
+        outstanding.put( version, 1 );
+        return version;
+    }
+
+    private synchronized void publish( long version, List<EntityState> changes, boolean bounded )
+    {
+        while( bounded && replaying )
+        {
+            // Replayed changes are delivered first
+            try
+            {
+                wait();
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for( EntityState state : changes )
+        {
+            EntityReference reference = state.entityReference();
+            if( bounded && !overflowing )
+            {
+                awaitCapacity( reference );
+            }
+            Change previous = pending.get( reference );
+            if( previous != null && previous.version > version )
+            {
+                // Already superseded by a later commit
+                continue;
+            }
+            Change change = new Change( version, reference, state );
+            if( previous != null )
+            {
+                // Visible once the latest state is delivered, or once the state in flight is
+                pending.remove( reference );
+                change.supersede( previous );
+            }
+            pending.put( reference, change );
+            outstanding.merge( version, 1, Integer::sum );
+        }
+        settle( version );
+        deliverLater();
+    }
+
+    private void awaitCapacity( EntityReference reference )
+    {
+        long deadline = System.nanoTime() + capacityTimeoutNanos;
+        while( pending.size() >= capacity && !pending.containsKey( reference ) )
+        {
+            // Restart a deliverer that stopped, or nothing would ever make room
+            deliverLater();
+            long remaining = deadline - System.nanoTime();
+            if( remaining <= 0 )
+            {
+                overflowing = true;
+                lastFailure = new EntityStoreException( "State changes queue full, " + capacity
+                                                        + " entities waiting for delivery" );
+                return;
+            }
+            try
+            {
+                TimeUnit.NANOSECONDS.timedWait( this, remaining );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start delivering, replaying the journaled changes, unless already started.
+     */
+    /* package */ synchronized void activate( Iterable<StateChangeListener> listeners, EntityStore store,
+                                              Application application, BooleanSupplier storeActive )
+    {
+        if( this.listeners == null )
+        {
+            this.storeActive = storeActive;
+            start( listeners, store, application );
+        }
+    }
+
+    private void start( Iterable<StateChangeListener> listeners, EntityStore store, Application application )
+    {
+        this.listeners = listeners;
+        executor = new ThreadPoolExecutor( 1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable ->
+        {
+            Thread thread = new Thread( runnable, "polygene-state-changes" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        executor.allowCoreThreadTimeOut( true );
+        if( journal != null )
+        {
+            List<StateChangeJournal.Entry> undelivered;
+            try
+            {
+                undelivered = journal.undelivered();
+            }
+            catch( IOException e )
+            {
+                throw new EntityStoreException( "Unable to read state changes journal", e );
+            }
+            if( !undelivered.isEmpty() )
+            {
+                long version = ++submittedVersion;
+                outstanding.put( version, 1 );
+                replaying = true;
+                executor.execute( () -> replay( version, undelivered, store, application ) );
+            }
+        }
+    }
+
+    private void replay( long version, List<StateChangeJournal.Entry> undelivered, EntityStore store,
+                         Application application )
+    {
+        try
+        {
+            publish( version, replayedStates( undelivered, store, application ), false );
+        }
+        catch( RuntimeException e )
+        {
+            synchronized( this )
+            {
+                lastFailure = e;
+                settle( version );
+            }
+        }
+        finally
+        {
+            synchronized( this )
+            {
+                replaying = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private List<EntityState> replayedStates( List<StateChangeJournal.Entry> undelivered, EntityStore store,
+                                              Application application )
+    {
+        Map<String, List<StateChangeJournal.Entry>> byModule = new HashMap<>();
+        for( StateChangeJournal.Entry entry : undelivered )
+        {
+            byModule.computeIfAbsent( entry.layer + '/' + entry.module, key -> new ArrayList<>() ).add( entry );
+        }
+        List<EntityState> states = new ArrayList<>();
+        for( List<StateChangeJournal.Entry> entries : byModule.values() )
+        {
+            StateChangeJournal.Entry first = entries.get( 0 );
+            ModuleDescriptor module;
+            try
+            {
+                module = application.findModule( first.layer, first.module ).descriptor();
+            }
+            catch( IllegalArgumentException noSuchModule )
+            {
+                continue;
+            }
+            EntityStoreUnitOfWork uow = store.newUnitOfWork( module,
+                                                            UsecaseBuilder.newUsecase( "Replay state changes" ),
+                                                            Instant.now() );
+            try
+            {
+                for( StateChangeJournal.Entry entry : entries )
+                {
+                    EntityState state = stateOf( uow, module, entry );
+                    if( state != null )
+                    {
+                        states.add( state );
+                    }
+                }
+            }
+            finally
+            {
+                uow.discard();
+            }
+        }
+        return states;
+    }
+
+    private static EntityState stateOf( EntityStoreUnitOfWork uow, ModuleDescriptor module,
+                                        StateChangeJournal.Entry entry )
+    {
+        try
+        {
+            return uow.entityStateOf( module, entry.reference );
+        }
+        catch( EntityNotFoundException removed )
+        {
+            try
+            {
+                Class<?> type = module.classLoader().loadClass( entry.type );
+                EntityDescriptor descriptor = module.typeLookup().lookupEntityModel( type );
+                if( descriptor == null )
+                {
+                    return null;
+                }
+                return new DefaultEntityState( "", uow.currentTime(), entry.reference, EntityStatus.REMOVED,
+                                               descriptor, Collections.emptyMap(), Collections.emptyMap(),
+                                               Collections.emptyMap(), Collections.emptyMap() );
+            }
+            catch( ClassNotFoundException e )
+            {
+                return null;
+            }
+        }
+    }
+
+    private void deliverLater()
+    {
+        if( !delivering && !pending.isEmpty() )
+        {
+            delivering = true;
+            executor.execute( this::deliver );
+        }
+    }
+
+    private void deliver()
+    {
+        while( true )
+        {
+            List<Change> batch;
+            List<EntityState> states;
+            synchronized( this )
+            {
+                if( pending.isEmpty() )
+                {
+                    delivering = false;
+                    return;
+                }
+                batch = new ArrayList<>( Math.min( batchSize, pending.size() ) );
+                states = new ArrayList<>( batch.size() );
+                Iterator<Change> changes = pending.values().iterator();
+                while( changes.hasNext() && batch.size() < batchSize )
+                {
+                    Change change = changes.next();
+                    change.inFlight = true;
+                    batch.add( change );
+                    states.add( change.state );
+                }
+            }
+            try
+            {
+                for( StateChangeListener listener : listeners )
+                {
+                    listener.notifyChanges( states );
+                }
+            }
+            catch( RuntimeException e )
+            {
+                long delay;
+                synchronized( this )
+                {
+                    lastFailure = e;
+                    if( ++failures > maxRetries )
+                    {
+                        // Give up, later changes must not wait behind these forever
+                        failures = 0;
+                        dropped += batch.size();
+                        complete( batch );
+                        continue;
+                    }
+                    for( Change change : batch )
+                    {
+                        change.inFlight = false;
+                    }
+                    delay = retryDelayMillis;
+                }
+                boolean interrupted = false;
+                try
+                {
+                    Thread.sleep( delay );
+                }
+                catch( InterruptedException ignored )
+                {
+                    interrupted = true;
+                }
+                if( interrupted || !storeActive.getAsBoolean() )
+                {
+                    // Stopped, undelivered changes are journaled
+                    synchronized( this )
+                    {
+                        delivering = false;
+                    }
+                    return;
+                }
+                continue;
+            }
+            synchronized( this )
+            {
+                failures = 0;
+                complete( batch );
+                if( !overflowing )
+                {
+                    lastFailure = null;
+                }
+            }
+        }
+    }
+
+    private void complete( List<Change> batch )
+    {
+        for( Change change : batch )
+        {
+            change.inFlight = false;
+            pending.remove( change.reference, change );
+            settle( change );
+        }
+        if( overflowing && pending.size() < capacity )
+        {
+            overflowing = false;
+        }
+        notifyAll();
+    }
+
+    private void settle( Change change )
+    {
+        if( !change.settled )
+        {
+            change.settled = true;
+            for( Change superseded : change.superseded )
+            {
+                settle( superseded );
+            }
+            change.superseded.clear();
+            settle( change.version );
+        }
+    }
+
+    private synchronized void settle( long version )
+    {
+        outstanding.computeIfPresent( version, ( key, count ) -> count == 1 ? null : count - 1 );
+        long visible = outstanding.isEmpty() ? submittedVersion : outstanding.firstKey() - 1;
+        if( visible != visibleVersion )
+        {
+            visibleVersion = visible;
+            if( journal != null )
+            {
+                try
+                {
+                    journal.delivered( visible, outstanding.isEmpty() );
+                }
+                catch( IOException e )
+                {
+                    lastFailure = e;
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AsyncStateChangeNotification{capacity=" + capacity + ", batchSize=" + batchSize
+               + ", journal=" + journal + "}";
+    }
+
+    private static final class Change
+    {
+        private final long version;
+        private final EntityReference reference;
+        private EntityState state;
+        private final List<Change> superseded = new ArrayList<>( 0 );
+        private boolean inFlight;
+        private boolean settled;
+
+        private Change( long version, EntityReference reference, EntityState state )
+        {
+            this.version = version;
+            this.reference = reference;
+            this.state = state;
+        }
+
+        private void supersede( Change previous )
+        {
+            previous.state = null;
+            if( !previous.inFlight )
+            {
+                // Never delivered, the changes it superseded wait for this one too
+                superseded.addAll( previous.superseded );
+                previous.superseded.clear();
+            }
+            superseded.add( previous );
+        }
+    }
+}
@@ -21,8 +21,10 @@
 package org.apache.polygene.spi.entitystore;
 
 import java.time.Instant;
-import java.util.HashSet;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
 import org.apache.polygene.api.PolygeneAPI;
 import org.apache.polygene.api.concern.ConcernOf;
 import org.apache.polygene.api.entity.EntityDescriptor;
@@ -33,6 +35,9 @@ import org.apache.polygene.api.injection.scope.This;
 import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.api.usecase.Usecase;
 import org.apache.polygene.spi.entity.EntityState;
+import org.apache.polygene.spi.entity.EntityStatus;
+
+import static java.util.stream.Collectors.toList;
 
 /**
  * Concern that helps EntityStores do concurrent modification checks.
@@ -43,6 +48,11 @@ import org.apache.polygene.spi.entity.EntityState;
  * Whenever there is a concurrent modification the store will most likely
  * have to check with the underlying store what the current version is.
  * </p>
+ * <p>
+ * There is no store wide lock, entities being changed are claimed one by one
+ * when a UnitOfWork is applied, so that UnitOfWorks touching disjoint entities
+ * can commit in parallel.
+ * </p>
  */
 public abstract class ConcurrentModificationCheckConcern
     extends ConcernOf<EntityStore>
@@ -68,9 +78,7 @@ public abstract class ConcurrentModificationCheckConcern
         private EntityStateVersions versions;
         private Instant currentTime;
 
-        private HashSet<EntityState> loaded = new HashSet<>();
-
-        private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private HashMap<EntityReference, EntityState> loaded = new HashMap<>();
 
         public ConcurrentCheckingEntityStoreUnitOfWork( EntityStoreUnitOfWork uow,
                                                         EntityStateVersions versions,
@@ -107,40 +115,47 @@ public abstract class ConcurrentModificationCheckConcern
         public StateCommitter applyChanges()
             throws EntityStoreException
         {
-            lock.writeLock().lock();
+            versions.checkForConcurrentModification( uow.identity(), loaded.values(), currentTime );
 
+            final StateCommitter committer;
             try
             {
-                versions.checkForConcurrentModification( loaded, currentTime );
-
-                final StateCommitter committer = uow.applyChanges();
+                committer = uow.applyChanges();
+            }
+            catch( EntityStoreException e )
+            {
+                versions.releaseVersions( uow.identity(), loaded.values() );
+                throw e;
+            }
 
-                return new StateCommitter()
+            return new StateCommitter()
+            {
+                @Override
+                public void commit()
                 {
-                    @Override
-                    public void commit()
+                    try
                     {
                         committer.commit();
-                        versions.forgetVersions( loaded );
-
-                        lock.writeLock().unlock();
                     }
+                    finally
+                    {
+                        versions.releaseVersions( uow.identity(), loaded.values() );
+                    }
+                }
 
-                    @Override
-                    public void cancel()
+                @Override
+                public void cancel()
+                {
+                    try
                     {
                         committer.cancel();
-                        versions.forgetVersions( loaded );
-
-                        lock.writeLock().unlock();
                     }
-                };
-            }
-            catch( EntityStoreException e )
-            {
-                lock.writeLock().unlock();
-                throw e;
-            }
+                    finally
+                    {
+                        versions.releaseVersions( uow.identity(), loaded.values() );
+                    }
+                }
+            };
         }
 
         @Override
@@ -152,16 +167,7 @@ public abstract class ConcurrentModificationCheckConcern
             }
             finally
             {
-                lock.writeLock().lock();
-
-                try
-                {
-                    versions.forgetVersions( loaded );
-                }
-                finally
-                {
-                    lock.writeLock().unlock();
-                }
+                versions.forgetVersions( loaded.values() );
             }
         }
 
@@ -182,22 +188,36 @@ public abstract class ConcurrentModificationCheckConcern
         public EntityState entityStateOf( ModuleDescriptor module, EntityReference anIdentity )
             throws EntityStoreException, EntityNotFoundException
         {
-            lock.readLock().lock();
+            EntityState entityState = uow.entityStateOf( module, anIdentity );
+            versions.rememberVersion( entityState.entityReference(), entityState.version() );
+            loaded.put( entityState.entityReference(), entityState );
+            return entityState;
+        }
 
-            try
+        @Override
+        public Stream<EntityState> entityStatesOf( ModuleDescriptor module, Collection<EntityReference> references )
+            throws EntityStoreException
+        {
+            List<EntityState> entityStates = uow.entityStatesOf( module, references ).collect( toList() );
+            for( EntityState entityState : entityStates )
             {
-                EntityState entityState = uow.entityStateOf( module, anIdentity );
                 versions.rememberVersion( entityState.entityReference(), entityState.version() );
-                loaded.add( entityState );
-                return entityState;
+                loaded.put( entityState.entityReference(), entityState );
             }
-            finally
+            return entityStates.stream();
+        }
+
+        @Override
+        public void evict( EntityReference reference )
+        {
+            EntityState entityState = loaded.get( reference );
+            if( entityState != null && entityState.status() == EntityStatus.LOADED )
             {
-                lock.readLock().unlock();
+                loaded.remove( reference );
             }
+            uow.evict( reference );
         }
 
-
         @Override
         public String versionOf( EntityReference anIdentity )
             throws EntityStoreException
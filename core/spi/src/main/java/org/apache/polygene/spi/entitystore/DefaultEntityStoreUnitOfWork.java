@@ -21,13 +21,18 @@
 package org.apache.polygene.spi.entitystore;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
 import org.apache.polygene.api.entity.EntityDescriptor;
 import org.apache.polygene.api.entity.EntityReference;
 import org.apache.polygene.api.identity.Identity;
 import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.api.usecase.Usecase;
 import org.apache.polygene.spi.entity.EntityState;
+import org.apache.polygene.spi.entity.EntityStatus;
 
 /**
  * Default EntityStore UnitOfWork.
@@ -108,6 +113,46 @@ public final class DefaultEntityStoreUnitOfWork
         return entityState;
     }
 
+    @Override
+    public Stream<EntityState> entityStatesOf( ModuleDescriptor module, Collection<EntityReference> references )
+        throws EntityStoreException
+    {
+        List<EntityState> found = new ArrayList<>( references.size() );
+        List<EntityReference> missing = new ArrayList<>( references.size() );
+        for( EntityReference reference : references )
+        {
+            EntityState entityState = states.get( reference );
+            if( entityState != null )
+            {
+                found.add( entityState );
+            }
+            else
+            {
+                missing.add( reference );
+            }
+        }
+        if( !missing.isEmpty() )
+        {
+            entityStoreSPI.entityStatesOf( this, module, missing ).forEach(
+                entityState ->
+                {
+                    states.put( entityState.entityReference(), entityState );
+                    found.add( entityState );
+                } );
+        }
+        return found.stream();
+    }
+
+    @Override
+    public void evict( EntityReference reference )
+    {
+        EntityState entityState = states.get( reference );
+        if( entityState != null && entityState.status() == EntityStatus.LOADED )
+        {
+            states.remove( reference );
+        }
+    }
+
     @Override
     public String versionOf( EntityReference anIdentity )
         throws EntityNotFoundException
@@ -25,7 +25,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.api.identity.Identity;
 import org.apache.polygene.api.injection.scope.This;
 import org.apache.polygene.api.mixin.Mixins;
 import org.apache.polygene.api.usecase.Usecase;
@@ -42,71 +44,171 @@ public interface EntityStateVersions
 
     void rememberVersion( EntityReference reference, String version );
 
-    void checkForConcurrentModification( Iterable<EntityState> loaded, Instant currentTime )
+    /**
+     * Check loaded states for concurrent modification.
+     * <p>
+     * Modified and removed states are claimed for the given UnitOfWork, preventing any other UnitOfWork from
+     * committing changes to the same entities until {@link #releaseVersions(Identity, Iterable)} is called.
+     * Entities claimed by another UnitOfWork are reported as concurrently modified.
+     * </p>
+     *
+     * @param unitOfWork  Identity of the committing UnitOfWork
+     * @param loaded      States loaded by the committing UnitOfWork
+     * @param currentTime Current time
+     *
+     * @throws ConcurrentEntityStateModificationException if some entities have been modified concurrently,
+     *                                                    nothing is claimed then
+     */
+    void checkForConcurrentModification( Identity unitOfWork, Iterable<EntityState> loaded, Instant currentTime )
         throws ConcurrentEntityStateModificationException;
 
+    /**
+     * Forget the versions of committed or cancelled states and release the claims held on them.
+     *
+     * @param unitOfWork Identity of the UnitOfWork holding the claims
+     * @param states     States to release
+     */
+    void releaseVersions( Identity unitOfWork, Iterable<EntityState> states );
+
     /**
      * Entity versions state mixin.
+     * <p>
+     * Remembered versions are spread across lock stripes keyed on the entity reference, and claims are held in a
+     * concurrent map, so that UnitOfWorks touching disjoint entities never contend with each other.
+     * </p>
      */
     class EntityStateVersionsMixin
         implements EntityStateVersions
     {
+        private static final int STRIPES = 64;
+
         @This
         private EntityStore store;
 
-        private final Map<EntityReference, String> versions = new WeakHashMap<>();
+        private final VersionStripe[] stripes = new VersionStripe[ STRIPES ];
+
+        private final Map<EntityReference, Identity> claims = new ConcurrentHashMap<>();
+
+        public EntityStateVersionsMixin()
+        {
+            for( int i = 0; i < STRIPES; i++ )
+            {
+                stripes[ i ] = new VersionStripe();
+            }
+        }
 
         @Override
-        public synchronized void forgetVersions( Iterable<EntityState> states )
+        public void forgetVersions( Iterable<EntityState> states )
         {
             for( EntityState state : states )
             {
-                versions.remove( state.entityReference() );
+                stripeOf( state.entityReference() ).forget( state.entityReference() );
             }
         }
 
         @Override
-        public synchronized void rememberVersion( EntityReference reference, String version )
+        public void rememberVersion( EntityReference reference, String version )
         {
-            versions.put( reference, version );
+            stripeOf( reference ).remember( reference, version );
         }
 
         @Override
-        public synchronized void checkForConcurrentModification( Iterable<EntityState> loaded,
-                                                                 Instant currentTime
+        public void checkForConcurrentModification( Identity unitOfWork,
+                                                    Iterable<EntityState> loaded,
+                                                    Instant currentTime
         )
             throws ConcurrentEntityStateModificationException
         {
-            List<EntityReference> changed = null;
-            for( EntityState entityState : loaded )
+            List<EntityReference> changed = new ArrayList<>();
+            List<EntityReference> claimed = new ArrayList<>();
+            try
             {
-                if( entityState.status().equals( EntityStatus.NEW ) )
+                for( EntityState entityState : loaded )
                 {
-                    continue;
-                }
+                    if( entityState.status().equals( EntityStatus.NEW ) )
+                    {
+                        continue;
+                    }
 
-                String storeVersion = versions.get( entityState.entityReference() );
-                if( storeVersion == null )
-                {
-                    EntityStoreUnitOfWork unitOfWork = store.newUnitOfWork( entityState.entityDescriptor().module(), Usecase.DEFAULT, currentTime );
-                    storeVersion = unitOfWork.versionOf( entityState.entityReference() );
-                    unitOfWork.discard();
-                }
+                    EntityReference reference = entityState.entityReference();
+                    if( entityState.status().equals( EntityStatus.UPDATED )
+                        || entityState.status().equals( EntityStatus.REMOVED ) )
+                    {
+                        Identity owner = claims.putIfAbsent( reference, unitOfWork );
+                        if( owner != null && !owner.equals( unitOfWork ) )
+                        {
+                            // Another UnitOfWork is committing changes to this entity
+                            changed.add( reference );
+                            continue;
+                        }
+                        claimed.add( reference );
+                    }
 
-                if( !entityState.version().equals( storeVersion ) )
-                {
-                    if( changed == null )
+                    String storeVersion = stripeOf( reference ).version( reference );
+                    if( storeVersion == null )
+                    {
+                        EntityStoreUnitOfWork storeUnitOfWork = store.newUnitOfWork( entityState.entityDescriptor().module(), Usecase.DEFAULT, currentTime );
+                        storeVersion = storeUnitOfWork.versionOf( reference );
+                        storeUnitOfWork.discard();
+                    }
+
+                    if( !entityState.version().equals( storeVersion ) )
                     {
-                        changed = new ArrayList<>();
+                        changed.add( reference );
                     }
-                    changed.add( entityState.entityReference() );
                 }
             }
+            catch( RuntimeException ex )
+            {
+                claimed.forEach( reference -> claims.remove( reference, unitOfWork ) );
+                throw ex;
+            }
 
-            if( changed != null )
+            if( !changed.isEmpty() )
             {
+                claimed.forEach( reference -> claims.remove( reference, unitOfWork ) );
                 throw new ConcurrentEntityStateModificationException( changed );
             }
         }
+
+        @Override
+        public void releaseVersions( Identity unitOfWork, Iterable<EntityState> states )
+        {
+            for( EntityState state : states )
+            {
+                EntityReference reference = state.entityReference();
+                stripeOf( reference ).forget( reference );
+                claims.remove( reference, unitOfWork );
+            }
+        }
+
+        private VersionStripe stripeOf( EntityReference reference )
+        {
+            int hash = reference.hashCode();
+            return stripes[ ( hash ^ ( hash >>> 16 ) ) & ( STRIPES - 1 ) ];
+        }
+
+        /**
+         * Weakly remembered versions guarded by their own monitor.
+         */
+        private static class VersionStripe
+        {
+            private final Map<EntityReference, String> versions = new WeakHashMap<>();
+
+            private synchronized void forget( EntityReference reference )
+            {
+                versions.remove( reference );
+            }
+
+            private synchronized void remember( EntityReference reference, String version )
+            {
+                versions.put( reference, version );
+            }
+
+            private synchronized String version( EntityReference reference )
+            {
+                return versions.get( reference );
+            }
+        }
     }
 }
@@ -20,6 +20,10 @@
 
 package org.apache.polygene.spi.entitystore;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 import org.apache.polygene.api.entity.EntityDescriptor;
 import org.apache.polygene.api.entity.EntityReference;
 import org.apache.polygene.api.structure.ModuleDescriptor;
@@ -36,6 +40,35 @@ public interface EntityStoreSPI
 
     EntityState entityStateOf( EntityStoreUnitOfWork unitOfWork, ModuleDescriptor module, EntityReference reference );
 
+    /**
+     * Get the EntityStates for several references at once.
+     * <p>
+     * Entities that are not found are skipped. The default implementation loops over
+     * {@link #entityStateOf(EntityStoreUnitOfWork, ModuleDescriptor, EntityReference)}.
+     * </p>
+     * @param unitOfWork The EntityStore UnitOfWork
+     * @param module Module descriptor
+     * @param references The entity references
+     * @return Found EntityStates, in no particular order
+     */
+    default Stream<EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork, ModuleDescriptor module,
+                                                Collection<EntityReference> references )
+    {
+        List<EntityState> states = new ArrayList<>( references.size() );
+        for( EntityReference reference : references )
+        {
+            try
+            {
+                states.add( entityStateOf( unitOfWork, module, reference ) );
+            }
+            catch( EntityNotFoundException ignored )
+            {
+                // Skip missing entities
+            }
+        }
+        return states.stream();
+    }
+
     String versionOf( EntityStoreUnitOfWork unitOfWork, EntityReference reference );
 
     StateCommitter applyChanges( EntityStoreUnitOfWork unitOfWork, Iterable<EntityState> state );
@@ -21,6 +21,10 @@
 package org.apache.polygene.spi.entitystore;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 import org.apache.polygene.api.entity.EntityDescriptor;
 import org.apache.polygene.api.entity.EntityReference;
 import org.apache.polygene.api.identity.Identity;
@@ -69,6 +73,50 @@ public interface EntityStoreUnitOfWork
     EntityState entityStateOf( ModuleDescriptor module, EntityReference anIdentity )
         throws EntityStoreException, EntityNotFoundException;
 
+    /**
+     * Get the EntityStates for several references at once.
+     * <p>
+     * Entities that are not found are skipped, this never throws {@link EntityNotFoundException}.
+     * The default implementation loops over {@link #entityStateOf(ModuleDescriptor, EntityReference)}.
+     * </p>
+     *
+     * @param module Module descriptor
+     * @param references The entity references
+     *
+     * @return Found entity states, in no particular order.
+     *
+     * @throws EntityStoreException thrown if retrieval failed.
+     */
+    default Stream<EntityState> entityStatesOf( ModuleDescriptor module, Collection<EntityReference> references )
+        throws EntityStoreException
+    {
+        List<EntityState> states = new ArrayList<>( references.size() );
+        for( EntityReference reference : references )
+        {
+            try
+            {
+                states.add( entityStateOf( module, reference ) );
+            }
+            catch( EntityNotFoundException ignored )
+            {
+                // Skip missing entities
+            }
+        }
+        return states.stream();
+    }
+
+    /**
+     * Forget the state of an entity if it has only been loaded, so that it can be garbage collected.
+     * <p>
+     * Modified, new and removed states are retained. Does nothing by default.
+     * </p>
+     *
+     * @param reference The entity reference
+     */
+    default void evict( EntityReference reference )
+    {
+    }
+
     String versionOf( EntityReference anIdentity ) throws EntityStoreException;
 
     StateCommitter applyChanges()
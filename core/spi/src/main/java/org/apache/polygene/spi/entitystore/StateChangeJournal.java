@@ -0,0 +1,258 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package org.apache.polygene.spi.entitystore;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.api.structure.ModuleDescriptor;
+import org.apache.polygene.spi.entity.EntityState;
+
+/**
+ * Append only file of the entities changed by each commit and of the latest delivered commit.
+ * <p>
+ * Lines are either {@code E version layer module type reference} or {@code D version}, tab separated and URL
+ * encoded. The file is truncated once all changes are delivered.
+ * </p>
+ * <p>
+ * Appended changes are synchronized to the disk outside of the write lock, a single synchronization covers all the
+ * changes written by concurrent commits in the meantime.
+ * </p>
+ */
+final class StateChangeJournal
+{
+    private final File file;
+    private final Object forceLock = new Object();
+
+    // Guarded by this
+    private FileOutputStream output;
+    private long written;
+
+    // Guarded by forceLock
+    private long forced;
+
+    StateChangeJournal( File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * Read the changes that were not delivered, only the latest one per entity, and start a new journal with them.
+     *
+     * @return undelivered changes
+     * @throws IOException if the journal cannot be read or written
+     */
+    synchronized List<Entry> undelivered()
+        throws IOException
+    {
+        Map<EntityReference, Entry> entries = new LinkedHashMap<>();
+        long delivered = 0;
+        if( file.exists() )
+        {
+            try( BufferedReader reader = new BufferedReader(
+                new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 ) ) )
+            {
+                String line;
+                while( ( line = reader.readLine() ) != null )
+                {
+                    String[] fields = line.split( "\t" );
+                    if( fields.length == 2 && "D".equals( fields[ 0 ] ) )
+                    {
+                        delivered = Math.max( delivered, Long.parseLong( fields[ 1 ] ) );
+                    }
+                    else if( fields.length == 6 && "E".equals( fields[ 0 ] ) )
+                    {
+                        Entry entry = new Entry( Long.parseLong( fields[ 1 ] ), decode( fields[ 2 ] ),
+                                                 decode( fields[ 3 ] ), decode( fields[ 4 ] ),
+                                                 EntityReference.parseEntityReference( decode( fields[ 5 ] ) ) );
+                        // Concurrent commits may be journaled out of order
+                        Entry previous = entries.remove( entry.reference );
+                        entries.put( entry.reference, previous != null && previous.version > entry.version
+                                                      ? previous : entry );
+                    }
+                    // Anything else is a line torn by a crash
+                }
+            }
+        }
+        List<Entry> undelivered = new ArrayList<>();
+        for( Entry entry : entries.values() )
+        {
+            if( entry.version > delivered )
+            {
+                undelivered.add( entry );
+            }
+        }
+        truncate();
+        if( !undelivered.isEmpty() )
+        {
+            output().write( lines( undelivered, 1 ) );
+            output.getChannel().force( false );
+        }
+        return undelivered;
+    }
+
+    void append( long version, ModuleDescriptor module, List<EntityState> states )
+        throws IOException
+    {
+        List<Entry> entries = new ArrayList<>( states.size() );
+        for( EntityState state : states )
+        {
+            entries.add( new Entry( version, module.layer().name(), module.name(),
+                                    state.entityDescriptor().primaryType().getName(), state.entityReference() ) );
+        }
+        byte[] lines = lines( entries, version );
+        long position;
+        synchronized( this )
+        {
+            output().write( lines );
+            position = ++written;
+        }
+        force( position );
+    }
+
+    synchronized void delivered( long version, boolean all )
+        throws IOException
+    {
+        if( all )
+        {
+            truncate();
+        }
+        else
+        {
+            // Not synchronized to the disk, at worst already delivered changes are delivered again
+            output().write( ( "D\t" + version + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+        }
+    }
+
+    private void force( long position )
+        throws IOException
+    {
+        synchronized( forceLock )
+        {
+            if( forced >= position )
+            {
+                // Synchronized by a concurrent append
+                return;
+            }
+            long target;
+            FileOutputStream stream;
+            synchronized( this )
+            {
+                target = written;
+                stream = output;
+            }
+            stream.getChannel().force( false );
+            forced = target;
+        }
+    }
+
+    private static byte[] lines( List<Entry> entries, long version )
+        throws IOException
+    {
+        StringBuilder lines = new StringBuilder();
+        for( Entry entry : entries )
+        {
+            lines.append( "E\t" ).append( version )
+                 .append( '\t' ).append( encode( entry.layer ) )
+                 .append( '\t' ).append( encode( entry.module ) )
+                 .append( '\t' ).append( encode( entry.type ) )
+                 .append( '\t' ).append( encode( entry.reference.toString() ) )
+                 .append( '\n' );
+        }
+        return lines.toString().getBytes( StandardCharsets.UTF_8 );
+    }
+
+    private FileOutputStream output()
+        throws IOException
+    {
+        if( output == null )
+        {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if( !parent.exists() && !parent.mkdirs() )
+            {
+                throw new IOException( "Unable to create " + parent );
+            }
+            output = new FileOutputStream( file, true );
+        }
+        return output;
+    }
+
+    private void truncate()
+        throws IOException
+    {
+        if( output != null )
+        {
+            // Keep the stream open, a concurrent append may be synchronizing it
+            output.getChannel().truncate( 0 );
+        }
+        else if( file.exists() )
+        {
+            new FileOutputStream( file, false ).close();
+        }
+    }
+
+    private static String encode( String value )
+        throws UnsupportedEncodingException
+    {
+        return URLEncoder.encode( value, "UTF-8" );
+    }
+
+    private static String decode( String value )
+        throws UnsupportedEncodingException
+    {
+        return URLDecoder.decode( value, "UTF-8" );
+    }
+
+    @Override
+    public String toString()
+    {
+        return file.toString();
+    }
+
+    static final class Entry
+    {
+        final long version;
+        final String layer;
+        final String module;
+        final String type;
+        final EntityReference reference;
+
+        private Entry( long version, String layer, String module, String type, EntityReference reference )
+        {
+            this.version = version;
+            this.layer = layer;
+            this.module = module;
+            this.type = type;
+            this.reference = reference;
+        }
+    }
+}
@@ -20,12 +20,28 @@
 
 package org.apache.polygene.spi.entitystore;
 
+import java.util.Collection;
+import java.util.stream.Stream;
+import org.apache.polygene.api.PolygeneAPI;
+import org.apache.polygene.api.activation.ActivatorAdapter;
 import org.apache.polygene.api.concern.ConcernOf;
+import org.apache.polygene.api.entity.EntityReference;
 import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.api.injection.scope.Structure;
+import org.apache.polygene.api.injection.scope.This;
+import org.apache.polygene.api.service.ServiceDescriptor;
+import org.apache.polygene.api.service.ServiceFinder;
+import org.apache.polygene.api.service.ServiceReference;
+import org.apache.polygene.api.structure.Application;
+import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.spi.entity.EntityState;
 
 /**
  * State change notification Concern.
+ * <p>
+ * Listeners are notified when changes are committed, or asynchronously if the EntityStore service has
+ * {@link AsyncStateChangeNotification} meta-info.
+ * </p>
  */
 public abstract class StateChangeNotificationConcern
     extends ConcernOf<EntityStoreSPI>
@@ -34,12 +50,40 @@ public abstract class StateChangeNotificationConcern
     @Service
     Iterable<StateChangeListener> listeners;
 
+    @This
+    EntityStore store;
+
+    @Structure
+    PolygeneAPI api;
+
+    @Structure
+    Application application;
+
+    @Structure
+    ServiceFinder finder;
+
+    @Override
+    public Stream<EntityState> entityStatesOf( EntityStoreUnitOfWork unitOfWork, ModuleDescriptor module,
+                                               Collection<EntityReference> references )
+    {
+        // Forward the batch, the inherited default would load the entities one by one
+        return next.entityStatesOf( unitOfWork, module, references );
+    }
+
     @Override
     public StateCommitter applyChanges( final EntityStoreUnitOfWork unitofwork,
                                         final Iterable<EntityState> state
     )
     {
         final StateCommitter committer = next.applyChanges( unitofwork, state );
+        ServiceDescriptor descriptor = api.serviceDescriptorFor( api.dereference( store ) );
+        AsyncStateChangeNotification async = descriptor.metaInfo( AsyncStateChangeNotification.class );
+        if( async != null )
+        {
+            // @This references are only valid during the invocation, the pipeline uses them from its own thread
+            return async.committer( unitofwork, state, committer, listeners, api.dereference( store ), application,
+                                    () -> isActive( descriptor ) );
+        }
         return new StateCommitter()
         {
             @Override
@@ -59,4 +103,39 @@ public abstract class StateChangeNotificationConcern
             }
         };
     }
+
+    /**
+     * Starts the asynchronous notification of an EntityStore as soon as it is activated, so that the changes left
+     * undelivered by a previous run are replayed even if nothing is committed.
+     * <p>
+     * Declare it only on the EntityStore services that have an {@link AsyncStateChangeNotification}, the
+     * {@literal AsyncStateChangeNotificationDeclaration} of the bootstrap does both.
+     * </p>
+     */
+    public static class Activator
+        extends ActivatorAdapter<ServiceReference<EntityStore>>
+    {
+        @Service
+        Iterable<StateChangeListener> listeners;
+
+        @Structure
+        Application application;
+
+        @Override
+        public void afterActivation( ServiceReference<EntityStore> activated )
+        {
+            AsyncStateChangeNotification async = activated.metaInfo( AsyncStateChangeNotification.class );
+            if( async != null )
+            {
+                async.activate( listeners, activated.get(), application, activated::isActive );
+            }
+        }
+    }
+
+    private boolean isActive( ServiceDescriptor descriptor )
+    {
+        return finder.findServices( EntityStore.class )
+                     .filter( reference -> reference.identity().equals( descriptor.identity() ) )
+                     .anyMatch( ServiceReference::isActive );
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.entitystore.helpers;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.polygene.api.entity.EntityDescriptor;
+import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.spi.entitystore.EntityNotFoundException;
+import org.apache.polygene.spi.entitystore.helpers.MapEntityStore.MapChange;
+
+/**
+ * Byte oriented MapEntityStore.
+ * <p>
+ * Add {@link BinaryMapEntityStoreMixin} along with {@link JSONMapEntityStoreMixin} to the service using this
+ * mixin. Entity states are encoded in the {@link EntityStateFormat} set as meta-info of the service declaration.
+ * </p>
+ */
+public interface BinaryMapEntityStore
+{
+    /**
+     * @param entityReference The reference to the entity that we want to get.
+     * @return Entity state InputStream
+     */
+    InputStream get( EntityReference entityReference ) throws Exception;
+
+    /**
+     * Get the state of several entities at once.
+     * <p>
+     * Entities that are not found are silently skipped, the returned InputStreams are in no particular order.
+     * The default implementation loops over {@link #get(EntityReference)}, stores that support multi-get
+     * should override it to fetch all states in a single round trip.
+     * </p>
+     * @param entityReferences The references to the entities that we want to get.
+     * @return Entity state InputStreams
+     */
+    default Stream<InputStream> getAll( Collection<EntityReference> entityReferences ) throws Exception
+    {
+        List<InputStream> states = new ArrayList<>( entityReferences.size() );
+        for( EntityReference entityReference : entityReferences )
+        {
+            try
+            {
+                states.add( get( entityReference ) );
+            }
+            catch( EntityNotFoundException ignored )
+            {
+                // Skip missing entities
+            }
+        }
+        return states.stream();
+    }
+
+    /**
+     * @return All entities state InputStreams, must be closed
+     */
+    Stream<InputStream> entityStates() throws Exception;
+
+    void applyChanges( BinaryMapChanges changes ) throws Exception;
+
+    /**
+     * Changes to be applied on a BinaryMapEntityStore.
+     */
+    interface BinaryMapChanges
+    {
+        /**
+         * Visitable BinaryMapChanges.
+         *
+         * @param changer Map changer
+         * @throws Exception on error
+         */
+        void visitMap( BinaryMapChanger changer ) throws Exception;
+    }
+
+    /**
+     * BinaryMapEntityStore changes applier.
+     * <p>
+     * The state buffers are reused once the methods return, implementations that keep them must copy them.
+     * </p>
+     */
+    interface BinaryMapChanger
+    {
+        void newEntity( EntityReference ref, EntityDescriptor entityDescriptor, ByteBuffer state )
+            throws Exception;
+
+        void updateEntity( MapChange mapChange, ByteBuffer state ) throws Exception;
+
+        void removeEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+            throws Exception;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.entitystore.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.stream.Stream;
+import javax.json.JsonObject;
+import org.apache.polygene.api.entity.EntityDescriptor;
+import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.api.injection.scope.This;
+import org.apache.polygene.api.injection.scope.Uses;
+import org.apache.polygene.api.mixin.Initializable;
+import org.apache.polygene.api.service.ServiceDescriptor;
+import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
+import org.apache.polygene.spi.entitystore.EntityStoreException;
+
+/**
+ * Implementation of MapEntityStore that works with an implementation of BinaryMapEntityStore.
+ *
+ * <p>Implement {@link BinaryMapEntityStore} and add as mixin to the service using this mixin and
+ * {@link JSONMapEntityStoreMixin}.</p>
+ * <p>Entity states are written in the {@link EntityStateFormat} set as meta-info of the service declaration, JSON by
+ * default. States that are still in JSON are read as such and written back in the store format, so that existing
+ * stores are converted as their entities are read.</p>
+ */
+public class BinaryMapEntityStoreMixin
+    implements MapEntityStore, Initializable
+{
+    @This
+    private BinaryMapEntityStore binaryMapEntityStore;
+
+    @Service
+    private JavaxJsonFactories jsonFactories;
+
+    @Uses
+    private ServiceDescriptor descriptor;
+
+    private EntityStateFormat format;
+
+    @Override
+    public void initialize()
+    {
+        format = descriptor.metaInfo( EntityStateFormat.class );
+        if( format == null )
+        {
+            format = JSONEntityStateFormat.INSTANCE;
+        }
+    }
+
+    @Override
+    public Reader get( EntityReference entityReference )
+        throws Exception
+    {
+        try( InputStream state = binaryMapEntityStore.get( entityReference ) )
+        {
+            return readState( state );
+        }
+    }
+
+    @Override
+    public Stream<Reader> getAll( Collection<EntityReference> entityReferences )
+        throws Exception
+    {
+        return binaryMapEntityStore.getAll( entityReferences ).map( this::readAndCloseState );
+    }
+
+    @Override
+    public Stream<Reader> entityStates()
+        throws Exception
+    {
+        return binaryMapEntityStore.entityStates().map( this::readAndCloseState );
+    }
+
+    @Override
+    public void applyChanges( MapChanges changes )
+        throws Exception
+    {
+        binaryMapEntityStore.applyChanges(
+            changer ->
+            {
+                StateBuffer buffer = new StateBuffer();
+                changes.visitMap( new MapChanger()
+                {
+                    @Override
+                    public Writer newEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+                    {
+                        return stateWriter( buffer, state -> changer.newEntity( ref, entityDescriptor, state ) );
+                    }
+
+                    @Override
+                    public Writer updateEntity( MapChange mapChange )
+                    {
+                        return stateWriter( buffer, state -> changer.updateEntity( mapChange, state ) );
+                    }
+
+                    @Override
+                    public void removeEntity( EntityReference ref, EntityDescriptor entityDescriptor )
+                        throws Exception
+                    {
+                        changer.removeEntity( ref, entityDescriptor );
+                    }
+                } );
+            } );
+    }
+
+    private Writer stateWriter( StateBuffer buffer, StateConsumer consumer )
+    {
+        return new JSONStateWriter( jsonFactories )
+        {
+            @Override
+            protected void writeState( JsonObject state )
+                throws IOException
+            {
+                ByteBuffer bytes = buffer.encode( state );
+                try
+                {
+                    consumer.accept( bytes );
+                }
+                catch( IOException | RuntimeException ex )
+                {
+                    throw ex;
+                }
+                catch( Exception ex )
+                {
+                    throw new EntityStoreException( ex );
+                }
+            }
+        };
+    }
+
+    private Reader readAndCloseState( InputStream state )
+    {
+        try( InputStream input = state )
+        {
+            return readState( input );
+        }
+        catch( IOException ex )
+        {
+            throw new EntityStoreException( ex );
+        }
+    }
+
+    private Reader readState( InputStream state )
+        throws IOException
+    {
+        InputStream input = state.markSupported() ? state : new BufferedInputStream( state );
+        input.mark( 1 );
+        int firstByte = input.read();
+        input.reset();
+        if( firstByte < 0 )
+        {
+            throw new EntityStoreException( "Empty entity state" );
+        }
+        if( format.isFormatOf( firstByte ) )
+        {
+            return new JSONStateReader( format.read( jsonFactories, input ) );
+        }
+        if( JSONEntityStateFormat.INSTANCE.isFormatOf( firstByte ) )
+        {
+            // Not yet converted to the store format
+            return new JSONStateReader( JSONEntityStateFormat.INSTANCE.read( jsonFactories, input ), true );
+        }
+        throw new EntityStoreException( "Unknown entity state format, starting with byte " + firstByte );
+    }
+
+    private interface StateConsumer
+    {
+        void accept( ByteBuffer state ) throws Exception;
+    }
+
+    /**
+     * Encoded entity states, reused for all the changes applied at once.
+     */
+    private final class StateBuffer
+        extends ByteArrayOutputStream
+    {
+        private StateBuffer()
+        {
+            super( 1024 );
+        }
+
+        private ByteBuffer encode( JsonObject state )
+            throws IOException
+        {
+            reset();
+            format.write( jsonFactories, state, this );
+            return ByteBuffer.wrap( buf, 0, count );
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.entitystore.helpers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.json.JsonObject;
+import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
+
+/**
+ * Format of the entity states stored by a {@link BinaryMapEntityStore}.
+ * <p>
+ * Set an instance as meta-info of the EntityStore service declaration to choose the format of a store,
+ * {@link JSONEntityStateFormat} is used by default.
+ * </p>
+ * <p>
+ * States are read by the first format whose {@link #isFormatOf(int)} accepts their first byte. Formats must
+ * hence be distinguishable from their first byte, and from JSON so that existing states can be converted.
+ * </p>
+ */
+public interface EntityStateFormat
+{
+    /**
+     * @param firstByte The first byte of a stored state, from 0 to 255
+     * @return true if a state starting with this byte is in this format
+     */
+    boolean isFormatOf( int firstByte );
+
+    /**
+     * Write an entity state.
+     *
+     * @param jsonFactories JSON factories
+     * @param state The entity state
+     * @param output Output, not closed
+     * @throws IOException on error
+     */
+    void write( JavaxJsonFactories jsonFactories, JsonObject state, OutputStream output )
+        throws IOException;
+
+    /**
+     * Read an entity state.
+     *
+     * @param jsonFactories JSON factories
+     * @param input Input, not closed
+     * @return The entity state
+     * @throws IOException on error
+     */
+    JsonObject read( JavaxJsonFactories jsonFactories, InputStream input )
+        throws IOException;
+}
@@ -18,6 +18,9 @@
 package org.apache.polygene.spi.entitystore.helpers;
 
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
@@ -43,6 +46,11 @@ import static org.apache.polygene.api.serialization.Serializer.Options.ALL_TYPE_
 
 /**
  * Standard JSON implementation of EntityState.
+ * <p>
+ * Changes are kept in an overlay of changed values on top of the loaded, immutable, state. The complete JSON state
+ * is only rebuilt once, when {@link #state()} is asked for, typically when the changes are applied to the store.
+ * Decoded property values are kept too so that they are deserialized at most once.
+ * </p>
  */
 public final class JSONEntityState
     implements EntityState
@@ -57,6 +65,8 @@ public final class JSONEntityState
     private EntityStatus status;
     private Instant lastModified;
     private JsonObject state;
+    private Map<String, JsonValue> changedValues;
+    private Map<String, Object> decodedValues;
 
     /* package */ JSONEntityState( ModuleDescriptor module,
                                    JsonSerialization serialization,
@@ -102,11 +112,17 @@ public final class JSONEntityState
     @Override
     public Object propertyValueOf( QualifiedName stateName )
     {
+        String name = stateName.name();
+        if( decodedValues != null && decodedValues.containsKey( name ) )
+        {
+            return decodedValues.get( name );
+        }
         try
         {
             ValueType valueType = entityDescriptor.state().findPropertyModelByQualifiedName( stateName ).valueType();
-            JsonValue jsonValue = state.getJsonObject( JSONKeys.VALUE ).get( stateName.name() );
-            return serialization.fromJson( module, valueType, jsonValue );
+            Object value = serialization.fromJson( module, valueType, valueOf( name ) );
+            decodedValues().put( name, value );
+            return value;
         }
         catch( SerializationException e )
         {
@@ -120,8 +136,10 @@ public final class JSONEntityState
         try
         {
             JsonValue jsonValue = serialization.toJson( ALL_TYPE_INFO, newValue );
-            if( stateCloneWithProperty( stateName.name(), jsonValue ) )
+            String name = stateName.name();
+            if( changeValue( name, jsonValue ) )
             {
+                decodedValues().put( name, newValue );
                 markUpdated();
             }
         }
@@ -134,7 +152,7 @@ public final class JSONEntityState
     @Override
     public EntityReference associationValueOf( QualifiedName stateName )
     {
-        JsonValue associationValue = state.getJsonObject( JSONKeys.VALUE ).get( stateName.name() );
+        JsonValue associationValue = valueOf( stateName.name() );
         if( associationValue == JsonValue.NULL )
         {
             return null;
@@ -145,7 +163,10 @@ public final class JSONEntityState
     @Override
     public void setAssociationValue( QualifiedName stateName, EntityReference entityReference )
     {
-        if( stateCloneWithAssociation( stateName.name(), entityReference ) )
+        JsonValue jsonRef = entityReference == null
+                            ? JsonValue.NULL
+                            : jsonFactories.toJsonString( entityReference.identity().toString() );
+        if( changeValue( stateName.name(), jsonRef ) )
         {
             markUpdated();
         }
@@ -187,15 +208,35 @@ public final class JSONEntityState
         return entityDescriptor;
     }
 
+    /**
+     * @return The complete JSON state, including all changes
+     */
     public JsonObject state()
     {
+        if( changedValues != null )
+        {
+            JsonObjectBuilder valueBuilder = jsonFactories.builderFactory().createObjectBuilder();
+            state.getJsonObject( JSONKeys.VALUE ).forEach(
+                ( name, value ) ->
+                {
+                    if( !changedValues.containsKey( name ) )
+                    {
+                        valueBuilder.add( name, value );
+                    }
+                } );
+            changedValues.forEach( valueBuilder::add );
+            state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
+                                 .add( JSONKeys.VALUE, valueBuilder.build() )
+                                 .build();
+            changedValues = null;
+        }
         return state;
     }
 
     @Override
     public String toString()
     {
-        return state.toString();
+        return state().toString();
     }
 
     void markUpdated()
@@ -208,60 +249,62 @@ public final class JSONEntityState
 
     void stateCloneWithVersionAndModified( String version, Instant lastModified )
     {
-        state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VERSION, JSONKeys.MODIFIED )
+        state = jsonFactories.cloneBuilderExclude( state(), JSONKeys.VERSION, JSONKeys.MODIFIED )
                              .add( JSONKeys.VERSION, version )
                              .add( JSONKeys.MODIFIED, lastModified.toEpochMilli() )
                              .build();
     }
 
-    private boolean stateCloneWithProperty( String stateName, JsonValue value )
+    /**
+     * @param name Name of the property or association
+     * @return The current JSON value, changed or loaded, or null if absent
+     */
+    JsonValue valueOf( String name )
     {
-        JsonObject valueState = state.getJsonObject( JSONKeys.VALUE );
-        if( Objects.equals( valueState.get( stateName ), value ) )
+        if( changedValues != null && changedValues.containsKey( name ) )
         {
-            return false;
+            return changedValues.get( name );
         }
-        JsonObjectBuilder valueBuilder = jsonFactories.cloneBuilderExclude( valueState, stateName );
-        if( value == null )
+        return state.getJsonObject( JSONKeys.VALUE ).get( name );
+    }
+
+    /**
+     * @param name Name of the property or association
+     * @param value The new JSON value, null for JSON null
+     * @return true if the value changed, false otherwise
+     */
+    private boolean changeValue( String name, JsonValue value )
+    {
+        if( Objects.equals( valueOf( name ), value ) )
         {
-            valueBuilder.addNull( stateName );
+            return false;
         }
-        else
+        if( changedValues == null )
         {
-            valueBuilder.add( stateName, value );
+            changedValues = new LinkedHashMap<>();
         }
-        state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
-                             .add( JSONKeys.VALUE, valueBuilder.build() )
-                             .build();
+        changedValues.put( name, value == null ? JsonValue.NULL : value );
         return true;
     }
 
-    private boolean stateCloneWithAssociation( String stateName, EntityReference ref )
+    private Map<String, Object> decodedValues()
     {
-        JsonObject valueState = state.getJsonObject( JSONKeys.VALUE );
-        JsonValue jsonRef = ref == null ? JsonValue.NULL : jsonFactories.toJsonString( ref.identity().toString() );
-        if( Objects.equals( valueState.get( stateName ), jsonRef ) )
+        if( decodedValues == null )
         {
-            return false;
+            decodedValues = new HashMap<>();
         }
-        valueState = jsonFactories.cloneBuilderExclude( valueState, stateName )
-                                  .add( stateName, jsonRef )
-                                  .build();
-        state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
-                             .add( JSONKeys.VALUE, valueState )
-                             .build();
-        return true;
+        return decodedValues;
     }
 
     void stateCloneAddManyAssociation( int idx, String stateName, EntityReference ref )
     {
-        JsonObject valueState = state.getJsonObject( JSONKeys.VALUE );
+        JsonValue previous = valueOf( stateName );
         String identity = ref.identity().toString();
         JsonArray manyAssoc;
-        if( valueState.containsKey( stateName ) )
+        if( previous instanceof JsonArray )
         {
             JsonArrayBuilder manyAssocBuilder = jsonFactories.builderFactory().createArrayBuilder();
-            JsonArray previousManyAssoc = valueState.getJsonArray( stateName );
+            JsonArray previousManyAssoc = (JsonArray) previous;
             int currentIdx = 0;
             for( JsonValue jsonRef : previousManyAssoc )
             {
@@ -282,87 +325,54 @@ public final class JSONEntityState
         {
             manyAssoc = jsonFactories.builderFactory().createArrayBuilder().add( identity ).build();
         }
-        valueState = jsonFactories.cloneBuilderExclude( valueState, stateName )
-                                  .add( stateName, manyAssoc )
-                                  .build();
-        state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
-                             .add( JSONKeys.VALUE, valueState )
-                             .build();
+        changeValue( stateName, manyAssoc );
     }
 
     void stateCloneRemoveManyAssociation( String stateName, EntityReference ref )
     {
-        JsonObject valueState = state.getJsonObject( JSONKeys.VALUE );
-        if( valueState.containsKey( stateName ) )
+        JsonValue previous = valueOf( stateName );
+        if( previous instanceof JsonArray )
         {
             String identity = ref.identity().toString();
-            JsonArray manyAssoc = jsonFactories.cloneBuilderExclude( valueState.getJsonArray( stateName ),
+            JsonArray manyAssoc = jsonFactories.cloneBuilderExclude( (JsonArray) previous,
                                                                      jsonFactories.toJsonString( identity ) )
                                                .build();
-            valueState = jsonFactories.cloneBuilderExclude( valueState, stateName )
-                                      .add( stateName, manyAssoc ).build();
-            state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
-                                 .add( JSONKeys.VALUE, valueState )
-                                 .build();
+            changeValue( stateName, manyAssoc );
         }
     }
 
     void stateCloneClearManyAssociation( String stateName )
     {
-        JsonObject valueState = state.getJsonObject( JSONKeys.VALUE );
-        if( valueState.containsKey( stateName ) )
+        if( valueOf( stateName ) != null )
         {
-            valueState = jsonFactories.cloneBuilderExclude( valueState, stateName )
-                                      .add( stateName, jsonFactories.builderFactory().createArrayBuilder().build() )
-                                      .build();
-            state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
-                                 .add( JSONKeys.VALUE, valueState )
-                                 .build();
+            changeValue( stateName, jsonFactories.builderFactory().createArrayBuilder().build() );
         }
     }
 
     void stateCloneAddNamedAssociation( String stateName, String name, EntityReference ref )
     {
-        JsonObject valueState = state.getJsonObject( JSONKeys.VALUE );
-        JsonObjectBuilder namedAssoc = valueState.containsKey( stateName )
-                                       ? jsonFactories.cloneBuilder( valueState.getJsonObject( stateName ) )
+        JsonValue previous = valueOf( stateName );
+        JsonObjectBuilder namedAssoc = previous instanceof JsonObject
+                                       ? jsonFactories.cloneBuilder( (JsonObject) previous )
                                        : jsonFactories.builderFactory().createObjectBuilder();
         namedAssoc.add( name, ref.identity().toString() );
-        valueState = jsonFactories.cloneBuilderExclude( valueState, stateName )
-                                  .add( stateName, namedAssoc.build() )
-                                  .build();
-        state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
-                             .add( JSONKeys.VALUE, valueState )
-                             .build();
+        changeValue( stateName, namedAssoc.build() );
     }
 
     void stateCloneRemoveNamedAssociation( String stateName, String name )
     {
-        JsonObject valueState = state.getJsonObject( JSONKeys.VALUE );
-        if( valueState.containsKey( stateName ) )
+        JsonValue previous = valueOf( stateName );
+        if( previous instanceof JsonObject )
         {
-            JsonObject namedAssoc = jsonFactories.cloneBuilderExclude( valueState.getJsonObject( stateName ), name )
-                                                 .build();
-            valueState = jsonFactories.cloneBuilderExclude( valueState, stateName )
-                                      .add( stateName, namedAssoc )
-                                      .build();
-            state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
-                                 .add( JSONKeys.VALUE, valueState )
-                                 .build();
+            changeValue( stateName, jsonFactories.cloneBuilderExclude( (JsonObject) previous, name ).build() );
         }
     }
 
     void stateCloneClearNamedAssociation( String stateName )
     {
-        JsonObject valueState = state.getJsonObject( JSONKeys.VALUE );
-        if( valueState.containsKey( stateName ) )
+        if( valueOf( stateName ) != null )
         {
-            valueState = jsonFactories.cloneBuilderExclude( valueState, stateName )
-                                      .add( stateName, jsonFactories.builderFactory().createObjectBuilder().build() )
-                                      .build();
-            state = jsonFactories.cloneBuilderExclude( state, JSONKeys.VALUE )
-                                 .add( JSONKeys.VALUE, valueState )
-                                 .build();
+            changeValue( stateName, jsonFactories.builderFactory().createObjectBuilder().build() );
         }
     }
 }
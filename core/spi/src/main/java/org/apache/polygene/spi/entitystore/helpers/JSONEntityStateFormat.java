@@ -0,0 +1,68 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.entitystore.helpers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Entity states as UTF-8 JSON text, as stored by MapEntityStores.
+ */
+public class JSONEntityStateFormat
+    implements EntityStateFormat
+{
+    public static final JSONEntityStateFormat INSTANCE = new JSONEntityStateFormat();
+
+    @Override
+    public boolean isFormatOf( int firstByte )
+    {
+        switch( firstByte )
+        {
+            case '{':
+            case ' ':
+            case '\t':
+            case '\r':
+            case '\n':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void write( JavaxJsonFactories jsonFactories, JsonObject state, OutputStream output )
+        throws IOException
+    {
+        output.write( state.toString().getBytes( UTF_8 ) );
+    }
+
+    @Override
+    public JsonObject read( JavaxJsonFactories jsonFactories, InputStream input )
+        throws IOException
+    {
+        // Not closed, that would close the input
+        JsonReader reader = jsonFactories.readerFactory().createReader( input, UTF_8 );
+        return reader.readObject();
+    }
+}
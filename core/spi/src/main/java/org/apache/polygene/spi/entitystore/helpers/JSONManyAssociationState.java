@@ -51,7 +51,7 @@ public final class JSONManyAssociationState
 
     private JsonArray getReferences()
     {
-        JsonValue references = entityState.state().getJsonObject( JSONKeys.VALUE ).get( stateName );
+        JsonValue references = entityState.valueOf( stateName );
         if( references != null && references.getValueType() == JsonValue.ValueType.ARRAY )
         {
             return (JsonArray) references;
@@ -27,8 +27,13 @@ import java.io.StringReader;
 import java.io.Writer;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import javax.json.JsonObject;
@@ -57,6 +62,7 @@ import org.apache.polygene.spi.cache.NullCache;
 import org.apache.polygene.spi.entity.EntityState;
 import org.apache.polygene.spi.entity.EntityStatus;
 import org.apache.polygene.spi.entitystore.DefaultEntityStoreUnitOfWork;
+import org.apache.polygene.spi.entitystore.EntityNotFoundException;
 import org.apache.polygene.spi.entitystore.EntityStore;
 import org.apache.polygene.spi.entitystore.EntityStoreException;
 import org.apache.polygene.spi.entitystore.EntityStoreSPI;
@@ -73,6 +79,7 @@ import static java.util.stream.Collectors.joining;
  * <p>See {@link org.apache.polygene.entitystore.memory.MemoryMapEntityStoreMixin} for reference.</p>
  * <p>EntityStores based on this mixin gets support for the <b>Migration</b> and <b>Cache</b> extensions.</p>
  * <p>MapEntityStore implementations will get their values as JSON.</p>
+ * <p>Add {@link BinaryMapEntityStoreMixin} to implement {@link BinaryMapEntityStore} instead.</p>
  */
 public class JSONMapEntityStoreMixin
     implements EntityStore, EntityStoreSPI, StateStore, JSONMapEntityStoreActivation
@@ -107,6 +114,16 @@ public class JSONMapEntityStoreMixin
     private CachePool caching;
     private Cache<CacheState> cache;
 
+    /**
+     * Entities whose migrated state is currently being written back by some thread.
+     */
+    private final Set<EntityReference> migrating = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Commits share it, writing migrated entities back excludes them.
+     */
+    private final ReadWriteLock writeBackLock = new ReentrantReadWriteLock();
+
     protected String uuid;
 
     public JSONMapEntityStoreMixin()
@@ -178,9 +195,9 @@ public class JSONMapEntityStoreMixin
     }
 
     @Override
-    public synchronized EntityState entityStateOf( EntityStoreUnitOfWork uow,
-                                                   ModuleDescriptor module,
-                                                   EntityReference reference )
+    public EntityState entityStateOf( EntityStoreUnitOfWork uow,
+                                      ModuleDescriptor module,
+                                      EntityReference reference )
     {
         try
         {
@@ -201,7 +218,7 @@ public class JSONMapEntityStoreMixin
                 }
                 if( doCacheOnRead( uow ) )
                 {
-                    cache.put( reference.identity().toString(), new CacheState( loadedState.state().toString() ) );
+                    cache.put( reference.identity().toString(), new CacheState( loadedState.state() ) );
                 }
                 return loadedState;
             }
@@ -217,18 +234,77 @@ public class JSONMapEntityStoreMixin
     }
 
     @Override
-    public synchronized String versionOf( EntityStoreUnitOfWork uow, EntityReference reference )
+    public Stream<EntityState> entityStatesOf( EntityStoreUnitOfWork uow,
+                                               ModuleDescriptor module,
+                                               Collection<EntityReference> references )
+    {
+        try
+        {
+            List<EntityState> states = new ArrayList<>( references.size() );
+            List<EntityReference> uncached = new ArrayList<>( references.size() );
+            for( EntityReference reference : references )
+            {
+                EntityState state = fetchCachedState( reference, module, uow.currentTime() );
+                if( state != null )
+                {
+                    states.add( state );
+                }
+                else
+                {
+                    uncached.add( reference );
+                }
+            }
+            if( !uncached.isEmpty() )
+            {
+                boolean cacheOnRead = doCacheOnRead( uow );
+                List<JSONEntityState> migrated = new ArrayList<>();
+                try( Stream<Reader> stateStream = mapEntityStore.getAll( uncached ) )
+                {
+                    stateStream.forEach(
+                        in ->
+                        {
+                            JSONEntityState loadedState = readEntityState( module, in );
+                            if( loadedState.status() == EntityStatus.UPDATED )
+                            {
+                                migrated.add( loadedState );
+                            }
+                            if( cacheOnRead )
+                            {
+                                cache.put( loadedState.entityReference().identity().toString(),
+                                           new CacheState( loadedState.state() ) );
+                            }
+                            states.add( loadedState );
+                        } );
+                }
+                if( !migrated.isEmpty() )
+                {
+                    synchMigratedEntities( migrated );
+                }
+            }
+            return states.stream();
+        }
+        catch( EntityStoreException ex )
+        {
+            throw ex;
+        }
+        catch( Exception ex )
+        {
+            throw new EntityStoreException( ex );
+        }
+    }
+
+    @Override
+    public String versionOf( EntityStoreUnitOfWork uow, EntityReference reference )
     {
         CacheState cacheState = cache.get( reference.identity().toString() );
         if( cacheState != null )
         {
-            return jsonFactories.readerFactory().createReader( new StringReader( cacheState.string ) ).readObject()
-                                .getString( JSONKeys.VERSION );
+            return cachedState( cacheState ).version;
         }
         // Get state
-        try( JsonReader reader = jsonFactories.readerFactory().createReader( mapEntityStore.get( reference ) ) )
+        try( Reader in = mapEntityStore.get( reference ) )
         {
-            return reader.readObject().getString( JSONKeys.VERSION );
+            return readJson( in ).getString( JSONKeys.VERSION );
         }
         catch( EntityStoreException ex )
         {
@@ -249,6 +325,7 @@ public class JSONMapEntityStoreMixin
             @Override
             public void commit()
             {
+                writeBackLock.readLock().lock();
                 try
                 {
                     mapEntityStore.applyChanges(
@@ -275,7 +352,7 @@ public class JSONMapEntityStoreMixin
                                     if( options.cacheOnNew() )
                                     {
                                         cache.put( state.entityReference().identity().toString(),
-                                                   new CacheState( state.state().toString() ) );
+                                                   new CacheState( state.state() ) );
                                     }
                                 }
                                 else if( state.status().equals( EntityStatus.UPDATED ) )
@@ -291,7 +368,7 @@ public class JSONMapEntityStoreMixin
                                     if( options.cacheOnWrite() )
                                     {
                                         cache.put( state.entityReference().identity().toString(),
-                                                   new CacheState( state.state().toString() ) );
+                                                   new CacheState( state.state() ) );
                                     }
                                 }
                                 else if( state.status().equals( EntityStatus.REMOVED ) )
@@ -306,6 +383,10 @@ public class JSONMapEntityStoreMixin
                 {
                     throw new EntityStoreException( e );
                 }
+                finally
+                {
+                    writeBackLock.readLock().unlock();
+                }
             }
 
             @Override
@@ -356,14 +437,51 @@ public class JSONMapEntityStoreMixin
         }
     }
 
+    /**
+     * Write migrated entities back to the store.
+     * <p>
+     * Reads are not serialized, so several threads may migrate the same entity at once. Only one of them writes it
+     * back, the others skip that entity as the state being written is the same.
+     * </p>
+     * <p>
+     * An entity may also be committed between the time it is read and the time it is written back. Write backs
+     * exclude commits and skip the entities whose stored version is no longer the one that was read.
+     * </p>
+     */
     private void synchMigratedEntities( List<JSONEntityState> migratedEntities )
     {
+        List<JSONEntityState> claimed = new ArrayList<>( migratedEntities.size() );
+        for( JSONEntityState state : migratedEntities )
+        {
+            if( migrating.add( state.entityReference() ) )
+            {
+                claimed.add( state );
+            }
+        }
+        migratedEntities.clear();
+        if( claimed.isEmpty() )
+        {
+            return;
+        }
+        writeBackLock.writeLock().lock();
         try
         {
+            List<JSONEntityState> unchanged = new ArrayList<>( claimed.size() );
+            for( JSONEntityState state : claimed )
+            {
+                if( isStoredVersion( state ) )
+                {
+                    unchanged.add( state );
+                }
+            }
+            if( unchanged.isEmpty() )
+            {
+                return;
+            }
             mapEntityStore.applyChanges(
                 changer ->
                 {
-                    for( JSONEntityState state : migratedEntities )
+                    for( JSONEntityState state : unchanged )
                     {
                         Instant lastModified = state.lastModified();
                         String version = state.version();
@@ -377,7 +495,6 @@ public class JSONMapEntityStoreMixin
                         }
                     }
                 } );
-            migratedEntities.clear();
         }
         catch( EntityStoreException ex )
         {
@@ -387,6 +504,24 @@ public class JSONMapEntityStoreMixin
         {
             throw new EntityStoreException( "Synchronization of Migrated Entities failed.", ex );
         }
+        finally
+        {
+            writeBackLock.writeLock().unlock();
+            claimed.forEach( state -> migrating.remove( state.entityReference() ) );
+        }
+    }
+
+    private boolean isStoredVersion( JSONEntityState state )
+        throws Exception
+    {
+        try( Reader in = mapEntityStore.get( state.entityReference() ) )
+        {
+            return state.version().equals( readJson( in ).getString( JSONKeys.VERSION ) );
+        }
+        catch( EntityNotFoundException removed )
+        {
+            return false;
+        }
     }
 
     protected Identity newUnitOfWorkId()
@@ -400,7 +535,14 @@ public class JSONMapEntityStoreMixin
         try
         {
             state.stateCloneWithVersionAndModified( version, lastModified );
-            writer.append( state.state().toString() );
+            if( writer instanceof JSONStateWriter )
+            {
+                ( (JSONStateWriter) writer ).state( state.state() );
+            }
+            else
+            {
+                writer.append( state.state().toString() );
+            }
         }
         catch( IOException e )
         {
@@ -411,11 +553,13 @@ public class JSONMapEntityStoreMixin
     protected JSONEntityState readEntityState( ModuleDescriptor module, Reader entityState )
         throws EntityStoreException
     {
-        try( JsonReader reader = jsonFactories.readerFactory().createReader( entityState ) )
+        try
         {
-            JsonObject parsedState = reader.readObject();
-            JsonObjectBuilder jsonStateBuilder = jsonFactories.cloneBuilder( parsedState );
-            EntityStatus status = EntityStatus.LOADED;
+            JsonObject parsedState = readJson( entityState );
+            // States read from a format the store no longer writes are written back
+            EntityStatus status = entityState instanceof JSONStateReader && ( (JSONStateReader) entityState ).outdated()
+                                  ? EntityStatus.UPDATED
+                                  : EntityStatus.LOADED;
 
             String version = parsedState.getString( JSONKeys.VERSION );
             Instant modified = Instant.ofEpochMilli( parsedState.getJsonNumber( JSONKeys.MODIFIED ).longValueExact() );
@@ -426,10 +570,12 @@ public class JSONMapEntityStoreMixin
             String currentAppVersion = parsedState.getString( JSONKeys.APPLICATION_VERSION, "0.0" );
             if( currentAppVersion.equals( application.version() ) )
             {
-                state = jsonStateBuilder.build();
+                // JsonObjects are immutable, no need to copy
+                state = parsedState;
             }
             else
             {
+                JsonObjectBuilder jsonStateBuilder = jsonFactories.cloneBuilder( parsedState );
                 if( migration != null )
                 {
                     state = migration.migrate( jsonStateBuilder.build(), application.version(), this );
@@ -472,10 +618,9 @@ public class JSONMapEntityStoreMixin
     @Override
     public JsonObject jsonStateOf( String id )
     {
-        try( JsonReader jsonReader = jsonFactories
-            .readerFactory().createReader( mapEntityStore.get( EntityReference.parseEntityReference( id ) ) ) )
+        try( Reader in = mapEntityStore.get( EntityReference.parseEntityReference( id ) ) )
         {
-            return jsonReader.readObject();
+            return readJson( in );
         }
         catch( EntityStoreException ex )
         {
@@ -487,24 +632,33 @@ public class JSONMapEntityStoreMixin
         }
     }
 
+    private JsonObject readJson( Reader in )
+    {
+        if( in instanceof JSONStateReader )
+        {
+            return ( (JSONStateReader) in ).state();
+        }
+        try( JsonReader reader = jsonFactories.readerFactory().createReader( in ) )
+        {
+            return reader.readObject();
+        }
+    }
+
     private EntityState fetchCachedState( EntityReference reference, ModuleDescriptor module, Instant currentTime )
     {
         CacheState cacheState = cache.get( reference.identity().toString() );
         if( cacheState != null )
         {
-            JsonObject state = jsonFactories.readerFactory().createReader( new StringReader( cacheState.string ) )
-                                            .readObject();
             try
             {
-                String type = state.getString( JSONKeys.TYPE );
+                cacheState = cachedState( cacheState );
+                String type = cacheState.state.getString( JSONKeys.TYPE );
                 EntityDescriptor entityDescriptor = module.entityDescriptor( type );
-                String version = state.getString( JSONKeys.VERSION );
-                Instant modified = Instant.ofEpochMilli( state.getJsonNumber( JSONKeys.MODIFIED ).longValueExact() );
                 return new JSONEntityState( entityDescriptor.module(), serialization, jsonFactories,
-                                            version, modified,
+                                            cacheState.version, cacheState.lastModified,
                                             reference,
                                             EntityStatus.LOADED, entityDescriptor,
-                                            state );
+                                            cacheState.state );
             }
             catch( Exception e )
             {
@@ -515,31 +669,65 @@ public class JSONMapEntityStoreMixin
         return null;
     }
 
+    /**
+     * CacheStates that went through an out-of-process cache only hold the serialized state, parse it once.
+     */
+    private CacheState cachedState( CacheState cacheState )
+    {
+        if( cacheState.state == null )
+        {
+            try( JsonReader reader = jsonFactories.readerFactory()
+                                                  .createReader( new StringReader( cacheState.string ) ) )
+            {
+                cacheState.parsed( reader.readObject() );
+            }
+        }
+        return cacheState;
+    }
+
     private boolean doCacheOnRead( EntityStoreUnitOfWork unitOfWork )
     {
         CacheOptions cacheOptions = unitOfWork.usecase().metaInfo( CacheOptions.class );
         return cacheOptions == null || cacheOptions.cacheOnRead();
     }
 
+    /**
+     * Cached entity state.
+     * <p>
+     * In-heap caches keep the parsed, immutable, state along with its version and last modification time so that a
+     * cache hit costs no parsing at all. The state is only serialized to a string when the cache externalizes it,
+     * e.g. an out-of-process cache like memcache.
+     * </p>
+     */
     public static class CacheState
         implements Externalizable
     {
-        public String string;
+        private transient volatile JsonObject state;
+        private transient String version;
+        private transient Instant lastModified;
+        private String string;
 
         public CacheState()
         {
         }
 
-        private CacheState( String string )
+        private CacheState( JsonObject state )
+        {
+            parsed( state );
+        }
+
+        private void parsed( JsonObject state )
         {
-            this.string = string;
+            this.version = state.getString( JSONKeys.VERSION );
+            this.lastModified = Instant.ofEpochMilli( state.getJsonNumber( JSONKeys.MODIFIED ).longValueExact() );
+            this.state = state;
         }
 
         @Override
         public void writeExternal( ObjectOutput out )
             throws IOException
         {
-            out.writeUTF( string );
+            out.writeUTF( string != null ? string : state.toString() );
         }
 
         @Override
@@ -53,7 +53,7 @@ public final class JSONNamedAssociationState
 
     private JsonObject getReferences()
     {
-        JsonValue references = entityState.state().getJsonObject( JSONKeys.VALUE ).get( stateName );
+        JsonValue references = entityState.valueOf( stateName );
         if( references != null && references.getValueType() == JsonValue.ValueType.OBJECT )
         {
             return (JsonObject) references;
@@ -0,0 +1,92 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package org.apache.polygene.spi.entitystore.helpers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import javax.json.JsonObject;
+
+/**
+ * Reader over an already parsed entity state.
+ * <p>
+ * MapEntityStores that keep their entities parsed return this from {@link MapEntityStore#get} so that
+ * {@link JSONMapEntityStoreMixin} can use the state as is instead of parsing it again.
+ * Other consumers read it as any other Reader, the JSON text is only produced when it is actually read.
+ * </p>
+ * <p>
+ * States read from a format the store no longer writes are {@link #outdated()} and get written back.
+ * </p>
+ */
+public final class JSONStateReader
+    extends Reader
+{
+    private final JsonObject state;
+    private final boolean outdated;
+    private Reader reader;
+
+    public JSONStateReader( JsonObject state )
+    {
+        this( state, false );
+    }
+
+    public JSONStateReader( JsonObject state, boolean outdated )
+    {
+        this.state = state;
+        this.outdated = outdated;
+    }
+
+    /**
+     * @return The parsed entity state
+     */
+    public JsonObject state()
+    {
+        return state;
+    }
+
+    /**
+     * @return true if the state was read from a format the store no longer writes
+     */
+    public boolean outdated()
+    {
+        return outdated;
+    }
+
+    @Override
+    public int read( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        if( reader == null )
+        {
+            reader = new StringReader( state.toString() );
+        }
+        return reader.read( cbuf, off, len );
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if( reader != null )
+        {
+            reader.close();
+        }
+    }
+}
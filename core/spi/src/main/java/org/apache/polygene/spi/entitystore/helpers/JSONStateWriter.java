@@ -0,0 +1,113 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.entitystore.helpers;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
+
+/**
+ * Writer accepting an already built entity state.
+ * <p>
+ * MapEntityStores that do not store JSON text return this from {@link MapEntityStore.MapChanger} so that
+ * {@link JSONMapEntityStoreMixin} can hand over the state as is instead of producing its JSON text.
+ * Other producers write to it as to any other Writer, the written JSON text is then parsed once closed.
+ * </p>
+ */
+public abstract class JSONStateWriter
+    extends Writer
+{
+    private final JavaxJsonFactories jsonFactories;
+    private JsonObject state;
+    private StringBuilder text;
+    private boolean closed;
+
+    protected JSONStateWriter( JavaxJsonFactories jsonFactories )
+    {
+        this.jsonFactories = jsonFactories;
+    }
+
+    /**
+     * @param state The entity state to write, instead of its JSON text
+     */
+    public void state( JsonObject state )
+    {
+        this.state = state;
+    }
+
+    @Override
+    public void write( char[] cbuf, int off, int len )
+    {
+        if( text == null )
+        {
+            text = new StringBuilder( 1024 );
+        }
+        text.append( cbuf, off, len );
+    }
+
+    @Override
+    public void write( String str, int off, int len )
+    {
+        if( text == null )
+        {
+            text = new StringBuilder( 1024 );
+        }
+        text.append( str, off, off + len );
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        if( closed )
+        {
+            return;
+        }
+        closed = true;
+        if( state == null && text == null )
+        {
+            throw new IOException( "No entity state written" );
+        }
+        if( state == null )
+        {
+            try( JsonReader reader = jsonFactories.readerFactory()
+                                                  .createReader( new StringReader( text.toString() ) ) )
+            {
+                state = reader.readObject();
+            }
+        }
+        writeState( state );
+    }
+
+    /**
+     * Write the entity state, called once on close.
+     *
+     * @param state The entity state
+     * @throws IOException on error
+     */
+    protected abstract void writeState( JsonObject state )
+        throws IOException;
+}
@@ -23,9 +23,13 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.stream.Stream;
 import org.apache.polygene.api.entity.EntityDescriptor;
 import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.spi.entitystore.EntityNotFoundException;
 
 /**
  * MapEntityStore.
@@ -38,6 +42,33 @@ public interface MapEntityStore
      */
     Reader get( EntityReference entityReference ) throws Exception;
 
+    /**
+     * Get the state of several entities at once.
+     * <p>
+     * Entities that are not found are silently skipped, the returned Readers are in no particular order.
+     * The default implementation loops over {@link #get(EntityReference)}, stores that support multi-get
+     * should override it to fetch all states in a single round trip.
+     * </p>
+     * @param entityReferences The references to the entities that we want to get.
+     * @return Entity state Readers
+     */
+    default Stream<Reader> getAll( Collection<EntityReference> entityReferences ) throws Exception
+    {
+        List<Reader> states = new ArrayList<>( entityReferences.size() );
+        for( EntityReference entityReference : entityReferences )
+        {
+            try
+            {
+                states.add( get( entityReference ) );
+            }
+            catch( EntityNotFoundException ignored )
+            {
+                // Skip missing entities
+            }
+        }
+        return states.stream();
+    }
+
     /**
      * @return All entities state Readers, must be closed
      */
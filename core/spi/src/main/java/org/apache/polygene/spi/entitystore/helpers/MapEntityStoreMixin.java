@@ -18,23 +18,29 @@
 package org.apache.polygene.spi.entitystore.helpers;
 
 import java.io.Reader;
+import java.math.BigDecimal;
 import java.io.Writer;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
 import javax.json.JsonException;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonValue;
-import javax.json.JsonWriter;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParsingException;
 import org.apache.polygene.api.common.Optional;
 import org.apache.polygene.api.common.QualifiedName;
 import org.apache.polygene.api.entity.EntityDescriptor;
@@ -45,6 +51,8 @@ import org.apache.polygene.api.identity.StringIdentity;
 import org.apache.polygene.api.injection.scope.Service;
 import org.apache.polygene.api.injection.scope.Structure;
 import org.apache.polygene.api.injection.scope.This;
+import org.apache.polygene.api.property.PropertyDescriptor;
+import org.apache.polygene.api.serialization.Serializer;
 import org.apache.polygene.api.structure.Application;
 import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.api.unitofwork.NoSuchEntityTypeException;
@@ -59,8 +67,12 @@ import org.apache.polygene.spi.entitystore.EntityStoreSPI;
 import org.apache.polygene.spi.entitystore.EntityStoreUnitOfWork;
 import org.apache.polygene.spi.entitystore.StateCommitter;
 import org.apache.polygene.spi.serialization.JsonSerialization;
+import org.apache.polygene.spi.serialization.StatefulValueCodec;
+import org.apache.polygene.spi.serialization.StatefulValueCodecs;
 
 import static org.apache.polygene.api.entity.EntityReference.parseEntityReference;
+import static org.apache.polygene.serialization.javaxjson.JavaxJson.asString;
+import static org.apache.polygene.serialization.javaxjson.JavaxJson.readJsonValue;
 
 /**
  * Implementation of EntityStore that works with an implementation of MapEntityStore.
@@ -95,6 +107,13 @@ public class MapEntityStoreMixin
     @Service
     private IdentityGenerator identityGenerator;
 
+    /**
+     * Entities whose migrated state is currently being written back by some thread.
+     */
+    private final Set<EntityReference> migrating = ConcurrentHashMap.newKeySet();
+
+    private final StatefulValueCodecs<Void> codecs = new StatefulValueCodecs<>();
+
     @Override
     public void activateMapEntityStore() {}
 
@@ -115,8 +134,8 @@ public class MapEntityStoreMixin
     }
 
     @Override
-    public synchronized EntityState entityStateOf( EntityStoreUnitOfWork uow,
-                                                   ModuleDescriptor module, EntityReference reference )
+    public EntityState entityStateOf( EntityStoreUnitOfWork uow,
+                                      ModuleDescriptor module, EntityReference reference )
     {
         try
         {
@@ -141,7 +160,45 @@ public class MapEntityStoreMixin
     }
 
     @Override
-    public synchronized String versionOf( EntityStoreUnitOfWork uow, EntityReference reference )
+    public Stream<EntityState> entityStatesOf( EntityStoreUnitOfWork uow,
+                                               ModuleDescriptor module,
+                                               Collection<EntityReference> references )
+    {
+        try
+        {
+            List<EntityState> states = new ArrayList<>( references.size() );
+            List<EntityState> migrated = new ArrayList<>();
+            try( Stream<Reader> stateStream = mapEntityStore.getAll( references ) )
+            {
+                stateStream.forEach(
+                    in ->
+                    {
+                        EntityState loadedState = readEntityState( module, in );
+                        if( loadedState.status() == EntityStatus.UPDATED )
+                        {
+                            migrated.add( loadedState );
+                        }
+                        states.add( loadedState );
+                    } );
+            }
+            if( !migrated.isEmpty() )
+            {
+                synchMigratedEntities( migrated );
+            }
+            return states.stream();
+        }
+        catch( EntityStoreException ex )
+        {
+            throw ex;
+        }
+        catch( Exception ex )
+        {
+            throw new EntityStoreException( ex );
+        }
+    }
+
+    @Override
+    public String versionOf( EntityStoreUnitOfWork uow, EntityReference reference )
     {
         try( JsonReader jsonReader = jsonFactories.readerFactory().createReader( mapEntityStore.get( reference ) ) )
         {
@@ -283,28 +340,54 @@ public class MapEntityStoreMixin
         }
     }
 
+    /**
+     * Write migrated entities back to the store.
+     * <p>
+     * Reads are not serialized, so several threads may migrate the same entity at once. Only one of them writes it
+     * back, the others skip that entity as the state being written is the same.
+     * </p>
+     */
     private void synchMigratedEntities( final List<EntityState> migratedEntities )
         throws Exception
     {
-        mapEntityStore.applyChanges(
-            changer ->
+        List<EntityState> claimed = new ArrayList<>( migratedEntities.size() );
+        for( EntityState state : migratedEntities )
+        {
+            if( migrating.add( state.entityReference() ) )
             {
-                for( EntityState migratedEntity : migratedEntities )
+                claimed.add( state );
+            }
+        }
+        migratedEntities.clear();
+        if( claimed.isEmpty() )
+        {
+            return;
+        }
+        try
+        {
+            mapEntityStore.applyChanges(
+                changer ->
                 {
-                    DefaultEntityState state = (DefaultEntityState) migratedEntity;
-                    String version = state.version();
-                    Instant lastModified = state.lastModified();
-                    MapEntityStore.MapChange mapChange = new MapEntityStore.MapChange(
-                        state.entityReference(), state.entityDescriptor(),
-                        version, version, lastModified
-                    );
-                    try( Writer writer = changer.updateEntity( mapChange ) )
+                    for( EntityState migratedEntity : claimed )
                     {
-                        writeEntityState( state, writer, version, lastModified );
+                        DefaultEntityState state = (DefaultEntityState) migratedEntity;
+                        String version = state.version();
+                        Instant lastModified = state.lastModified();
+                        MapEntityStore.MapChange mapChange = new MapEntityStore.MapChange(
+                            state.entityReference(), state.entityDescriptor(),
+                            version, version, lastModified
+                        );
+                        try( Writer writer = changer.updateEntity( mapChange ) )
+                        {
+                            writeEntityState( state, writer, version, lastModified );
+                        }
                     }
-                }
-            } );
-        migratedEntities.clear();
+                } );
+        }
+        finally
+        {
+            claimed.forEach( state -> migrating.remove( state.entityReference() ) );
+        }
     }
 
     protected Identity newUnitOfWorkId()
@@ -315,55 +398,56 @@ public class MapEntityStoreMixin
     protected void writeEntityState( DefaultEntityState state, Writer writer, String version, Instant lastModified )
         throws EntityStoreException
     {
-        try
+        try( JsonGenerator generator = jsonFactories.generatorFactory().createGenerator( writer ) )
         {
-            JsonObjectBuilder json = jsonFactories.builderFactory().createObjectBuilder();
-            json.add( JSONKeys.IDENTITY, state.entityReference().identity().toString() );
-            json.add( JSONKeys.APPLICATION_VERSION, application.version() );
-            json.add( JSONKeys.TYPE, state.entityDescriptor().primaryType().getName() );
-            json.add( JSONKeys.VERSION, version );
-            json.add( JSONKeys.MODIFIED, lastModified.toEpochMilli() );
-            JsonObjectBuilder valueBuilder = jsonFactories.builderFactory().createObjectBuilder();
-            EntityDescriptor entityType = state.entityDescriptor();
-            entityType.state().properties().forEach(
-                persistentProperty ->
-                {
-                    Object value = state.properties().get( persistentProperty.qualifiedName() );
-                    JsonValue jsonValue = jsonSerialization.toJson( value );
-                    valueBuilder.add( persistentProperty.qualifiedName().name(), jsonValue );
-                } );
+            generator.writeStartObject();
+            generator.write( JSONKeys.IDENTITY, state.entityReference().identity().toString() );
+            generator.write( JSONKeys.APPLICATION_VERSION, application.version() );
+            generator.write( JSONKeys.TYPE, state.entityDescriptor().primaryType().getName() );
+            generator.write( JSONKeys.VERSION, version );
+            generator.write( JSONKeys.MODIFIED, lastModified.toEpochMilli() );
+            generator.writeStartObject( JSONKeys.VALUE );
+            StatefulValueCodec<Void> codec = codecs.codecFor( state.entityDescriptor().valueType() );
+            for( StatefulValueCodec.Member<Void> persistentProperty : codec.properties() )
+            {
+                Object value = state.properties().get( persistentProperty.qualifiedName() );
+                jsonSerialization.toJson( Serializer.Options.DEFAULT, persistentProperty.name(), value, generator );
+            }
 
             for( Map.Entry<QualifiedName, EntityReference> entry : state.associations().entrySet() )
             {
                 EntityReference value = entry.getValue();
-                valueBuilder.add( entry.getKey().name(), value == null ? null : value.identity().toString() );
+                if( value == null )
+                {
+                    generator.writeNull( entry.getKey().name() );
+                }
+                else
+                {
+                    generator.write( entry.getKey().name(), value.identity().toString() );
+                }
             }
 
             for( Map.Entry<QualifiedName, List<EntityReference>> entry : state.manyAssociations().entrySet() )
             {
-                JsonArrayBuilder arrayBuilder = jsonFactories.builderFactory().createArrayBuilder();
+                generator.writeStartArray( entry.getKey().name() );
                 for( EntityReference entityReference : entry.getValue() )
                 {
-                    arrayBuilder.add( entityReference.identity().toString() );
+                    generator.write( entityReference.identity().toString() );
                 }
-                valueBuilder.add( entry.getKey().name(), arrayBuilder.build() );
+                generator.writeEnd();
             }
 
             for( Map.Entry<QualifiedName, Map<String, EntityReference>> entry : state.namedAssociations().entrySet() )
             {
-                JsonObjectBuilder objectBuilder = jsonFactories.builderFactory().createObjectBuilder();
+                generator.writeStartObject( entry.getKey().name() );
                 for( Map.Entry<String, EntityReference> namedRef : entry.getValue().entrySet() )
                 {
-                    objectBuilder.add( namedRef.getKey(), namedRef.getValue().identity().toString() );
+                    generator.write( namedRef.getKey(), namedRef.getValue().identity().toString() );
                 }
-                valueBuilder.add( entry.getKey().name(), objectBuilder.build() );
-            }
-            json.add( JSONKeys.VALUE, valueBuilder.build() );
-            JsonObject jsonState = json.build();
-            try( JsonWriter jsonWriter = jsonFactories.writerFactory().createWriter( writer ) )
-            {
-                jsonWriter.write( jsonState );
+                generator.writeEnd();
             }
+            generator.writeEnd();
+            generator.writeEnd();
         }
         catch( Exception e )
         {
@@ -371,12 +455,184 @@ public class MapEntityStoreMixin
         }
     }
 
+    /**
+     * Read an entity state.
+     * <p>
+     * The state is streamed from the reader when it has been written by the current application version, and mapped
+     * to the entity properties and associations as it is parsed.
+     * Otherwise it is read as a whole to be migrated.
+     * </p>
+     */
     protected EntityState readEntityState( ModuleDescriptor module, Reader entityState )
         throws EntityStoreException
     {
-        try( JsonReader jsonReader = jsonFactories.readerFactory().createReader( entityState ) )
+        try( NestingJsonParser parser = new NestingJsonParser(
+            jsonFactories.parserFactory().createParser( entityState ) ) )
+        {
+            if( parser.next() != JsonParser.Event.START_OBJECT )
+            {
+                throw new JsonException( "Expected a JSON object" );
+            }
+            JsonObjectBuilder header = jsonFactories.builderFactory().createObjectBuilder();
+            String appVersion = null;
+            String type = null;
+            StreamedState streamed = null;
+            while( parser.next() != JsonParser.Event.END_OBJECT )
+            {
+                String name = parser.getString();
+                JsonParser.Event event = parser.next();
+                if( JSONKeys.VALUE.equals( name ) && event == JsonParser.Event.START_OBJECT
+                    && type != null && application.version().equals( appVersion ) )
+                {
+                    EntityDescriptor entityDescriptor = module.entityDescriptor( type );
+                    if( entityDescriptor == null )
+                    {
+                        throw new NoSuchEntityTypeException( type, module );
+                    }
+                    streamed = readValueState( module, entityDescriptor, parser );
+                    continue;
+                }
+                JsonValue value = readJsonValue( jsonFactories.builderFactory(), parser, event );
+                if( JSONKeys.APPLICATION_VERSION.equals( name ) )
+                {
+                    appVersion = asString( value );
+                }
+                else if( JSONKeys.TYPE.equals( name ) )
+                {
+                    type = asString( value );
+                }
+                header.add( name, value );
+            }
+            if( streamed == null )
+            {
+                return readEntityState( module, header.build() );
+            }
+            JsonObject parsedState = header.build();
+            String version = parsedState.getString( JSONKeys.VERSION );
+            Instant modified = Instant.ofEpochMilli( parsedState.getJsonNumber( JSONKeys.MODIFIED ).longValueExact() );
+            Identity identity = StringIdentity.identityOf( parsedState.getString( JSONKeys.IDENTITY ) );
+            return new DefaultEntityState( version,
+                                           modified,
+                                           EntityReference.create( identity ),
+                                           streamed.status,
+                                           streamed.entityDescriptor,
+                                           streamed.properties,
+                                           streamed.associations,
+                                           streamed.manyAssociations,
+                                           streamed.namedAssociations
+            );
+        }
+        catch( EntityStoreException ex )
+        {
+            throw ex;
+        }
+        catch( Exception e )
+        {
+            throw new EntityStoreException( e );
+        }
+    }
+
+    private StreamedState readValueState( ModuleDescriptor module, EntityDescriptor entityDescriptor,
+                                          NestingJsonParser parser )
+    {
+        StreamedState state = new StreamedState( entityDescriptor );
+        StatefulValueCodec<Void> codec = codecs.codecFor( entityDescriptor.valueType() );
+        int depth = parser.depth();
+        while( parser.next() != JsonParser.Event.END_OBJECT )
+        {
+            StatefulValueCodec.Member<Void> member = codec.member( parser.getString() );
+            if( member != null && member.kind() == StatefulValueCodec.Kind.PROPERTY )
+            {
+                PropertyDescriptor property = member.property();
+                try
+                {
+                    Object value = jsonSerialization.fromJson( module, property.valueType(), parser );
+                    state.properties.put( member.qualifiedName(), value );
+                }
+                catch( JsonParsingException e )
+                {
+                    throw e;
+                }
+                catch( JsonException e )
+                {
+                    // Value not readable, default it
+                    parser.skipTo( depth );
+                    Object initialValue = property.resolveInitialValue( module );
+                    state.properties.put( member.qualifiedName(), initialValue );
+                    state.status = EntityStatus.UPDATED;
+                }
+                continue;
+            }
+            JsonParser.Event event = parser.next();
+            if( member == null )
+            {
+                parser.skipValue( event );
+            }
+            else if( member.kind() == StatefulValueCodec.Kind.ASSOCIATION )
+            {
+                state.associations.put( member.qualifiedName(), readReference( parser, event ) );
+            }
+            else if( member.kind() == StatefulValueCodec.Kind.MANY_ASSOCIATION
+                     && event == JsonParser.Event.START_ARRAY )
+            {
+                List<EntityReference> references = new ArrayList<>();
+                while( ( event = parser.next() ) != JsonParser.Event.END_ARRAY )
+                {
+                    references.add( readReference( parser, event ) );
+                }
+                state.manyAssociations.put( member.qualifiedName(), references );
+            }
+            else if( member.kind() == StatefulValueCodec.Kind.NAMED_ASSOCIATION
+                     && event == JsonParser.Event.START_OBJECT )
+            {
+                Map<String, EntityReference> references = new LinkedHashMap<>();
+                while( parser.next() != JsonParser.Event.END_OBJECT )
+                {
+                    String key = parser.getString();
+                    references.put( key, readReference( parser, parser.next() ) );
+                }
+                state.namedAssociations.put( member.qualifiedName(), references );
+            }
+            else
+            {
+                parser.skipValue( event );
+            }
+        }
+
+        // Not found, default them
+        for( StatefulValueCodec.Member<Void> property : codec.properties() )
+        {
+            if( !state.properties.containsKey( property.qualifiedName() ) )
+            {
+                state.properties.put( property.qualifiedName(),
+                                      jsonSerialization.fromJson( module, property.property().valueType(),
+                                                                  (JsonValue) null ) );
+            }
+        }
+        codec.associations().forEach(
+            association -> state.associations.putIfAbsent( association.qualifiedName(), null ) );
+        codec.manyAssociations().forEach(
+            association -> state.manyAssociations.putIfAbsent( association.qualifiedName(), new ArrayList<>() ) );
+        codec.namedAssociations().forEach(
+            association -> state.namedAssociations.putIfAbsent( association.qualifiedName(), new LinkedHashMap<>() ) );
+        return state;
+    }
+
+    private static EntityReference readReference( NestingJsonParser parser, JsonParser.Event event )
+    {
+        if( event == JsonParser.Event.VALUE_STRING )
+        {
+            return parseEntityReference( parser.getString() );
+        }
+        parser.skipValue( event );
+        return null;
+    }
+
+    protected EntityState readEntityState( ModuleDescriptor module, JsonObject parsedState )
+        throws EntityStoreException
+    {
+        try
         {
-            JsonObject parsedState = jsonReader.readObject();
             JsonObjectBuilder jsonStateBuilder = jsonFactories.cloneBuilder( parsedState );
             final EntityStatus[] status = { EntityStatus.LOADED };
 
@@ -539,4 +795,124 @@ public class MapEntityStoreMixin
             throw new EntityStoreException( ex );
         }
     }
+
+    private static class StreamedState
+    {
+        private final EntityDescriptor entityDescriptor;
+        private final Map<QualifiedName, Object> properties = new HashMap<>();
+        private final Map<QualifiedName, EntityReference> associations = new HashMap<>();
+        private final Map<QualifiedName, List<EntityReference>> manyAssociations = new HashMap<>();
+        private final Map<QualifiedName, Map<String, EntityReference>> namedAssociations = new HashMap<>();
+        private EntityStatus status = EntityStatus.LOADED;
+
+        private StreamedState( EntityDescriptor entityDescriptor )
+        {
+            this.entityDescriptor = entityDescriptor;
+        }
+    }
+
+    /**
+     * JsonParser keeping track of the structure nesting depth so that unreadable values can be skipped.
+     */
+    private static class NestingJsonParser
+        implements JsonParser
+    {
+        private final JsonParser parser;
+        private int depth;
+
+        private NestingJsonParser( JsonParser parser )
+        {
+            this.parser = parser;
+        }
+
+        private int depth()
+        {
+            return depth;
+        }
+
+        /**
+         * Skip events until the given depth is reached back.
+         */
+        private void skipTo( int target )
+        {
+            while( depth > target )
+            {
+                next();
+            }
+        }
+
+        /**
+         * Skip the rest of the value started by the given event.
+         */
+        private void skipValue( Event event )
+        {
+            if( event == Event.START_OBJECT || event == Event.START_ARRAY )
+            {
+                skipTo( depth - 1 );
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return parser.hasNext();
+        }
+
+        @Override
+        public Event next()
+        {
+            Event event = parser.next();
+            if( event == Event.START_OBJECT || event == Event.START_ARRAY )
+            {
+                depth++;
+            }
+            else if( event == Event.END_OBJECT || event == Event.END_ARRAY )
+            {
+                depth--;
+            }
+            return event;
+        }
+
+        @Override
+        public String getString()
+        {
+            return parser.getString();
+        }
+
+        @Override
+        public boolean isIntegralNumber()
+        {
+            return parser.isIntegralNumber();
+        }
+
+        @Override
+        public int getInt()
+        {
+            return parser.getInt();
+        }
+
+        @Override
+        public long getLong()
+        {
+            return parser.getLong();
+        }
+
+        @Override
+        public BigDecimal getBigDecimal()
+        {
+            return parser.getBigDecimal();
+        }
+
+        @Override
+        public JsonLocation getLocation()
+        {
+            return parser.getLocation();
+        }
+
+        @Override
+        public void close()
+        {
+            parser.close();
+        }
+    }
 }
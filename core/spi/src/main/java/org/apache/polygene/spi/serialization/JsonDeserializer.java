@@ -21,10 +21,12 @@ import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
 import org.apache.polygene.api.common.Optional;
 import org.apache.polygene.api.serialization.Deserializer;
 import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.api.type.ValueType;
+import org.apache.polygene.serialization.javaxjson.JavaxJson;
 import org.apache.polygene.spi.module.ModuleSpi;
 
 /**
@@ -34,6 +36,25 @@ public interface JsonDeserializer extends Deserializer
 {
     <T> T fromJson( ModuleDescriptor module, ValueType valueType, @Optional JsonValue state );
 
+    /**
+     * Read the next value of a {@literal JsonParser}.
+     *
+     * The parser must be positioned right before the value: at its root, inside an array or right after a key.
+     * It is left on the last event of the value.
+     * This default implementation reads a {@literal JsonValue} tree and deserializes it, implementations should
+     * override it to map parser events as they come.
+     *
+     * @param module Module descriptor
+     * @param valueType Type of the value to read
+     * @param parser Parser to read from
+     * @param <T> Type of the value
+     * @return The deserialized value
+     */
+    default <T> T fromJson( ModuleDescriptor module, ValueType valueType, JsonParser parser )
+    {
+        return fromJson( module, valueType, JavaxJson.readJsonValue( parser ) );
+    }
+
     default <T> Function<JsonValue, T> fromJsonFunction( ModuleDescriptor module, ValueType valueType )
     {
         return state -> fromJson( module, valueType, state );
@@ -21,6 +21,7 @@ import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
 import org.apache.polygene.api.common.Optional;
 import org.apache.polygene.api.serialization.Serializer;
 
@@ -46,6 +47,35 @@ public interface JsonSerializer extends Serializer
         return toJsonFunction( Options.DEFAULT ).apply( object );
     }
 
+    /**
+     * Write an object to a {@literal JsonGenerator}, as an element of the current array.
+     *
+     * This default implementation writes the {@literal JsonValue} tree built by {@link #toJson(Options, Object)},
+     * implementations should override it to write to the generator as they go.
+     *
+     * @param options Serialization options
+     * @param object Object to serialize
+     * @param generator Generator to write to
+     */
+    default void toJson( Options options, @Optional Object object, JsonGenerator generator )
+    {
+        generator.write( toJson( options, object ) );
+    }
+
+    /**
+     * Write an object to a {@literal JsonGenerator}, as a member of the current object.
+     *
+     * @param options Serialization options
+     * @param name Name of the member
+     * @param object Object to serialize
+     * @param generator Generator to write to
+     * @see #toJson(Options, Object, JsonGenerator)
+     */
+    default void toJson( Options options, String name, @Optional Object object, JsonGenerator generator )
+    {
+        generator.write( name, toJson( options, object ) );
+    }
+
     default <T> Stream<JsonValue> toJsonEach( Options options, Stream<T> objects )
     {
         return objects.map( toJsonFunction( options ) );
@@ -0,0 +1,254 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.serialization;
+
+import java.lang.reflect.AccessibleObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.polygene.api.association.AssociationDescriptor;
+import org.apache.polygene.api.common.QualifiedName;
+import org.apache.polygene.api.property.PropertyDescriptor;
+import org.apache.polygene.api.serialization.Converter;
+import org.apache.polygene.api.serialization.Converters;
+import org.apache.polygene.api.type.StatefulAssociationValueType;
+import org.apache.polygene.api.type.ValueType;
+
+import static org.apache.polygene.spi.serialization.AbstractDeserializer.ENTITY_REF_LIST_VALUE_TYPE;
+import static org.apache.polygene.spi.serialization.AbstractDeserializer.ENTITY_REF_MAP_VALUE_TYPE;
+
+/**
+ * Serialization codec of a stateful association value type.
+ *
+ * Holds everything serializers need to encode and decode the state of values and entities of a given type, resolved
+ * once: member names, accessors, property converters and format specific adapters.
+ * Codecs are immutable and obtained from a {@link StatefulValueCodecs} registry.
+ *
+ * @param <A> Type of the format specific adapters
+ */
+public final class StatefulValueCodec<A>
+{
+    private final StatefulAssociationValueType<?> valueType;
+    private final String typeName;
+    private final List<Member<A>> properties;
+    private final List<Member<A>> associations;
+    private final List<Member<A>> manyAssociations;
+    private final List<Member<A>> namedAssociations;
+    private final Map<String, Member<A>> members = new HashMap<>();
+
+    StatefulValueCodec( StatefulAssociationValueType<?> valueType, Converters converters,
+                        Function<ValueType, A> adapters )
+    {
+        this.valueType = valueType;
+        this.typeName = valueType.primaryType().getName();
+        List<Member<A>> properties = new ArrayList<>();
+        valueType.properties().forEach(
+            property ->
+            {
+                Converter<Object> converter = converters == null ? null : converters.converterFor( property );
+                ValueType memberType = converter != null ? ValueType.STRING : property.valueType();
+                properties.add( new Member<>( Kind.PROPERTY, property.qualifiedName(), property, null,
+                                              property.accessor(), converter, memberType,
+                                              adapterFor( memberType, converters, adapters ) ) );
+            } );
+        this.properties = Collections.unmodifiableList( properties );
+        this.associations = associations( Kind.ASSOCIATION, valueType.associations(), ValueType.ENTITY_REFERENCE,
+                                          converters, adapters );
+        this.manyAssociations = associations( Kind.MANY_ASSOCIATION, valueType.manyAssociations(),
+                                              ENTITY_REF_LIST_VALUE_TYPE, converters, adapters );
+        this.namedAssociations = associations( Kind.NAMED_ASSOCIATION, valueType.namedAssociations(),
+                                               ENTITY_REF_MAP_VALUE_TYPE, converters, adapters );
+        for( List<Member<A>> kind : Arrays.asList( this.properties, associations, manyAssociations,
+                                                    namedAssociations ) )
+        {
+            kind.forEach( member -> members.put( member.name(), member ) );
+        }
+    }
+
+    private List<Member<A>> associations( Kind kind, Stream<? extends AssociationDescriptor> descriptors,
+                                          ValueType memberType, Converters converters,
+                                          Function<ValueType, A> adapters )
+    {
+        A adapter = adapterFor( memberType, converters, adapters );
+        return Collections.unmodifiableList(
+            descriptors.map( association -> new Member<>( kind, association.qualifiedName(), null, association,
+                                                          association.accessor(), null, memberType, adapter ) )
+                       .collect( Collectors.toList() ) );
+    }
+
+    private static <A> A adapterFor( ValueType valueType, Converters converters, Function<ValueType, A> adapters )
+    {
+        // Converters take precedence over adapters
+        if( converters != null && converters.converterFor( valueType ) != null )
+        {
+            return null;
+        }
+        return adapters.apply( valueType );
+    }
+
+    public StatefulAssociationValueType<?> valueType()
+    {
+        return valueType;
+    }
+
+    /**
+     * @return Name of the type as written in type information
+     */
+    public String typeName()
+    {
+        return typeName;
+    }
+
+    public List<Member<A>> properties()
+    {
+        return properties;
+    }
+
+    public List<Member<A>> associations()
+    {
+        return associations;
+    }
+
+    public List<Member<A>> manyAssociations()
+    {
+        return manyAssociations;
+    }
+
+    public List<Member<A>> namedAssociations()
+    {
+        return namedAssociations;
+    }
+
+    /**
+     * @param name Member name
+     * @return The property or association of that name, or null if there is none
+     */
+    public Member<A> member( String name )
+    {
+        return members.get( name );
+    }
+
+    public enum Kind
+    {
+        PROPERTY, ASSOCIATION, MANY_ASSOCIATION, NAMED_ASSOCIATION
+    }
+
+    /**
+     * A property or association of a stateful association value type.
+     *
+     * @param <A> Type of the format specific adapters
+     */
+    public static final class Member<A>
+    {
+        private final Kind kind;
+        private final QualifiedName qualifiedName;
+        private final String name;
+        private final PropertyDescriptor property;
+        private final AssociationDescriptor association;
+        private final AccessibleObject accessor;
+        private final Converter<Object> converter;
+        private final ValueType valueType;
+        private final A adapter;
+
+        private Member( Kind kind, QualifiedName qualifiedName,
+                        PropertyDescriptor property, AssociationDescriptor association,
+                        AccessibleObject accessor, Converter<Object> converter,
+                        ValueType valueType, A adapter )
+        {
+            this.kind = kind;
+            this.qualifiedName = qualifiedName;
+            this.name = qualifiedName.name();
+            this.property = property;
+            this.association = association;
+            this.accessor = accessor;
+            this.converter = converter;
+            this.valueType = valueType;
+            this.adapter = adapter;
+        }
+
+        public Kind kind()
+        {
+            return kind;
+        }
+
+        public QualifiedName qualifiedName()
+        {
+            return qualifiedName;
+        }
+
+        /**
+         * @return Name of the member as written in serialized state
+         */
+        public String name()
+        {
+            return name;
+        }
+
+        /**
+         * @return The property descriptor, null for associations
+         */
+        public PropertyDescriptor property()
+        {
+            return property;
+        }
+
+        /**
+         * @return The association descriptor, null for properties
+         */
+        public AssociationDescriptor association()
+        {
+            return association;
+        }
+
+        public AccessibleObject accessor()
+        {
+            return accessor;
+        }
+
+        /**
+         * @return The converter of the property, null if it has none
+         */
+        public Converter<Object> converter()
+        {
+            return converter;
+        }
+
+        /**
+         * @return Type of the serialized value, {@literal String} for converted properties, entity references for
+         * associations
+         */
+        public ValueType valueType()
+        {
+            return valueType;
+        }
+
+        /**
+         * @return The adapter of {@link #valueType()}, null if it has none or if it is converted
+         */
+        public A adapter()
+        {
+            return adapter;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.serialization;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.apache.polygene.api.serialization.Converters;
+import org.apache.polygene.api.type.StatefulAssociationValueType;
+import org.apache.polygene.api.type.ValueType;
+
+/**
+ * Thread-safe registry of {@link StatefulValueCodec}s.
+ *
+ * Codecs are compiled on first use, once per value or entity type descriptor. The same type assembled in several
+ * modules has several descriptors, and as many codecs.
+ *
+ * @param <A> Type of the format specific adapters
+ */
+public final class StatefulValueCodecs<A>
+{
+    private final Map<DescriptorKey, StatefulValueCodec<A>> codecs = new ConcurrentHashMap<>();
+    private final Converters converters;
+    private final Function<ValueType, A> adapters;
+
+    /**
+     * Registry of codecs without converters nor adapters.
+     */
+    public StatefulValueCodecs()
+    {
+        this( null, valueType -> null );
+    }
+
+    /**
+     * @param converters Converters used to resolve property converters, and to exclude converted types from adapters
+     * @param adapters Function resolving format specific adapters
+     */
+    public StatefulValueCodecs( Converters converters, Function<ValueType, A> adapters )
+    {
+        this.converters = converters;
+        this.adapters = adapters;
+    }
+
+    public StatefulValueCodec<A> codecFor( StatefulAssociationValueType<?> valueType )
+    {
+        // Keyed by identity, whatever the value type equality, each descriptor keeps its own codec
+        DescriptorKey key = new DescriptorKey( valueType );
+        StatefulValueCodec<A> codec = codecs.get( key );
+        if( codec == null )
+        {
+            codec = new StatefulValueCodec<>( valueType, converters, adapters );
+            StatefulValueCodec<A> concurrent = codecs.putIfAbsent( key, codec );
+            if( concurrent != null )
+            {
+                codec = concurrent;
+            }
+        }
+        return codec;
+    }
+
+    private static final class DescriptorKey
+    {
+        private final StatefulAssociationValueType<?> valueType;
+
+        private DescriptorKey( StatefulAssociationValueType<?> valueType )
+        {
+            this.valueType = valueType;
+        }
+
+        @Override
+        public boolean equals( Object other )
+        {
+            return other instanceof DescriptorKey && ( (DescriptorKey) other ).valueType == valueType;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode( valueType );
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.entitystore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.polygene.api.concern.ConcernOf;
+import org.apache.polygene.api.entity.EntityBuilder;
+import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.identity.StringIdentity;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.structure.ModuleDescriptor;
+import org.apache.polygene.api.unitofwork.NoSuchEntityException;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkFactory;
+import org.apache.polygene.bootstrap.AsyncStateChangeNotificationDeclaration;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.apache.polygene.entitystore.memory.MemoryEntityStoreService;
+import org.apache.polygene.spi.entity.EntityState;
+import org.apache.polygene.spi.entity.EntityStatus;
+import org.apache.polygene.test.EntityTestAssembler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AsyncStateChangeNotificationTest
+{
+    private static final List<EntityState> NOTIFIED = Collections.synchronizedList( new ArrayList<>() );
+    private static volatile CountDownLatch release;
+    private static volatile CountDownLatch entered;
+    private static volatile boolean failing;
+    private static volatile boolean interrupting;
+    private static volatile boolean failingReads;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void reset()
+    {
+        NOTIFIED.clear();
+        release = new CountDownLatch( 0 );
+        entered = new CountDownLatch( 1 );
+        failing = false;
+        interrupting = false;
+        failingReads = false;
+    }
+
+    @Test
+    public void givenBlockedListenerWhenCommittingExpectCommitNotToWait()
+        throws Exception
+    {
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification();
+        SingletonAssembler assembler = assemble( async );
+        release = new CountDownLatch( 1 );
+
+        create( assembler.module().unitOfWorkFactory(), "a", "first" );
+
+        assertThat( async.submittedVersion(), equalTo( 1L ) );
+        assertThat( async.awaitCatchUp( 100, TimeUnit.MILLISECONDS ), equalTo( false ) );
+        release.countDown();
+        assertThat( async.awaitCatchUp( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( async.visibleVersion(), equalTo( 1L ) );
+        assertThat( NOTIFIED.size(), equalTo( 1 ) );
+        assertThat( NOTIFIED.get( 0 ).entityReference(), equalTo( EntityReference.parseEntityReference( "a" ) ) );
+        assembler.application().passivate();
+    }
+
+    @Test
+    public void givenRepeatedChangesWhileDeliveringExpectCoalescedChanges()
+        throws Exception
+    {
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification();
+        SingletonAssembler assembler = assemble( async );
+        UnitOfWorkFactory uowf = assembler.module().unitOfWorkFactory();
+        release = new CountDownLatch( 1 );
+
+        create( uowf, "a", "first" );
+        create( uowf, "b", "first" );
+        for( String name : new String[]{ "second", "third", "fourth" } )
+        {
+            update( uowf, "b", name );
+        }
+        release.countDown();
+
+        assertThat( async.awaitCatchUp( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( async.visibleVersion(), equalTo( 5L ) );
+        assertThat( async.pending(), equalTo( 0 ) );
+        // At most one delivery of b started before the listener was released, then only its latest state
+        assertThat( NOTIFIED.size() <= 3, equalTo( true ) );
+        assertThat( NOTIFIED.get( NOTIFIED.size() - 1 ).entityReference(),
+                    equalTo( EntityReference.parseEntityReference( "b" ) ) );
+        assembler.application().passivate();
+    }
+
+    @Test
+    public void givenChangeInFlightWhenSupersededExpectNotVisibleBeforeDelivered()
+        throws Exception
+    {
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification();
+        SingletonAssembler assembler = assemble( async );
+        UnitOfWorkFactory uowf = assembler.module().unitOfWorkFactory();
+        release = new CountDownLatch( 1 );
+
+        create( uowf, "a", "first" );
+        assertThat( entered.await( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        update( uowf, "a", "second" );
+
+        // The listener still holds the batch of the first version
+        assertThat( async.awaitVisible( 1, 200, TimeUnit.MILLISECONDS ), equalTo( false ) );
+        release.countDown();
+        assertThat( async.awaitVisible( 1, 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( async.awaitVisible( 2, 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( NOTIFIED.size(), equalTo( 2 ) );
+        assembler.application().passivate();
+    }
+
+    @Test( timeout = 10000 )
+    public void givenFailingListenerWhenRetriesExhaustedExpectChangesDropped()
+        throws Exception
+    {
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification()
+            .withRetries( 2, 10, TimeUnit.MILLISECONDS );
+        SingletonAssembler assembler = assemble( async );
+        UnitOfWorkFactory uowf = assembler.module().unitOfWorkFactory();
+        failing = true;
+
+        create( uowf, "a", "first" );
+
+        assertThat( async.awaitCatchUp( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( async.dropped(), equalTo( 1L ) );
+        assertThat( async.pending(), equalTo( 0 ) );
+        assertThat( async.lastFailure() instanceof IllegalStateException, equalTo( true ) );
+
+        failing = false;
+        create( uowf, "b", "first" );
+        assertThat( async.awaitCatchUp( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( async.lastFailure(), equalTo( null ) );
+        assertThat( NOTIFIED.size(), equalTo( 1 ) );
+        assertThat( NOTIFIED.get( 0 ).entityReference(), equalTo( EntityReference.parseEntityReference( "b" ) ) );
+        assembler.application().passivate();
+    }
+
+    @Test( timeout = 10000 )
+    public void givenFullQueueWhenCapacityTimeoutElapsedExpectQueueOverflow()
+        throws Exception
+    {
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification( 1, 1, null )
+            .withCapacityTimeout( 500, TimeUnit.MILLISECONDS );
+        SingletonAssembler assembler = assemble( async );
+        UnitOfWorkFactory uowf = assembler.module().unitOfWorkFactory();
+        release = new CountDownLatch( 1 );
+
+        create( uowf, "a", "first" );
+        assertThat( entered.await( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        create( uowf, "b", "first" );
+        assertThat( async.lastFailure() instanceof EntityStoreException, equalTo( true ) );
+        // Overflowing, the next commit does not wait
+        long start = System.nanoTime();
+        create( uowf, "c", "first" );
+        assertThat( System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos( 500 ), equalTo( true ) );
+        assertThat( async.pending(), equalTo( 3 ) );
+
+        release.countDown();
+        assertThat( async.awaitCatchUp( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( async.lastFailure(), equalTo( null ) );
+        assertThat( NOTIFIED.size(), equalTo( 3 ) );
+        assembler.application().passivate();
+    }
+
+    @Test
+    public void givenUndeliveredChangesInJournalWhenRestartingExpectChangesDelivered()
+        throws Exception
+    {
+        File journal = new File( tmp.getRoot(), "state-changes.journal" );
+        failing = true;
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification( 10, 10, journal );
+        SingletonAssembler assembler = assemble( async );
+        create( assembler.module().unitOfWorkFactory(), "lost", "first" );
+        assertThat( async.awaitCatchUp( 100, TimeUnit.MILLISECONDS ), equalTo( false ) );
+        assertThat( async.lastFailure() != null, equalTo( true ) );
+        assembler.application().passivate();
+
+        failing = false;
+        NOTIFIED.clear();
+        AsyncStateChangeNotification restarted = new AsyncStateChangeNotification( 10, 10, journal );
+        assembler = assemble( restarted );
+        create( assembler.module().unitOfWorkFactory(), "next", "first" );
+
+        assertThat( restarted.awaitCatchUp( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( restarted.visibleVersion(), equalTo( 2L ) );
+        // The memory store lost the entity, it is delivered as removed
+        EntityState lost = NOTIFIED.get( 0 );
+        assertThat( lost.entityReference(), equalTo( EntityReference.parseEntityReference( "lost" ) ) );
+        assertThat( lost.status(), equalTo( EntityStatus.REMOVED ) );
+        assertThat( NOTIFIED.get( 1 ).entityReference(), equalTo( EntityReference.parseEntityReference( "next" ) ) );
+        assertThat( journal.length(), equalTo( 0L ) );
+        assembler.application().passivate();
+    }
+
+    @Test( timeout = 10000 )
+    public void givenStoppedDelivererAndFullQueueWhenCommittingExpectDeliveryRestarted()
+        throws Exception
+    {
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification( 1, 1, null );
+        SingletonAssembler assembler = assemble( async );
+        UnitOfWorkFactory uowf = assembler.module().unitOfWorkFactory();
+        failing = true;
+        interrupting = true;
+        create( uowf, "a", "first" );
+        while( async.lastFailure() == null )
+        {
+            Thread.sleep( 10 );
+        }
+        // Let the interrupted deliverer stop
+        Thread.sleep( 100 );
+
+        failing = false;
+        interrupting = false;
+        create( uowf, "b", "first" );
+
+        assertThat( async.awaitCatchUp( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( NOTIFIED.get( NOTIFIED.size() - 1 ).entityReference(),
+                    equalTo( EntityReference.parseEntityReference( "b" ) ) );
+        assembler.application().passivate();
+    }
+
+    @Test
+    public void givenUndeliveredChangesInJournalWhenRestartingAndOnlyReadingExpectChangesDelivered()
+        throws Exception
+    {
+        File journal = new File( tmp.getRoot(), "state-changes.journal" );
+        failing = true;
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification( 10, 10, journal );
+        SingletonAssembler assembler = assemble( async );
+        create( assembler.module().unitOfWorkFactory(), "lost", "first" );
+        assertThat( async.awaitCatchUp( 100, TimeUnit.MILLISECONDS ), equalTo( false ) );
+        assembler.application().passivate();
+
+        failing = false;
+        NOTIFIED.clear();
+        AsyncStateChangeNotification restarted = new AsyncStateChangeNotification( 10, 10, journal );
+        assembler = assemble( restarted );
+        // Reading activates the store, which replays the journal
+        readMissing( assembler.module().unitOfWorkFactory() );
+
+        assertThat( restarted.submittedVersion(), equalTo( 1L ) );
+        assertThat( restarted.awaitCatchUp( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( NOTIFIED.size(), equalTo( 1 ) );
+        assertThat( NOTIFIED.get( 0 ).entityReference(), equalTo( EntityReference.parseEntityReference( "lost" ) ) );
+        assertThat( journal.length(), equalTo( 0L ) );
+        assembler.application().passivate();
+    }
+
+    @Test
+    public void givenFailingReplayWhenRestartingExpectReplayVersionSettled()
+        throws Exception
+    {
+        File journal = new File( tmp.getRoot(), "state-changes.journal" );
+        failing = true;
+        AsyncStateChangeNotification async = new AsyncStateChangeNotification( 10, 10, journal );
+        SingletonAssembler assembler = assemble( async );
+        create( assembler.module().unitOfWorkFactory(), "lost", "first" );
+        assertThat( async.awaitCatchUp( 100, TimeUnit.MILLISECONDS ), equalTo( false ) );
+        assembler.application().passivate();
+
+        failing = false;
+        failingReads = true;
+        AsyncStateChangeNotification restarted = new AsyncStateChangeNotification( 10, 10, journal );
+        assembler = assemble( restarted );
+        readMissing( assembler.module().unitOfWorkFactory() );
+
+        assertThat( restarted.submittedVersion(), equalTo( 1L ) );
+        assertThat( restarted.awaitCatchUp( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( restarted.lastFailure() instanceof EntityStoreException, equalTo( true ) );
+
+        failingReads = false;
+        NOTIFIED.clear();
+        create( assembler.module().unitOfWorkFactory(), "next", "first" );
+        assertThat( restarted.awaitCatchUp( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( restarted.visibleVersion(), equalTo( 2L ) );
+        assertThat( NOTIFIED.get( 0 ).entityReference(), equalTo( EntityReference.parseEntityReference( "next" ) ) );
+        assembler.application().passivate();
+    }
+
+    private static SingletonAssembler assemble( AsyncStateChangeNotification async )
+        throws Exception
+    {
+        return new SingletonAssembler(
+            module -> {
+                new EntityTestAssembler().assemble( module );
+                AsyncStateChangeNotificationDeclaration.declare(
+                    module.services( MemoryEntityStoreService.class ).withConcerns( FailingReadsConcern.class ),
+                    async );
+                module.services( RecordingListener.class );
+                module.entities( Named.class );
+            } );
+    }
+
+    private static void create( UnitOfWorkFactory uowf, String identity, String name )
+        throws Exception
+    {
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            Identity id = StringIdentity.identityOf( identity );
+            EntityBuilder<Named> builder = uow.newEntityBuilder( Named.class, id );
+            builder.instance().name().set( name );
+            builder.newInstance();
+            uow.complete();
+        }
+    }
+
+    private static void update( UnitOfWorkFactory uowf, String identity, String name )
+        throws Exception
+    {
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            uow.get( Named.class, StringIdentity.identityOf( identity ) ).name().set( name );
+            uow.complete();
+        }
+    }
+
+    private static void readMissing( UnitOfWorkFactory uowf )
+    {
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            uow.get( Named.class, StringIdentity.identityOf( "missing" ) );
+            fail( "Expected NoSuchEntityException" );
+        }
+        catch( NoSuchEntityException expected )
+        {
+            // The store is active now
+        }
+    }
+
+    public interface Named
+    {
+        Property<String> name();
+    }
+
+    @Mixins( RecordingListener.Mixin.class )
+    public interface RecordingListener
+        extends StateChangeListener
+    {
+        class Mixin
+            implements StateChangeListener
+        {
+            @Override
+            public void notifyChanges( Iterable<EntityState> changedStates )
+            {
+                entered.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                if( failing )
+                {
+                    if( interrupting )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException( "Indexer down" );
+                }
+                changedStates.forEach( NOTIFIED::add );
+            }
+        }
+    }
+
+    public abstract static class FailingReadsConcern
+        extends ConcernOf<EntityStoreSPI>
+        implements EntityStoreSPI
+    {
+        @Override
+        public EntityState entityStateOf( EntityStoreUnitOfWork unitOfWork, ModuleDescriptor module,
+                                          EntityReference reference )
+        {
+            if( failingReads && reference.equals( EntityReference.parseEntityReference( "lost" ) ) )
+            {
+                throw new EntityStoreException( "Store down" );
+            }
+            return next.entityStateOf( unitOfWork, module, reference );
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package org.apache.polygene.spi.entitystore.helpers;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import org.apache.polygene.api.common.QualifiedName;
+import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.api.time.SystemTime;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
+import org.apache.polygene.spi.entity.EntityStatus;
+import org.apache.polygene.spi.serialization.JsonSerialization;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class JSONEntityStateTest extends AbstractPolygeneTest
+{
+    private static final QualifiedName KEPT = QualifiedName.fromName( "Test", "kept" );
+    private static final QualifiedName CHANGED = QualifiedName.fromName( "Test", "changed" );
+
+    @Override
+    public void assemble( ModuleAssembly module )
+    {
+        module.defaultServices();
+    }
+
+    @Service
+    private JsonSerialization serialization;
+
+    @Service
+    private JavaxJsonFactories jsonFactories;
+
+    @Test
+    public void givenLoadedStateWhenChangingValuesExpectChangesMaterializedOnce()
+    {
+        JsonObject state = Json.createObjectBuilder()
+                               .add( JSONKeys.VERSION, "0" )
+                               .add( JSONKeys.VALUE, Json.createObjectBuilder()
+                                                         .add( KEPT.name(), "kept" )
+                                                         .add( CHANGED.name(), "before" ) )
+                               .build();
+        JSONEntityState entityState = new JSONEntityState( module,
+                                                           serialization,
+                                                           jsonFactories,
+                                                           "0",
+                                                           SystemTime.now(),
+                                                           EntityReference.parseEntityReference( "123" ),
+                                                           EntityStatus.LOADED,
+                                                           null,
+                                                           state );
+
+        entityState.setAssociationValue( CHANGED, EntityReference.parseEntityReference( "before" ) );
+        assertThat( entityState.status(), equalTo( EntityStatus.LOADED ) );
+        assertThat( entityState.state(), sameInstance( state ) );
+
+        entityState.setAssociationValue( CHANGED, EntityReference.parseEntityReference( "middle" ) );
+        entityState.setAssociationValue( CHANGED, EntityReference.parseEntityReference( "after" ) );
+        assertThat( entityState.status(), equalTo( EntityStatus.UPDATED ) );
+        assertThat( entityState.associationValueOf( CHANGED ).identity().toString(), equalTo( "after" ) );
+        assertThat( entityState.associationValueOf( KEPT ).identity().toString(), equalTo( "kept" ) );
+
+        JsonObject materialized = entityState.state();
+        assertThat( materialized.getString( JSONKeys.VERSION ), equalTo( "0" ) );
+        assertThat( materialized.getJsonObject( JSONKeys.VALUE ).getString( KEPT.name() ), equalTo( "kept" ) );
+        assertThat( materialized.getJsonObject( JSONKeys.VALUE ).getString( CHANGED.name() ), equalTo( "after" ) );
+        assertThat( entityState.state(), sameInstance( materialized ) );
+
+        entityState.setAssociationValue( CHANGED, null );
+        assertThat( entityState.associationValueOf( CHANGED ) == null, is( true ) );
+        assertThat( entityState.state().getJsonObject( JSONKeys.VALUE ).isNull( CHANGED.name() ), is( true ) );
+    }
+}
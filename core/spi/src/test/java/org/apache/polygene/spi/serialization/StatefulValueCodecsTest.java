@@ -0,0 +1,75 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.spi.serialization;
+
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.structure.Application;
+import org.apache.polygene.api.type.ValueCompositeType;
+import org.apache.polygene.bootstrap.ApplicationAssembly;
+import org.apache.polygene.bootstrap.Energy4Java;
+import org.apache.polygene.bootstrap.LayerAssembly;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StatefulValueCodecsTest
+{
+    @Test
+    public void givenSameValueTypeInTwoModulesExpectOneCodecPerDescriptor()
+        throws Exception
+    {
+        Application application = new Energy4Java().newApplication(
+            factory -> {
+                ApplicationAssembly assembly = factory.newApplicationAssembly();
+                LayerAssembly layer = assembly.layer( "Layer 1" );
+                layer.module( "Module A" ).values( Point.class );
+                layer.module( "Module B" ).values( Point.class );
+                return assembly;
+            } );
+        ValueCompositeType typeA = valueType( application, "Module A" );
+        ValueCompositeType typeB = valueType( application, "Module B" );
+        assertThat( typeA.primaryType(), equalTo( typeB.primaryType() ) );
+
+        StatefulValueCodecs<Void> codecs = new StatefulValueCodecs<>();
+        StatefulValueCodec<Void> codecA = codecs.codecFor( typeA );
+        StatefulValueCodec<Void> codecB = codecs.codecFor( typeB );
+
+        assertThat( codecB, not( sameInstance( codecA ) ) );
+        assertThat( codecA.valueType(), sameInstance( typeA ) );
+        assertThat( codecB.valueType(), sameInstance( typeB ) );
+        // Alternating between the modules does not compile the codecs again
+        assertThat( codecs.codecFor( typeA ), sameInstance( codecA ) );
+        assertThat( codecs.codecFor( typeB ), sameInstance( codecB ) );
+    }
+
+    private static ValueCompositeType valueType( Application application, String module )
+    {
+        return application.findModule( "Layer 1", module ).descriptor()
+                          .typeLookup().lookupValueModel( Point.class ).valueType();
+    }
+
+    public interface Point
+    {
+        Property<Integer> x();
+
+        Property<Integer> y();
+    }
+}
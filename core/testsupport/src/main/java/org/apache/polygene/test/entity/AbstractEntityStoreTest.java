@@ -28,9 +28,12 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Period;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.apache.polygene.api.association.Association;
 import org.apache.polygene.api.association.ManyAssociation;
@@ -39,7 +42,9 @@ import org.apache.polygene.api.common.Optional;
 import org.apache.polygene.api.common.UseDefaults;
 import org.apache.polygene.api.entity.EntityBuilder;
 import org.apache.polygene.api.entity.EntityComposite;
+import org.apache.polygene.api.entity.EntityReference;
 import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.identity.StringIdentity;
 import org.apache.polygene.api.injection.scope.Service;
 import org.apache.polygene.api.injection.scope.Structure;
 import org.apache.polygene.api.property.Property;
@@ -48,16 +53,19 @@ import org.apache.polygene.api.unitofwork.ConcurrentEntityModificationException;
 import org.apache.polygene.api.unitofwork.NoSuchEntityException;
 import org.apache.polygene.api.unitofwork.UnitOfWork;
 import org.apache.polygene.api.unitofwork.UnitOfWorkCompletionException;
+import org.apache.polygene.api.usecase.Usecase;
 import org.apache.polygene.api.value.ValueBuilder;
 import org.apache.polygene.api.value.ValueComposite;
 import org.apache.polygene.bootstrap.ModuleAssembly;
 import org.apache.polygene.spi.entity.EntityState;
 import org.apache.polygene.spi.entitystore.EntityStore;
+import org.apache.polygene.spi.entitystore.EntityStoreUnitOfWork;
 import org.apache.polygene.test.AbstractPolygeneTest;
 import org.junit.After;
 import org.junit.Test;
 
 import static java.time.ZoneOffset.UTC;
+import static java.util.stream.Collectors.toSet;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
@@ -546,6 +554,33 @@ public abstract class AbstractEntityStoreTest
         }
     }
 
+    @Test
+    public void entityStatesOfSPI()
+        throws UnitOfWorkCompletionException
+    {
+        EntityReference first;
+        EntityReference second;
+        try( UnitOfWork unitOfWork = unitOfWorkFactory.newUnitOfWork() )
+        {
+            first = EntityReference.create( createEntity( unitOfWork ).identity().get() );
+            second = EntityReference.create( createEntity( unitOfWork ).identity().get() );
+            unitOfWork.complete();
+        }
+        EntityReference missing = EntityReference.create( StringIdentity.identityOf( "missing" ) );
+
+        EntityStoreUnitOfWork storeUnitOfWork = store.newUnitOfWork( module, Usecase.DEFAULT, Instant.now() );
+        try( Stream<EntityState> states = storeUnitOfWork.entityStatesOf( module,
+                                                                          Arrays.asList( first, missing, second ) ) )
+        {
+            Set<EntityReference> found = states.map( EntityState::entityReference ).collect( toSet() );
+            assertThat( found, equalTo( new HashSet<>( Arrays.asList( first, second ) ) ) );
+        }
+        finally
+        {
+            storeUnitOfWork.discard();
+        }
+    }
+
     public interface TestEntity
         extends EntityComposite
     {
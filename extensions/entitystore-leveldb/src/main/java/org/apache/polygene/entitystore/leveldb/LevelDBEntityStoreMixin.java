@@ -19,13 +19,15 @@
  */
 package org.apache.polygene.entitystore.leveldb;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.function.Consumer;
@@ -42,19 +44,22 @@ import org.apache.polygene.api.service.ServiceDescriptor;
 import org.apache.polygene.library.fileconfig.FileConfiguration;
 import org.apache.polygene.spi.entitystore.EntityNotFoundException;
 import org.apache.polygene.spi.entitystore.EntityStoreException;
-import org.apache.polygene.spi.entitystore.helpers.MapEntityStore;
+import org.apache.polygene.spi.entitystore.helpers.BinaryMapEntityStore;
+import org.apache.polygene.spi.entitystore.helpers.MapEntityStore.MapChange;
 import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBFactory;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
 import org.iq80.leveldb.WriteBatch;
 
 /**
- * LevelDB implementation of MapEntityStore.
+ * LevelDB implementation of BinaryMapEntityStore.
  */
 public class LevelDBEntityStoreMixin
-    implements ServiceActivation, MapEntityStore
+    implements ServiceActivation, BinaryMapEntityStore
 {
 
     @Service
@@ -189,7 +194,7 @@ public class LevelDBEntityStoreMixin
     }
 
     @Override
-    public Reader get( EntityReference entityReference )
+    public InputStream get( EntityReference entityReference )
         throws EntityStoreException
     {
         byte[] state = db.get( entityReference.identity().toString().getBytes( charset ) );
@@ -197,26 +202,46 @@ public class LevelDBEntityStoreMixin
         {
             throw new EntityNotFoundException( entityReference );
         }
-        String jsonState = new String( state, charset );
-        return new StringReader( jsonState );
+        return new ByteArrayInputStream( state );
     }
 
     @Override
-    public Stream<Reader> entityStates()
+    public Stream<InputStream> getAll( Collection<EntityReference> entityReferences )
+        throws IOException
+    {
+        // Read all states from a single snapshot so that they are consistent with each other
+        try( Snapshot snapshot = db.getSnapshot() )
+        {
+            ReadOptions readOptions = new ReadOptions().snapshot( snapshot );
+            List<InputStream> states = new ArrayList<>( entityReferences.size() );
+            for( EntityReference entityReference : entityReferences )
+            {
+                byte[] state = db.get( entityReference.identity().toString().getBytes( charset ), readOptions );
+                if( state != null )
+                {
+                    states.add( new ByteArrayInputStream( state ) );
+                }
+            }
+            return states.stream();
+        }
+    }
+
+    @Override
+    public Stream<InputStream> entityStates()
     {
         DBIterator iterator = db.iterator();
         iterator.seekToFirst();
         return StreamSupport.stream(
-            new Spliterators.AbstractSpliterator<Reader>( Long.MAX_VALUE, Spliterator.ORDERED )
+            new Spliterators.AbstractSpliterator<InputStream>( Long.MAX_VALUE, Spliterator.ORDERED )
             {
                 @Override
-                public boolean tryAdvance( final Consumer<? super Reader> action )
+                public boolean tryAdvance( final Consumer<? super InputStream> action )
                 {
                     if( !iterator.hasNext() )
                     {
                         return false;
                     }
-                    action.accept( new StringReader( new String( iterator.next().getValue(), charset ) ) );
+                    action.accept( new ByteArrayInputStream( iterator.next().getValue() ) );
                     return true;
                 }
             },
@@ -237,49 +262,24 @@ public class LevelDBEntityStoreMixin
     }
 
     @Override
-    public void applyChanges( MapChanges changes )
+    public void applyChanges( BinaryMapChanges changes )
         throws Exception
     {
         try( WriteBatch writeBatch = db.createWriteBatch() )
         {
-            changes.visitMap( new MapChanger()
+            changes.visitMap( new BinaryMapChanger()
             {
-
                 @Override
-                public Writer newEntity( EntityReference ref, EntityDescriptor entityDescriptor )
-                    throws IOException
+                public void newEntity( EntityReference ref, EntityDescriptor entityDescriptor, ByteBuffer state )
                 {
-                    return new StringWriter( 1000 )
-                    {
-
-                        @Override
-                        public void close()
-                            throws IOException
-                        {
-                            super.close();
-                            String jsonState = toString();
-                            writeBatch.put( ref.identity().toString().getBytes( charset ), jsonState.getBytes( charset ) );
-                        }
-                    };
+                    writeBatch.put( ref.identity().toString().getBytes( charset ), toBytes( state ) );
                 }
 
                 @Override
-                public Writer updateEntity( MapChange mapChange )
-                    throws IOException
+                public void updateEntity( MapChange mapChange, ByteBuffer state )
                 {
-                    return new StringWriter( 1000 )
-                    {
-
-                        @Override
-                        public void close()
-                            throws IOException
-                        {
-                            super.close();
-                            String jsonState = toString();
-                            writeBatch.put( mapChange.reference().identity().toString().getBytes( charset ),
-                                            jsonState.getBytes( charset ) );
-                        }
-                    };
+                    writeBatch.put( mapChange.reference().identity().toString().getBytes( charset ),
+                                    toBytes( state ) );
                 }
 
                 @Override
@@ -292,4 +292,12 @@ public class LevelDBEntityStoreMixin
             db.write( writeBatch );
         }
     }
+
+    private static byte[] toBytes( ByteBuffer state )
+    {
+        // The write batch keeps the array until it is written and the buffer is reused meanwhile
+        byte[] bytes = new byte[ state.remaining() ];
+        state.get( bytes );
+        return bytes;
+    }
 }
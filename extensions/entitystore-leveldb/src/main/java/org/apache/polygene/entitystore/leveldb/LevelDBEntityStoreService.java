@@ -28,6 +28,7 @@ import org.apache.polygene.spi.entitystore.ConcurrentModificationCheckConcern;
 import org.apache.polygene.spi.entitystore.EntityStateVersions;
 import org.apache.polygene.spi.entitystore.EntityStore;
 import org.apache.polygene.spi.entitystore.StateChangeNotificationConcern;
+import org.apache.polygene.spi.entitystore.helpers.BinaryMapEntityStoreMixin;
 import org.apache.polygene.spi.entitystore.helpers.JSONMapEntityStoreActivation;
 import org.apache.polygene.spi.entitystore.helpers.JSONMapEntityStoreMixin;
 
@@ -43,6 +44,7 @@ import org.apache.polygene.spi.entitystore.helpers.JSONMapEntityStoreMixin;
 @Mixins(
 {
     JSONMapEntityStoreMixin.class,
+    BinaryMapEntityStoreMixin.class,
     LevelDBEntityStoreMixin.class
 } )
 public interface LevelDBEntityStoreService
@@ -24,6 +24,7 @@ import org.apache.polygene.bootstrap.ModuleAssembly;
 import org.apache.polygene.bootstrap.ServiceDeclaration;
 import org.apache.polygene.entitystore.leveldb.LevelDBEntityStoreConfiguration;
 import org.apache.polygene.entitystore.leveldb.LevelDBEntityStoreService;
+import org.apache.polygene.spi.entitystore.helpers.EntityStateFormat;
 
 /**
  * LevelDB EntityStore assembly.
@@ -31,6 +32,14 @@ import org.apache.polygene.entitystore.leveldb.LevelDBEntityStoreService;
 public class LevelDBEntityStoreAssembler
     extends Assemblers.VisibilityIdentityConfig<LevelDBEntityStoreAssembler>
 {
+    private EntityStateFormat stateFormat;
+
+    public LevelDBEntityStoreAssembler withStateFormat( EntityStateFormat stateFormat )
+    {
+        this.stateFormat = stateFormat;
+        return this;
+    }
+
     @Override
     public void assemble( ModuleAssembly module )
     {
@@ -40,6 +49,10 @@ public class LevelDBEntityStoreAssembler
         {
             service.identifiedBy( identity() );
         }
+        if( stateFormat != null )
+        {
+            service.setMetaInfo( stateFormat );
+        }
         if( hasConfig() )
         {
             configModule().entities( LevelDBEntityStoreConfiguration.class ).visibleIn( configVisibility() );
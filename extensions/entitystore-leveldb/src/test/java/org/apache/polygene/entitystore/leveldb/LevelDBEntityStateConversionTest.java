@@ -0,0 +1,254 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.entitystore.leveldb;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.apache.polygene.api.common.Visibility;
+import org.apache.polygene.api.concern.ConcernOf;
+import org.apache.polygene.api.entity.EntityBuilder;
+import org.apache.polygene.api.entity.EntityReference;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.identity.StringIdentity;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkFactory;
+import org.apache.polygene.bootstrap.AssemblySpecifications;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.apache.polygene.entitystore.leveldb.assembly.LevelDBEntityStoreAssembler;
+import org.apache.polygene.library.fileconfig.FileConfiguration;
+import org.apache.polygene.library.fileconfig.FileConfigurationAssembler;
+import org.apache.polygene.library.fileconfig.FileConfigurationOverride;
+import org.apache.polygene.serialization.messagepack.MessagePackEntityStateFormat;
+import org.apache.polygene.spi.entitystore.helpers.BinaryMapEntityStore;
+import org.apache.polygene.spi.entitystore.helpers.EntityStateFormat;
+import org.apache.polygene.test.EntityTestAssembler;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBFactory;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Options;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.junit.Assert.assertThat;
+
+public class LevelDBEntityStateConversionTest
+{
+    private static final String IDENTITY = "converted-leveldb-entitystore";
+    private static final AtomicReference<Runnable> AFTER_READ = new AtomicReference<>();
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    public interface Person
+    {
+        Property<String> name();
+
+        Property<Integer> age();
+    }
+
+    @Test
+    public void givenJsonStatesWhenReadInMessagePackFormatExpectStatesConverted()
+        throws Exception
+    {
+        Identity zaphod = StringIdentity.identityOf( "zaphod" );
+        Identity ford = StringIdentity.identityOf( "ford" );
+
+        SingletonAssembler json = new SingletonAssembler( module -> assemble( module, null ) );
+        File dbFile = dbFile( json );
+        try( UnitOfWork uow = json.module().unitOfWorkFactory().newUnitOfWork() )
+        {
+            newPerson( uow, zaphod, "Zaphod", 42 );
+            newPerson( uow, ford, "Ford", 200 );
+            uow.complete();
+        }
+        json.application().passivate();
+        assertThat( firstBytes( dbFile ), everyItem( equalTo( (int) '{' ) ) );
+
+        SingletonAssembler msgpack = new SingletonAssembler(
+            module -> assemble( module, new MessagePackEntityStateFormat() ) );
+        try( UnitOfWork uow = msgpack.module().unitOfWorkFactory().newUnitOfWork() )
+        {
+            assertThat( uow.get( Person.class, zaphod ).name().get(), equalTo( "Zaphod" ) );
+            assertThat( uow.get( Person.class, ford ).age().get(), equalTo( 200 ) );
+        }
+        msgpack.application().passivate();
+        assertThat( firstBytes( dbFile ), everyItem( equalTo( 0x80 | 6 ) ) );
+
+        msgpack = new SingletonAssembler( module -> assemble( module, new MessagePackEntityStateFormat() ) );
+        try( UnitOfWork uow = msgpack.module().unitOfWorkFactory().newUnitOfWork() )
+        {
+            assertThat( uow.get( Person.class, zaphod ).age().get(), equalTo( 42 ) );
+            assertThat( uow.get( Person.class, ford ).name().get(), equalTo( "Ford" ) );
+        }
+        msgpack.application().passivate();
+    }
+
+    @Test
+    public void givenJsonStateWhenCommittedWhileConvertingExpectCommitKept()
+        throws Exception
+    {
+        Identity arthur = StringIdentity.identityOf( "arthur" );
+
+        SingletonAssembler json = new SingletonAssembler( module -> assemble( module, null ) );
+        try( UnitOfWork uow = json.module().unitOfWorkFactory().newUnitOfWork() )
+        {
+            newPerson( uow, arthur, "Arthur", 30 );
+            uow.complete();
+        }
+        json.application().passivate();
+
+        SingletonAssembler msgpack = new SingletonAssembler(
+            module ->
+            {
+                assemble( module, new MessagePackEntityStateFormat() );
+                module.services( AssemblySpecifications.ofAnyType( LevelDBEntityStoreService.class ) )
+                      .withConcerns( AfterReadConcern.class );
+            } );
+        UnitOfWorkFactory uowf = msgpack.module().unitOfWorkFactory();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            // Commit a new version after the JSON state is read, before it is written back converted
+            AFTER_READ.set( () ->
+            {
+                try
+                {
+                    executor.submit( () ->
+                    {
+                        try( UnitOfWork uow = uowf.newUnitOfWork() )
+                        {
+                            uow.get( Person.class, arthur ).age().set( 31 );
+                            uow.complete();
+                        }
+                        return null;
+                    } ).get();
+                }
+                catch( Exception ex )
+                {
+                    throw new AssertionError( ex );
+                }
+            } );
+            try( UnitOfWork uow = uowf.newUnitOfWork() )
+            {
+                assertThat( uow.get( Person.class, arthur ).age().get(), equalTo( 30 ) );
+            }
+        }
+        finally
+        {
+            AFTER_READ.set( null );
+            executor.shutdown();
+        }
+        msgpack.application().passivate();
+
+        msgpack = new SingletonAssembler( module -> assemble( module, new MessagePackEntityStateFormat() ) );
+        try( UnitOfWork uow = msgpack.module().unitOfWorkFactory().newUnitOfWork() )
+        {
+            assertThat( uow.get( Person.class, arthur ).age().get(), equalTo( 31 ) );
+        }
+        msgpack.application().passivate();
+    }
+
+    private void assemble( ModuleAssembly module, EntityStateFormat stateFormat )
+    {
+        module.entities( Person.class );
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().defaultServicesVisibleIn( Visibility.layer ).assemble( config );
+        new FileConfigurationAssembler()
+            .withOverride( new FileConfigurationOverride().withConventionalRoot( tmpDir.getRoot() ) )
+            .assemble( module );
+        new LevelDBEntityStoreAssembler()
+            .withConfig( config, Visibility.layer )
+            .withStateFormat( stateFormat )
+            .identifiedBy( IDENTITY )
+            .assemble( module );
+        config.forMixin( LevelDBEntityStoreConfiguration.class ).declareDefaults().flavour().set( "java" );
+    }
+
+    private static void newPerson( UnitOfWork uow, Identity identity, String name, int age )
+    {
+        EntityBuilder<Person> builder = uow.newEntityBuilder( Person.class, identity );
+        builder.instance().name().set( name );
+        builder.instance().age().set( age );
+        builder.newInstance();
+    }
+
+    private static File dbFile( SingletonAssembler assembler )
+    {
+        FileConfiguration fileConfig = assembler.module().findService( FileConfiguration.class ).get();
+        return new File( fileConfig.dataDirectory(), IDENTITY );
+    }
+
+    /**
+     * Runs the {@link #AFTER_READ} task once, after the next read of an entity state.
+     */
+    public abstract static class AfterReadConcern
+        extends ConcernOf<BinaryMapEntityStore>
+        implements BinaryMapEntityStore
+    {
+        @Override
+        public InputStream get( EntityReference entityReference )
+            throws Exception
+        {
+            InputStream state = next.get( entityReference );
+            Runnable afterRead = AFTER_READ.getAndSet( null );
+            if( afterRead != null )
+            {
+                afterRead.run();
+            }
+            return state;
+        }
+
+        @Override
+        public Stream<InputStream> getAll( Collection<EntityReference> entityReferences )
+            throws Exception
+        {
+            return next.getAll( entityReferences );
+        }
+    }
+
+    private static List<Integer> firstBytes( File dbFile )
+        throws Exception
+    {
+        DBFactory factory = (DBFactory) Class.forName( "org.iq80.leveldb.impl.Iq80DBFactory" ).newInstance();
+        List<Integer> firstBytes = new ArrayList<>();
+        try( DB db = factory.open( dbFile, new Options() );
+             DBIterator iterator = db.iterator() )
+        {
+            for( iterator.seekToFirst(); iterator.hasNext(); )
+            {
+                Map.Entry<byte[], byte[]> entry = iterator.next();
+                firstBytes.add( entry.getValue()[ 0 ] & 0xFF );
+            }
+        }
+        assertThat( firstBytes.size(), equalTo( 2 ) );
+        return firstBytes;
+    }
+}
@@ -19,9 +19,20 @@
  */
 package org.apache.polygene.entitystore.memory;
 
+import java.time.Instant;
+import org.apache.polygene.api.entity.EntityBuilder;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.identity.StringIdentity;
+import org.apache.polygene.api.unitofwork.NoSuchEntityException;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkCompletionException;
 import org.apache.polygene.bootstrap.ModuleAssembly;
 import org.apache.polygene.entitystore.memory.assembly.MemoryEntityStoreAssembler;
+import org.apache.polygene.spi.entitystore.EntityStoreException;
 import org.apache.polygene.test.entity.AbstractEntityStoreTest;
+import org.junit.Test;
+
+import static org.junit.Assert.fail;
 
 public class MemoryEntityStoreTest
     extends AbstractEntityStoreTest
@@ -37,4 +48,52 @@ public class MemoryEntityStoreTest
         // START SNIPPET: assembly
     }
     // END SNIPPET: assembly
+
+    @Test
+    public void givenFailingCompletionWhenCreatingEntitiesExpectNoneCreated()
+        throws UnitOfWorkCompletionException
+    {
+        Identity existing = StringIdentity.identityOf( "existing" );
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            newEntity( uow, existing );
+            uow.complete();
+        }
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            for( int i = 0; i < 10; i++ )
+            {
+                newEntity( uow, StringIdentity.identityOf( "fresh-" + i ) );
+            }
+            newEntity( uow, existing );
+            uow.complete();
+            fail( "Expected creation of an existing entity to fail" );
+        }
+        catch( EntityStoreException expected )
+        {
+            // Expected
+        }
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            for( int i = 0; i < 10; i++ )
+            {
+                try
+                {
+                    uow.get( TestEntity.class, StringIdentity.identityOf( "fresh-" + i ) );
+                    fail( "Expected no entity to be created" );
+                }
+                catch( NoSuchEntityException expected )
+                {
+                    // Expected
+                }
+            }
+        }
+    }
+
+    private void newEntity( UnitOfWork uow, Identity identity )
+    {
+        EntityBuilder<TestEntity> builder = uow.newEntityBuilder( TestEntity.class, identity );
+        builder.instance().instantValue().set( Instant.now() );
+        builder.newInstance();
+    }
 }
@@ -37,8 +37,11 @@ import java.io.Writer;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.apache.polygene.api.configuration.Configuration;
@@ -53,6 +56,7 @@ import org.bson.Document;
 import org.bson.conversions.Bson;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
 import static java.util.stream.Collectors.toList;
 
 /**
@@ -237,6 +241,27 @@ public class MongoDBEntityStoreMixin
         return new StringReader( jsonState );
     }
 
+    @Override
+    public Stream<Reader> getAll( Collection<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        List<String> identities = entityReferences.stream()
+                                                  .map( reference -> reference.identity().toString() )
+                                                  .collect( toList() );
+        MongoCursor<Document> cursor = db.getCollection( collectionName )
+                                         .find( in( IDENTITY_COLUMN, identities ) )
+                                         .iterator();
+        return StreamSupport
+            .stream( Spliterators.spliteratorUnknownSize( cursor, Spliterator.ORDERED ), false )
+            .onClose( cursor::close )
+            .map( eachEntity ->
+                  {
+                      Document bsonState = (Document) eachEntity.get( STATE_COLUMN );
+                      String jsonState = JSON.serialize( bsonState );
+                      return new StringReader( jsonState );
+                  } );
+    }
+
     @Override
     public void applyChanges( MapChanges changes )
         throws Exception
@@ -24,6 +24,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.stream.Stream;
 import org.apache.polygene.api.configuration.Configuration;
 import org.apache.polygene.api.entity.EntityDescriptor;
@@ -96,6 +97,25 @@ public class RedisEntityStoreMixin
         }
     }
 
+    @Override
+    public Stream<Reader> getAll( Collection<EntityReference> entityReferences )
+        throws EntityStoreException
+    {
+        if( entityReferences.isEmpty() )
+        {
+            return Stream.empty();
+        }
+        String[] keys = entityReferences.stream()
+                                        .map( reference -> reference.identity().toString() )
+                                        .toArray( String[]::new );
+        try( Jedis jedis = pool.getResource() )
+        {
+            return jedis.mget( keys ).stream()
+                        .filter( jsonState -> !notFound( jsonState ) )
+                        .map( StringReader::new );
+        }
+    }
+
     @Override
     public void applyChanges( MapChanges changes )
         throws Exception
@@ -43,5 +43,14 @@ public interface SQLEntityStoreConfiguration extends SQLConfiguration
      */
     @UseDefaults( "true" )
     Property<Boolean> createIfMissing();
+
+    /**
+     * Number of rows fetched at once when iterating over all entities, e.g. when reindexing.
+     * Memory used during such a full scan is bounded by this.
+     * Note that some JDBC drivers need special values to actually stream results, e.g. MySQL needs
+     * {@literal Integer.MIN_VALUE}.
+     */
+    @UseDefaults( "1000" )
+    Property<Integer> fetchSize();
 }
 // END SNIPPET: config
@@ -22,8 +22,10 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Stream;
 import javax.sql.DataSource;
@@ -43,6 +45,7 @@ import org.apache.polygene.api.service.ServiceDescriptor;
 import org.apache.polygene.library.sql.liquibase.LiquibaseService;
 import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
 import org.apache.polygene.spi.entitystore.EntityNotFoundException;
+import org.apache.polygene.spi.entitystore.EntityStoreException;
 import org.apache.polygene.spi.entitystore.helpers.JSONKeys;
 import org.apache.polygene.spi.entitystore.helpers.MapEntityStore;
 import org.jooq.DSLContext;
@@ -55,6 +58,8 @@ import org.jooq.Table;
 import org.jooq.conf.Settings;
 import org.jooq.impl.DSL;
 
+import static java.util.stream.Collectors.toList;
+
 public class SQLEntityStoreMixin
     implements ServiceActivation, MapEntityStore
 {
@@ -83,6 +88,9 @@ public class SQLEntityStoreMixin
     private Field<String> identityColumn;
     private Field<String> versionColumn;
     private Field<String> stateColumn;
+    private SQLDialect dialect;
+    private Settings settings;
+    private int fetchSize;
     private DSLContext dsl;
 
     @Override
@@ -92,8 +100,9 @@ public class SQLEntityStoreMixin
         SQLEntityStoreConfiguration config = configuration.get();
 
         // Prepare jooq DSL
-        SQLDialect dialect = descriptor.metaInfo( SQLDialect.class );
-        Settings settings = descriptor.metaInfo( Settings.class );
+        dialect = descriptor.metaInfo( SQLDialect.class );
+        settings = descriptor.metaInfo( Settings.class );
+        fetchSize = config.fetchSize().get();
         String schemaName = config.schemaName().get();
         String tableName = config.entityTableName().get();
         schema = DSL.schema( DSL.name( schemaName ) );
@@ -158,6 +167,8 @@ public class SQLEntityStoreMixin
         identityColumn = null;
         versionColumn = null;
         stateColumn = null;
+        dialect = null;
+        settings = null;
     }
 
     @Override
@@ -172,15 +183,75 @@ public class SQLEntityStoreMixin
     }
 
     @Override
-    public Stream<Reader> entityStates()
+    public Stream<Reader> getAll( Collection<EntityReference> entityReferences )
     {
+        List<String> identities = entityReferences.stream()
+                                                  .map( reference -> reference.identity().toString() )
+                                                  .collect( toList() );
         return dsl.select( stateColumn )
                   .from( table )
+                  .where( identityColumn.in( identities ) )
                   .fetch( stateColumn )
                   .stream()
                   .map( StringReader::new );
     }
 
+    /**
+     * Lazily stream all entity states through a database cursor, fetching {@code fetchSize} rows at a time.
+     * <p>
+     * The cursor holds its own connection until the returned Stream is closed.
+     * Auto-commit is disabled meanwhile as most JDBC drivers, e.g. PostgreSQL, ignore the fetch size otherwise.
+     * </p>
+     */
+    @Override
+    public Stream<Reader> entityStates() throws SQLException
+    {
+        Connection connection = dataSource.getConnection();
+        boolean autoCommit = true;
+        try
+        {
+            autoCommit = connection.getAutoCommit();
+            boolean restoredAutoCommit = autoCommit;
+            if( autoCommit )
+            {
+                connection.setAutoCommit( false );
+            }
+            return DSL.using( connection, dialect, settings )
+                      .select( stateColumn )
+                      .from( table )
+                      .fetchSize( fetchSize )
+                      .fetchStream()
+                      .map( record -> (Reader) new StringReader( record.value1() ) )
+                      .onClose( () -> release( connection, restoredAutoCommit ) );
+        }
+        catch( SQLException | RuntimeException ex )
+        {
+            try
+            {
+                release( connection, autoCommit );
+            }
+            catch( RuntimeException releaseEx )
+            {
+                ex.addSuppressed( releaseEx );
+            }
+            throw ex;
+        }
+    }
+
+    private void release( Connection connection, boolean autoCommit )
+    {
+        try( Connection toClose = connection )
+        {
+            // Read only, nothing to commit
+            toClose.rollback();
+            toClose.setAutoCommit( autoCommit );
+        }
+        catch( SQLException ex )
+        {
+            throw new EntityStoreException( "Unable to release entity states cursor connection", ex );
+        }
+    }
+
     @Override
     public void applyChanges( MapChanges changes ) throws Exception
     {
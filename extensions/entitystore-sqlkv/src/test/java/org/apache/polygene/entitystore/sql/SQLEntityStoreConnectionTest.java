@@ -0,0 +1,179 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.entitystore.sql;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+import org.apache.polygene.api.common.Visibility;
+import org.apache.polygene.bootstrap.AssemblyException;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.entitystore.sql.assembly.H2SQLEntityStoreAssembler;
+import org.apache.polygene.library.sql.assembly.ExternalDataSourceAssembler;
+import org.apache.polygene.spi.entitystore.EntityStore;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.apache.polygene.test.EntityTestAssembler;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.fail;
+
+public class SQLEntityStoreConnectionTest
+    extends AbstractPolygeneTest
+{
+    private final CountingDataSource dataSource
+        = new CountingDataSource( "jdbc:h2:mem:connection-test;DB_CLOSE_DELAY=-1" );
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().defaultServicesVisibleIn( Visibility.layer ).assemble( config );
+        new ExternalDataSourceAssembler( dataSource )
+            .identifiedBy( "h2-datasource" )
+            .visibleIn( Visibility.module )
+            .assemble( module );
+        new H2SQLEntityStoreAssembler()
+            .visibleIn( Visibility.application )
+            .withConfig( config, Visibility.layer )
+            .assemble( module );
+    }
+
+    @Test
+    public void givenFailingStatementWhenStreamingEntityStatesExpectConnectionReleased()
+    {
+        EntityStore store = serviceFinder.findService( EntityStore.class ).get();
+        store.entityStates( module ).close();
+        assertThat( dataSource.open.get(), equalTo( 0 ) );
+
+        dataSource.failing = true;
+        try
+        {
+            store.entityStates( module );
+            fail( "Expected the failing statement to be reported" );
+        }
+        catch( RuntimeException expected )
+        {
+            // The connection must be released nevertheless
+        }
+        assertThat( dataSource.open.get(), equalTo( 0 ) );
+    }
+
+    /**
+     * Hands out connections that fail to start a transaction while failing, and counts those not yet closed.
+     */
+    private static class CountingDataSource
+        implements DataSource
+    {
+        private final String url;
+        private final AtomicInteger open = new AtomicInteger();
+        private volatile boolean failing;
+
+        private CountingDataSource( String url )
+        {
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection()
+            throws SQLException
+        {
+            Connection connection = DriverManager.getConnection( url );
+            open.incrementAndGet();
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{ Connection.class },
+                ( proxy, method, args ) -> {
+                    if( failing && method.getName().equals( "setAutoCommit" ) && !(Boolean) args[ 0 ] )
+                    {
+                        throw new SQLException( "Statement failed" );
+                    }
+                    if( method.getName().equals( "close" ) && !connection.isClosed() )
+                    {
+                        open.decrementAndGet();
+                    }
+                    try
+                    {
+                        return method.invoke( connection, args );
+                    }
+                    catch( InvocationTargetException e )
+                    {
+                        throw e.getCause();
+                    }
+                } );
+        }
+
+        @Override
+        public Connection getConnection( String username, String password )
+            throws SQLException
+        {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter()
+        {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter( PrintWriter out )
+        {
+        }
+
+        @Override
+        public void setLoginTimeout( int seconds )
+        {
+        }
+
+        @Override
+        public int getLoginTimeout()
+        {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger()
+            throws SQLFeatureNotSupportedException
+        {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap( Class<T> iface )
+            throws SQLException
+        {
+            throw new SQLException( "Not a wrapper" );
+        }
+
+        @Override
+        public boolean isWrapperFor( Class<?> iface )
+        {
+            return false;
+        }
+    }
+}
@@ -35,4 +35,26 @@ public interface ReindexerConfiguration
      */
     @Optional
     Property<Integer> loadValue();
+
+    /**
+     * How many threads send EntityStates to the indexers concurrently, while the EntityStore is being read.
+     * Values above 1 require the indexers to accept concurrent notifications.
+     *
+     * If not specified, the value of 1 will be used.
+     *
+     * @return the property containing the parallelism.
+     */
+    @Optional
+    Property<Integer> parallelism();
+
+    /**
+     * How many batches of {@link #loadValue()} EntityStates can be read ahead of the indexers.
+     * Reading from the EntityStore blocks when the indexers fall behind that much.
+     *
+     * If not specified, twice the parallelism will be used.
+     *
+     * @return the property containing the amount of batches read ahead.
+     */
+    @Optional
+    Property<Integer> readAhead();
 }
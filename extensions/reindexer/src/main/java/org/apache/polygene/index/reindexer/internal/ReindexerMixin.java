@@ -21,12 +21,29 @@
 package org.apache.polygene.index.reindexer.internal;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
+import org.apache.polygene.api.common.Optional;
 import org.apache.polygene.api.configuration.Configuration;
 import org.apache.polygene.api.identity.HasIdentity;
 import org.apache.polygene.api.injection.scope.Service;
 import org.apache.polygene.api.injection.scope.Structure;
 import org.apache.polygene.api.injection.scope.This;
+import org.apache.polygene.api.metrics.MetricNames;
+import org.apache.polygene.api.metrics.MetricsGauge;
+import org.apache.polygene.api.metrics.MetricsGaugeFactory;
+import org.apache.polygene.api.metrics.MetricsMeter;
+import org.apache.polygene.api.metrics.MetricsMeterFactory;
+import org.apache.polygene.api.metrics.MetricsProvider;
 import org.apache.polygene.api.service.ServiceReference;
 import org.apache.polygene.api.structure.ModuleDescriptor;
 import org.apache.polygene.index.reindexer.Reindexer;
@@ -37,9 +54,25 @@ import org.apache.polygene.spi.entitystore.StateChangeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Reindexer implementation.
+ * <p>
+ * Reindexing is pipelined: the calling thread reads EntityStates from the EntityStore in batches of
+ * {@link ReindexerConfiguration#loadValue()} and hands them to {@link ReindexerConfiguration#parallelism()} threads
+ * that send them to the indexers. At most {@link ReindexerConfiguration#readAhead()} batches wait for the indexers,
+ * reading blocks beyond that.
+ * </p>
+ * <p>
+ * Progress is exposed through the MetricsProvider, if any, as a meter of reindexed entities and gauges of the
+ * entities reindexed so far and of the estimated seconds remaining. The estimate is based on the entity count of the
+ * previous reindexing and is not available on the first one.
+ * </p>
+ */
 public class ReindexerMixin
     implements Reindexer
 {
+    private static final List<EntityState> END_OF_STATES = new ArrayList<>( 0 );
+
     @This
     private Configuration<ReindexerConfiguration> configuration;
 
@@ -49,64 +82,232 @@ public class ReindexerMixin
     @Service
     private Iterable<ServiceReference<StateChangeListener>> listeners;
 
+    @Optional
+    @Service
+    private MetricsProvider metrics;
+
     @Structure
     private ModuleDescriptor module;
 
     private Logger logger = LoggerFactory.getLogger( Reindexer.class );
 
+    private final AtomicLong reindexed = new AtomicLong();
+    private volatile long previousTotal = -1;
+    private volatile long startNanos;
+    private MetricsMeter reindexedMeter;
+
     @Override
     public void reindex()
     {
         configuration.refresh();
         ReindexerConfiguration conf = configuration.get();
-        Integer loadValue = conf.loadValue().get();
-        if( loadValue == null )
+        int loadValue = valueOrDefault( conf.loadValue().get(), 50 );
+        int parallelism = valueOrDefault( conf.parallelism().get(), 1 );
+        int readAhead = valueOrDefault( conf.readAhead().get(), 2 * parallelism );
+        registerMetrics();
+        ReindexerHelper helper = new ReindexerHelper( loadValue, parallelism, readAhead );
+        helper.reindex( store );
+    }
+
+    private static int valueOrDefault( Integer value, int defaultValue )
+    {
+        return value == null || value < 1 ? defaultValue : value;
+    }
+
+    private synchronized void registerMetrics()
+    {
+        if( metrics == null || reindexedMeter != null )
         {
-            loadValue = 50;
+            return;
         }
-        ReindexerHelper helper = new ReindexerHelper( loadValue );
-        helper.reindex( store );
+        MetricsMeterFactory meterFactory = metrics.createFactory( MetricsMeterFactory.class );
+        reindexedMeter = meterFactory.createMeter( MetricNames.nameFor( module.instance(), Reindexer.class,
+                                                                        "reindexed" ) );
+        MetricsGaugeFactory gaugeFactory = metrics.createFactory( MetricsGaugeFactory.class );
+        gaugeFactory.registerGauge( MetricNames.nameFor( module.instance(), Reindexer.class, "progress" ),
+                                    (MetricsGauge<Long>) reindexed::get );
+        gaugeFactory.registerGauge( MetricNames.nameFor( module.instance(), Reindexer.class, "eta" ),
+                                    (MetricsGauge<Long>) this::secondsRemaining );
+    }
+
+    private Long secondsRemaining()
+    {
+        long done = reindexed.get();
+        long total = previousTotal;
+        if( total < 0 || done == 0 )
+        {
+            return null;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        return TimeUnit.NANOSECONDS.toSeconds( elapsed * Math.max( total - done, 0 ) / done );
     }
 
     private class ReindexerHelper
     {
-        private int count;
-        private int loadValue;
-        private ArrayList<EntityState> states;
+        private final int loadValue;
+        private final int parallelism;
+        private final BlockingQueue<List<EntityState>> batches;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
 
-        private ReindexerHelper( int loadValue )
+        private ReindexerHelper( int loadValue, int parallelism, int readAhead )
         {
             this.loadValue = loadValue;
-            states = new ArrayList<>();
+            this.parallelism = parallelism;
+            batches = new ArrayBlockingQueue<>( readAhead );
         }
 
         private void reindex( EntityStore store )
         {
-            try( Stream<EntityState> entityStates = store.entityStates( module ) )
+            reindexed.set( 0 );
+            startNanos = System.nanoTime();
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService indexers = Executors.newFixedThreadPool(
+                parallelism,
+                runnable -> new Thread( runnable, "reindexer-" + threadCount.incrementAndGet() ) );
+            try
+            {
+                for( int i = 0; i < parallelism; i++ )
+                {
+                    indexers.execute( this::index );
+                }
+                try( Stream<EntityState> entityStates = store.entityStates( module ) )
+                {
+                    Iterator<EntityState> iterator = entityStates.iterator();
+                    List<EntityState> batch = new ArrayList<>( loadValue );
+                    while( iterator.hasNext() && failure.get() == null )
+                    {
+                        batch.add( iterator.next() );
+                        if( batch.size() >= loadValue )
+                        {
+                            batches.put( batch );
+                            batch = new ArrayList<>( loadValue );
+                        }
+                    }
+                    if( !batch.isEmpty() )
+                    {
+                        batches.put( batch );
+                    }
+                }
+            }
+            catch( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet( null, ex );
+            }
+            catch( RuntimeException | Error ex )
+            {
+                failure.compareAndSet( null, ex );
+            }
+            finally
+            {
+                awaitIndexers( indexers );
+            }
+            Throwable failed = failure.get();
+            if( failed instanceof RuntimeException )
+            {
+                throw (RuntimeException) failed;
+            }
+            if( failed instanceof Error )
+            {
+                throw (Error) failed;
+            }
+            if( failed != null )
+            {
+                throw new IllegalStateException( "Reindexing interrupted", failed );
+            }
+            previousTotal = reindexed.get();
+            logger.debug( "Reindexed " + reindexed.get() + " entities" );
+        }
+
+        private void awaitIndexers( ExecutorService indexers )
+        {
+            boolean interrupted = false;
+            for( int i = 0; i < parallelism; )
+            {
+                try
+                {
+                    batches.put( END_OF_STATES );
+                    i++;
+                }
+                catch( InterruptedException ex )
+                {
+                    interrupted = true;
+                }
+            }
+            indexers.shutdown();
+            while( true )
+            {
+                try
+                {
+                    if( indexers.awaitTermination( 1, TimeUnit.MINUTES ) )
+                    {
+                        break;
+                    }
+                }
+                catch( InterruptedException ex )
+                {
+                    interrupted = true;
+                }
+            }
+            if( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Indexer thread, keeps taking batches until the end so that reading never blocks forever, but skips them
+         * once reindexing failed.
+         */
+        private void index()
+        {
+            while( true )
             {
-                entityStates
-                    .forEach( entityState ->
-                              {
-                                  count++;
-                                  entityState.setPropertyValue( HasIdentity.IDENTITY_STATE_NAME,
-                                                                entityState.entityReference().identity() );
-                                  states.add( entityState );
-                                  if( states.size() >= loadValue )
-                                  {
-                                      reindexState();
-                                  }
-                              } );
+                List<EntityState> batch;
+                try
+                {
+                    batch = batches.take();
+                }
+                catch( InterruptedException ex )
+                {
+                    failure.compareAndSet( null, ex );
+                    continue;
+                }
+                if( batch == END_OF_STATES )
+                {
+                    return;
+                }
+                if( failure.get() != null )
+                {
+                    continue;
+                }
+                try
+                {
+                    reindexState( batch );
+                }
+                catch( RuntimeException | Error ex )
+                {
+                    failure.compareAndSet( null, ex );
+                }
             }
-            reindexState();
         }
 
-        private void reindexState()
+        private void reindexState( List<EntityState> states )
         {
+            for( EntityState entityState : states )
+            {
+                entityState.setPropertyValue( HasIdentity.IDENTITY_STATE_NAME,
+                                              entityState.entityReference().identity() );
+            }
             for( ServiceReference<StateChangeListener> listener : listeners )
             {
                 listener.get().notifyChanges( states );
             }
-            states.clear();
+            long count = reindexed.addAndGet( states.size() );
+            if( reindexedMeter != null )
+            {
+                reindexedMeter.mark( states.size() );
+            }
             logger.debug( "Reindexed " + count + " entities" );
         }
     }
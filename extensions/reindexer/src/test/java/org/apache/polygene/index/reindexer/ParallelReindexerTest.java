@@ -0,0 +1,171 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ */
+package org.apache.polygene.index.reindexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.polygene.api.common.Visibility;
+import org.apache.polygene.api.entity.EntityBuilder;
+import org.apache.polygene.api.entity.EntityComposite;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkCompletionException;
+import org.apache.polygene.bootstrap.AssemblyException;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.entitystore.memory.assembly.MemoryEntityStoreAssembler;
+import org.apache.polygene.spi.entity.EntityState;
+import org.apache.polygene.spi.entitystore.StateChangeListener;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.apache.polygene.test.EntityTestAssembler;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.core.IsCollectionContaining.hasItems;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ParallelReindexerTest
+    extends AbstractPolygeneTest
+{
+    private static final int ENTITIES = 100;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+        throws AssemblyException
+    {
+        new MemoryEntityStoreAssembler().assemble( module );
+        module.defaultServices();
+        module.services( ReindexerService.class );
+        module.services( RecordingListenerService.class );
+        module.entities( MyEntity.class );
+
+        ModuleAssembly config = module.layer().module( "config" );
+        new EntityTestAssembler().defaultServicesVisibleIn( Visibility.layer ).assemble( config );
+        config.entities( ReindexerConfiguration.class ).visibleIn( Visibility.layer );
+        ReindexerConfiguration defaults = config.forMixin( ReindexerConfiguration.class ).declareDefaults();
+        defaults.loadValue().set( 7 );
+        defaults.parallelism().set( 3 );
+        defaults.readAhead().set( 2 );
+    }
+
+    public interface MyEntity extends EntityComposite
+    {
+        Property<String> name();
+    }
+
+    @Mixins( RecordingListenerMixin.class )
+    public interface RecordingListenerService
+        extends StateChangeListener
+    {
+        List<Identity> notified();
+
+        void clear();
+
+        void failWith( RuntimeException failure );
+    }
+
+    public static class RecordingListenerMixin
+        implements RecordingListenerService
+    {
+        private final List<Identity> notified = new ArrayList<>();
+        private volatile RuntimeException failure;
+
+        @Override
+        public synchronized void notifyChanges( Iterable<EntityState> changedStates )
+        {
+            if( failure != null )
+            {
+                throw failure;
+            }
+            changedStates.forEach( state -> notified.add( state.entityReference().identity() ) );
+        }
+
+        @Override
+        public synchronized List<Identity> notified()
+        {
+            return new ArrayList<>( notified );
+        }
+
+        @Override
+        public synchronized void clear()
+        {
+            notified.clear();
+        }
+
+        @Override
+        public void failWith( RuntimeException failure )
+        {
+            this.failure = failure;
+        }
+    }
+
+    @Test
+    public void givenEntitiesWhenReindexingInParallelExpectAllNotifiedOnce()
+        throws UnitOfWorkCompletionException
+    {
+        List<Identity> identities = createEntities();
+        RecordingListenerService listener = serviceFinder.findService( RecordingListenerService.class ).get();
+        listener.clear();
+
+        serviceFinder.findService( Reindexer.class ).get().reindex();
+
+        List<Identity> notified = listener.notified();
+        assertThat( notified.size(), equalTo( ENTITIES ) );
+        assertThat( notified, hasItems( identities.toArray( new Identity[ ENTITIES ] ) ) );
+    }
+
+    @Test
+    public void givenFailingIndexerWhenReindexingExpectFailure()
+        throws UnitOfWorkCompletionException
+    {
+        createEntities();
+        RuntimeException failure = new IllegalStateException( "Indexing failed" );
+        serviceFinder.findService( RecordingListenerService.class ).get().failWith( failure );
+        try
+        {
+            serviceFinder.findService( Reindexer.class ).get().reindex();
+            fail( "Expected reindexing to fail" );
+        }
+        catch( IllegalStateException ex )
+        {
+            assertThat( ex == failure, is( true ) );
+        }
+    }
+
+    private List<Identity> createEntities()
+        throws UnitOfWorkCompletionException
+    {
+        List<Identity> identities = new ArrayList<>( ENTITIES );
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            for( int i = 0; i < ENTITIES; i++ )
+            {
+                EntityBuilder<MyEntity> builder = uow.newEntityBuilder( MyEntity.class );
+                builder.instance().name().set( "Entity " + i );
+                identities.add( builder.newInstance().identity().get() );
+            }
+            uow.complete();
+        }
+        return identities;
+    }
+}
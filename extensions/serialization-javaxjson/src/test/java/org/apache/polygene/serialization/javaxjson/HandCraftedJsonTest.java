@@ -17,6 +17,10 @@
  */
 package org.apache.polygene.serialization.javaxjson;
 
+import java.io.StringReader;
+import javax.json.Json;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
 import org.apache.polygene.api.injection.scope.Service;
 import org.apache.polygene.api.property.Property;
 import org.apache.polygene.api.serialization.Deserializer;
@@ -68,4 +72,32 @@ public class HandCraftedJsonTest extends AbstractPolygeneTest
         assertThat( deserializer.deserialize( module, SomeValue.class, json ).foo().get(),
                     equalTo( "bar" ) );
     }
+
+    @Test
+    public void canReadTypeInfoAfterState()
+    {
+        String json = "{\"foo\":\"bar\",\"_type\":\"" + SomeValue.class.getName() + "\"}";
+        assertThat( deserializer.deserialize( module, SomeValue.class, json ).foo().get(),
+                    equalTo( "bar" ) );
+    }
+
+    @Test
+    public void canReadJsonWithUnknownMembers()
+    {
+        String json = "{\"unknown\":{\"a\":[1,2.5,{\"b\":null}]},\"foo\":\"bar\",\"other\":[true]}";
+        assertThat( deserializer.deserialize( module, SomeValue.class, json ).foo().get(),
+                    equalTo( "bar" ) );
+    }
+
+    @Test
+    public void canReadJsonValueFromParser()
+    {
+        String json = "{\"a\":[1,2.5,\"c\",null,true],\"b\":{}}";
+        try( JsonParser parser = Json.createParser( new StringReader( json ) ) )
+        {
+            JsonValue value = JavaxJson.readJsonValue( parser );
+            assertThat( value, equalTo( Json.createReader( new StringReader( json ) ).read() ) );
+            assertThat( parser.hasNext(), equalTo( false ) );
+        }
+    }
 }
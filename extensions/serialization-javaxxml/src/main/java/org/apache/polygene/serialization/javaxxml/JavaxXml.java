@@ -23,7 +23,10 @@ import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -127,6 +130,62 @@ public class JavaxXml
         }
     }
 
+    /**
+     * Write a node and its children.
+     *
+     * Elements, attributes, text, CDATA sections, comments and processing instructions are written, documents and
+     * document fragments are written as their children.
+     *
+     * @param writer the writer
+     * @param node the node
+     * @throws XMLStreamException if the writer fails
+     */
+    public static void writeNode( XMLStreamWriter writer, Node node )
+        throws XMLStreamException
+    {
+        switch( node.getNodeType() )
+        {
+            case Node.ELEMENT_NODE:
+                writer.writeStartElement( node.getNodeName() );
+                NamedNodeMap attributes = node.getAttributes();
+                for( int idx = 0; idx < attributes.getLength(); idx++ )
+                {
+                    Node attribute = attributes.item( idx );
+                    writer.writeAttribute( attribute.getNodeName(), attribute.getNodeValue() );
+                }
+                writeChildNodes( writer, node );
+                writer.writeEndElement();
+                break;
+            case Node.TEXT_NODE:
+                writer.writeCharacters( node.getNodeValue() );
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCData( node.getNodeValue() );
+                break;
+            case Node.COMMENT_NODE:
+                writer.writeComment( node.getNodeValue() );
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writer.writeProcessingInstruction( node.getNodeName(), node.getNodeValue() );
+                break;
+            case Node.DOCUMENT_NODE:
+            case Node.DOCUMENT_FRAGMENT_NODE:
+                writeChildNodes( writer, node );
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void writeChildNodes( XMLStreamWriter writer, Node parent )
+        throws XMLStreamException
+    {
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() )
+        {
+            writeNode( writer, child );
+        }
+    }
+
     private static boolean isElement( Node node )
     {
         return node.getNodeType() == Node.ELEMENT_NODE;
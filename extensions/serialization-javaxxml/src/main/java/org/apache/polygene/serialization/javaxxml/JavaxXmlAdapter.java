@@ -19,6 +19,8 @@ package org.apache.polygene.serialization.javaxxml;
 
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import org.apache.polygene.api.type.ValueType;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -53,4 +55,21 @@ public interface JavaxXmlAdapter<T>
      * @return Deserialized object
      */
     T deserialize( Node node, BiFunction<Node, ValueType, Object> deserialize );
+
+    /**
+     * Serialize directly to a writer.
+     *
+     * This default implementation writes the node returned by {@link #serialize(Document, Object, Function)},
+     * adapters should override it to write without building DOM nodes.
+     *
+     * @param writer XML writer, positioned inside the element holding the value
+     * @param document the Document to use as a Node factory
+     * @param object Object to serialize, never null
+     * @param serialize Serialization function for nested structure serialization
+     */
+    default void write( XMLStreamWriter writer, Document document, Object object, Function<Object, Node> serialize )
+        throws XMLStreamException
+    {
+        JavaxXml.writeNode( writer, serialize( document, object, serialize ) );
+    }
 }
@@ -19,8 +19,12 @@ package org.apache.polygene.serialization.javaxxml;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import org.apache.polygene.api.injection.scope.This;
 import org.apache.polygene.api.injection.scope.Uses;
 import org.apache.polygene.api.mixin.Initializable;
@@ -49,7 +53,9 @@ public interface JavaxXmlAdapters
 
     class Mixin implements JavaxXmlAdapters, Initializable
     {
-        private Map<ValueType, JavaxXmlAdapter<?>> adapters = new LinkedHashMap<>();
+        private final Map<ValueType, JavaxXmlAdapter<?>> adapters = new LinkedHashMap<>();
+        // Shared by all serialization threads, absence of adapter is cached as an empty Optional
+        private final Map<ValueType, Optional<JavaxXmlAdapter<?>>> resolvedAdaptersCache = new ConcurrentHashMap<>();
 
         @Uses
         private ServiceDescriptor descriptor;
@@ -72,18 +78,30 @@ public interface JavaxXmlAdapters
         }
 
         @Override
-        public void registerAdapter( final ValueType valueType, final JavaxXmlAdapter<?> adapter )
+        public synchronized void registerAdapter( ValueType valueType, JavaxXmlAdapter<?> adapter )
         {
             adapters.put( valueType, adapter );
+            // The new adapter may be closer to already resolved types
+            resolvedAdaptersCache.clear();
+            resolvedAdaptersCache.put( valueType, Optional.of( adapter ) );
         }
 
         @Override
-        public <T> JavaxXmlAdapter<T> adapterFor( final ValueType valueType )
+        public <T> JavaxXmlAdapter<T> adapterFor( ValueType valueType )
         {
-            return castAdapter( adapters.keySet().stream()
-                                        .collect( closestType( valueType ) )
-                                        .map( adapters::get )
-                                        .orElse( null ) );
+            Optional<JavaxXmlAdapter<?>> resolved = resolvedAdaptersCache.get( valueType );
+            if( resolved == null )
+            {
+                synchronized( this )
+                {
+                    resolved = resolvedAdaptersCache.computeIfAbsent(
+                        valueType, type -> Optional.ofNullable( adapters.keySet().stream()
+                                                                        .collect( closestType( type ) )
+                                                                        .map( adapters::get )
+                                                                        .orElse( null ) ) );
+                }
+            }
+            return castAdapter( resolved.orElse( null ) );
         }
 
         @SuppressWarnings( "unchecked" )
@@ -113,6 +131,14 @@ public interface JavaxXmlAdapters
             {
                 return document.createTextNode( object.toString() );
             }
+
+            @Override
+            public void write( XMLStreamWriter writer, Document document, Object object,
+                               Function<Object, Node> serialize )
+                throws XMLStreamException
+            {
+                writer.writeCharacters( object.toString() );
+            }
         }
 
         private static class StringAdapter extends ToStringTextNodeAdapter<String>
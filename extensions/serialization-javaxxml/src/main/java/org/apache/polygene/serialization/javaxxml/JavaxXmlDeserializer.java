@@ -34,9 +34,9 @@ import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.dom.DOMResult;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.apache.polygene.api.association.AssociationDescriptor;
 import org.apache.polygene.api.composite.CompositeDescriptor;
 import org.apache.polygene.api.composite.StatefulAssociationCompositeDescriptor;
@@ -58,7 +58,10 @@ import org.apache.polygene.api.type.StatefulAssociationValueType;
 import org.apache.polygene.api.type.ValueType;
 import org.apache.polygene.api.value.ValueBuilder;
 import org.apache.polygene.spi.serialization.AbstractTextDeserializer;
+import org.apache.polygene.spi.serialization.StatefulValueCodec;
+import org.apache.polygene.spi.serialization.StatefulValueCodecs;
 import org.apache.polygene.spi.serialization.XmlDeserializer;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
@@ -86,11 +89,13 @@ public class JavaxXmlDeserializer extends AbstractTextDeserializer
     private ServiceDescriptor descriptor;
 
     private JavaxXmlSettings settings;
+    private StatefulValueCodecs<JavaxXmlAdapter<?>> codecs;
 
     @Override
     public void initialize() throws Exception
     {
         settings = JavaxXmlSettings.orDefault( descriptor.metaInfo( JavaxXmlSettings.class ) );
+        codecs = new StatefulValueCodecs<>( converters, adapters::adapterFor );
     }
 
     @Override
@@ -98,17 +103,88 @@ public class JavaxXmlDeserializer extends AbstractTextDeserializer
     {
         try
         {
-            DOMResult domResult = new DOMResult();
-            xmlFactories.normalizationTransformer().transform( new StreamSource( state ), domResult );
-            Node node = domResult.getNode();
-            return fromXml( module, valueType, node );
+            XMLStreamReader reader = xmlFactories.xmlInputFactory().createXMLStreamReader( state );
+            try
+            {
+                return fromXml( module, valueType, readDocument( reader ) );
+            }
+            finally
+            {
+                reader.close();
+            }
         }
-        catch( TransformerException ex )
+        catch( XMLStreamException ex )
         {
             throw new SerializationException( "Unable to read XML document", ex );
         }
     }
 
+    /**
+     * Read a Document, normalized as {@literal deserializer-normalization.xsl} does.
+     *
+     * Whitespace only text is stripped, comments and processing instructions are skipped and adjacent text and CDATA
+     * sections are merged into a single text node.
+     */
+    private Document readDocument( XMLStreamReader reader )
+        throws XMLStreamException
+    {
+        Document document = xmlFactories.newDocument();
+        // Names have already been checked by the parser
+        document.setStrictErrorChecking( false );
+        Node parent = document;
+        StringBuilder text = new StringBuilder();
+        while( reader.hasNext() )
+        {
+            switch( reader.next() )
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    appendText( parent, text );
+                    Element element = document.createElement( qualifiedName( reader.getPrefix(),
+                                                                             reader.getLocalName() ) );
+                    for( int idx = 0; idx < reader.getAttributeCount(); idx++ )
+                    {
+                        element.setAttribute( qualifiedName( reader.getAttributePrefix( idx ),
+                                                             reader.getAttributeLocalName( idx ) ),
+                                              reader.getAttributeValue( idx ) );
+                    }
+                    parent.appendChild( element );
+                    parent = element;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    appendText( parent, text );
+                    parent = parent.getParentNode();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append( reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength() );
+                    break;
+                default:
+                    break;
+            }
+        }
+        return document;
+    }
+
+    private static void appendText( Node parent, StringBuilder text )
+    {
+        for( int idx = 0; idx < text.length(); idx++ )
+        {
+            char ch = text.charAt( idx );
+            if( ch != ' ' && ch != '\t' && ch != '\n' && ch != '\r' )
+            {
+                parent.appendChild( parent.getOwnerDocument().createTextNode( text.toString() ) );
+                break;
+            }
+        }
+        text.setLength( 0 );
+    }
+
+    private static String qualifiedName( String prefix, String localName )
+    {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ':' + localName;
+    }
+
     @Override
     public <T> T fromXml( ModuleDescriptor module, ValueType valueType, Node state )
     {
@@ -184,31 +260,25 @@ public class JavaxXmlDeserializer extends AbstractTextDeserializer
         }
         ValueBuilder builder = module.instance().newValueBuilderWithState(
             valueType.primaryType(),
-            propertyFunction( valueType.module(), xml ),
+            propertyFunction( valueType.module(), codecs.codecFor( valueType ), xml ),
             associationFunction( valueType.module(), xml ),
             manyAssociationFunction( valueType.module(), xml ),
             namedAssociationFunction( valueType.module(), xml ) );
         return builder.newInstance();
     }
 
-    private Function<PropertyDescriptor, Object> propertyFunction( ModuleDescriptor module, Node xml )
+    private Function<PropertyDescriptor, Object> propertyFunction( ModuleDescriptor module,
+                                                                   StatefulValueCodec<JavaxXmlAdapter<?>> codec,
+                                                                   Node xml )
     {
         return property ->
         {
-            Optional<Element> element = JavaxXml.firstChildElementNamed( xml, property.qualifiedName().name() );
+            StatefulValueCodec.Member<JavaxXmlAdapter<?>> member = codec.member( property.qualifiedName().name() );
+            Optional<Element> element = JavaxXml.firstChildElementNamed( xml, member.name() );
             if( element.isPresent() )
             {
                 Node valueNode = JavaxXml.firstStateChildNode( element.get() ).orElse( null );
-                Object value;
-                Converter<Object> converter = converters.converterFor( property );
-                if( converter != null )
-                {
-                    value = converter.fromString( doDeserialize( module, ValueType.STRING, valueNode ) );
-                }
-                else
-                {
-                    value = doDeserialize( module, property.valueType(), valueNode );
-                }
+                Object value = memberValue( module, member, valueNode );
                 if( property.isImmutable() )
                 {
                     if( value instanceof Set )
@@ -230,6 +300,27 @@ public class JavaxXmlDeserializer extends AbstractTextDeserializer
         };
     }
 
+    private Object memberValue( ModuleDescriptor module, StatefulValueCodec.Member<JavaxXmlAdapter<?>> member,
+                                Node valueNode )
+    {
+        Object value;
+        if( member.adapter() != null && valueNode != null
+            && !( valueNode.getNodeType() == Node.ELEMENT_NODE
+                  && NULL_ELEMENT_NAME.equals( ( (Element) valueNode ).getTagName() ) ) )
+        {
+            value = member.adapter().deserialize( valueNode, ( node, type ) -> doDeserialize( module, type, node ) );
+        }
+        else
+        {
+            value = doDeserialize( module, member.valueType(), valueNode );
+        }
+        if( member.converter() != null )
+        {
+            return member.converter().fromString( (String) value );
+        }
+        return value;
+    }
+
     private Function<AssociationDescriptor, EntityReference> associationFunction( ModuleDescriptor module, Node xml )
     {
         return association ->
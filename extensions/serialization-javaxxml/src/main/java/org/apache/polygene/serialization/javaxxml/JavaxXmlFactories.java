@@ -19,9 +19,10 @@ package org.apache.polygene.serialization.javaxxml;
 
 import java.io.InputStream;
 import java.util.Map;
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -32,6 +33,7 @@ import org.apache.polygene.api.mixin.Initializable;
 import org.apache.polygene.api.mixin.Mixins;
 import org.apache.polygene.api.serialization.SerializationException;
 import org.apache.polygene.api.service.ServiceDescriptor;
+import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -41,6 +43,8 @@ public interface JavaxXmlFactories
 {
     DocumentBuilderFactory documentBuilderFactory();
 
+    Document newDocument();
+
     Document newDocumentForSerialization();
 
     TransformerFactory transformerFactory();
@@ -49,13 +53,20 @@ public interface JavaxXmlFactories
 
     Transformer normalizationTransformer();
 
+    XMLInputFactory xmlInputFactory();
+
+    XMLOutputFactory xmlOutputFactory();
+
     class Mixin implements JavaxXmlFactories, Initializable
     {
         @Uses
         private ServiceDescriptor descriptor;
 
         private DocumentBuilderFactory documentBuilderFactory;
+        private DOMImplementation domImplementation;
         private TransformerFactory transformerFactory;
+        private XMLInputFactory xmlInputFactory;
+        private XMLOutputFactory xmlOutputFactory;
 
         private Transformer serializationTransformer;
         private Transformer normalizationTransformer;
@@ -83,6 +94,7 @@ public interface JavaxXmlFactories
                 {
                     documentBuilderFactory.setAttribute( attributes.getKey(), attributes.getValue() );
                 }
+                domImplementation = documentBuilderFactory.newDocumentBuilder().getDOMImplementation();
 
                 String transformerFactoryClassName = settings.getTransformerFactoryClassName();
                 transformerFactory = transformerFactoryClassName == null
@@ -115,6 +127,23 @@ public interface JavaxXmlFactories
                 normalizationTransformer.setOutputProperty( OutputKeys.STANDALONE, "yes" );
                 normalizationTransformer.setOutputProperty( OutputKeys.ENCODING, UTF_8.name() );
                 normalizationTransformer.setOutputProperty( OutputKeys.INDENT, "no" );
+
+                String xmlInputFactoryClassName = settings.getXmlInputFactoryClassName();
+                xmlInputFactory = xmlInputFactoryClassName == null
+                                  ? XMLInputFactory.newInstance()
+                                  : newInstance( XMLInputFactory.class, xmlInputFactoryClassName );
+                xmlInputFactory.setProperty( XMLInputFactory.IS_VALIDATING, false );
+                xmlInputFactory.setProperty( XMLInputFactory.IS_NAMESPACE_AWARE, false );
+                xmlInputFactory.setProperty( XMLInputFactory.IS_COALESCING, true );
+                for( Map.Entry<String, Object> property : settings.getXmlInputFactoryProperties().entrySet() )
+                {
+                    xmlInputFactory.setProperty( property.getKey(), property.getValue() );
+                }
+
+                String xmlOutputFactoryClassName = settings.getXmlOutputFactoryClassName();
+                xmlOutputFactory = xmlOutputFactoryClassName == null
+                                   ? XMLOutputFactory.newInstance()
+                                   : newInstance( XMLOutputFactory.class, xmlOutputFactoryClassName );
             }
             catch( ParserConfigurationException | TransformerConfigurationException ex )
             {
@@ -122,28 +151,37 @@ public interface JavaxXmlFactories
             }
         }
 
+        private <T> T newInstance( Class<T> type, String className )
+        {
+            try
+            {
+                return type.cast( Class.forName( className, true, getClass().getClassLoader() ).newInstance() );
+            }
+            catch( ReflectiveOperationException | ClassCastException ex )
+            {
+                throw new SerializationException( "Unable to setup the XML subsystem", ex );
+            }
+        }
+
         @Override
         public DocumentBuilderFactory documentBuilderFactory()
         {
             return documentBuilderFactory;
         }
 
+        @Override
+        public Document newDocument()
+        {
+            return domImplementation.createDocument( null, null, null );
+        }
+
         @Override
         public Document newDocumentForSerialization()
         {
-            try
-            {
-                DocumentBuilder docBuilder = documentBuilderFactory.newDocumentBuilder();
-                Document doc = docBuilder.newDocument();
-                doc.setXmlVersion( "1.1" );
-                doc.setXmlStandalone( true );
-                return doc;
-            }
-            catch( ParserConfigurationException ex )
-            {
-                throw new SerializationException( "Unable to create XML document. "
-                                                  + "Is your javax.xml subsystem correctly set up?", ex );
-            }
+            Document doc = newDocument();
+            doc.setXmlVersion( "1.1" );
+            doc.setXmlStandalone( true );
+            return doc;
         }
 
         @Override
@@ -163,5 +201,17 @@ public interface JavaxXmlFactories
         {
             return normalizationTransformer;
         }
+
+        @Override
+        public XMLInputFactory xmlInputFactory()
+        {
+            return xmlInputFactory;
+        }
+
+        @Override
+        public XMLOutputFactory xmlOutputFactory()
+        {
+            return xmlOutputFactory;
+        }
     }
 }
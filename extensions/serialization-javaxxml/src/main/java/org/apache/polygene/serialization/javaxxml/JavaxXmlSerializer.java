@@ -20,14 +20,15 @@ package org.apache.polygene.serialization.javaxxml;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import org.apache.polygene.api.PolygeneAPI;
 import org.apache.polygene.api.association.AssociationStateHolder;
 import org.apache.polygene.api.common.Optional;
@@ -47,6 +48,8 @@ import org.apache.polygene.api.type.EnumType;
 import org.apache.polygene.api.type.MapType;
 import org.apache.polygene.api.type.StatefulAssociationValueType;
 import org.apache.polygene.spi.serialization.AbstractTextSerializer;
+import org.apache.polygene.spi.serialization.StatefulValueCodec;
+import org.apache.polygene.spi.serialization.StatefulValueCodecs;
 import org.apache.polygene.spi.serialization.XmlSerializer;
 import org.apache.polygene.spi.util.ArrayIterable;
 import org.w3c.dom.DOMException;
@@ -64,6 +67,7 @@ public class JavaxXmlSerializer extends AbstractTextSerializer
     implements XmlSerializer, Initializable
 {
     private static final String NULL_ELEMENT_NAME = "null";
+    private static final String XML_DECLARATION = "<?xml version=\"1.1\" encoding=\"UTF-8\" standalone=\"yes\"?>";
 
     @This
     private JavaxXmlFactories xmlFactories;
@@ -78,41 +82,40 @@ public class JavaxXmlSerializer extends AbstractTextSerializer
     private ServiceDescriptor descriptor;
 
     private JavaxXmlSettings settings;
+    private StatefulValueCodecs<JavaxXmlAdapter<?>> codecs;
+    private ThreadLocal<Document> nodeFactory;
 
     @Override
     public void initialize() throws Exception
     {
         settings = JavaxXmlSettings.orDefault( descriptor.metaInfo( JavaxXmlSettings.class ) );
+        codecs = new StatefulValueCodecs<>( converters, adapters::adapterFor );
+        // DOM nodes are only created for adapters that do not write directly, a Document per thread is enough
+        nodeFactory = ThreadLocal.withInitial( xmlFactories::newDocumentForSerialization );
     }
 
     @Override
     public void serialize( Options options, Writer writer, @Optional Object object )
     {
-        Document xmlDocument = toXml( options, object );
-        if( xmlDocument == null )
-        {
-            return;
-        }
         try
         {
-            // We want plain text nodes to be serialized without surrounding elements
-            if( xmlDocument.getNodeType() == Node.TEXT_NODE )
-            {
-                writer.write( xmlDocument.getNodeValue() );
-            }
-            else
-            {
-                xmlFactories.serializationTransformer().transform( new DOMSource( xmlDocument ),
-                                                                   new StreamResult( writer ) );
-            }
+            // XMLStreamWriter cannot write the standalone pseudo-attribute
+            writer.write( XML_DECLARATION );
+            XMLStreamWriter xmlWriter = new JavaxXmlStreamWriter(
+                xmlFactories.xmlOutputFactory().createXMLStreamWriter( writer ) );
+            xmlWriter.writeStartElement( settings.getRootTagName() );
+            doWrite( xmlWriter, options, object, true );
+            xmlWriter.writeEndElement();
+            xmlWriter.writeEndDocument();
+            xmlWriter.close();
         }
         catch( IOException ex )
         {
             throw new UncheckedIOException( ex );
         }
-        catch( TransformerException ex )
+        catch( XMLStreamException ex )
         {
-            throw new SerializationException( "Unable to transform XML Document to String", ex );
+            throw new SerializationException( "Unable to write XML", ex );
         }
     }
 
@@ -182,57 +185,60 @@ public class JavaxXmlSerializer extends AbstractTextSerializer
         StatefulAssociationCompositeDescriptor descriptor =
             (StatefulAssociationCompositeDescriptor) instance.descriptor();
         AssociationStateHolder state = (AssociationStateHolder) instance.state();
-        StatefulAssociationValueType<?> valueType = descriptor.valueType();
+        StatefulValueCodec<JavaxXmlAdapter<?>> codec = codecs.codecFor( descriptor.valueType() );
 
         Element valueElement = document.createElement( settings.getValueTagName() );
-        valueType.properties().forEach(
-            property ->
-            {
-                Object value = state.propertyFor( property.accessor() ).get();
-                Converter<Object> converter = converters.converterFor( property );
-                if( converter != null )
-                {
-                    value = converter.toString( value );
-                }
-                Element element = document.createElement( property.qualifiedName().name() );
-                element.appendChild( doSerialize( document, options, value, false ) );
-                valueElement.appendChild( element );
-            } );
-        valueType.associations().forEach(
-            association ->
-            {
-                EntityReference value = state.associationFor( association.accessor() ).reference();
-                Element element = document.createElement( association.qualifiedName().name() );
-                element.appendChild( doSerialize( document, options, value, false ) );
-                valueElement.appendChild( element );
-            }
-        );
-        valueType.manyAssociations().forEach(
-            association ->
-            {
-                Stream<EntityReference> value = state.manyAssociationFor( association.accessor() ).references();
-                Element element = document.createElement( association.qualifiedName().name() );
-                element.appendChild( doSerialize( document, options, value, false ) );
-                valueElement.appendChild( element );
-            }
-        );
-        valueType.namedAssociations().forEach(
-            association ->
+        for( StatefulValueCodec.Member<JavaxXmlAdapter<?>> property : codec.properties() )
+        {
+            Object value = state.propertyFor( property.accessor() ).get();
+            if( property.converter() != null )
             {
-                Map<String, EntityReference> value = state.namedAssociationFor( association.accessor() ).references()
-                                                          .collect( toMap() );
-                Element element = document.createElement( association.qualifiedName().name() );
-                element.appendChild( doSerialize( document, options, value, false ) );
-                valueElement.appendChild( element );
+                value = property.converter().toString( value );
             }
-        );
+            Element element = document.createElement( property.name() );
+            element.appendChild( serializeMember( document, options, property, value ) );
+            valueElement.appendChild( element );
+        }
+        for( StatefulValueCodec.Member<JavaxXmlAdapter<?>> association : codec.associations() )
+        {
+            EntityReference value = state.associationFor( association.accessor() ).reference();
+            Element element = document.createElement( association.name() );
+            element.appendChild( doSerialize( document, options, value, false ) );
+            valueElement.appendChild( element );
+        }
+        for( StatefulValueCodec.Member<JavaxXmlAdapter<?>> association : codec.manyAssociations() )
+        {
+            Stream<EntityReference> value = state.manyAssociationFor( association.accessor() ).references();
+            Element element = document.createElement( association.name() );
+            element.appendChild( doSerialize( document, options, value, false ) );
+            valueElement.appendChild( element );
+        }
+        for( StatefulValueCodec.Member<JavaxXmlAdapter<?>> association : codec.namedAssociations() )
+        {
+            Map<String, EntityReference> value = state.namedAssociationFor( association.accessor() ).references()
+                                                      .collect( toMap() );
+            Element element = document.createElement( association.name() );
+            element.appendChild( doSerialize( document, options, value, false ) );
+            valueElement.appendChild( element );
+        }
         if( ( root && options.rootTypeInfo() ) || ( !root && options.nestedTypeInfo() ) )
         {
-            valueElement.setAttribute( settings.getTypeInfoTagName(), valueType.primaryType().getName() );
+            valueElement.setAttribute( settings.getTypeInfoTagName(), codec.typeName() );
         }
         return valueElement;
     }
 
+    private Node serializeMember( Document document, Options options,
+                                  StatefulValueCodec.Member<JavaxXmlAdapter<?>> property, Object value )
+    {
+        if( value != null && property.adapter() != null && value.getClass() == property.valueType().primaryType() )
+        {
+            return property.adapter().serialize( document, value,
+                                                 obj -> doSerialize( document, options, obj, false ) );
+        }
+        return doSerialize( document, options, value, false );
+    }
+
     private Node serializeMap( Document document, Options options, Map<?, ?> map )
     {
         Element mapElement = document.createElement( settings.getMapTagName() );
@@ -316,4 +322,216 @@ public class JavaxXmlSerializer extends AbstractTextSerializer
                         } );
         return collectionElement;
     }
+
+    private void doWrite( XMLStreamWriter writer, Options options, Object object, boolean root )
+        throws XMLStreamException
+    {
+        if( object == null )
+        {
+            writer.writeEmptyElement( NULL_ELEMENT_NAME );
+            return;
+        }
+        Class<?> objectClass = object.getClass();
+        Converter<Object> converter = converters.converterFor( objectClass );
+        if( converter != null )
+        {
+            doWrite( writer, options, converter.toString( object ), false );
+            return;
+        }
+        JavaxXmlAdapter<?> adapter = adapters.adapterFor( objectClass );
+        if( adapter != null )
+        {
+            adapter.write( writer, nodeFactory.get(), object,
+                           value -> doSerialize( nodeFactory.get(), options, value, false ) );
+            return;
+        }
+        if( EnumType.isEnum( objectClass ) )
+        {
+            writer.writeCharacters( object.toString() );
+            return;
+        }
+        if( StatefulAssociationValueType.isStatefulAssociationValue( objectClass ) )
+        {
+            writeStatefulAssociationValue( writer, options, object, root );
+            return;
+        }
+        if( MapType.isMap( objectClass ) )
+        {
+            writeMap( writer, options, (Map<?, ?>) object );
+            return;
+        }
+        if( ArrayType.isArray( objectClass ) )
+        {
+            writeArray( writer, options, object );
+            return;
+        }
+        if( Iterable.class.isAssignableFrom( objectClass ) )
+        {
+            writeCollection( writer, options, ( (Iterable<?>) object ).iterator() );
+            return;
+        }
+        if( Stream.class.isAssignableFrom( objectClass ) )
+        {
+            writeCollection( writer, options, ( (Stream<?>) object ).iterator() );
+            return;
+        }
+        throw new SerializationException( "Don't know how to serialize " + object );
+    }
+
+    private void writeStatefulAssociationValue( XMLStreamWriter writer, Options options, Object composite,
+                                                boolean root )
+        throws XMLStreamException
+    {
+        CompositeInstance instance = PolygeneAPI.FUNCTION_COMPOSITE_INSTANCE_OF.apply( (Composite) composite );
+        StatefulAssociationCompositeDescriptor descriptor =
+            (StatefulAssociationCompositeDescriptor) instance.descriptor();
+        AssociationStateHolder state = (AssociationStateHolder) instance.state();
+        StatefulValueCodec<JavaxXmlAdapter<?>> codec = codecs.codecFor( descriptor.valueType() );
+
+        writer.writeStartElement( settings.getValueTagName() );
+        if( ( root && options.rootTypeInfo() ) || ( !root && options.nestedTypeInfo() ) )
+        {
+            writer.writeAttribute( settings.getTypeInfoTagName(), codec.typeName() );
+        }
+        for( StatefulValueCodec.Member<JavaxXmlAdapter<?>> property : codec.properties() )
+        {
+            Object value = state.propertyFor( property.accessor() ).get();
+            if( property.converter() != null )
+            {
+                value = property.converter().toString( value );
+            }
+            writer.writeStartElement( property.name() );
+            writeMember( writer, options, property, value );
+            writer.writeEndElement();
+        }
+        for( StatefulValueCodec.Member<JavaxXmlAdapter<?>> association : codec.associations() )
+        {
+            writer.writeStartElement( association.name() );
+            doWrite( writer, options, state.associationFor( association.accessor() ).reference(), false );
+            writer.writeEndElement();
+        }
+        for( StatefulValueCodec.Member<JavaxXmlAdapter<?>> association : codec.manyAssociations() )
+        {
+            writer.writeStartElement( association.name() );
+            writeCollection( writer, options,
+                             state.manyAssociationFor( association.accessor() ).references().iterator() );
+            writer.writeEndElement();
+        }
+        for( StatefulValueCodec.Member<JavaxXmlAdapter<?>> association : codec.namedAssociations() )
+        {
+            writer.writeStartElement( association.name() );
+            doWrite( writer, options,
+                     state.namedAssociationFor( association.accessor() ).references().collect( toMap() ), false );
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+    }
+
+    private void writeMember( XMLStreamWriter writer, Options options,
+                              StatefulValueCodec.Member<JavaxXmlAdapter<?>> property, Object value )
+        throws XMLStreamException
+    {
+        if( value != null && property.adapter() != null && value.getClass() == property.valueType().primaryType() )
+        {
+            property.adapter().write( writer, nodeFactory.get(), value,
+                                      obj -> doSerialize( nodeFactory.get(), options, obj, false ) );
+            return;
+        }
+        doWrite( writer, options, value, false );
+    }
+
+    private void writeMap( XMLStreamWriter writer, Options options, Map<?, ?> map )
+        throws XMLStreamException
+    {
+        writer.writeStartElement( settings.getMapTagName() );
+        boolean stringKeys = !map.isEmpty() && map.keySet().iterator().next() instanceof CharSequence;
+        for( Map.Entry<?, ?> entry : map.entrySet() )
+        {
+            // Keys that cannot be encoded as a tag name use the complex mapping, as in serializeMap
+            String name = stringKeys ? entry.getKey().toString() : null;
+            if( name != null && isXmlName( name ) )
+            {
+                writer.writeStartElement( name );
+                doWrite( writer, options, entry.getValue(), false );
+                writer.writeEndElement();
+            }
+            else
+            {
+                writer.writeStartElement( settings.getMapEntryTagName() );
+                writer.writeStartElement( "key" );
+                doWrite( writer, options, entry.getKey(), false );
+                writer.writeEndElement();
+                writer.writeStartElement( "value" );
+                doWrite( writer, options, entry.getValue(), false );
+                writer.writeEndElement();
+                writer.writeEndElement();
+            }
+        }
+        writer.writeEndElement();
+    }
+
+    private void writeArray( XMLStreamWriter writer, Options options, Object object )
+        throws XMLStreamException
+    {
+        ArrayType valueType = ArrayType.of( object.getClass() );
+        if( valueType.isArrayOfPrimitiveBytes() )
+        {
+            writer.writeCData( Base64.getEncoder().encodeToString( (byte[]) object ) );
+            return;
+        }
+        if( valueType.isArrayOfPrimitives() )
+        {
+            writeCollection( writer, options, new ArrayIterable( object ).iterator() );
+            return;
+        }
+        writeCollection( writer, options, Arrays.asList( (Object[]) object ).iterator() );
+    }
+
+    private void writeCollection( XMLStreamWriter writer, Options options, Iterator<?> elements )
+        throws XMLStreamException
+    {
+        writer.writeStartElement( settings.getCollectionTagName() );
+        while( elements.hasNext() )
+        {
+            writer.writeStartElement( settings.getCollectionElementTagName() );
+            doWrite( writer, options, elements.next(), false );
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+    }
+
+    private static boolean isXmlName( String name )
+    {
+        if( name.isEmpty() )
+        {
+            return false;
+        }
+        for( int idx = 0; idx < name.length(); )
+        {
+            int codePoint = name.codePointAt( idx );
+            if( !( idx == 0 ? isXmlNameStartChar( codePoint ) : isXmlNameChar( codePoint ) ) )
+            {
+                return false;
+            }
+            idx += Character.charCount( codePoint );
+        }
+        return true;
+    }
+
+    // XML 1.1 NameStartChar, see https://www.w3.org/TR/xml11/#NT-NameStartChar
+    private static boolean isXmlNameStartChar( int ch )
+    {
+        return ch == ':' || ch == '_' || ( ch >= 'A' && ch <= 'Z' ) || ( ch >= 'a' && ch <= 'z' )
+               || ( ch >= 0xC0 && ch <= 0xD6 ) || ( ch >= 0xD8 && ch <= 0xF6 ) || ( ch >= 0xF8 && ch <= 0x2FF )
+               || ( ch >= 0x370 && ch <= 0x37D ) || ( ch >= 0x37F && ch <= 0x1FFF ) || ch == 0x200C || ch == 0x200D
+               || ( ch >= 0x2070 && ch <= 0x218F ) || ( ch >= 0x2C00 && ch <= 0x2FEF )
+               || ( ch >= 0x3001 && ch <= 0xD7FF ) || ( ch >= 0xF900 && ch <= 0xFDCF )
+               || ( ch >= 0xFDF0 && ch <= 0xFFFD ) || ( ch >= 0x10000 && ch <= 0xEFFFF );
+    }
+
+    private static boolean isXmlNameChar( int ch )
+    {
+        return isXmlNameStartChar( ch ) || ch == '-' || ch == '.' || ( ch >= '0' && ch <= '9' ) || ch == 0xB7
+               || ( ch >= 0x300 && ch <= 0x36F ) || ch == 0x203F || ch == 0x2040;
+    }
 }
@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
 import org.apache.polygene.api.type.ValueType;
 import org.apache.polygene.spi.serialization.SerializationSettings;
 
@@ -46,6 +47,10 @@ public class JavaxXmlSettings extends SerializationSettings<JavaxXmlSettings>
     private Map<String, Boolean> transformerFactoryFeatures;
     private Map<String, Object> transformerFactoryAttributes;
 
+    private String xmlInputFactoryClassName;
+    private Map<String, Object> xmlInputFactoryProperties;
+    private String xmlOutputFactoryClassName;
+
     private String rootTagName;
     private String collectionTagName;
     private String collectionElementTagName;
@@ -74,6 +79,12 @@ public class JavaxXmlSettings extends SerializationSettings<JavaxXmlSettings>
             put( XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "" );
         }};
 
+        xmlInputFactoryProperties = new HashMap<String, Object>()
+        {{
+            put( XMLInputFactory.SUPPORT_DTD, false );
+            put( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+        }};
+
         rootTagName = "state";
         collectionTagName = "collection";
         collectionElementTagName = "element";
@@ -145,6 +156,36 @@ public class JavaxXmlSettings extends SerializationSettings<JavaxXmlSettings>
         this.transformerFactoryAttributes = transformerFactoryAttributes;
     }
 
+    public String getXmlInputFactoryClassName()
+    {
+        return xmlInputFactoryClassName;
+    }
+
+    public void setXmlInputFactoryClassName( String xmlInputFactoryClassName )
+    {
+        this.xmlInputFactoryClassName = xmlInputFactoryClassName;
+    }
+
+    public Map<String, Object> getXmlInputFactoryProperties()
+    {
+        return xmlInputFactoryProperties;
+    }
+
+    public void setXmlInputFactoryProperties( Map<String, Object> xmlInputFactoryProperties )
+    {
+        this.xmlInputFactoryProperties = xmlInputFactoryProperties;
+    }
+
+    public String getXmlOutputFactoryClassName()
+    {
+        return xmlOutputFactoryClassName;
+    }
+
+    public void setXmlOutputFactoryClassName( String xmlOutputFactoryClassName )
+    {
+        this.xmlOutputFactoryClassName = xmlOutputFactoryClassName;
+    }
+
     public String getRootTagName()
     {
         return rootTagName;
@@ -0,0 +1,355 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.serialization.javaxxml;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * {@link XMLStreamWriter} writing XML the way the serialization {@link javax.xml.transform.Transformer} does.
+ *
+ * Start tags are only written once some content is, elements without content are written as empty elements.
+ * Characters are escaped as the Transformer does for XML 1.1 text, control characters, {@literal U+2028} and
+ * supplementary characters are written as character references.
+ * CDATA sections containing {@literal ]]>} are split.
+ */
+final class JavaxXmlStreamWriter
+    implements XMLStreamWriter
+{
+    private static final String CDATA_END = "]]>";
+
+    private final XMLStreamWriter delegate;
+    private final List<String> pendingAttributes = new ArrayList<>();
+    private String pendingElement;
+
+    JavaxXmlStreamWriter( XMLStreamWriter delegate )
+    {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void writeStartElement( String localName ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        pendingElement = localName;
+    }
+
+    @Override
+    public void writeStartElement( String namespaceURI, String localName ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeStartElement( namespaceURI, localName );
+    }
+
+    @Override
+    public void writeStartElement( String prefix, String localName, String namespaceURI ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeStartElement( prefix, localName, namespaceURI );
+    }
+
+    @Override
+    public void writeEmptyElement( String namespaceURI, String localName ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeEmptyElement( namespaceURI, localName );
+    }
+
+    @Override
+    public void writeEmptyElement( String prefix, String localName, String namespaceURI ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeEmptyElement( prefix, localName, namespaceURI );
+    }
+
+    @Override
+    public void writeEmptyElement( String localName ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeEmptyElement( localName );
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException
+    {
+        if( pendingElement != null )
+        {
+            delegate.writeEmptyElement( pendingElement );
+            writePendingAttributes();
+            pendingElement = null;
+            return;
+        }
+        delegate.writeEndElement();
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeEndDocument();
+    }
+
+    @Override
+    public void close() throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.close();
+    }
+
+    @Override
+    public void flush() throws XMLStreamException
+    {
+        delegate.flush();
+    }
+
+    @Override
+    public void writeAttribute( String localName, String value ) throws XMLStreamException
+    {
+        if( pendingElement != null )
+        {
+            pendingAttributes.add( localName );
+            pendingAttributes.add( value );
+            return;
+        }
+        delegate.writeAttribute( localName, value );
+    }
+
+    @Override
+    public void writeAttribute( String prefix, String namespaceURI, String localName, String value )
+        throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeAttribute( prefix, namespaceURI, localName, value );
+    }
+
+    @Override
+    public void writeAttribute( String namespaceURI, String localName, String value ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeAttribute( namespaceURI, localName, value );
+    }
+
+    @Override
+    public void writeNamespace( String prefix, String namespaceURI ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeNamespace( prefix, namespaceURI );
+    }
+
+    @Override
+    public void writeDefaultNamespace( String namespaceURI ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeDefaultNamespace( namespaceURI );
+    }
+
+    @Override
+    public void writeComment( String data ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeComment( data );
+    }
+
+    @Override
+    public void writeProcessingInstruction( String target ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeProcessingInstruction( target );
+    }
+
+    @Override
+    public void writeProcessingInstruction( String target, String data ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeProcessingInstruction( target, data );
+    }
+
+    @Override
+    public void writeCData( String data ) throws XMLStreamException
+    {
+        if( data.isEmpty() )
+        {
+            return;
+        }
+        writePendingStartElement();
+        int start = 0;
+        int end = data.indexOf( CDATA_END );
+        while( end >= 0 )
+        {
+            // Split after "]]", the ">" starts the next section
+            delegate.writeCData( data.substring( start, end + 2 ) );
+            start = end + 2;
+            end = data.indexOf( CDATA_END, start );
+        }
+        delegate.writeCData( data.substring( start ) );
+    }
+
+    @Override
+    public void writeDTD( String dtd ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeDTD( dtd );
+    }
+
+    @Override
+    public void writeEntityRef( String name ) throws XMLStreamException
+    {
+        writePendingStartElement();
+        delegate.writeEntityRef( name );
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException
+    {
+        delegate.writeStartDocument();
+    }
+
+    @Override
+    public void writeStartDocument( String version ) throws XMLStreamException
+    {
+        delegate.writeStartDocument( version );
+    }
+
+    @Override
+    public void writeStartDocument( String encoding, String version ) throws XMLStreamException
+    {
+        delegate.writeStartDocument( encoding, version );
+    }
+
+    @Override
+    public void writeCharacters( String text ) throws XMLStreamException
+    {
+        writeCharacters( text, 0, text.length() );
+    }
+
+    @Override
+    public void writeCharacters( char[] text, int start, int len ) throws XMLStreamException
+    {
+        writeCharacters( new String( text, start, len ), 0, len );
+    }
+
+    private void writeCharacters( String text, int start, int end ) throws XMLStreamException
+    {
+        if( start == end )
+        {
+            return;
+        }
+        writePendingStartElement();
+        int run = start;
+        for( int idx = start; idx < end; idx++ )
+        {
+            char ch = text.charAt( idx );
+            String reference = null;
+            int width = 1;
+            if( ch == '&' )
+            {
+                reference = "amp";
+            }
+            else if( ch == '<' )
+            {
+                reference = "lt";
+            }
+            else if( ch == '>' )
+            {
+                reference = "gt";
+            }
+            else if( ( ch < 0x20 && ch != '\t' && ch != '\n' ) || ( ch >= 0x7F && ch <= 0x9F ) || ch == 0x2028 )
+            {
+                reference = "#" + (int) ch;
+            }
+            else if( Character.isHighSurrogate( ch ) && idx + 1 < end
+                     && Character.isLowSurrogate( text.charAt( idx + 1 ) ) )
+            {
+                reference = "#" + Character.toCodePoint( ch, text.charAt( idx + 1 ) );
+                width = 2;
+            }
+            if( reference != null )
+            {
+                if( run < idx )
+                {
+                    delegate.writeCharacters( text.substring( run, idx ) );
+                }
+                delegate.writeEntityRef( reference );
+                idx += width - 1;
+                run = idx + 1;
+            }
+        }
+        if( run < end )
+        {
+            delegate.writeCharacters( run == 0 && end == text.length() ? text : text.substring( run, end ) );
+        }
+    }
+
+    @Override
+    public String getPrefix( String uri ) throws XMLStreamException
+    {
+        return delegate.getPrefix( uri );
+    }
+
+    @Override
+    public void setPrefix( String prefix, String uri ) throws XMLStreamException
+    {
+        delegate.setPrefix( prefix, uri );
+    }
+
+    @Override
+    public void setDefaultNamespace( String uri ) throws XMLStreamException
+    {
+        delegate.setDefaultNamespace( uri );
+    }
+
+    @Override
+    public void setNamespaceContext( NamespaceContext context ) throws XMLStreamException
+    {
+        delegate.setNamespaceContext( context );
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext()
+    {
+        return delegate.getNamespaceContext();
+    }
+
+    @Override
+    public Object getProperty( String name )
+    {
+        return delegate.getProperty( name );
+    }
+
+    private void writePendingStartElement() throws XMLStreamException
+    {
+        if( pendingElement != null )
+        {
+            delegate.writeStartElement( pendingElement );
+            writePendingAttributes();
+            pendingElement = null;
+        }
+    }
+
+    private void writePendingAttributes() throws XMLStreamException
+    {
+        for( int idx = 0; idx < pendingAttributes.size(); idx += 2 )
+        {
+            delegate.writeAttribute( pendingAttributes.get( idx ), pendingAttributes.get( idx + 1 ) );
+        }
+        pendingAttributes.clear();
+    }
+}
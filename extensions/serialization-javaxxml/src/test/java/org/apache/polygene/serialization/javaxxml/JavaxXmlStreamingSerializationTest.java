@@ -0,0 +1,208 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.serialization.javaxxml;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.apache.polygene.api.common.Optional;
+import org.apache.polygene.api.common.UseDefaults;
+import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.serialization.Serializer;
+import org.apache.polygene.api.type.ValueType;
+import org.apache.polygene.api.value.ValueBuilder;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.serialization.javaxxml.assembly.JavaxXmlSerializationAssembler;
+import org.apache.polygene.spi.serialization.XmlSerialization;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class JavaxXmlStreamingSerializationTest extends AbstractPolygeneTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+    {
+        new JavaxXmlSerializationAssembler().assemble( module );
+        module.values( SomeValue.class );
+    }
+
+    public interface SomeValue
+    {
+        @Optional
+        Property<String> foo();
+
+        @Optional
+        Property<Point> point();
+
+        @UseDefaults
+        Property<List<String>> list();
+
+        @UseDefaults
+        Property<Map<String, Integer>> map();
+    }
+
+    @Service
+    private XmlSerialization xmlSerialization;
+
+    @Service
+    private JavaxXmlFactories xmlFactories;
+
+    @Service
+    private JavaxXmlAdapters adapters;
+
+    @Before
+    public void registerDomOnlyAdapter()
+    {
+        adapters.registerAdapter( ValueType.of( Point.class ), new PointAdapter() );
+    }
+
+    @Test
+    public void streamedXmlEqualsTransformedDocument() throws TransformerException
+    {
+        SomeValue value = someValue( "a\r\nb\t\u0001<&>\"']]>\u0085 é😀" );
+        for( Serializer.Options options : Arrays.asList( Serializer.Options.DEFAULT,
+                                                         Serializer.Options.NO_TYPE_INFO ) )
+        {
+            String xml = xmlSerialization.serialize( options, value );
+            assertThat( xml, equalTo( transform( xmlSerialization.toXml( options, value ) ) ) );
+            assertThat( xmlSerialization.deserialize( module, SomeValue.class, xml ), equalTo( value ) );
+        }
+    }
+
+    @Test
+    public void streamedCollectionsEqualTransformedDocument() throws TransformerException
+    {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put( "", "" );
+        map.put( "key", null );
+        List<Object> elements = Arrays.asList( someValue( "first" ), null, "", someValue( "" ), new byte[ 0 ], map );
+        assertThat( xmlSerialization.serialize( elements.stream() ),
+                    equalTo( transform( xmlSerialization.toXml( elements.stream() ) ) ) );
+        assertThat( xmlSerialization.serialize( new int[] { 1, 2, 3 } ),
+                    equalTo( transform( xmlSerialization.toXml( new int[] { 1, 2, 3 } ) ) ) );
+        assertThat( xmlSerialization.serialize( Stream.empty() ),
+                    equalTo( transform( xmlSerialization.toXml( Stream.empty() ) ) ) );
+    }
+
+    @Test
+    public void readsCDataAndCharacterReferences()
+    {
+        String xml = "<?xml version=\"1.1\"?><state><value>"
+                     + "<foo>a<![CDATA[<b>]]>&#1;&#13;<!-- c -->d</foo>"
+                     + "<list>\n  <collection>\n    <element>x</element>\n  </collection>\n</list>"
+                     + "</value></state>";
+        SomeValue value = xmlSerialization.deserialize( module, SomeValue.class, xml );
+        assertThat( value.foo().get(), equalTo( "a<b>\u0001\rd" ) );
+        assertThat( value.list().get(), equalTo( Arrays.asList( "x" ) ) );
+    }
+
+    private SomeValue someValue( String foo )
+    {
+        ValueBuilder<SomeValue> builder = valueBuilderFactory.newValueBuilder( SomeValue.class );
+        builder.prototype().foo().set( foo );
+        builder.prototype().point().set( new Point( 23, 42 ) );
+        List<String> list = new ArrayList<>();
+        list.add( foo );
+        list.add( null );
+        builder.prototype().list().set( list );
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put( "tag", 1 );
+        map.put( "not a tag", 2 );
+        map.put( "1st", 3 );
+        map.put( "été", 5 );
+        builder.prototype().map().set( map );
+        return builder.newInstance();
+    }
+
+    private String transform( Document document ) throws TransformerException
+    {
+        StringWriter writer = new StringWriter();
+        xmlFactories.serializationTransformer().transform( new DOMSource( document ), new StreamResult( writer ) );
+        return writer.toString();
+    }
+
+    public static class Point
+    {
+        private final int x;
+        private final int y;
+
+        public Point( int x, int y )
+        {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals( Object other )
+        {
+            return other instanceof Point && ( (Point) other ).x == x && ( (Point) other ).y == y;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( x, y );
+        }
+    }
+
+    /**
+     * Adapter that only builds DOM nodes, written by the streaming serializer through its default write method.
+     */
+    private static class PointAdapter implements JavaxXmlAdapter<Point>
+    {
+        @Override
+        public Class<Point> type() { return Point.class; }
+
+        @Override
+        public Node serialize( Document document, Object object, Function<Object, Node> serialize )
+        {
+            Point point = (Point) object;
+            Element element = document.createElement( "point" );
+            element.setAttribute( "y", String.valueOf( point.y ) );
+            element.setAttribute( "x", String.valueOf( point.x ) );
+            element.appendChild( document.createComment( "cartesian" ) );
+            return element;
+        }
+
+        @Override
+        public Point deserialize( Node node, BiFunction<Node, ValueType, Object> deserialize )
+        {
+            Element element = (Element) node;
+            return new Point( Integer.parseInt( element.getAttribute( "x" ) ),
+                              Integer.parseInt( element.getAttribute( "y" ) ) );
+        }
+    }
+}
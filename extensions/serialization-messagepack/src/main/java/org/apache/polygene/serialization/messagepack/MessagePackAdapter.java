@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import org.apache.polygene.api.type.ValueType;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
 import org.msgpack.value.Value;
 
 /**
@@ -54,4 +56,36 @@ public interface MessagePackAdapter<T>
      */
     T deserialize( Value value, BiFunction<Value, ValueType, Object> deserialize )
         throws IOException;
+
+    /**
+     * Serialize directly to a packer.
+     *
+     * This default implementation packs the value returned by {@link #serialize(Object, Function)}, adapters should
+     * override it to pack without building a MessagePack {@link Value}.
+     *
+     * @param packer MessagePack packer
+     * @param object Object to serialize, never null
+     * @param serialize Serialization function for nested structure serialization
+     */
+    default void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+        throws IOException
+    {
+        packer.packValue( serialize( object, serialize ) );
+    }
+
+    /**
+     * Deserialize directly from an unpacker.
+     *
+     * This default implementation unpacks a MessagePack {@link Value} and deserializes it using
+     * {@link #deserialize(Value, BiFunction)}, adapters should override it to unpack without building it.
+     *
+     * @param unpacker MessagePack unpacker, positioned on the value, never on nil
+     * @param deserialize Deserialization function for nested structure deserialization
+     * @return Deserialized object
+     */
+    default T unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+        throws IOException
+    {
+        return deserialize( unpacker.unpackValue(), deserialize );
+    }
 }
@@ -17,8 +17,11 @@
  */
 package org.apache.polygene.serialization.messagepack;
 
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import org.apache.polygene.api.injection.scope.This;
@@ -29,6 +32,8 @@ import org.apache.polygene.api.serialization.Converters;
 import org.apache.polygene.api.service.ServiceDescriptor;
 import org.apache.polygene.api.type.ValueType;
 import org.apache.polygene.spi.serialization.BuiltInConverters;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
 import org.msgpack.value.Value;
 import org.msgpack.value.ValueFactory;
 
@@ -49,7 +54,9 @@ public interface MessagePackAdapters
 
     class Mixin implements MessagePackAdapters, Initializable
     {
-        private Map<ValueType, MessagePackAdapter<?>> adapters = new LinkedHashMap<>();
+        private final Map<ValueType, MessagePackAdapter<?>> adapters = new LinkedHashMap<>();
+        // Shared by all serialization threads, absence of adapter is cached as an empty Optional
+        private final Map<ValueType, Optional<MessagePackAdapter<?>>> resolvedAdaptersCache = new ConcurrentHashMap<>();
 
         @Uses
         private ServiceDescriptor descriptor;
@@ -72,18 +79,30 @@ public interface MessagePackAdapters
         }
 
         @Override
-        public void registerAdapter( ValueType valueType, MessagePackAdapter<?> adapter )
+        public synchronized void registerAdapter( ValueType valueType, MessagePackAdapter<?> adapter )
         {
             adapters.put( valueType, adapter );
+            // The new adapter may be closer to already resolved types
+            resolvedAdaptersCache.clear();
+            resolvedAdaptersCache.put( valueType, Optional.of( adapter ) );
         }
 
         @Override
-        public <T> MessagePackAdapter<T> adapterFor( final ValueType valueType )
+        public <T> MessagePackAdapter<T> adapterFor( ValueType valueType )
         {
-            return castAdapter( adapters.keySet().stream()
-                                        .collect( closestType( valueType ) )
-                                        .map( adapters::get )
-                                        .orElse( null ) );
+            Optional<MessagePackAdapter<?>> resolved = resolvedAdaptersCache.get( valueType );
+            if( resolved == null )
+            {
+                synchronized( this )
+                {
+                    resolved = resolvedAdaptersCache.computeIfAbsent(
+                        valueType, type -> Optional.ofNullable( adapters.keySet().stream()
+                                                                        .collect( closestType( type ) )
+                                                                        .map( adapters::get )
+                                                                        .orElse( null ) ) );
+                }
+            }
+            return castAdapter( resolved.orElse( null ) );
         }
 
         @SuppressWarnings( "unchecked" )
@@ -113,6 +132,13 @@ public interface MessagePackAdapters
             {
                 return ValueFactory.newString( object.toString() );
             }
+
+            @Override
+            public void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+                throws IOException
+            {
+                packer.packString( object.toString() );
+            }
         }
 
         private static class StringAdapter extends ToStringAdapter<String>
@@ -125,6 +151,13 @@ public interface MessagePackAdapters
             {
                 return value.asStringValue().asString();
             }
+
+            @Override
+            public String unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                return unpacker.unpackString();
+            }
         }
 
         private static class CharacterAdapter extends ToStringAdapter<Character>
@@ -138,6 +171,14 @@ public interface MessagePackAdapters
                 String string = value.asStringValue().asString();
                 return string.isEmpty() ? null : string.charAt( 0 );
             }
+
+            @Override
+            public Character unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                String string = unpacker.unpackString();
+                return string.isEmpty() ? null : string.charAt( 0 );
+            }
         }
 
         private static class BooleanAdapter implements MessagePackAdapter<Boolean>
@@ -156,6 +197,20 @@ public interface MessagePackAdapters
             {
                 return value.asBooleanValue().getBoolean();
             }
+
+            @Override
+            public void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+                throws IOException
+            {
+                packer.packBoolean( (Boolean) object );
+            }
+
+            @Override
+            public Boolean unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                return unpacker.unpackBoolean();
+            }
         }
 
         private static class IntegerAdapter implements MessagePackAdapter<Integer>
@@ -174,6 +229,20 @@ public interface MessagePackAdapters
             {
                 return value.asIntegerValue().asInt();
             }
+
+            @Override
+            public void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+                throws IOException
+            {
+                packer.packInt( (Integer) object );
+            }
+
+            @Override
+            public Integer unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                return unpacker.unpackInt();
+            }
         }
 
         private static class LongAdapter implements MessagePackAdapter<Long>
@@ -192,6 +261,20 @@ public interface MessagePackAdapters
             {
                 return value.asIntegerValue().asLong();
             }
+
+            @Override
+            public void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+                throws IOException
+            {
+                packer.packLong( (Long) object );
+            }
+
+            @Override
+            public Long unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                return unpacker.unpackLong();
+            }
         }
 
         private static class ShortAdapter implements MessagePackAdapter<Short>
@@ -210,6 +293,20 @@ public interface MessagePackAdapters
             {
                 return value.asIntegerValue().asShort();
             }
+
+            @Override
+            public void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+                throws IOException
+            {
+                packer.packShort( (Short) object );
+            }
+
+            @Override
+            public Short unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                return unpacker.unpackShort();
+            }
         }
 
         private static class ByteAdapter implements MessagePackAdapter<Byte>
@@ -228,6 +325,20 @@ public interface MessagePackAdapters
             {
                 return value.asIntegerValue().asByte();
             }
+
+            @Override
+            public void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+                throws IOException
+            {
+                packer.packByte( (Byte) object );
+            }
+
+            @Override
+            public Byte unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                return unpacker.unpackByte();
+            }
         }
 
         private static class FloatAdapter implements MessagePackAdapter<Float>
@@ -246,6 +357,20 @@ public interface MessagePackAdapters
             {
                 return value.asFloatValue().toFloat();
             }
+
+            @Override
+            public void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+                throws IOException
+            {
+                packer.packFloat( (Float) object );
+            }
+
+            @Override
+            public Float unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                return unpacker.unpackFloat();
+            }
         }
 
         private static class DoubleAdapter implements MessagePackAdapter<Double>
@@ -264,6 +389,20 @@ public interface MessagePackAdapters
             {
                 return value.asFloatValue().toDouble();
             }
+
+            @Override
+            public void pack( MessagePacker packer, Object object, Function<Object, Value> serialize )
+                throws IOException
+            {
+                packer.packDouble( (Double) object );
+            }
+
+            @Override
+            public Double unpack( MessageUnpacker unpacker, BiFunction<Value, ValueType, Object> deserialize )
+                throws IOException
+            {
+                return unpacker.unpackDouble();
+            }
         }
     }
 }
@@ -17,10 +17,11 @@
  */
 package org.apache.polygene.serialization.messagepack;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Array;
-import java.util.AbstractMap;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -28,15 +29,13 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.function.Function;
 import java.util.stream.Stream;
-import org.apache.polygene.api.association.AssociationDescriptor;
 import org.apache.polygene.api.composite.CompositeDescriptor;
 import org.apache.polygene.api.composite.StatefulAssociationCompositeDescriptor;
 import org.apache.polygene.api.entity.EntityReference;
 import org.apache.polygene.api.injection.scope.This;
+import org.apache.polygene.api.mixin.Initializable;
 import org.apache.polygene.api.mixin.Mixins;
 import org.apache.polygene.api.property.PropertyDescriptor;
 import org.apache.polygene.api.serialization.Converter;
@@ -51,23 +50,89 @@ import org.apache.polygene.api.type.MapType;
 import org.apache.polygene.api.type.StatefulAssociationValueType;
 import org.apache.polygene.api.type.ValueType;
 import org.apache.polygene.api.value.ValueBuilder;
+import org.apache.polygene.spi.module.ModuleSpi;
 import org.apache.polygene.spi.serialization.AbstractBinaryDeserializer;
+import org.apache.polygene.spi.serialization.StatefulValueCodec;
+import org.apache.polygene.spi.serialization.StatefulValueCodecs;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessageFormat;
 import org.msgpack.core.MessagePack;
 import org.msgpack.core.MessageUnpacker;
-import org.msgpack.value.ArrayValue;
-import org.msgpack.value.ImmutableValue;
-import org.msgpack.value.MapValue;
+import org.msgpack.core.buffer.ArrayBufferInput;
+import org.msgpack.core.buffer.ByteBufferInput;
+import org.msgpack.core.buffer.InputStreamBufferInput;
 import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
 
 import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
 import static java.util.Collections.unmodifiableSet;
-import static org.apache.polygene.api.util.Collectors.toMap;
 
 @Mixins( MessagePackDeserializer.Mixin.class )
 public interface MessagePackDeserializer extends Deserializer
 {
+    /**
+     * Unpack the next value of a {@literal MessageUnpacker}.
+     *
+     * The unpacker is not closed, so that several values can be unpacked in a row.
+     *
+     * @param module Module descriptor
+     * @param valueType Type of the value to unpack
+     * @param unpacker Unpacker to unpack from
+     * @param <T> Type of the value
+     * @return The deserialized value
+     */
+    <T> T deserialize( ModuleDescriptor module, ValueType valueType, MessageUnpacker unpacker );
+
+    /**
+     * Deserialize a value from a {@literal ByteBuffer}.
+     *
+     * Bytes are read from the current position of the buffer, which is advanced past the value.
+     *
+     * @param module Module descriptor
+     * @param valueType Type of the value to deserialize
+     * @param state Buffer to read from
+     * @param <T> Type of the value
+     * @return The deserialized value, null if the buffer has no remaining bytes
+     */
+    <T> T deserialize( ModuleDescriptor module, ValueType valueType, ByteBuffer state );
+
+    /**
+     * Deserialize a value from a slice of a byte array.
+     *
+     * @param module Module descriptor
+     * @param valueType Type of the value to deserialize
+     * @param bytes Byte array to read from
+     * @param offset Offset of the value in the array
+     * @param length Length of the slice
+     * @param <T> Type of the value
+     * @return The deserialized value, null if the slice is empty
+     */
+    <T> T fromBytes( ModuleDescriptor module, ValueType valueType, byte[] bytes, int offset, int length );
+
+    default <T> T deserialize( ModuleDescriptor module, Class<T> type, MessageUnpacker unpacker )
+    {
+        // TODO Remove (ModuleSpi) cast
+        ValueType valueType = ( (ModuleSpi) module.instance() ).valueTypeFactory().valueTypeOf( module, type );
+        return deserialize( module, valueType, unpacker );
+    }
+
+    default <T> T deserialize( ModuleDescriptor module, Class<T> type, ByteBuffer state )
+    {
+        // TODO Remove (ModuleSpi) cast
+        ValueType valueType = ( (ModuleSpi) module.instance() ).valueTypeFactory().valueTypeOf( module, type );
+        return deserialize( module, valueType, state );
+    }
+
+    default <T> T fromBytes( ModuleDescriptor module, Class<T> type, byte[] bytes, int offset, int length )
+    {
+        // TODO Remove (ModuleSpi) cast
+        ValueType valueType = ( (ModuleSpi) module.instance() ).valueTypeFactory().valueTypeOf( module, type );
+        return fromBytes( module, valueType, bytes, offset, length );
+    }
+
     class Mixin extends AbstractBinaryDeserializer
+        implements MessagePackDeserializer, Initializable
     {
         @This
         private Converters converters;
@@ -75,17 +140,86 @@ public interface MessagePackDeserializer extends Deserializer
         @This
         private MessagePackAdapters adapters;
 
+        // Reused by each thread, a deserialization nested in another one on the same thread gets its own
+        private final ThreadLocal<ReusableUnpacker> reusableUnpackers = new ThreadLocal<>();
+
+        private StatefulValueCodecs<MessagePackAdapter<?>> codecs;
+
+        @Override
+        public void initialize()
+        {
+            codecs = new StatefulValueCodecs<>( converters, adapters::adapterFor );
+        }
+
         @Override
         public <T> T deserialize( ModuleDescriptor module, ValueType valueType, InputStream state )
         {
-            try( MessageUnpacker unpacker = MessagePack.newDefaultUnpacker( state ) )
+            ReusableUnpacker reusable = borrowUnpacker();
+            try
             {
-                if( !unpacker.hasNext() )
-                {
-                    return null;
-                }
-                ImmutableValue value = unpacker.unpackValue();
-                return doDeserialize( module, valueType, value );
+                return deserializeRoot( module, valueType, reusable.reset( state ) );
+            }
+            catch( IOException ex )
+            {
+                throw new SerializationException( "Unable to deserialize " + valueType, ex );
+            }
+            finally
+            {
+                releaseUnpacker( reusable );
+            }
+        }
+
+        @Override
+        public <T> T fromBytes( ModuleDescriptor module, ValueType valueType, byte[] bytes )
+        {
+            return fromBytes( module, valueType, bytes, 0, bytes.length );
+        }
+
+        @Override
+        public <T> T fromBytes( ModuleDescriptor module, ValueType valueType, byte[] bytes, int offset, int length )
+        {
+            ReusableUnpacker reusable = borrowUnpacker();
+            try
+            {
+                return deserializeRoot( module, valueType, reusable.reset( bytes, offset, length ) );
+            }
+            catch( IOException ex )
+            {
+                throw new SerializationException( "Unable to deserialize " + valueType, ex );
+            }
+            finally
+            {
+                releaseUnpacker( reusable );
+            }
+        }
+
+        @Override
+        public <T> T deserialize( ModuleDescriptor module, ValueType valueType, ByteBuffer state )
+        {
+            ReusableUnpacker reusable = borrowUnpacker();
+            try
+            {
+                MessageUnpacker unpacker = reusable.reset( state );
+                T value = deserializeRoot( module, valueType, unpacker );
+                state.position( state.position() + (int) unpacker.getTotalReadBytes() );
+                return value;
+            }
+            catch( IOException ex )
+            {
+                throw new SerializationException( "Unable to deserialize " + valueType, ex );
+            }
+            finally
+            {
+                releaseUnpacker( reusable );
+            }
+        }
+
+        @Override
+        public <T> T deserialize( ModuleDescriptor module, ValueType valueType, MessageUnpacker unpacker )
+        {
+            try
+            {
+                return doDeserialize( module, valueType, unpacker );
             }
             catch( IOException ex )
             {
@@ -93,64 +227,120 @@ public interface MessagePackDeserializer extends Deserializer
             }
         }
 
+        private <T> T deserializeRoot( ModuleDescriptor module, ValueType valueType, MessageUnpacker unpacker )
+            throws IOException
+        {
+            if( !unpacker.hasNext() )
+            {
+                return null;
+            }
+            return doDeserialize( module, valueType, unpacker );
+        }
+
+        private ReusableUnpacker borrowUnpacker()
+        {
+            ReusableUnpacker reusable = reusableUnpackers.get();
+            if( reusable == null )
+            {
+                return new ReusableUnpacker();
+            }
+            reusableUnpackers.set( null );
+            return reusable;
+        }
+
+        private void releaseUnpacker( ReusableUnpacker reusable )
+        {
+            try
+            {
+                reusable.clear();
+                reusableUnpackers.set( reusable );
+            }
+            catch( IOException ignored )
+            {
+                // Not reused then
+            }
+        }
+
         @SuppressWarnings( "unchecked" )
+        private <T> T doDeserialize( ModuleDescriptor module, ValueType valueType, MessageUnpacker unpacker )
+            throws IOException
+        {
+            if( unpacker.getNextFormat() == MessageFormat.NIL )
+            {
+                unpacker.unpackNil();
+                return null;
+            }
+            Converter<Object> converter = converters.converterFor( valueType );
+            if( converter != null )
+            {
+                return (T) converter.fromString( doDeserialize( module, ValueType.STRING, unpacker ).toString() );
+            }
+            MessagePackAdapter<?> adapter = adapters.adapterFor( valueType );
+            if( adapter != null )
+            {
+                return (T) adapter.unpack( unpacker, ( value, type ) -> doDeserialize( module, type, value ) );
+            }
+            Class<? extends ValueType> valueTypeClass = valueType.getClass();
+            if( EnumType.class.isAssignableFrom( valueTypeClass ) )
+            {
+                return (T) Enum.valueOf( (Class) valueType.primaryType(), unpacker.unpackString() );
+            }
+            if( ArrayType.class.isAssignableFrom( valueTypeClass ) )
+            {
+                return (T) deserializeArray( module, (ArrayType) valueType, unpacker );
+            }
+            if( CollectionType.class.isAssignableFrom( valueTypeClass ) )
+            {
+                return (T) deserializeCollection( module, (CollectionType) valueType, unpacker );
+            }
+            if( MapType.class.isAssignableFrom( valueTypeClass ) )
+            {
+                return (T) deserializeMap( module, (MapType) valueType, unpacker );
+            }
+            if( StatefulAssociationValueType.class.isAssignableFrom( valueTypeClass ) )
+            {
+                StatefulAssociationValueType<?> statefulType = (StatefulAssociationValueType<?>) valueType;
+                return (T) deserializeStatefulAssociationValue( module, statefulType, null,
+                                                                unpacker.unpackMapHeader(), unpacker );
+            }
+            return (T) doGuessDeserialize( module, valueType, unpacker );
+        }
+
+        /**
+         * Nested deserialization function given to adapters that unpack MessagePack values.
+         */
         private <T> T doDeserialize( ModuleDescriptor module, ValueType valueType, Value value )
         {
-            try
+            if( value == null )
             {
-                if( value == null || value.isNilValue() )
-                {
-                    return null;
-                }
-                Converter<Object> converter = converters.converterFor( valueType );
-                if( converter != null )
-                {
-                    return (T) converter.fromString( doDeserialize( module, ValueType.STRING, value ).toString() );
-                }
-                MessagePackAdapter<?> adapter = adapters.adapterFor( valueType );
-                if( adapter != null )
-                {
-                    return (T) adapter.deserialize( value, ( val, type ) -> doDeserialize( module, valueType, val ) );
-                }
-                Class<? extends ValueType> valueTypeClass = valueType.getClass();
-                if( EnumType.class.isAssignableFrom( valueTypeClass ) )
-                {
-                    return (T) Enum.valueOf( (Class) valueType.primaryType(), value.asStringValue().asString() );
-                }
-                if( ArrayType.class.isAssignableFrom( valueTypeClass ) )
-                {
-                    return (T) deserializeArray( module, (ArrayType) valueType, value );
-                }
-                if( CollectionType.class.isAssignableFrom( valueTypeClass ) )
-                {
-                    return (T) deserializeCollection( module, (CollectionType) valueType, value.asArrayValue() );
-                }
-                if( MapType.class.isAssignableFrom( valueTypeClass ) )
-                {
-                    return (T) deserializeMap( module, (MapType) valueType, value.asMapValue() );
-                }
-                if( StatefulAssociationValueType.class.isAssignableFrom( valueTypeClass ) )
-                {
-                    return (T) deserializeStatefulAssociationValue( module,
-                                                                    (StatefulAssociationValueType<?>) valueType,
-                                                                    value.asMapValue() );
-                }
-                return (T) doGuessDeserialize( module, valueType, value );
+                return null;
             }
-            catch( IOException | ClassNotFoundException ex )
+            try( MessageUnpacker unpacker = MessagePack.newDefaultUnpacker( toBytes( value ) ) )
             {
-                throw new SerializationException( "Unable to deserialize " + valueType + " from: " + value );
+                return doDeserialize( module, valueType, unpacker );
+            }
+            catch( IOException ex )
+            {
+                throw new SerializationException( "Unable to deserialize " + valueType + " from: " + value, ex );
             }
         }
 
-        private Object deserializeArray( ModuleDescriptor module, ArrayType arrayType, Value value ) throws IOException
+        private static byte[] toBytes( Value value ) throws IOException
+        {
+            MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+            packer.packValue( value );
+            return packer.toByteArray();
+        }
+
+        private Object deserializeArray( ModuleDescriptor module, ArrayType arrayType, MessageUnpacker unpacker )
+            throws IOException
         {
             if( arrayType.isArrayOfPrimitiveBytes() )
             {
-                return value.asBinaryValue().asByteArray();
+                return unpacker.readPayload( unpacker.unpackBinaryHeader() );
             }
             CollectionType collectionType = CollectionType.listOf( arrayType.collectedType() );
-            List collection = (List) deserializeCollection( module, collectionType, value.asArrayValue() );
+            List<?> collection = (List<?>) deserializeCollection( module, collectionType, unpacker );
             Object array = Array.newInstance( arrayType.collectedType().primaryType(), collection.size() );
             for( int idx = 0; idx < collection.size(); idx++ )
             {
@@ -160,168 +350,295 @@ public interface MessagePackDeserializer extends Deserializer
         }
 
         private Collection<?> deserializeCollection( ModuleDescriptor module, CollectionType collectionType,
-                                                     ArrayValue value ) throws IOException
+                                                     MessageUnpacker unpacker ) throws IOException
         {
-            Collection<?> collection = collectionType.isSet() ? new LinkedHashSet( value.size() )
-                                                              : new ArrayList( value.size() );
-            for( Value element : value.list() )
+            int size = unpacker.unpackArrayHeader();
+            Collection<Object> collection = collectionType.isSet() ? new LinkedHashSet<>( size )
+                                                                   : new ArrayList<>( size );
+            for( int idx = 0; idx < size; idx++ )
             {
-                collection.add( doDeserialize( module, collectionType.collectedType(), element ) );
+                collection.add( doDeserialize( module, collectionType.collectedType(), unpacker ) );
             }
             return collection;
         }
 
-        private Map<Object, Object> deserializeMap( ModuleDescriptor module, MapType mapType, MapValue value )
-            throws IOException
+        private Map<Object, Object> deserializeMap( ModuleDescriptor module, MapType mapType,
+                                                    MessageUnpacker unpacker ) throws IOException
         {
-            Map<Object, Object> map = new LinkedHashMap<>( value.size() );
-            for( Map.Entry<Value, Value> entry : value.entrySet() )
+            int size = unpacker.unpackMapHeader();
+            Map<Object, Object> map = new LinkedHashMap<>( size );
+            for( int idx = 0; idx < size; idx++ )
             {
-                Object key = doDeserialize( module, mapType.keyType(), entry.getKey() );
-                Object val = doDeserialize( module, mapType.valueType(), entry.getValue() );
+                Object key = doDeserialize( module, mapType.keyType(), unpacker );
+                Object val = doDeserialize( module, mapType.valueType(), unpacker );
                 map.put( key, val );
             }
             return map;
         }
 
+        /**
+         * Unpack the members of a map mapped to a stateful association value.
+         *
+         * Members are mapped according to the given type until type info says otherwise.
+         * Members that are not part of the state of that type are kept as MessagePack values, and mapped at the end
+         * according to the type info.
+         * As serializers pack the type info first, this only happens with state packed elsewhere.
+         *
+         * @param typeInfo Type info already unpacked, or null
+         * @param size Number of members left to unpack
+         */
+        @SuppressWarnings( "unchecked" )
         private Object deserializeStatefulAssociationValue( ModuleDescriptor module,
                                                             StatefulAssociationValueType<?> valueType,
-                                                            MapValue value ) throws IOException
+                                                            String typeInfo, int size, MessageUnpacker unpacker )
+            throws IOException
         {
-            Map<String, Value> namedValues = value.map().entrySet().stream().map(
-                entry ->
+            StatefulValueCodec<MessagePackAdapter<?>> readCodec =
+                codecs.codecFor( typeInfo == null ? valueType : resolveTypeInfo( module, typeInfo, valueType ) );
+            Map<String, Object> values = new HashMap<>();
+            Map<String, Value> unread = new HashMap<>();
+            for( int idx = 0; idx < size; idx++ )
+            {
+                String name = unpacker.unpackString();
+                if( "_type".equals( name ) && unpacker.getNextFormat().getValueType().isStringType() )
                 {
-                    String key = doDeserialize( module, ValueType.STRING, entry.getKey() );
-                    return new AbstractMap.SimpleImmutableEntry<>( key, entry.getValue() );
+                    typeInfo = unpacker.unpackString();
+                    if( values.isEmpty() && unread.isEmpty() )
+                    {
+                        readCodec = codecs.codecFor( resolveTypeInfo( module, typeInfo, valueType ) );
+                    }
+                    continue;
                 }
-            ).collect( toMap( HashMap::new ) );
-
-            String typeInfo = null;
-            if( namedValues.containsKey( "_type" ) )
-            {
-                typeInfo = doDeserialize( module, ValueType.STRING, namedValues.get( "_type" ) );
+                StatefulValueCodec.Member<MessagePackAdapter<?>> member = readCodec.member( name );
+                if( member == null )
+                {
+                    unread.put( name, unpacker.unpackValue() );
+                    continue;
+                }
+                values.put( name, memberValue( readCodec.valueType().module(), member, unpacker ) );
             }
+            StatefulValueCodec<MessagePackAdapter<?>> codec = readCodec;
             if( typeInfo != null )
             {
-                // TODO What to do with typeInfo? Value or Entity ?
-                StatefulAssociationCompositeDescriptor descriptor = statefulCompositeDescriptorFor( module, typeInfo );
-                if( descriptor == null )
+                codec = codecs.codecFor( resolveTypeInfo( module, typeInfo, valueType ) );
+            }
+            if( codec != readCodec )
+            {
+                // Type info came late, values read as members of another type must be members of this one
+                for( String name : values.keySet() )
                 {
-                    throw new SerializationException(
-                        "_type: " + typeInfo + " could not be resolved while deserializing " + value );
+                    StatefulValueCodec.Member<MessagePackAdapter<?>> member = codec.member( name );
+                    if( member == null || !member.valueType().equals( readCodec.member( name ).valueType() ) )
+                    {
+                        throw new SerializationException( "_type: " + typeInfo + " came after incompatible member "
+                                                          + name );
+                    }
+                }
+            }
+            ModuleDescriptor valueModule = codec.valueType().module();
+            for( Map.Entry<String, Value> entry : unread.entrySet() )
+            {
+                StatefulValueCodec.Member<MessagePackAdapter<?>> member = codec.member( entry.getKey() );
+                if( member != null )
+                {
+                    byte[] bytes = toBytes( entry.getValue() );
+                    try( MessageUnpacker unreadUnpacker = MessagePack.newDefaultUnpacker( bytes ) )
+                    {
+                        values.put( entry.getKey(), memberValue( valueModule, member, unreadUnpacker ) );
+                    }
                 }
-                valueType = descriptor.valueType();
             }
-
             ValueBuilder builder = module.instance().newValueBuilderWithState(
-                valueType.primaryType(),
-                propertyFunction( valueType.module(), namedValues ),
-                associationFunction( valueType.module(), namedValues ),
-                manyAssociationFunction( valueType.module(), namedValues ),
-                namedAssociationFunction( valueType.module(), namedValues ) );
+                codec.valueType().primaryType(),
+                property -> values.containsKey( property.qualifiedName().name() )
+                            ? immutable( property, values.get( property.qualifiedName().name() ) )
+                            : property.resolveInitialValue( valueModule ),
+                association -> (EntityReference) values.get( association.qualifiedName().name() ),
+                association ->
+                {
+                    List<EntityReference> list = (List<EntityReference>) values.get(
+                        association.qualifiedName().name() );
+                    return list == null ? Stream.empty() : list.stream();
+                },
+                association ->
+                {
+                    Map<String, EntityReference> map = (Map<String, EntityReference>) values.get(
+                        association.qualifiedName().name() );
+                    return map == null ? Stream.empty() : map.entrySet().stream();
+                } );
             return builder.newInstance();
         }
 
-        private Function<PropertyDescriptor, Object> propertyFunction( ModuleDescriptor module,
-                                                                       Map<String, Value> namedValues )
+        private Object memberValue( ModuleDescriptor module, StatefulValueCodec.Member<MessagePackAdapter<?>> member,
+                                    MessageUnpacker unpacker ) throws IOException
+        {
+            Object value;
+            if( member.adapter() != null && unpacker.getNextFormat() != MessageFormat.NIL )
+            {
+                value = member.adapter().unpack( unpacker, ( val, type ) -> doDeserialize( module, type, val ) );
+            }
+            else
+            {
+                value = doDeserialize( module, member.valueType(), unpacker );
+            }
+            if( member.converter() != null )
+            {
+                return member.converter().fromString( (String) value );
+            }
+            return value;
+        }
+
+        private Object immutable( PropertyDescriptor property, Object value )
         {
-            return property ->
+            if( property.isImmutable() )
             {
-                Value messagePackValue = namedValues.get( property.qualifiedName().name() );
-                if( messagePackValue != null )
+                if( value instanceof Set )
                 {
-                    Object value;
-                    Converter<Object> converter = converters.converterFor( property );
-                    if( converter != null )
+                    return unmodifiableSet( (Set<?>) value );
+                }
+                else if( value instanceof List )
+                {
+                    return unmodifiableList( (List<?>) value );
+                }
+                else if( value instanceof Map )
+                {
+                    return unmodifiableMap( (Map<?, ?>) value );
+                }
+            }
+            return value;
+        }
+
+        /**
+         * Unpack a map whose type is not known from the expected {@literal ValueType}, using its type info.
+         *
+         * Type info is expected first, as packed by serializers, the map is unpacked as a MessagePack value to find
+         * it otherwise.
+         */
+        private Object doGuessDeserialize( ModuleDescriptor module, ValueType valueType, MessageUnpacker unpacker )
+            throws IOException
+        {
+            if( unpacker.getNextFormat().getValueType().isMapType() )
+            {
+                int size = unpacker.unpackMapHeader();
+                Map<Value, Value> entries = new LinkedHashMap<>( size );
+                if( size > 0 )
+                {
+                    Value key = unpacker.unpackValue();
+                    if( key.isStringValue() && "_type".equals( key.asStringValue().asString() )
+                        && unpacker.getNextFormat().getValueType().isStringType() )
                     {
-                        value = converter.fromString( doDeserialize( module, ValueType.STRING, messagePackValue ) );
+                        String typeInfo = unpacker.unpackString();
+                        StatefulAssociationCompositeDescriptor descriptor = statefulCompositeDescriptorFor(
+                            module, typeInfo );
+                        if( descriptor != null )
+                        {
+                            return deserializeStatefulAssociationValue(
+                                ( (CompositeDescriptor) descriptor ).module(), descriptor.valueType(), typeInfo,
+                                size - 1, unpacker );
+                        }
+                        entries.put( key, ValueFactory.newString( typeInfo ) );
                     }
                     else
                     {
-                        value = doDeserialize( module, property.valueType(), messagePackValue );
+                        entries.put( key, unpacker.unpackValue() );
                     }
-                    if( property.isImmutable() )
+                    for( int idx = 1; idx < size; idx++ )
                     {
-                        if( value instanceof Set )
-                        {
-                            return unmodifiableSet( (Set<?>) value );
-                        }
-                        else if( value instanceof List )
-                        {
-                            return unmodifiableList( (List<?>) value );
-                        }
-                        else if( value instanceof Map )
-                        {
-                            return unmodifiableMap( (Map<?, ?>) value );
-                        }
+                        entries.put( unpacker.unpackValue(), unpacker.unpackValue() );
                     }
-                    return value;
                 }
-                return property.resolveInitialValue( module );
-            };
+                return doGuessDeserialize( module, valueType, entries );
+            }
+            throw new SerializationException( "Don't know how to deserialize " + valueType + " from "
+                                              + unpacker.unpackValue() );
         }
 
-        private Function<AssociationDescriptor, EntityReference> associationFunction( ModuleDescriptor module,
-                                                                                      Map<String, Value> namedValues )
+        private Object doGuessDeserialize( ModuleDescriptor module, ValueType valueType, Map<Value, Value> entries )
+            throws IOException
         {
-            return association -> doDeserialize( module, ValueType.ENTITY_REFERENCE,
-                                                 namedValues.get( association.qualifiedName().name() ) );
+            for( Map.Entry<Value, Value> entry : entries.entrySet() )
+            {
+                if( entry.getKey().isStringValue() && "_type".equals( entry.getKey().asStringValue().asString() )
+                    && entry.getValue().isStringValue() )
+                {
+                    String typeInfo = entry.getValue().asStringValue().asString();
+                    StatefulAssociationCompositeDescriptor descriptor = statefulCompositeDescriptorFor( module,
+                                                                                                        typeInfo );
+                    if( descriptor != null )
+                    {
+                        Value map = ValueFactory.newMap( entries );
+                        try( MessageUnpacker unpacker = MessagePack.newDefaultUnpacker( toBytes( map ) ) )
+                        {
+                            return deserializeStatefulAssociationValue(
+                                ( (CompositeDescriptor) descriptor ).module(), descriptor.valueType(), null,
+                                unpacker.unpackMapHeader(), unpacker );
+                        }
+                    }
+                }
+            }
+            throw new SerializationException( "Don't know how to deserialize " + valueType + " from " + entries );
         }
 
-        private Function<AssociationDescriptor, Stream<EntityReference>> manyAssociationFunction(
-            ModuleDescriptor module, Map<String, Value> namedValues )
+        private StatefulAssociationValueType<?> resolveTypeInfo( ModuleDescriptor module, String typeInfo,
+                                                                 StatefulAssociationValueType<?> valueType )
         {
-            return association ->
+            if( typeInfo.equals( valueType.primaryType().getName() ) )
+            {
+                return valueType;
+            }
+            StatefulAssociationCompositeDescriptor descriptor = statefulCompositeDescriptorFor( module, typeInfo );
+            if( descriptor == null )
             {
-                List list = doDeserialize( module, ENTITY_REF_LIST_VALUE_TYPE,
-                                           namedValues.get( association.qualifiedName().name() ) );
-                return list == null ? Stream.empty() : list.stream();
-            };
+                throw new SerializationException(
+                    "_type: " + typeInfo + " could not be resolved while deserializing " + valueType );
+            }
+            return descriptor.valueType();
         }
 
-        private Function<AssociationDescriptor, Stream<Map.Entry<String, EntityReference>>> namedAssociationFunction(
-            ModuleDescriptor module, Map<String, Value> namedValues )
+        /**
+         * MessagePack unpacker reused by a thread, with its inputs.
+         */
+        private static final class ReusableUnpacker
         {
-            return association ->
+            private static final byte[] EMPTY = new byte[ 0 ];
+            private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.wrap( EMPTY );
+            private static final InputStream EMPTY_STREAM = new ByteArrayInputStream( EMPTY );
+
+            private final ArrayBufferInput arrayInput = new ArrayBufferInput( EMPTY );
+            private final ByteBufferInput byteBufferInput = new ByteBufferInput( EMPTY_BUFFER );
+            private final InputStreamBufferInput streamInput = new InputStreamBufferInput( EMPTY_STREAM );
+            private final MessageUnpacker unpacker = MessagePack.newDefaultUnpacker( arrayInput );
+
+            private MessageUnpacker reset( byte[] bytes, int offset, int length ) throws IOException
             {
-                Map map = doDeserialize( module, ENTITY_REF_MAP_VALUE_TYPE,
-                                         namedValues.get( association.qualifiedName().name() ) );
-                return map == null ? Stream.empty() : map.entrySet().stream();
-            };
-        }
+                arrayInput.reset( bytes, offset, length );
+                unpacker.reset( arrayInput );
+                return unpacker;
+            }
 
-        private Object doGuessDeserialize( ModuleDescriptor module, ValueType valueType, Value value )
-            throws IOException, ClassNotFoundException
-        {
-            switch( value.getValueType() )
-            {
-                case MAP:
-                    MapValue mapValue = value.asMapValue();
-                    Optional<String> typeInfo = mapValue
-                        .entrySet().stream()
-                        .filter( entry -> entry.getKey().isStringValue() )
-                        .map( entry ->
-                              {
-                                  String key = doDeserialize( module, ValueType.STRING, entry.getKey() );
-                                  return new AbstractMap.SimpleImmutableEntry<>( key, entry.getValue() );
-                              } )
-                        .filter( entry -> "_type".equals( entry.getKey() ) )
-                        .findFirst()
-                        .map( entry -> doDeserialize( module, ValueType.STRING, entry.getValue() ) );
-                    if( typeInfo.isPresent() )
-                    {
-                        StatefulAssociationCompositeDescriptor descriptor = statefulCompositeDescriptorFor(
-                            module, typeInfo.get() );
-                        if( descriptor != null )
-                        {
-                            return deserializeStatefulAssociationValue( ( (CompositeDescriptor) descriptor ).module(),
-                                                                        descriptor.valueType(),
-                                                                        mapValue );
-                        }
-                    }
-                default:
-                    throw new SerializationException( "Don't know how to deserialize " + valueType + " from " + value
-                                                      + " (" + value.getValueType() + ")" );
+            private MessageUnpacker reset( ByteBuffer buffer ) throws IOException
+            {
+                byteBufferInput.reset( buffer );
+                unpacker.reset( byteBufferInput );
+                return unpacker;
+            }
+
+            private MessageUnpacker reset( InputStream stream ) throws IOException
+            {
+                streamInput.reset( stream );
+                unpacker.reset( streamInput );
+                return unpacker;
+            }
+
+            /**
+             * Release the references to the last input.
+             */
+            private void clear() throws IOException
+            {
+                arrayInput.reset( EMPTY );
+                byteBufferInput.reset( EMPTY_BUFFER );
+                streamInput.reset( EMPTY_STREAM );
+                unpacker.reset( arrayInput );
             }
         }
     }
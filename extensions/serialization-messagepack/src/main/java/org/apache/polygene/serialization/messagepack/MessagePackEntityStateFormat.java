@@ -0,0 +1,339 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.serialization.messagepack;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Map;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
+import org.apache.polygene.spi.entitystore.helpers.EntityStateFormat;
+import org.msgpack.core.ExtensionTypeHeader;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.InputStreamBufferInput;
+import org.msgpack.core.buffer.OutputStreamBufferOutput;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Entity states as MessagePack.
+ * <p>
+ * Set an instance as meta-info of a MapEntityStore service declaration to store its entity states as MessagePack.
+ * The JSON structure of the states is kept as is, numbers that have no exact MessagePack representation are stored
+ * as an extension holding their decimal text.
+ * </p>
+ */
+public class MessagePackEntityStateFormat
+    implements EntityStateFormat
+{
+    /**
+     * Extension type of the numbers stored as decimal text.
+     */
+    public static final byte DECIMAL_EXTENSION_TYPE = 1;
+
+    // Reused by each thread
+    private final ThreadLocal<ReusablePacker> packers = ThreadLocal.withInitial( ReusablePacker::new );
+    private final ThreadLocal<ReusableUnpacker> unpackers = ThreadLocal.withInitial( ReusableUnpacker::new );
+
+    @Override
+    public boolean isFormatOf( int firstByte )
+    {
+        MessageFormat format = MessageFormat.valueOf( (byte) firstByte );
+        return format == MessageFormat.FIXMAP || format == MessageFormat.MAP16 || format == MessageFormat.MAP32;
+    }
+
+    @Override
+    public void write( JavaxJsonFactories jsonFactories, JsonObject state, OutputStream output )
+        throws IOException
+    {
+        ReusablePacker reusable = packers.get();
+        try
+        {
+            MessagePacker packer = reusable.reset( output );
+            packObject( packer, state );
+            packer.flush();
+        }
+        finally
+        {
+            reusable.clear();
+        }
+    }
+
+    @Override
+    public JsonObject read( JavaxJsonFactories jsonFactories, InputStream input )
+        throws IOException
+    {
+        ReusableUnpacker reusable = unpackers.get();
+        try
+        {
+            return unpackObject( jsonFactories.builderFactory(), reusable.reset( input ) );
+        }
+        finally
+        {
+            reusable.clear();
+        }
+    }
+
+    private void packObject( MessagePacker packer, JsonObject object )
+        throws IOException
+    {
+        packer.packMapHeader( object.size() );
+        for( Map.Entry<String, JsonValue> entry : object.entrySet() )
+        {
+            packer.packString( entry.getKey() );
+            packValue( packer, entry.getValue() );
+        }
+    }
+
+    private void packValue( MessagePacker packer, JsonValue value )
+        throws IOException
+    {
+        switch( value.getValueType() )
+        {
+            case OBJECT:
+                packObject( packer, (JsonObject) value );
+                break;
+            case ARRAY:
+                JsonArray array = (JsonArray) value;
+                packer.packArrayHeader( array.size() );
+                for( JsonValue item : array )
+                {
+                    packValue( packer, item );
+                }
+                break;
+            case STRING:
+                packer.packString( ( (JsonString) value ).getString() );
+                break;
+            case NUMBER:
+                packNumber( packer, (JsonNumber) value );
+                break;
+            case TRUE:
+                packer.packBoolean( true );
+                break;
+            case FALSE:
+                packer.packBoolean( false );
+                break;
+            default:
+                packer.packNil();
+        }
+    }
+
+    /**
+     * Numbers are read back as equal {@link BigDecimal}s, scale included.
+     */
+    private void packNumber( MessagePacker packer, JsonNumber number )
+        throws IOException
+    {
+        if( number.isIntegral() )
+        {
+            try
+            {
+                packer.packLong( number.longValueExact() );
+                return;
+            }
+            catch( ArithmeticException tooBig )
+            {
+                // Stored as decimal text
+            }
+        }
+        BigDecimal decimal = number.bigDecimalValue();
+        double floating = decimal.doubleValue();
+        if( decimal.scale() != 0 && !Double.isInfinite( floating ) && BigDecimal.valueOf( floating ).equals( decimal ) )
+        {
+            packer.packDouble( floating );
+            return;
+        }
+        byte[] text = decimal.toString().getBytes( UTF_8 );
+        packer.packExtensionTypeHeader( DECIMAL_EXTENSION_TYPE, text.length );
+        packer.writePayload( text );
+    }
+
+    private JsonObject unpackObject( JsonBuilderFactory builderFactory, MessageUnpacker unpacker )
+        throws IOException
+    {
+        int size = unpacker.unpackMapHeader();
+        JsonObjectBuilder builder = builderFactory.createObjectBuilder();
+        for( int idx = 0; idx < size; idx++ )
+        {
+            String name = unpacker.unpackString();
+            MessageFormat format = unpacker.getNextFormat();
+            switch( format.getValueType() )
+            {
+                case MAP:
+                    builder.add( name, unpackObject( builderFactory, unpacker ) );
+                    break;
+                case ARRAY:
+                    builder.add( name, unpackArray( builderFactory, unpacker ) );
+                    break;
+                case STRING:
+                    builder.add( name, unpacker.unpackString() );
+                    break;
+                case INTEGER:
+                    builder.add( name, unpacker.unpackLong() );
+                    break;
+                case FLOAT:
+                    builder.add( name, BigDecimal.valueOf( unpacker.unpackDouble() ) );
+                    break;
+                case BOOLEAN:
+                    builder.add( name, unpacker.unpackBoolean() );
+                    break;
+                case NIL:
+                    unpacker.unpackNil();
+                    builder.addNull( name );
+                    break;
+                case EXTENSION:
+                    builder.add( name, unpackDecimal( unpacker ) );
+                    break;
+                default:
+                    throw new IOException( "Unexpected " + format + " in entity state" );
+            }
+        }
+        return builder.build();
+    }
+
+    private JsonArray unpackArray( JsonBuilderFactory builderFactory, MessageUnpacker unpacker )
+        throws IOException
+    {
+        int size = unpacker.unpackArrayHeader();
+        JsonArrayBuilder builder = builderFactory.createArrayBuilder();
+        for( int idx = 0; idx < size; idx++ )
+        {
+            MessageFormat format = unpacker.getNextFormat();
+            switch( format.getValueType() )
+            {
+                case MAP:
+                    builder.add( unpackObject( builderFactory, unpacker ) );
+                    break;
+                case ARRAY:
+                    builder.add( unpackArray( builderFactory, unpacker ) );
+                    break;
+                case STRING:
+                    builder.add( unpacker.unpackString() );
+                    break;
+                case INTEGER:
+                    builder.add( unpacker.unpackLong() );
+                    break;
+                case FLOAT:
+                    builder.add( BigDecimal.valueOf( unpacker.unpackDouble() ) );
+                    break;
+                case BOOLEAN:
+                    builder.add( unpacker.unpackBoolean() );
+                    break;
+                case NIL:
+                    unpacker.unpackNil();
+                    builder.addNull();
+                    break;
+                case EXTENSION:
+                    builder.add( unpackDecimal( unpacker ) );
+                    break;
+                default:
+                    throw new IOException( "Unexpected " + format + " in entity state" );
+            }
+        }
+        return builder.build();
+    }
+
+    private BigDecimal unpackDecimal( MessageUnpacker unpacker )
+        throws IOException
+    {
+        ExtensionTypeHeader header = unpacker.unpackExtensionTypeHeader();
+        if( header.getType() != DECIMAL_EXTENSION_TYPE )
+        {
+            throw new IOException( "Unexpected extension type " + header.getType() + " in entity state" );
+        }
+        return new BigDecimal( new String( unpacker.readPayload( header.getLength() ), UTF_8 ) );
+    }
+
+    /**
+     * MessagePack packer reused by a thread, with its output.
+     */
+    private static final class ReusablePacker
+    {
+        private static final OutputStream NO_OUTPUT = new OutputStream()
+        {
+            @Override
+            public void write( int b )
+            {
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len )
+            {
+            }
+        };
+
+        private final OutputStreamBufferOutput streamOutput = new OutputStreamBufferOutput( NO_OUTPUT );
+        private final MessagePacker packer = MessagePack.newDefaultPacker( streamOutput );
+
+        private MessagePacker reset( OutputStream output ) throws IOException
+        {
+            streamOutput.reset( output );
+            packer.reset( streamOutput );
+            return packer;
+        }
+
+        /**
+         * Release the reference to the last output, discarding what a failed write left buffered.
+         */
+        private void clear() throws IOException
+        {
+            streamOutput.reset( NO_OUTPUT );
+            packer.reset( streamOutput );
+        }
+    }
+
+    /**
+     * MessagePack unpacker reused by a thread, with its input.
+     */
+    private static final class ReusableUnpacker
+    {
+        private static final InputStream NO_INPUT = new ByteArrayInputStream( new byte[ 0 ] );
+
+        private final InputStreamBufferInput streamInput = new InputStreamBufferInput( NO_INPUT );
+        private final MessageUnpacker unpacker = MessagePack.newDefaultUnpacker( streamInput );
+
+        private MessageUnpacker reset( InputStream input ) throws IOException
+        {
+            streamInput.reset( input );
+            unpacker.reset( streamInput );
+            return unpacker;
+        }
+
+        /**
+         * Release the reference to the last input.
+         */
+        private void clear() throws IOException
+        {
+            streamInput.reset( NO_INPUT );
+            unpacker.reset( streamInput );
+        }
+    }
+}
@@ -19,6 +19,11 @@ package org.apache.polygene.serialization.messagepack;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -29,6 +34,7 @@ import org.apache.polygene.api.composite.Composite;
 import org.apache.polygene.api.composite.CompositeInstance;
 import org.apache.polygene.api.composite.StatefulAssociationCompositeDescriptor;
 import org.apache.polygene.api.injection.scope.This;
+import org.apache.polygene.api.mixin.Initializable;
 import org.apache.polygene.api.mixin.Mixins;
 import org.apache.polygene.api.serialization.Converter;
 import org.apache.polygene.api.serialization.Converters;
@@ -39,13 +45,14 @@ import org.apache.polygene.api.type.EnumType;
 import org.apache.polygene.api.type.MapType;
 import org.apache.polygene.api.type.StatefulAssociationValueType;
 import org.apache.polygene.spi.serialization.AbstractBinarySerializer;
-import org.apache.polygene.spi.util.ArrayIterable;
+import org.apache.polygene.spi.serialization.StatefulValueCodec;
+import org.apache.polygene.spi.serialization.StatefulValueCodecs;
+import org.msgpack.core.MessageBufferPacker;
 import org.msgpack.core.MessagePack;
 import org.msgpack.core.MessagePacker;
-import org.msgpack.value.ArrayValue;
-import org.msgpack.value.MapValue;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.MessageBuffer;
 import org.msgpack.value.Value;
-import org.msgpack.value.ValueFactory;
 
 import static java.util.stream.Collectors.toList;
 import static org.apache.polygene.api.util.Collectors.toMap;
@@ -53,7 +60,41 @@ import static org.apache.polygene.api.util.Collectors.toMap;
 @Mixins( MessagePackSerializer.Mixin.class )
 public interface MessagePackSerializer extends Serializer
 {
+    /**
+     * Pack an object to a {@literal MessagePacker}.
+     *
+     * The packer is neither flushed nor closed, so that several objects can be packed in a row.
+     *
+     * @param options Serialization options
+     * @param packer Packer to pack to
+     * @param object Object to serialize
+     */
+    void serialize( Options options, MessagePacker packer, @Optional Object object );
+
+    default void serialize( MessagePacker packer, @Optional Object object )
+    {
+        serialize( Options.DEFAULT, packer, object );
+    }
+
+    /**
+     * Serialize an object to a {@literal ByteBuffer}.
+     *
+     * Bytes are written from the current position of the buffer, which is advanced past them.
+     *
+     * @param options Serialization options
+     * @param output Buffer to write to
+     * @param object Object to serialize
+     * @throws BufferOverflowException if the remaining space of the buffer is too small, nothing is written then
+     */
+    void serialize( Options options, ByteBuffer output, @Optional Object object );
+
+    default void serialize( ByteBuffer output, @Optional Object object )
+    {
+        serialize( Options.DEFAULT, output, object );
+    }
+
     class Mixin extends AbstractBinarySerializer
+        implements MessagePackSerializer, Initializable
     {
         @This
         private Converters converters;
@@ -61,150 +102,312 @@ public interface MessagePackSerializer extends Serializer
         @This
         private MessagePackAdapters adapters;
 
+        // Reused by each thread, a serialization nested in another one on the same thread gets its own
+        private final ThreadLocal<MessageBufferPacker> bufferPackers = new ThreadLocal<>();
+
+        private StatefulValueCodecs<MessagePackAdapter<?>> codecs;
+
+        @Override
+        public void initialize()
+        {
+            codecs = new StatefulValueCodecs<>( converters, adapters::adapterFor );
+        }
+
         @Override
         public void serialize( Options options, OutputStream output, @Optional Object object )
         {
-            try( MessagePacker packer = MessagePack.newDefaultPacker( output ) )
+            MessageBufferPacker packer = borrowPacker();
+            try
             {
-                Value value = doSerialize( options, object, true );
-                packer.packValue( value );
-                packer.flush();
+                doSerialize( options, packer, object, true );
+                for( MessageBuffer buffer : packer.toBufferList() )
+                {
+                    if( buffer.hasArray() )
+                    {
+                        output.write( buffer.array(), buffer.arrayOffset(), buffer.size() );
+                    }
+                    else
+                    {
+                        output.write( buffer.toByteArray() );
+                    }
+                }
+                output.flush();
             }
             catch( IOException ex )
             {
                 throw new SerializationException( "Unable to serialize " + object, ex );
             }
+            finally
+            {
+                releasePacker( packer );
+            }
         }
 
-        private Value doSerialize( Options options, Object object, boolean root )
+        @Override
+        public byte[] toBytes( Options options, @Optional Object object )
         {
+            MessageBufferPacker packer = borrowPacker();
             try
             {
-                if( object == null )
-                {
-                    return ValueFactory.newNil();
-                }
-                Class<?> objectClass = object.getClass();
-                Converter<Object> converter = converters.converterFor( objectClass );
-                if( converter != null )
-                {
-                    return doSerialize( options, converter.toString( object ), false );
-                }
-                MessagePackAdapter<?> adapter = adapters.adapterFor( objectClass );
-                if( adapter != null )
-                {
-                    return adapter.serialize( object, obj -> doSerialize( options, obj, false ) );
-                }
-                if( EnumType.isEnum( objectClass ) )
-                {
-                    return ValueFactory.newString( object.toString() );
-                }
-                if( StatefulAssociationValueType.isStatefulAssociationValue( objectClass ) )
-                {
-                    return serializeStatefulAssociationValue( options, object, root );
-                }
-                if( MapType.isMap( objectClass ) )
+                doSerialize( options, packer, object, true );
+                return packer.toByteArray();
+            }
+            catch( IOException ex )
+            {
+                throw new SerializationException( "Unable to serialize " + object, ex );
+            }
+            finally
+            {
+                releasePacker( packer );
+            }
+        }
+
+        @Override
+        public void serialize( Options options, ByteBuffer output, @Optional Object object )
+        {
+            MessageBufferPacker packer = borrowPacker();
+            try
+            {
+                doSerialize( options, packer, object, true );
+                List<MessageBuffer> buffers = packer.toBufferList();
+                int size = 0;
+                for( MessageBuffer buffer : buffers )
                 {
-                    return serializeMap( options, (Map<?, ?>) object );
+                    size += buffer.size();
                 }
-                if( ArrayType.isArray( objectClass ) )
+                if( size > output.remaining() )
                 {
-                    return serializeArray( options, object );
+                    throw new BufferOverflowException();
                 }
-                if( Iterable.class.isAssignableFrom( objectClass ) )
+                for( MessageBuffer buffer : buffers )
                 {
-                    return serializeIterable( options, (Iterable<?>) object );
+                    output.put( buffer.sliceAsByteBuffer() );
                 }
-                if( Stream.class.isAssignableFrom( objectClass ) )
+            }
+            catch( IOException ex )
+            {
+                throw new SerializationException( "Unable to serialize " + object, ex );
+            }
+            finally
+            {
+                releasePacker( packer );
+            }
+        }
+
+        @Override
+        public void serialize( Options options, MessagePacker packer, @Optional Object object )
+        {
+            try
+            {
+                doSerialize( options, packer, object, true );
+            }
+            catch( IOException ex )
+            {
+                throw new SerializationException( "Unable to serialize " + object, ex );
+            }
+        }
+
+        private MessageBufferPacker borrowPacker()
+        {
+            MessageBufferPacker packer = bufferPackers.get();
+            if( packer == null )
+            {
+                return MessagePack.newDefaultBufferPacker();
+            }
+            bufferPackers.set( null );
+            return packer;
+        }
+
+        private void releasePacker( MessageBufferPacker packer )
+        {
+            packer.clear();
+            bufferPackers.set( packer );
+        }
+
+        private void doSerialize( Options options, MessagePacker packer, Object object, boolean root )
+            throws IOException
+        {
+            if( object == null )
+            {
+                packer.packNil();
+                return;
+            }
+            Class<?> objectClass = object.getClass();
+            Converter<Object> converter = converters.converterFor( objectClass );
+            if( converter != null )
+            {
+                doSerialize( options, packer, converter.toString( object ), false );
+                return;
+            }
+            MessagePackAdapter<?> adapter = adapters.adapterFor( objectClass );
+            if( adapter != null )
+            {
+                adapter.pack( packer, object, obj -> toValue( options, obj ) );
+                return;
+            }
+            if( EnumType.isEnum( objectClass ) )
+            {
+                packer.packString( object.toString() );
+                return;
+            }
+            if( StatefulAssociationValueType.isStatefulAssociationValue( objectClass ) )
+            {
+                serializeStatefulAssociationValue( options, packer, object, root );
+                return;
+            }
+            if( MapType.isMap( objectClass ) )
+            {
+                serializeMap( options, packer, (Map<?, ?>) object );
+                return;
+            }
+            if( ArrayType.isArray( objectClass ) )
+            {
+                serializeArray( options, packer, object );
+                return;
+            }
+            if( Iterable.class.isAssignableFrom( objectClass ) )
+            {
+                serializeIterable( options, packer, (Iterable<?>) object );
+                return;
+            }
+            if( Stream.class.isAssignableFrom( objectClass ) )
+            {
+                serializeIterable( options, packer, ( (Stream<?>) object ).collect( toList() ) );
+                return;
+            }
+            throw new SerializationException( "Don't know how to serialize " + object );
+        }
+
+        /**
+         * Nested serialization function given to adapters that build MessagePack values.
+         */
+        private Value toValue( Options options, Object object )
+        {
+            MessageBufferPacker packer = borrowPacker();
+            try
+            {
+                doSerialize( options, packer, object, false );
+                try( MessageUnpacker unpacker = MessagePack.newDefaultUnpacker( packer.toByteArray() ) )
                 {
-                    return serializeStream( options, (Stream<?>) object );
+                    return unpacker.unpackValue();
                 }
-                throw new SerializationException( "Don't know how to serialize " + object );
             }
             catch( IOException ex )
             {
                 throw new SerializationException( "Unable to serialize " + object, ex );
             }
+            finally
+            {
+                releasePacker( packer );
+            }
         }
 
-        private MapValue serializeStatefulAssociationValue( Options options, Object composite, boolean root )
+        private void serializeStatefulAssociationValue( Options options, MessagePacker packer, Object composite,
+                                                        boolean root )
+            throws IOException
         {
             CompositeInstance instance = PolygeneAPI.FUNCTION_COMPOSITE_INSTANCE_OF.apply( (Composite) composite );
             StatefulAssociationCompositeDescriptor descriptor =
                 (StatefulAssociationCompositeDescriptor) instance.descriptor();
             AssociationStateHolder state = (AssociationStateHolder) instance.state();
-            StatefulAssociationValueType<?> valueType = descriptor.valueType();
+            StatefulValueCodec<MessagePackAdapter<?>> codec = codecs.codecFor( descriptor.valueType() );
 
-            ValueFactory.MapBuilder builder = ValueFactory.newMapBuilder();
-            valueType.properties().forEach(
-                property ->
+            boolean typeInfo = ( root && options.rootTypeInfo() ) || ( !root && options.nestedTypeInfo() );
+            packer.packMapHeader( codec.properties().size() + codec.associations().size()
+                                  + codec.manyAssociations().size() + codec.namedAssociations().size()
+                                  + ( typeInfo ? 1 : 0 ) );
+            if( typeInfo )
+            {
+                // Packed first so that deserializers know the type before unpacking the state
+                packer.packString( "_type" );
+                packer.packString( codec.typeName() );
+            }
+            for( StatefulValueCodec.Member<MessagePackAdapter<?>> property : codec.properties() )
+            {
+                Object value = state.propertyFor( property.accessor() ).get();
+                if( property.converter() != null )
                 {
-                    Object value = state.propertyFor( property.accessor() ).get();
-                    Converter<Object> converter = converters.converterFor( property );
-                    if( converter != null )
-                    {
-                        value = converter.toString( value );
-                    }
-                    builder.put(
-                        ValueFactory.newString( property.qualifiedName().name() ),
-                        doSerialize( options, value, false ) );
-                } );
-            valueType.associations().forEach(
-                association -> builder.put(
-                    ValueFactory.newString( association.qualifiedName().name() ),
-                    doSerialize( options, state.associationFor( association.accessor() ).reference(), false ) ) );
-            valueType.manyAssociations().forEach(
-                association -> builder.put(
-                    ValueFactory.newString( association.qualifiedName().name() ),
-                    doSerialize( options,
-                                 state.manyAssociationFor( association.accessor() ).references().collect( toList() ),
-                                 false ) ) );
-            valueType.namedAssociations().forEach(
-                association -> builder.put(
-                    ValueFactory.newString( association.qualifiedName().name() ),
-                    doSerialize( options,
-                                 state.namedAssociationFor( association.accessor() ).references().collect( toMap() ),
-                                 false ) ) );
-
-            if( ( root && options.rootTypeInfo() ) || ( !root && options.nestedTypeInfo() ) )
-            {
-                builder.put( ValueFactory.newString( "_type" ),
-                             ValueFactory.newString( valueType.primaryType().getName() ) );
-            }
-            return builder.build();
+                    value = property.converter().toString( value );
+                }
+                packer.packString( property.name() );
+                serializeMember( options, packer, property, value );
+            }
+            for( StatefulValueCodec.Member<MessagePackAdapter<?>> association : codec.associations() )
+            {
+                packer.packString( association.name() );
+                doSerialize( options, packer, state.associationFor( association.accessor() ).reference(), false );
+            }
+            for( StatefulValueCodec.Member<MessagePackAdapter<?>> association : codec.manyAssociations() )
+            {
+                packer.packString( association.name() );
+                serializeIterable( options, packer, state.manyAssociationFor( association.accessor() ).references()
+                                                         .collect( toList() ) );
+            }
+            for( StatefulValueCodec.Member<MessagePackAdapter<?>> association : codec.namedAssociations() )
+            {
+                packer.packString( association.name() );
+                serializeMap( options, packer, state.namedAssociationFor( association.accessor() ).references()
+                                                    .collect( toMap() ) );
+            }
+        }
+
+        private void serializeMember( Options options, MessagePacker packer,
+                                      StatefulValueCodec.Member<MessagePackAdapter<?>> property, Object value )
+            throws IOException
+        {
+            if( value != null && property.adapter() != null
+                && value.getClass() == property.valueType().primaryType() )
+            {
+                property.adapter().pack( packer, value, obj -> toValue( options, obj ) );
+            }
+            else
+            {
+                doSerialize( options, packer, value, false );
+            }
         }
 
-        private MapValue serializeMap( Options options, Map<?, ?> map )
+        private void serializeMap( Options options, MessagePacker packer, Map<?, ?> map )
+            throws IOException
         {
-            ValueFactory.MapBuilder builder = ValueFactory.newMapBuilder();
-            map.forEach( ( key, value ) -> builder.put( doSerialize( options, key, false ),
-                                                        doSerialize( options, value, false ) ) );
-            return builder.build();
+            packer.packMapHeader( map.size() );
+            for( Map.Entry<?, ?> entry : map.entrySet() )
+            {
+                doSerialize( options, packer, entry.getKey(), false );
+                doSerialize( options, packer, entry.getValue(), false );
+            }
         }
 
-        private Value serializeArray( Options options, Object object )
+        private void serializeArray( Options options, MessagePacker packer, Object object )
+            throws IOException
         {
             ArrayType valueType = ArrayType.of( object.getClass() );
             if( valueType.isArrayOfPrimitiveBytes() )
             {
-                return ValueFactory.newBinary( (byte[]) object );
+                byte[] bytes = (byte[]) object;
+                packer.packBinaryHeader( bytes.length );
+                packer.writePayload( bytes );
+                return;
             }
-            if( valueType.isArrayOfPrimitives() )
+            int length = Array.getLength( object );
+            packer.packArrayHeader( length );
+            for( int idx = 0; idx < length; idx++ )
             {
-                return serializeIterable( options, new ArrayIterable( object ) );
+                doSerialize( options, packer, Array.get( object, idx ), false );
             }
-            return serializeStream( options, Stream.of( (Object[]) object ) );
-        }
-
-        private ArrayValue serializeIterable( Options options, Iterable<?> iterable )
-        {
-            return serializeStream( options, StreamSupport.stream( iterable.spliterator(), false ) );
         }
 
-        private ArrayValue serializeStream( Options options, Stream<?> stream )
+        private void serializeIterable( Options options, MessagePacker packer, Iterable<?> iterable )
+            throws IOException
         {
-            return ValueFactory.newArray( stream.map( element -> doSerialize( options, element, false ) )
-                                                .collect( toList() ) );
+            // Array headers hold the number of elements
+            Collection<?> collection = iterable instanceof Collection
+                                       ? (Collection<?>) iterable
+                                       : StreamSupport.stream( iterable.spliterator(), false ).collect( toList() );
+            packer.packArrayHeader( collection.size() );
+            for( Object element : collection )
+            {
+                doSerialize( options, packer, element, false );
+            }
         }
     }
 }
@@ -0,0 +1,121 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.serialization.messagepack;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.value.ValueBuilder;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.serialization.messagepack.assembly.MessagePackSerializationAssembler;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Test;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class MessagePackBufferSerializationTest extends AbstractPolygeneTest
+{
+    @Override
+    public void assemble( ModuleAssembly module )
+    {
+        new MessagePackSerializationAssembler().assemble( module );
+        module.values( SomeValue.class );
+    }
+
+    public interface SomeValue
+    {
+        Property<String> foo();
+
+        Property<List<Integer>> bar();
+    }
+
+    @Service
+    private MessagePackSerialization serialization;
+
+    @Test
+    public void canPackAndUnpackSeveralValuesInARow()
+        throws IOException
+    {
+        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        serialization.serialize( packer, newValue( "one" ) );
+        serialization.serialize( packer, newValue( "two" ) );
+        packer.flush();
+
+        try( MessageUnpacker unpacker = MessagePack.newDefaultUnpacker( packer.toByteArray() ) )
+        {
+            assertThat( serialization.deserialize( module, SomeValue.class, unpacker ), equalTo( newValue( "one" ) ) );
+            assertThat( serialization.deserialize( module, SomeValue.class, unpacker ), equalTo( newValue( "two" ) ) );
+            assertThat( unpacker.hasNext(), equalTo( false ) );
+        }
+    }
+
+    @Test
+    public void canSerializeToAndDeserializeFromByteBuffers()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( 256 );
+        serialization.serialize( buffer, newValue( "one" ) );
+        serialization.serialize( buffer, newValue( "two" ) );
+        buffer.flip();
+
+        assertThat( serialization.deserialize( module, SomeValue.class, buffer ), equalTo( newValue( "one" ) ) );
+        assertThat( serialization.deserialize( module, SomeValue.class, buffer ), equalTo( newValue( "two" ) ) );
+        assertThat( buffer.hasRemaining(), equalTo( false ) );
+    }
+
+    @Test
+    public void doNotWriteToTooSmallByteBuffers()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( 4 );
+        try
+        {
+            serialization.serialize( buffer, newValue( "one" ) );
+            throw new AssertionError( "Expected a BufferOverflowException" );
+        }
+        catch( BufferOverflowException expected )
+        {
+            assertThat( buffer.position(), equalTo( 0 ) );
+        }
+    }
+
+    @Test
+    public void canDeserializeFromByteArraySlices()
+    {
+        byte[] state = serialization.toBytes( newValue( "one" ) );
+        byte[] bytes = new byte[ state.length + 8 ];
+        System.arraycopy( state, 0, bytes, 4, state.length );
+
+        assertThat( serialization.fromBytes( module, SomeValue.class, bytes, 4, state.length ),
+                    equalTo( newValue( "one" ) ) );
+    }
+
+    private SomeValue newValue( String foo )
+    {
+        ValueBuilder<SomeValue> builder = valueBuilderFactory.newValueBuilder( SomeValue.class );
+        builder.prototype().foo().set( foo );
+        builder.prototype().bar().set( Arrays.asList( 1, 2, 3 ) );
+        return builder.newInstance();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.serialization.messagepack;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import org.apache.polygene.api.injection.scope.Service;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.bootstrap.defaults.DefaultSerializationAssembler;
+import org.apache.polygene.serialization.javaxjson.JavaxJsonFactories;
+import org.apache.polygene.spi.entitystore.helpers.JSONEntityStateFormat;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class MessagePackEntityStateFormatTest extends AbstractPolygeneTest
+{
+    private static final String STATE
+        = "{\"reference\":\"123\",\"application_version\":\"1.0\",\"type\":\"org.acme.Person\","
+          + "\"version\":\"42\",\"modified\":1504000000000,"
+          + "\"value\":{\"name\":\"Zaphod\",\"age\":42,\"height\":1.85,\"weight\":80.50,\"score\":-0.0,"
+          + "\"big\":123456789012345678901234567890,\"small\":1E-400,\"exponent\":1E+3,"
+          + "\"optional\":null,\"alive\":true,\"dead\":false,\"tags\":[\"a\",1,2.5,null,{\"b\":[]}],"
+          + "\"nested\":{\"text\":\"\\u00e9\\u0000\\ud83d\\ude00\"}}}";
+
+    @Service
+    private JavaxJsonFactories jsonFactories;
+
+    private final MessagePackEntityStateFormat format = new MessagePackEntityStateFormat();
+
+    @Override
+    public void assemble( ModuleAssembly module )
+    {
+        new DefaultSerializationAssembler().assemble( module );
+    }
+
+    @Test
+    public void givenEntityStateWhenWritingAndReadingExpectEqualState()
+        throws IOException
+    {
+        JsonObject state = parse( STATE );
+
+        JsonObject read = format.read( jsonFactories, new ByteArrayInputStream( write( state ) ) );
+
+        assertThat( read, equalTo( state ) );
+        JsonObject value = read.getJsonObject( "value" );
+        assertThat( value.getJsonNumber( "weight" ).bigDecimalValue(), equalTo( new BigDecimal( "80.50" ) ) );
+        assertThat( value.getJsonNumber( "big" ).bigDecimalValue(),
+                    equalTo( new BigDecimal( "123456789012345678901234567890" ) ) );
+        assertThat( value.getJsonNumber( "small" ).bigDecimalValue(), equalTo( new BigDecimal( "1E-400" ) ) );
+        assertThat( value.getJsonNumber( "exponent" ).bigDecimalValue(), equalTo( new BigDecimal( "1E+3" ) ) );
+    }
+
+    @Test
+    public void givenEntityStateWhenWritingExpectSmallerThanJson()
+        throws IOException
+    {
+        JsonObject state = parse( STATE );
+
+        assertThat( write( state ).length, lessThan( state.toString().getBytes( "UTF-8" ).length ) );
+    }
+
+    @Test
+    public void givenStatesInBothFormatsExpectFormatsToBeTold()
+        throws IOException
+    {
+        byte[] packed = write( parse( STATE ) );
+        byte[] json = STATE.getBytes( "UTF-8" );
+
+        assertThat( format.isFormatOf( packed[ 0 ] & 0xFF ), equalTo( true ) );
+        assertThat( format.isFormatOf( json[ 0 ] & 0xFF ), equalTo( false ) );
+        assertThat( JSONEntityStateFormat.INSTANCE.isFormatOf( packed[ 0 ] & 0xFF ), equalTo( false ) );
+        assertThat( JSONEntityStateFormat.INSTANCE.isFormatOf( json[ 0 ] & 0xFF ), equalTo( true ) );
+    }
+
+    private byte[] write( JsonObject state )
+        throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        format.write( jsonFactories, state, output );
+        return output.toByteArray();
+    }
+
+    private JsonObject parse( String json )
+    {
+        try( JsonReader reader = jsonFactories.readerFactory().createReader( new StringReader( json ) ) )
+        {
+            return reader.readObject();
+        }
+    }
+}
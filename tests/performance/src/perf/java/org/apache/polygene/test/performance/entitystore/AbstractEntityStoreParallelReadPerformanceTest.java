@@ -0,0 +1,134 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.entitystore;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Parallel EntityStore read throughput.
+ * <p>
+ * Every thread repeatedly loads a random entity in its own UnitOfWork, exercising
+ * {@link org.apache.polygene.spi.entitystore.EntityStore#entityStateOf}. Reads of a thread-safe store should scale
+ * with the number of threads.
+ * </p>
+ * <p>
+ * Subclasses assemble the EntityStore and the {@link SimpleProduct} entity.
+ * </p>
+ */
+public abstract class AbstractEntityStoreParallelReadPerformanceTest
+    extends AbstractPolygeneTest
+{
+    private static final int ENTITIES = 1000;
+    private static final int ITERATIONS = 50000;
+
+    private final List<Identity> products = new ArrayList<>( ENTITIES );
+
+    @Before
+    public void createProducts()
+        throws Exception
+    {
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            for( int i = 0; i < ENTITIES; i++ )
+            {
+                SimpleProduct product = uow.newEntity( SimpleProduct.class );
+                product.name().set( "Product " + i );
+                products.add( product.identity().get() );
+            }
+            uow.complete();
+        }
+    }
+
+    @Test
+    public void whenReadingEntitiesInParallelThenRecordReadsPerSecond()
+        throws Exception
+    {
+        // Warm up
+        read( 1 );
+        for( int threads : threadCounts() )
+        {
+            long duration = read( threads );
+            long readsPerSecond = ( 1000000000L * threads * ITERATIONS ) / duration;
+            System.out.println( getClass().getSimpleName() + ", " + threads + " threads: "
+                                + NumberFormat.getIntegerInstance().format( readsPerSecond )
+                                + " reads per second" );
+        }
+    }
+
+    private int[] threadCounts()
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return cores > 4
+               ? new int[]{ 1, 2, 4, cores }
+               : new int[]{ 1, 2, 4 };
+    }
+
+    private long read( int threads )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            CountDownLatch start = new CountDownLatch( 1 );
+            List<Future<?>> futures = new ArrayList<>( threads );
+            for( int t = 0; t < threads; t++ )
+            {
+                futures.add( executor.submit( () ->
+                {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for( int i = 0; i < ITERATIONS; i++ )
+                    {
+                        Identity identity = products.get( random.nextInt( ENTITIES ) );
+                        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+                        {
+                            assertThat( uow.get( SimpleProduct.class, identity ).name().get(), notNullValue() );
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for( Future<?> future : futures )
+            {
+                future.get();
+            }
+            return System.nanoTime() - begin;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
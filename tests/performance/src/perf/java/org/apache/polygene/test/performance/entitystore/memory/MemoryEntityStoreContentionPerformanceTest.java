@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.entitystore.memory;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.unitofwork.ConcurrentEntityModificationException;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.entitystore.memory.assembly.MemoryEntityStoreAssembler;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.apache.polygene.test.performance.entitystore.SimpleProduct;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * UnitOfWork commit throughput under contention.
+ * <p>
+ * Every thread runs UnitOfWorks that load, change and complete entities. With disjoint entities all commits
+ * should succeed and throughput should scale with the number of threads. With a single shared entity concurrent
+ * changes must be detected and reported as {@link ConcurrentEntityModificationException}s.
+ * </p>
+ */
+public class MemoryEntityStoreContentionPerformanceTest
+    extends AbstractPolygeneTest
+{
+    private static final int ITERATIONS = 20000;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+    {
+        new MemoryEntityStoreAssembler().assemble( module );
+        module.defaultServices();
+        module.entities( SimpleProduct.class );
+    }
+
+    @Test
+    public void whenCommittingDisjointEntitiesConcurrentlyThenRecordCommitsPerSecond()
+        throws Exception
+    {
+        for( int threads : threadCounts() )
+        {
+            List<Identity> products = createProducts( threads );
+            Result result = run( threads, products::get );
+            assertThat( result.conflicts, is( 0L ) );
+            System.out.println( "Disjoint, " + threads + " threads: "
+                                + NumberFormat.getIntegerInstance().format( result.commitsPerSecond() )
+                                + " commits per second" );
+        }
+    }
+
+    @Test
+    public void whenCommittingSameEntityConcurrentlyThenDetectConcurrentModification()
+        throws Exception
+    {
+        for( int threads : threadCounts() )
+        {
+            Identity product = createProducts( 1 ).get( 0 );
+            Result result = run( threads, thread -> product );
+            assertThat( result.commits + result.conflicts, is( (long) threads * ITERATIONS ) );
+            System.out.println( "Shared, " + threads + " threads: "
+                                + NumberFormat.getIntegerInstance().format( result.commitsPerSecond() )
+                                + " commits per second, "
+                                + result.conflicts + " concurrent modifications detected" );
+        }
+    }
+
+    private int[] threadCounts()
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return cores >= 4
+               ? new int[]{ 1, 2, 4, cores }
+               : new int[]{ 1, 2, 4 };
+    }
+
+    private List<Identity> createProducts( int count )
+        throws Exception
+    {
+        List<Identity> identities = new ArrayList<>( count );
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            for( int i = 0; i < count; i++ )
+            {
+                identities.add( uow.newEntity( SimpleProduct.class ).identity().get() );
+            }
+            uow.complete();
+        }
+        return identities;
+    }
+
+    private Result run( int threads, ProductChooser chooser )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            AtomicLong commits = new AtomicLong();
+            AtomicLong conflicts = new AtomicLong();
+            CountDownLatch start = new CountDownLatch( 1 );
+            List<Future<?>> futures = new ArrayList<>( threads );
+            for( int t = 0; t < threads; t++ )
+            {
+                Identity identity = chooser.productFor( t );
+                futures.add( executor.submit( () ->
+                {
+                    start.await();
+                    for( int i = 0; i < ITERATIONS; i++ )
+                    {
+                        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+                        {
+                            uow.get( SimpleProduct.class, identity ).name().set( "Product " + i );
+                            uow.complete();
+                            commits.incrementAndGet();
+                        }
+                        catch( ConcurrentEntityModificationException e )
+                        {
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for( Future<?> future : futures )
+            {
+                future.get();
+            }
+            return new Result( commits.get(), conflicts.get(), System.nanoTime() - begin );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ProductChooser
+    {
+        Identity productFor( int thread );
+    }
+
+    private static class Result
+    {
+        private final long commits;
+        private final long conflicts;
+        private final long durationNanos;
+
+        private Result( long commits, long conflicts, long durationNanos )
+        {
+            this.commits = commits;
+            this.conflicts = conflicts;
+            this.durationNanos = durationNanos;
+        }
+
+        private long commitsPerSecond()
+        {
+            return ( 1000000000L * commits ) / durationNanos;
+        }
+    }
+}
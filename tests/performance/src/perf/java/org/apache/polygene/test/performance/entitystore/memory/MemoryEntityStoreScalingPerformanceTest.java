@@ -0,0 +1,136 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.entitystore.memory;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.unitofwork.ConcurrentEntityModificationException;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.entitystore.memory.assembly.MemoryEntityStoreAssembler;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.apache.polygene.test.performance.entitystore.SimpleProduct;
+import org.junit.Test;
+
+/**
+ * MemoryEntityStore throughput of a mixed workload as the number of threads grows.
+ * <p>
+ * Every thread runs UnitOfWorks that read a random entity, one in ten of them also changes it.
+ * </p>
+ */
+public class MemoryEntityStoreScalingPerformanceTest
+    extends AbstractPolygeneTest
+{
+    private static final int ENTITIES = 10000;
+    private static final int ITERATIONS = 50000;
+    private static final int WRITE_RATIO = 10;
+
+    private final List<Identity> products = new ArrayList<>( ENTITIES );
+
+    @Override
+    public void assemble( ModuleAssembly module )
+    {
+        new MemoryEntityStoreAssembler().assemble( module );
+        module.defaultServices();
+        module.entities( SimpleProduct.class );
+    }
+
+    @Test
+    public void whenRunningMixedWorkloadThenRecordUnitOfWorksPerSecond()
+        throws Exception
+    {
+        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+        {
+            for( int i = 0; i < ENTITIES; i++ )
+            {
+                products.add( uow.newEntity( SimpleProduct.class ).identity().get() );
+            }
+            uow.complete();
+        }
+
+        // Warm up
+        run( 1 );
+        int cores = Runtime.getRuntime().availableProcessors();
+        for( int threads = 1; threads <= Math.max( cores, 4 ); threads *= 2 )
+        {
+            long duration = run( threads );
+            long perSecond = ( 1000000000L * threads * ITERATIONS ) / duration;
+            System.out.println( threads + " threads: " + NumberFormat.getIntegerInstance().format( perSecond )
+                                + " UnitOfWorks per second" );
+        }
+    }
+
+    private long run( int threads )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            CountDownLatch start = new CountDownLatch( 1 );
+            List<Future<?>> futures = new ArrayList<>( threads );
+            for( int t = 0; t < threads; t++ )
+            {
+                futures.add( executor.submit( () ->
+                {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for( int i = 0; i < ITERATIONS; i++ )
+                    {
+                        Identity identity = products.get( random.nextInt( ENTITIES ) );
+                        try( UnitOfWork uow = unitOfWorkFactory.newUnitOfWork() )
+                        {
+                            SimpleProduct product = uow.get( SimpleProduct.class, identity );
+                            if( i % WRITE_RATIO == 0 )
+                            {
+                                product.name().set( "Product " + i );
+                                uow.complete();
+                            }
+                            else
+                            {
+                                product.name().get();
+                            }
+                        }
+                        catch( ConcurrentEntityModificationException e )
+                        {
+                            // Another thread changed the same entity, carry on
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for( Future<?> future : futures )
+            {
+                future.get();
+            }
+            return System.nanoTime() - begin;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.jmh;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.apache.polygene.api.activation.ActivationException;
+import org.apache.polygene.api.activation.PassivationException;
+import org.apache.polygene.api.composite.TransientBuilderFactory;
+import org.apache.polygene.api.composite.TransientComposite;
+import org.apache.polygene.api.concern.ConcernOf;
+import org.apache.polygene.api.concern.Concerns;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Composite method invocation and transient creation.
+ * <p>
+ * {@link #invokeInterface()} calls the mixin directly through its interface and is the baseline the composite
+ * invocations are measured against.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class CompositeInvocationBenchmark
+{
+    private SingletonAssembler assembler;
+    private TransientBuilderFactory transientBuilderFactory;
+    private Simple plain;
+    private Simple simple;
+    private Simple simpleWithTypedConcern;
+    private Simple simpleWithGenericConcern;
+
+    @Setup
+    public void setup()
+        throws ActivationException
+    {
+        assembler = new SingletonAssembler(
+            module -> module.transients( SimpleComposite.class,
+                                         SimpleWithTypedConcernComposite.class,
+                                         SimpleWithGenericConcernComposite.class ) );
+        transientBuilderFactory = assembler.module().transientBuilderFactory();
+        plain = new SimpleMixin();
+        simple = transientBuilderFactory.newTransient( SimpleComposite.class );
+        simpleWithTypedConcern = transientBuilderFactory.newTransient( SimpleWithTypedConcernComposite.class );
+        simpleWithGenericConcern = transientBuilderFactory.newTransient( SimpleWithGenericConcernComposite.class );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws PassivationException
+    {
+        assembler.application().passivate();
+    }
+
+    @Benchmark
+    public int invokeInterface()
+    {
+        return plain.test();
+    }
+
+    @Benchmark
+    public int invokeMixin()
+    {
+        return simple.test();
+    }
+
+    @Benchmark
+    public int invokeMixinWithTypedConcern()
+    {
+        return simpleWithTypedConcern.test();
+    }
+
+    @Benchmark
+    public int invokeMixinWithGenericConcern()
+    {
+        return simpleWithGenericConcern.test();
+    }
+
+    @Benchmark
+    public Simple newTransient()
+    {
+        return transientBuilderFactory.newTransient( SimpleComposite.class );
+    }
+
+    @Mixins( SimpleMixin.class )
+    public interface SimpleComposite
+        extends Simple, TransientComposite
+    {
+    }
+
+    @Mixins( SimpleMixin.class )
+    @Concerns( SimpleTypedConcern.class )
+    public interface SimpleWithTypedConcernComposite
+        extends Simple, TransientComposite
+    {
+    }
+
+    @Mixins( SimpleMixin.class )
+    @Concerns( SimpleGenericConcern.class )
+    public interface SimpleWithGenericConcernComposite
+        extends Simple, TransientComposite
+    {
+    }
+
+    public interface Simple
+    {
+        int test();
+    }
+
+    public static class SimpleMixin
+        implements Simple
+    {
+        private int count;
+
+        @Override
+        public int test()
+        {
+            return count++;
+        }
+    }
+
+    public static class SimpleTypedConcern
+        extends ConcernOf<Simple>
+        implements Simple
+    {
+        @Override
+        public int test()
+        {
+            return next.test();
+        }
+    }
+
+    public static class SimpleGenericConcern
+        extends ConcernOf<InvocationHandler>
+        implements InvocationHandler
+    {
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args )
+            throws Throwable
+        {
+            return next.invoke( proxy, method, args );
+        }
+    }
+}
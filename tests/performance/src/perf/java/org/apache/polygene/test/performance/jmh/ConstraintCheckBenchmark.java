@@ -0,0 +1,162 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.jmh;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.TimeUnit;
+import org.apache.polygene.api.activation.ActivationException;
+import org.apache.polygene.api.activation.PassivationException;
+import org.apache.polygene.api.common.Optional;
+import org.apache.polygene.api.composite.TransientComposite;
+import org.apache.polygene.api.constraint.Constraint;
+import org.apache.polygene.api.constraint.ConstraintDeclaration;
+import org.apache.polygene.api.constraint.Constraints;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Parameter constraint checks on composite method invocation, when all parameters are valid.
+ * <p>
+ * Run it with the GC profiler, {@code -Pjmh.profilers=gc}, to see the allocation rate of each kind of method:
+ * {@code gc.alloc.rate.norm} should not grow with the number of checked parameters.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class ConstraintCheckBenchmark
+{
+    private SingletonAssembler assembler;
+    private Checked checked;
+    private Integer one;
+    private Integer two;
+    private Integer three;
+
+    @Setup
+    public void setup()
+        throws ActivationException
+    {
+        assembler = new SingletonAssembler( module -> module.transients( CheckedComposite.class ) );
+        checked = assembler.module().newTransient( CheckedComposite.class );
+        one = 1;
+        two = 2;
+        three = 3;
+    }
+
+    @TearDown
+    public void tearDown()
+        throws PassivationException
+    {
+        assembler.application().passivate();
+    }
+
+    @Benchmark
+    public int optionalParameter()
+    {
+        return checked.optional( one );
+    }
+
+    @Benchmark
+    public int notNullParameter()
+    {
+        return checked.notNull( one );
+    }
+
+    @Benchmark
+    public int constrainedParameter()
+    {
+        return checked.constrained( one );
+    }
+
+    @Benchmark
+    public int constrainedParameters()
+    {
+        return checked.constrained( one, two, three );
+    }
+
+    @Mixins( CheckedMixin.class )
+    public interface CheckedComposite
+        extends Checked, TransientComposite
+    {
+    }
+
+    public interface Checked
+    {
+        int optional( @Optional Integer value );
+
+        int notNull( Integer value );
+
+        int constrained( @Positive Integer value );
+
+        int constrained( @Positive Integer first, @Positive Integer second, @Optional @Positive Integer third );
+    }
+
+    public static class CheckedMixin
+        implements Checked
+    {
+        @Override
+        public int optional( Integer value )
+        {
+            return value;
+        }
+
+        @Override
+        public int notNull( Integer value )
+        {
+            return value;
+        }
+
+        @Override
+        public int constrained( Integer value )
+        {
+            return value;
+        }
+
+        @Override
+        public int constrained( Integer first, Integer second, Integer third )
+        {
+            return first + second + third;
+        }
+    }
+
+    @ConstraintDeclaration
+    @Retention( RetentionPolicy.RUNTIME )
+    @Constraints( PositiveConstraint.class )
+    public @interface Positive
+    {
+    }
+
+    public static class PositiveConstraint
+        implements Constraint<Positive, Integer>
+    {
+        @Override
+        public boolean isValid( Positive annotation, Integer value )
+        {
+            return value > 0;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.polygene.api.activation.ActivationException;
+import org.apache.polygene.api.activation.PassivationException;
+import org.apache.polygene.api.common.Visibility;
+import org.apache.polygene.api.identity.Identity;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkCompletionException;
+import org.apache.polygene.api.unitofwork.UnitOfWorkFactory;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.apache.polygene.entitystore.leveldb.LevelDBEntityStoreConfiguration;
+import org.apache.polygene.entitystore.leveldb.assembly.LevelDBEntityStoreAssembler;
+import org.apache.polygene.entitystore.memory.assembly.MemoryEntityStoreAssembler;
+import org.apache.polygene.entitystore.sql.assembly.DerbySQLEntityStoreAssembler;
+import org.apache.polygene.library.fileconfig.FileConfigurationAssembler;
+import org.apache.polygene.library.fileconfig.FileConfigurationOverride;
+import org.apache.polygene.library.sql.assembly.DataSourceAssembler;
+import org.apache.polygene.library.sql.dbcp.DBCPDataSourceServiceAssembler;
+import org.apache.polygene.serialization.messagepack.MessagePackEntityStateFormat;
+import org.apache.polygene.test.EntityTestAssembler;
+import org.apache.polygene.test.performance.entitystore.SimpleProduct;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Entity create, read, update and delete, each in its own UnitOfWork, for every entity store.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class EntityStoreBenchmark
+{
+    private static final int ENTITIES = 1000;
+
+    @Param( { "memory", "leveldb", "leveldb-messagepack", "derby" } )
+    public String store;
+
+    private Path dataDir;
+    private SingletonAssembler assembler;
+    private UnitOfWorkFactory uowf;
+    private Identity[] identities;
+    private int next;
+
+    @Setup
+    public void setup()
+        throws ActivationException, IOException, UnitOfWorkCompletionException
+    {
+        dataDir = Files.createTempDirectory( "polygene-jmh-" );
+        assembler = new SingletonAssembler( module -> {
+            ModuleAssembly config = module.layer().module( "config" );
+            new EntityTestAssembler().defaultServicesVisibleIn( Visibility.layer ).assemble( config );
+            assembleStore( module, config, dataDir.toFile() );
+            module.defaultServices();
+            module.entities( SimpleProduct.class );
+        } );
+        uowf = assembler.module().unitOfWorkFactory();
+        identities = new Identity[ ENTITIES ];
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            for( int i = 0; i < ENTITIES; i++ )
+            {
+                SimpleProduct product = uow.newEntity( SimpleProduct.class );
+                product.name().set( "Product " + i );
+                identities[ i ] = product.identity().get();
+            }
+            uow.complete();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+        throws PassivationException, IOException
+    {
+        try
+        {
+            assembler.application().passivate();
+        }
+        finally
+        {
+            try( Stream<Path> paths = Files.walk( dataDir ) )
+            {
+                paths.sorted( Comparator.reverseOrder() ).map( Path::toFile ).forEach( File::delete );
+            }
+        }
+    }
+
+    @Benchmark
+    public Identity create()
+        throws UnitOfWorkCompletionException
+    {
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            SimpleProduct product = uow.newEntity( SimpleProduct.class );
+            product.name().set( "Created" );
+            uow.complete();
+            return product.identity().get();
+        }
+    }
+
+    @Benchmark
+    public String read()
+        throws UnitOfWorkCompletionException
+    {
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            String name = uow.get( SimpleProduct.class, nextIdentity() ).name().get();
+            uow.complete();
+            return name;
+        }
+    }
+
+    @Benchmark
+    public void update()
+        throws UnitOfWorkCompletionException
+    {
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            uow.get( SimpleProduct.class, nextIdentity() ).name().set( "Updated " + next );
+            uow.complete();
+        }
+    }
+
+    /**
+     * Delete needs an entity to delete, so this measures a create followed by a delete.
+     */
+    @Benchmark
+    public void createAndDelete()
+        throws UnitOfWorkCompletionException
+    {
+        Identity identity = create();
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            uow.remove( uow.get( SimpleProduct.class, identity ) );
+            uow.complete();
+        }
+    }
+
+    private Identity nextIdentity()
+    {
+        next = ( next + 1 ) % ENTITIES;
+        return identities[ next ];
+    }
+
+    private void assembleStore( ModuleAssembly module, ModuleAssembly config, File dataDir )
+    {
+        switch( store )
+        {
+            case "memory":
+                new MemoryEntityStoreAssembler().assemble( module );
+                break;
+            case "leveldb":
+            case "leveldb-messagepack":
+                new FileConfigurationAssembler()
+                    .withOverride( new FileConfigurationOverride().withConventionalRoot( dataDir ) )
+                    .assemble( module );
+                new LevelDBEntityStoreAssembler()
+                    .withConfig( config, Visibility.layer )
+                    .withStateFormat( store.endsWith( "messagepack" ) ? new MessagePackEntityStateFormat() : null )
+                    .assemble( module );
+                config.forMixin( LevelDBEntityStoreConfiguration.class ).declareDefaults().flavour().set( "java" );
+                break;
+            case "derby":
+                new DBCPDataSourceServiceAssembler()
+                    .identifiedBy( "derby-datasource-service" )
+                    .visibleIn( Visibility.module )
+                    .withConfig( config, Visibility.layer )
+                    .assemble( module );
+                new DataSourceAssembler()
+                    .withDataSourceServiceIdentity( "derby-datasource-service" )
+                    .identifiedBy( "derby-datasource" )
+                    .withCircuitBreaker()
+                    .assemble( module );
+                new DerbySQLEntityStoreAssembler().withConfig( config, Visibility.layer ).assemble( module );
+                break;
+            default:
+                throw new IllegalArgumentException( "Unknown entity store " + store );
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.jmh;
+
+import java.io.File;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the Polygene JMH benchmarks and writes their results as JSON.
+ * <p>
+ * The results file is given as the only argument. The run is tuned with the following system properties:
+ * </p>
+ * <pre>
+ * <b>jmh.include</b>    = Regular expression selecting the benchmarks to run, all by default.
+ * <b>jmh.forks</b>      = Number of forked JVMs per benchmark, 2 by default.
+ * <b>jmh.warmups</b>    = Warmup iterations per fork, 5 by default.
+ * <b>jmh.iterations</b> = Measurement iterations per fork, 5 by default.
+ * <b>jmh.time</b>       = Duration of each iteration in seconds, 1 by default.
+ * <b>jmh.threads</b>    = Threads running each benchmark, 1 by default.
+ * <b>jmh.profilers</b>  = Comma separated JMH profilers, e.g. "gc,stack", none by default.
+ * </pre>
+ * <p>
+ * Results of two runs are compared with {@link RegressionReport}.
+ * </p>
+ */
+public class PolygeneBenchmarks
+{
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        if( args.length != 1 )
+        {
+            System.err.println( "Usage: PolygeneBenchmarks <results.json>" );
+            System.exit( 1 );
+        }
+        File results = new File( args[ 0 ] );
+        File parent = results.getAbsoluteFile().getParentFile();
+        if( !parent.exists() && !parent.mkdirs() )
+        {
+            throw new RunnerException( "Unable to create " + parent );
+        }
+
+        TimeValue time = TimeValue.seconds( Integer.getInteger( "jmh.time", 1 ) );
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include( System.getProperty( "jmh.include", PolygeneBenchmarks.class.getPackage().getName() + "\\..*" ) )
+            .forks( Integer.getInteger( "jmh.forks", 2 ) )
+            .warmupIterations( Integer.getInteger( "jmh.warmups", 5 ) )
+            .measurementIterations( Integer.getInteger( "jmh.iterations", 5 ) )
+            .warmupTime( time )
+            .measurementTime( time )
+            .threads( Integer.getInteger( "jmh.threads", 1 ) )
+            .shouldFailOnError( true )
+            .resultFormat( ResultFormatType.JSON )
+            .result( results.getAbsolutePath() );
+        String profilers = System.getProperty( "jmh.profilers", "" );
+        for( String profiler : profilers.split( "," ) )
+        {
+            if( !profiler.trim().isEmpty() )
+            {
+                options.addProfiler( profiler.trim() );
+            }
+        }
+        new Runner( options.build() ).run();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.polygene.api.activation.ActivationException;
+import org.apache.polygene.api.activation.PassivationException;
+import org.apache.polygene.api.entity.EntityComposite;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.query.Query;
+import org.apache.polygene.api.query.QueryBuilder;
+import org.apache.polygene.api.query.QueryBuilderFactory;
+import org.apache.polygene.api.unitofwork.UnitOfWork;
+import org.apache.polygene.api.unitofwork.UnitOfWorkCompletionException;
+import org.apache.polygene.api.unitofwork.UnitOfWorkFactory;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.apache.polygene.index.rdf.assembly.RdfMemoryStoreAssembler;
+import org.apache.polygene.test.EntityTestAssembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static org.apache.polygene.api.query.QueryExpressions.eq;
+import static org.apache.polygene.api.query.QueryExpressions.ge;
+import static org.apache.polygene.api.query.QueryExpressions.templateFor;
+
+/**
+ * Query execution against the RDF index of an in-memory entity store.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class QueryBenchmark
+{
+    private static final int ENTITIES = 10000;
+
+    private SingletonAssembler assembler;
+    private UnitOfWorkFactory uowf;
+    private QueryBuilderFactory qbf;
+    private int next;
+
+    @Setup
+    public void setup()
+        throws ActivationException, UnitOfWorkCompletionException
+    {
+        assembler = new SingletonAssembler( module -> {
+            module.entities( Lead.class );
+            new RdfMemoryStoreAssembler().assemble( module );
+            new EntityTestAssembler().assemble( module );
+        } );
+        uowf = assembler.module().unitOfWorkFactory();
+        qbf = assembler.module();
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            for( int i = 0; i < ENTITIES; i++ )
+            {
+                Lead lead = uow.newEntity( Lead.class );
+                lead.name().set( "Lead" + i );
+                lead.score().set( i );
+            }
+            uow.complete();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+        throws PassivationException
+    {
+        assembler.application().passivate();
+    }
+
+    @Benchmark
+    public Lead findByName()
+    {
+        next = ( next + 7919 ) % ENTITIES;
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            Lead template = templateFor( Lead.class );
+            QueryBuilder<Lead> builder = qbf.newQueryBuilder( Lead.class ).where( eq( template.name(), "Lead" + next ) );
+            return uow.newQuery( builder ).find();
+        }
+    }
+
+    @Benchmark
+    public long countByScore()
+    {
+        try( UnitOfWork uow = uowf.newUnitOfWork() )
+        {
+            Lead template = templateFor( Lead.class );
+            Query<Lead> query = uow.newQuery( qbf.newQueryBuilder( Lead.class )
+                                                 .where( ge( template.score(), ENTITIES - 100 ) ) );
+            return query.count();
+        }
+    }
+
+    public interface Lead
+        extends EntityComposite
+    {
+        Property<String> name();
+
+        Property<Integer> score();
+    }
+}
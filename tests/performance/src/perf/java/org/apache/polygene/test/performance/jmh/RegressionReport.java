@@ -0,0 +1,164 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.jmh;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * Compares two JMH JSON result files and reports the benchmarks that regressed.
+ * <p>
+ * Arguments are the baseline results, the current results, the report file to write and the tolerated
+ * regression in percent. A benchmark regressed when its score moved in the wrong direction by more than
+ * the tolerance: down for throughput, up for the time based modes. The process exits with a non-zero
+ * status when any benchmark regressed, so it can gate a build.
+ * </p>
+ */
+public class RegressionReport
+{
+    public static void main( String[] args )
+        throws IOException
+    {
+        if( args.length != 4 )
+        {
+            System.err.println( "Usage: RegressionReport <baseline.json> <current.json> <report.txt> <tolerance%>" );
+            System.exit( 1 );
+        }
+        Map<String, Score> baseline = read( Paths.get( args[ 0 ] ) );
+        Map<String, Score> current = read( Paths.get( args[ 1 ] ) );
+        double tolerance = Double.parseDouble( args[ 3 ] );
+
+        StringWriter report = new StringWriter();
+        int regressions = compare( baseline, current, tolerance, new PrintWriter( report ) );
+        Path reportFile = Paths.get( args[ 2 ] );
+        if( reportFile.toAbsolutePath().getParent() != null )
+        {
+            Files.createDirectories( reportFile.toAbsolutePath().getParent() );
+        }
+        Files.write( reportFile, report.toString().getBytes( StandardCharsets.UTF_8 ) );
+        System.out.print( report );
+        if( regressions > 0 )
+        {
+            System.exit( 2 );
+        }
+    }
+
+    static int compare( Map<String, Score> baseline, Map<String, Score> current, double tolerance, PrintWriter out )
+    {
+        int regressions = 0;
+        out.println( String.format( Locale.ROOT, "%-60s %16s %16s %9s  %s",
+                                    "Benchmark", "Baseline", "Current", "Change", "Unit" ) );
+        for( Map.Entry<String, Score> entry : current.entrySet() )
+        {
+            Score now = entry.getValue();
+            Score before = baseline.get( entry.getKey() );
+            if( before == null )
+            {
+                out.println( String.format( Locale.ROOT, "%-60s %16s %16.3f %9s  %s",
+                                            entry.getKey(), "-", now.score, "new", now.unit ) );
+                continue;
+            }
+            double change = before.score == 0 ? 0 : ( now.score - before.score ) * 100 / before.score;
+            double worsening = now.higherIsBetter() ? -change : change;
+            boolean regressed = worsening > tolerance;
+            if( regressed )
+            {
+                regressions++;
+            }
+            out.println( String.format( Locale.ROOT, "%-60s %16.3f %16.3f %+8.1f%%  %s%s",
+                                        entry.getKey(), before.score, now.score, change, now.unit,
+                                        regressed ? "  REGRESSION" : "" ) );
+        }
+        for( String missing : baseline.keySet() )
+        {
+            if( !current.containsKey( missing ) )
+            {
+                out.println( String.format( Locale.ROOT, "%-60s %16.3f %16s %9s", missing,
+                                            baseline.get( missing ).score, "-", "missing" ) );
+            }
+        }
+        out.println();
+        out.println( regressions + " benchmark(s) regressed by more than " + tolerance + "%" );
+        out.flush();
+        return regressions;
+    }
+
+    static Map<String, Score> read( Path results )
+        throws IOException
+    {
+        Map<String, Score> scores = new TreeMap<>();
+        try( Reader reader = Files.newBufferedReader( results, StandardCharsets.UTF_8 );
+             JsonReader json = Json.createReader( reader ) )
+        {
+            JsonArray runs = json.readArray();
+            for( JsonValue value : runs )
+            {
+                JsonObject run = (JsonObject) value;
+                // Class and method are enough to tell the benchmarks apart and keep the report readable
+                String benchmark = run.getString( "benchmark" );
+                int method = benchmark.lastIndexOf( '.' );
+                StringBuilder key = new StringBuilder( benchmark.substring( benchmark.lastIndexOf( '.', method - 1 ) + 1 ) );
+                if( run.containsKey( "params" ) )
+                {
+                    new TreeMap<>( run.getJsonObject( "params" ) ).forEach(
+                        ( name, param ) -> key.append( ':' ).append( name ).append( '=' )
+                                              .append( ( (JsonString) param ).getString() ) );
+                }
+                JsonObject metric = run.getJsonObject( "primaryMetric" );
+                scores.put( key.toString(), new Score( run.getString( "mode" ),
+                                                       metric.getJsonNumber( "score" ).doubleValue(),
+                                                       metric.getString( "scoreUnit" ) ) );
+            }
+        }
+        return scores;
+    }
+
+    static final class Score
+    {
+        private final String mode;
+        private final double score;
+        private final String unit;
+
+        Score( String mode, double score, String unit )
+        {
+            this.mode = mode;
+            this.score = score;
+            this.unit = unit;
+        }
+
+        private boolean higherIsBetter()
+        {
+            return "thrpt".equals( mode );
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.jmh;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.polygene.api.activation.ActivationException;
+import org.apache.polygene.api.activation.PassivationException;
+import org.apache.polygene.api.common.Optional;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.serialization.Serialization;
+import org.apache.polygene.api.structure.Module;
+import org.apache.polygene.api.value.ValueBuilder;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.apache.polygene.serialization.javaxjson.assembly.JavaxJsonSerializationAssembler;
+import org.apache.polygene.serialization.javaxxml.assembly.JavaxXmlSerializationAssembler;
+import org.apache.polygene.serialization.messagepack.assembly.MessagePackSerializationAssembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Value serialization and deserialization for every serialization format.
+ *
+ * {@literal order} is a value holding a collection of nested values, {@literal account} a flat value with many
+ * properties of types handled by format adapters, converters and enums where per property work dominates.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class SerializationBenchmark
+{
+    @Param( { "json", "xml", "messagepack" } )
+    public String format;
+
+    private SingletonAssembler assembler;
+    private Module module;
+    private Serialization serialization;
+    private Order order;
+    private byte[] serialized;
+    private Account account;
+    private byte[] serializedAccount;
+
+    @Setup
+    public void setup()
+        throws ActivationException
+    {
+        assembler = new SingletonAssembler( module -> {
+            assembleFormat( module );
+            module.values( Order.class, OrderLine.class, Account.class );
+        } );
+        module = assembler.module();
+        serialization = module.findService( Serialization.class ).get();
+        order = newOrder();
+        serialized = serialization.toBytes( order );
+        account = newAccount();
+        serializedAccount = serialization.toBytes( account );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws PassivationException
+    {
+        assembler.application().passivate();
+    }
+
+    @Benchmark
+    public byte[] serialize()
+    {
+        return serialization.toBytes( order );
+    }
+
+    @Benchmark
+    public Order deserialize()
+    {
+        return serialization.fromBytes( module.descriptor(), Order.class, serialized );
+    }
+
+    @Benchmark
+    public byte[] serializeAccount()
+    {
+        return serialization.toBytes( account );
+    }
+
+    @Benchmark
+    public Account deserializeAccount()
+    {
+        return serialization.fromBytes( module.descriptor(), Account.class, serializedAccount );
+    }
+
+    private Order newOrder()
+    {
+        List<OrderLine> lines = new ArrayList<>();
+        for( int i = 0; i < 20; i++ )
+        {
+            ValueBuilder<OrderLine> builder = module.newValueBuilder( OrderLine.class );
+            builder.prototype().product().set( "Product " + i );
+            builder.prototype().quantity().set( i );
+            builder.prototype().price().set( i * 1.5 );
+            lines.add( builder.newInstance() );
+        }
+        ValueBuilder<Order> builder = module.newValueBuilder( Order.class );
+        builder.prototype().customer().set( "Customer" );
+        builder.prototype().lines().set( lines );
+        return builder.newInstance();
+    }
+
+    private Account newAccount()
+    {
+        ValueBuilder<Account> builder = module.newValueBuilder( Account.class );
+        Account prototype = builder.prototype();
+        prototype.number().set( 1234567890L );
+        prototype.holder().set( "Holder" );
+        prototype.email().set( "holder@example.org" );
+        prototype.status().set( AccountStatus.OPEN );
+        prototype.balance().set( new BigDecimal( "1234.56" ) );
+        prototype.limit().set( new BigDecimal( "5000" ) );
+        prototype.opened().set( LocalDate.of( 2017, 6, 1 ) );
+        prototype.lastActivity().set( Instant.parse( "2017-06-01T12:00:00Z" ) );
+        prototype.transactions().set( 4242 );
+        prototype.overdraft().set( false );
+        prototype.rate().set( 0.0125 );
+        prototype.branch().set( "Branch" );
+        return builder.newInstance();
+    }
+
+    private void assembleFormat( ModuleAssembly module )
+    {
+        switch( format )
+        {
+            case "json":
+                new JavaxJsonSerializationAssembler().assemble( module );
+                break;
+            case "xml":
+                new JavaxXmlSerializationAssembler().assemble( module );
+                break;
+            case "messagepack":
+                new MessagePackSerializationAssembler().assemble( module );
+                break;
+            default:
+                throw new IllegalArgumentException( "Unknown serialization format " + format );
+        }
+    }
+
+    public interface Order
+    {
+        Property<String> customer();
+
+        @Optional
+        Property<String> note();
+
+        Property<List<OrderLine>> lines();
+    }
+
+    public interface OrderLine
+    {
+        Property<String> product();
+
+        Property<Integer> quantity();
+
+        Property<Double> price();
+    }
+
+    public enum AccountStatus
+    {
+        OPEN, SUSPENDED, CLOSED
+    }
+
+    public interface Account
+    {
+        Property<Long> number();
+
+        Property<String> holder();
+
+        Property<String> email();
+
+        Property<AccountStatus> status();
+
+        Property<BigDecimal> balance();
+
+        Property<BigDecimal> limit();
+
+        Property<LocalDate> opened();
+
+        Property<Instant> lastActivity();
+
+        Property<Integer> transactions();
+
+        Property<Boolean> overdraft();
+
+        Property<Double> rate();
+
+        Property<String> branch();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.polygene.api.activation.ActivationException;
+import org.apache.polygene.api.activation.PassivationException;
+import org.apache.polygene.api.property.Property;
+import org.apache.polygene.api.value.ValueBuilder;
+import org.apache.polygene.api.value.ValueBuilderFactory;
+import org.apache.polygene.bootstrap.SingletonAssembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Value creation, from a builder prototype and by copying an existing value.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class ValueCreationBenchmark
+{
+    private SingletonAssembler assembler;
+    private ValueBuilderFactory valueBuilderFactory;
+    private Product product;
+
+    @Setup
+    public void setup()
+        throws ActivationException
+    {
+        assembler = new SingletonAssembler( module -> module.values( Product.class ) );
+        valueBuilderFactory = assembler.module().valueBuilderFactory();
+        product = newProduct();
+    }
+
+    @TearDown
+    public void tearDown()
+        throws PassivationException
+    {
+        assembler.application().passivate();
+    }
+
+    @Benchmark
+    public Product newProduct()
+    {
+        ValueBuilder<Product> builder = valueBuilderFactory.newValueBuilder( Product.class );
+        Product prototype = builder.prototype();
+        prototype.name().set( "Product" );
+        prototype.description().set( "A product used to measure value creation" );
+        prototype.price().set( 42 );
+        return builder.newInstance();
+    }
+
+    @Benchmark
+    public Product copyProduct()
+    {
+        ValueBuilder<Product> builder = valueBuilderFactory.newValueBuilderWithPrototype( product );
+        builder.prototype().price().set( 43 );
+        return builder.newInstance();
+    }
+
+    public interface Product
+    {
+        Property<String> name();
+
+        Property<String> description();
+
+        Property<Integer> price();
+    }
+}
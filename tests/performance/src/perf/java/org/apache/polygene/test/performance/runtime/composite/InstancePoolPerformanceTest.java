@@ -0,0 +1,191 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.polygene.test.performance.runtime.composite;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.polygene.api.composite.TransientComposite;
+import org.apache.polygene.api.concern.ConcernOf;
+import org.apache.polygene.api.concern.Concerns;
+import org.apache.polygene.api.mixin.Mixins;
+import org.apache.polygene.bootstrap.InstancePoolStrategy;
+import org.apache.polygene.bootstrap.ModuleAssembly;
+import org.apache.polygene.test.AbstractPolygeneTest;
+import org.junit.Test;
+
+/**
+ * Invocation throughput of composite methods for each {@link InstancePoolStrategy}.
+ * <p>
+ * Every strategy is measured from a single thread and from at least four threads,
+ * as the pools mainly differ in how they behave under contention.
+ * </p>
+ */
+public class InstancePoolPerformanceTest
+    extends AbstractPolygeneTest
+{
+    private static final int THREADS = Math.max( 4, Runtime.getRuntime().availableProcessors() );
+    private static final long CALLS = 5000000L;
+
+    @Override
+    public void assemble( ModuleAssembly module )
+    {
+        module.transients( AtomicComposite.class ).setMetaInfo( InstancePoolStrategy.ATOMIC );
+        module.transients( SynchronizedComposite.class ).setMetaInfo( InstancePoolStrategy.SYNCHRONIZED );
+        module.transients( ThreadLocalComposite.class ).setMetaInfo( InstancePoolStrategy.THREAD_LOCAL );
+        module.transients( StripedComposite.class ).setMetaInfo( InstancePoolStrategy.STRIPED );
+        module.transients( UnpooledComposite.class ).setMetaInfo( InstancePoolStrategy.NONE );
+    }
+
+    @Test
+    public void testAtomicPool()
+        throws Exception
+    {
+        performanceCheck( "ATOMIC", transientBuilderFactory.newTransient( AtomicComposite.class ) );
+    }
+
+    @Test
+    public void testSynchronizedPool()
+        throws Exception
+    {
+        performanceCheck( "SYNCHRONIZED", transientBuilderFactory.newTransient( SynchronizedComposite.class ) );
+    }
+
+    @Test
+    public void testThreadLocalPool()
+        throws Exception
+    {
+        performanceCheck( "THREAD_LOCAL", transientBuilderFactory.newTransient( ThreadLocalComposite.class ) );
+    }
+
+    @Test
+    public void testStripedPool()
+        throws Exception
+    {
+        performanceCheck( "STRIPED", transientBuilderFactory.newTransient( StripedComposite.class ) );
+    }
+
+    @Test
+    public void testNoPool()
+        throws Exception
+    {
+        performanceCheck( "NONE", transientBuilderFactory.newTransient( UnpooledComposite.class ) );
+    }
+
+    private void performanceCheck( String strategy, Simple simple )
+        throws Exception
+    {
+        // Warmup
+        run( simple, 1, CALLS / 10 );
+        run( simple, THREADS, CALLS / 10 );
+
+        long single = run( simple, 1, CALLS );
+        long parallel = run( simple, THREADS, CALLS );
+        NumberFormat format = NumberFormat.getIntegerInstance();
+        System.out.println( strategy + " calls per second, 1 thread: " + format.format( single )
+                            + ", " + THREADS + " threads: " + format.format( parallel ) );
+    }
+
+    private long run( Simple simple, int threads, long callsPerThread )
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Callable<Object>> tasks = new ArrayList<>();
+            for( int thread = 0; thread < threads; thread++ )
+            {
+                tasks.add( () -> {
+                    for( long i = 0; i < callsPerThread; i++ )
+                    {
+                        simple.test();
+                    }
+                    return null;
+                } );
+            }
+            long start = System.nanoTime();
+            for( Future<Object> result : executor.invokeAll( tasks ) )
+            {
+                result.get();
+            }
+            long time = Math.max( 1, System.nanoTime() - start );
+            return threads * callsPerThread * 1000000000L / time;
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Mixins( SimpleMixin.class )
+    @Concerns( SimpleConcern.class )
+    public interface Simple
+    {
+        void test();
+    }
+
+    public interface AtomicComposite
+        extends Simple, TransientComposite
+    {
+    }
+
+    public interface SynchronizedComposite
+        extends Simple, TransientComposite
+    {
+    }
+
+    public interface ThreadLocalComposite
+        extends Simple, TransientComposite
+    {
+    }
+
+    public interface StripedComposite
+        extends Simple, TransientComposite
+    {
+    }
+
+    public interface UnpooledComposite
+        extends Simple, TransientComposite
+    {
+    }
+
+    public static class SimpleMixin
+        implements Simple
+    {
+        @Override
+        public void test()
+        {
+            // Do nothing
+        }
+    }
+
+    public static class SimpleConcern
+        extends ConcernOf<Simple>
+        implements Simple
+    {
+        @Override
+        public void test()
+        {
+            next.test();
+        }
+    }
+}